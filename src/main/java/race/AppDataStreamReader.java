@@ -0,0 +1,777 @@
+package race;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Lector por eventos de los ficheros de datos de la aplicación. En lugar de
+ * construir el árbol completo de {@link org.json.simple.JSONObject} y
+ * {@link org.json.simple.JSONArray}, recibe los elementos del fichero según
+ * los lee el {@link JSONParser} y construye directamente los coches, garajes,
+ * carreras y torneos de las secciones que se importan. Los objetos
+ * construidos se entregan a {@link Control} sólo cuando se ha leído el
+ * fichero completo sin errores, por lo que un fichero incorrecto no deja una
+ * importación a medias. Las secciones que no se importan se saltan sin
+ * construir sus objetos. Los datos de cada objeto se guardan hasta que se
+ * cierra, porque las claves pueden llegar en cualquier orden. Cada coche y
+ * cada garaje al que se refiere una carrera o un torneo se resuelve con un
+ * {@link IdentityMap} al objeto canónico, por lo que no se crean copias de
+ * los que ya existen
+ */
+public class AppDataStreamReader implements ContentHandler {
+
+	/**
+	 * Constructor que ignora todo el contenido de un objeto que no se conoce
+	 */
+	protected static final Builder IGNORED = new Builder();
+
+	/**
+	 * El control al que se entregan los objetos importados
+	 */
+	protected final Control control;
+
+	/**
+	 * El mapa de identidad de la importación en curso, con los garajes y
+	 * coches que ya tenía el control
+	 */
+	protected IdentityMap identities;
+
+	/**
+	 * Las claves de las entradas abiertas, de la más interna a la más externa
+	 */
+	protected final Deque<String> keys = new ArrayDeque<>();
+
+	/**
+	 * El constructor del objeto raíz del último fichero leído, con los objetos
+	 * pendientes de entregar al control
+	 */
+	protected RootBuilder root;
+
+	/**
+	 * Las secciones del fichero que se importan: {@link Control#GARAGES},
+	 * {@link Control#RACES} y {@link Control#TOURNAMENT}
+	 */
+	protected final Set<String> sections;
+
+	/**
+	 * La secuencia del {@link ChangeJournal} indicada en el último fichero
+	 * leído, o 0 si no la indica
+	 */
+	protected long journalSequence;
+
+	/**
+	 * Los constructores de los objetos abiertos, del más interno al más
+	 * externo
+	 */
+	protected final Deque<Builder> stack = new ArrayDeque<>();
+
+	/**
+	 * Crea un lector que entrega al control indicado los garajes, carreras y
+	 * torneos importados
+	 *
+	 * @param control
+	 *            El control al que se entregan los objetos
+	 */
+	public AppDataStreamReader(Control control) {
+		this(control, Control.GARAGES, Control.RACES, Control.TOURNAMENT);
+	}
+
+	/**
+	 * Crea un lector que entrega al control indicado sólo los objetos de las
+	 * secciones indicadas. La tabla {@link Control#CARS} de la exportación
+	 * normalizada se lee siempre, porque las demás secciones se refieren a
+	 * ella
+	 *
+	 * @param control
+	 *            El control al que se entregan los objetos
+	 * @param sections
+	 *            Las secciones que se importan: {@link Control#GARAGES},
+	 *            {@link Control#RACES} o {@link Control#TOURNAMENT}
+	 */
+	public AppDataStreamReader(Control control, String... sections) {
+		this.control = control;
+		this.sections = new HashSet<>(Arrays.asList(sections));
+	}
+
+	/**
+	 * Lee un fichero de datos de la aplicación, que puede contener cualquiera
+	 * de las listas de garajes, carreras y torneos, y entrega al control los
+	 * objetos de las secciones que se importan. Si el fichero no se puede
+	 * leer completo no se entrega ninguno
+	 *
+	 * @param filename
+	 *            El nombre del fichero
+	 * @return La secuencia del {@link ChangeJournal} indicada en el fichero,
+	 *         o 0 si no la indica
+	 * @throws IOException
+	 *             Si no se puede leer el fichero
+	 * @throws ParseException
+	 *             Si el contenido del fichero no es JSON válido
+	 */
+	public long read(String filename) throws IOException, ParseException {
+		this.journalSequence = 0;
+		this.identities = new IdentityMap(this.control);
+		this.root = null;
+		try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+			new JSONParser().parse(reader, this);
+		}
+		if (this.root != null) {
+			this.root.commit();
+			this.root = null;
+		}
+		return this.journalSequence;
+	}
+
+	/**
+	 * Devuelve la clave de la entrada más interna que está abierta
+	 *
+	 * @return La clave, o <code>null</code> si no hay ninguna
+	 */
+	protected String currentKey() {
+		return this.keys.peek();
+	}
+
+	@Override
+	public boolean endArray() {
+		return true;
+	}
+
+	@Override
+	public void endJSON() {
+		this.stack.clear();
+		this.keys.clear();
+	}
+
+	@Override
+	public boolean endObject() {
+		Builder builder = this.stack.pop();
+		Object built = builder.build();
+		if (!this.stack.isEmpty()) {
+			this.stack.peek().add(this.currentKey(), built);
+		} else if (built instanceof Number) {
+			this.journalSequence = ((Number) built).longValue();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean endObjectEntry() {
+		this.keys.pop();
+		return true;
+	}
+
+	@Override
+	public boolean primitive(Object value) throws ParseException {
+		if (!this.stack.isEmpty()) {
+			this.stack.peek().value(this.currentKey(), value);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean startArray() {
+		return true;
+	}
+
+	@Override
+	public void startJSON() {
+		this.stack.clear();
+		this.keys.clear();
+	}
+
+	@Override
+	public boolean startObject() {
+		if (this.stack.isEmpty()) {
+			this.root = new RootBuilder(this.control, this.identities, this.sections);
+			this.stack.push(this.root);
+		} else {
+			this.stack.push(this.stack.peek().child(this.currentKey()));
+		}
+		return true;
+	}
+
+	@Override
+	public boolean startObjectEntry(String key) {
+		this.keys.push(key);
+		return true;
+	}
+
+	/**
+	 * Devuelve el coche de la tabla de la exportación normalizada al que se
+	 * refiere un identificador
+	 *
+	 * @param carTable
+	 *            La tabla de coches leída
+	 * @param value
+	 *            El identificador leído
+	 * @return El coche de la tabla
+	 * @throws ParseException
+	 *             Si el identificador no está en la tabla
+	 */
+	protected static ScoreCar carReference(List<ScoreCar> carTable, Object value) throws ParseException {
+		int id = AppDataStreamReader.intValue(value);
+		if ((id < 0) || (id >= carTable.size())) {
+			throw new ParseException(-1, ParseException.ERROR_UNEXPECTED_TOKEN, value);
+		}
+		return carTable.get(id);
+	}
+
+	/**
+	 * Devuelve el número entero de un valor numérico del fichero
+	 *
+	 * @param value
+	 *            El valor leído
+	 * @return El número entero, o 0 si el valor no es un número
+	 */
+	protected static int intValue(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		return 0;
+	}
+
+	/**
+	 * Devuelve la cadena de un valor del fichero
+	 *
+	 * @param value
+	 *            El valor leído
+	 * @return La cadena, o <code>null</code> si el valor es nulo
+	 */
+	protected static String stringValue(Object value) {
+		if (value == null) {
+			return null;
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Constructor de un objeto del fichero. Recibe los valores y los objetos
+	 * internos ya construidos de cada clave y construye el objeto al cerrarse.
+	 * La implementación base ignora todo su contenido
+	 */
+	protected static class Builder {
+
+		/**
+		 * Recibe un objeto interno ya construido
+		 *
+		 * @param key
+		 *            La clave en la que se encontraba el objeto
+		 * @param built
+		 *            El objeto construido
+		 */
+		protected void add(String key, Object built) {
+		}
+
+		/**
+		 * Construye el objeto con los datos recibidos
+		 *
+		 * @return El objeto construido
+		 */
+		protected Object build() {
+			return null;
+		}
+
+		/**
+		 * Devuelve el constructor de un objeto interno que se encuentra en la
+		 * clave indicada, directamente o dentro de una lista
+		 *
+		 * @param key
+		 *            La clave del objeto interno
+		 * @return El constructor del objeto interno
+		 */
+		protected Builder child(String key) {
+			return AppDataStreamReader.IGNORED;
+		}
+
+		/**
+		 * Recibe un valor simple
+		 *
+		 * @param key
+		 *            La clave del valor
+		 * @param value
+		 *            El valor
+		 * @throws ParseException
+		 *             Si el valor no es correcto
+		 */
+		protected void value(String key, Object value) throws ParseException {
+		}
+
+	}
+
+	/**
+	 * Constructor de un {@link ScoreCar}
+	 */
+	protected static class CarBuilder extends Builder {
+
+		/**
+		 * La marca del coche
+		 */
+		protected String brand;
+
+		/**
+		 * El garaje del coche
+		 */
+		protected String garage;
+
+		/**
+		 * El mapa de identidad de la importación
+		 */
+		protected final IdentityMap identities;
+
+		/**
+		 * El modelo del coche
+		 */
+		protected String model;
+
+		/**
+		 * Crea el constructor de un coche
+		 *
+		 * @param identities
+		 *            El mapa de identidad de la importación
+		 */
+		protected CarBuilder(IdentityMap identities) {
+			this.identities = identities;
+		}
+
+		@Override
+		protected Object build() {
+			return this.identities.car(new ScoreCar(this.brand, this.model, this.garage));
+		}
+
+		@Override
+		protected void value(String key, Object value) {
+			if (ScoreCar.BRAND.equals(key)) {
+				this.brand = AppDataStreamReader.stringValue(value);
+			} else if (ScoreCar.MODEL.equals(key)) {
+				this.model = AppDataStreamReader.stringValue(value);
+			} else if (ScoreCar.GARAGE.equals(key)) {
+				this.garage = AppDataStreamReader.stringValue(value);
+			}
+		}
+
+	}
+
+	/**
+	 * Constructor de un {@link Garage} con sus coches
+	 */
+	protected static class GarageBuilder extends Builder {
+
+		/**
+		 * La tabla de coches de la exportación normalizada leída hasta ahora
+		 */
+		protected final List<ScoreCar> carTable;
+
+		/**
+		 * Los coches del garaje
+		 */
+		protected final List<ScoreCar> cars = new ArrayList<>();
+
+		/**
+		 * El mapa de identidad de la importación
+		 */
+		protected final IdentityMap identities;
+
+		/**
+		 * El nombre del garaje
+		 */
+		protected String name;
+
+		/**
+		 * Crea el constructor de un garaje
+		 *
+		 * @param carTable
+		 *            La tabla de coches de la exportación normalizada, vacía si
+		 *            el fichero no la tiene
+		 * @param identities
+		 *            El mapa de identidad de la importación
+		 */
+		protected GarageBuilder(List<ScoreCar> carTable, IdentityMap identities) {
+			this.carTable = carTable;
+			this.identities = identities;
+		}
+
+		@Override
+		protected void add(String key, Object built) {
+			if (Garage.CAR_LIST.equals(key)) {
+				this.cars.add((ScoreCar) built);
+			}
+		}
+
+		@Override
+		protected Object build() {
+			Garage g = new Garage(this.name);
+			for (ScoreCar sc : this.cars) {
+				g.registerImportedCar(sc);
+			}
+			return g;
+		}
+
+		@Override
+		protected Builder child(String key) {
+			if (Garage.CAR_LIST.equals(key)) {
+				return new CarBuilder(this.identities);
+			}
+			return AppDataStreamReader.IGNORED;
+		}
+
+		@Override
+		protected void value(String key, Object value) throws ParseException {
+			if (Garage.NAME.equals(key)) {
+				this.name = AppDataStreamReader.stringValue(value);
+			} else if (Garage.CAR_LIST.equals(key)) {
+				this.cars.add(AppDataStreamReader.carReference(this.carTable, value));
+			}
+		}
+
+	}
+
+	/**
+	 * Constructor de una {@link Race} con sus garajes y coches participantes
+	 */
+	protected static class RaceBuilder extends Builder {
+
+		/**
+		 * La tabla de coches de la exportación normalizada leída hasta ahora
+		 */
+		protected final List<ScoreCar> carTable;
+
+		/**
+		 * Los coches participantes
+		 */
+		protected final List<ScoreCar> cars = new ArrayList<>();
+
+		/**
+		 * Los garajes participantes
+		 */
+		protected final List<Garage> garages = new ArrayList<>();
+
+		/**
+		 * El mapa de identidad de la importación
+		 */
+		protected final IdentityMap identities;
+
+		/**
+		 * El nombre de la carrera
+		 */
+		protected String name;
+
+		/**
+		 * Las horas o las vueltas previas de la carrera, según su tipo
+		 */
+		protected int secondArgument;
+
+		/**
+		 * El tipo de la carrera
+		 */
+		protected String type;
+
+		/**
+		 * Crea el constructor de una carrera
+		 *
+		 * @param carTable
+		 *            La tabla de coches de la exportación normalizada, vacía si
+		 *            el fichero no la tiene
+		 * @param identities
+		 *            El mapa de identidad de la importación
+		 */
+		protected RaceBuilder(List<ScoreCar> carTable, IdentityMap identities) {
+			this.carTable = carTable;
+			this.identities = identities;
+		}
+
+		@Override
+		protected void add(String key, Object built) {
+			if (Race.GARAGE_LIST.equals(key)) {
+				this.garages.add(this.identities.garageReference(((Garage) built).getName()));
+			} else if (Race.CAR_LIST.equals(key)) {
+				this.cars.add((ScoreCar) built);
+			}
+		}
+
+		@Override
+		protected Object build() {
+			Race r = Race.newRace(this.type, this.name, this.secondArgument);
+			for (Garage g : this.garages) {
+				r.registerGarage(g);
+			}
+			r.registerCars(this.cars);
+			return r;
+		}
+
+		@Override
+		protected Builder child(String key) {
+			if (Race.GARAGE_LIST.equals(key)) {
+				return new GarageBuilder(this.carTable, this.identities);
+			} else if (Race.CAR_LIST.equals(key)) {
+				return new CarBuilder(this.identities);
+			}
+			return AppDataStreamReader.IGNORED;
+		}
+
+		@Override
+		protected void value(String key, Object value) throws ParseException {
+			if (Race.NAME.equals(key)) {
+				this.name = AppDataStreamReader.stringValue(value);
+			} else if (Race.RACE_TYPE.equals(key)) {
+				this.type = AppDataStreamReader.stringValue(value);
+			} else if (Race.SECOND_ARGUMENT.equals(key)) {
+				this.secondArgument = AppDataStreamReader.intValue(value);
+			} else if (Race.GARAGE_LIST.equals(key)) {
+				this.garages.add(this.identities.garageReference(AppDataStreamReader.stringValue(value)));
+			} else if (Race.CAR_LIST.equals(key)) {
+				this.cars.add(AppDataStreamReader.carReference(this.carTable, value));
+			}
+		}
+
+	}
+
+	/**
+	 * Constructor del objeto raíz del fichero. Guarda los garajes, carreras y
+	 * torneos de las secciones que se importan hasta que se ha leído el
+	 * fichero completo, y {@link #commit()} los entrega al control en ese
+	 * orden, para que el resultado sea el mismo que al importar las listas
+	 * una tras otra. Los garajes pasan a ser canónicos en el mapa de identidad
+	 * en cuanto se leen, para que las carreras y los torneos se refieran a
+	 * ellos. Si el fichero
+	 * tiene la tabla {@link Control#CARS} de la exportación normalizada, los
+	 * coches se leen de ella y todas las referencias a un mismo coche usan el
+	 * mismo objeto. Al cerrarse devuelve la secuencia del
+	 * {@link ChangeJournal} del fichero
+	 */
+	protected static class RootBuilder extends Builder {
+
+		/**
+		 * La tabla de coches de la exportación normalizada leída hasta ahora
+		 */
+		protected final List<ScoreCar> carTable = new ArrayList<>();
+
+		/**
+		 * El control al que se entregan los objetos importados
+		 */
+		protected final Control control;
+
+		/**
+		 * Los garajes leídos, pendientes de entregar
+		 */
+		protected final List<Garage> garages = new ArrayList<>();
+
+		/**
+		 * El mapa de identidad de la importación
+		 */
+		protected final IdentityMap identities;
+
+		/**
+		 * La secuencia del {@link ChangeJournal} indicada en el fichero
+		 */
+		protected long journalSequence;
+
+		/**
+		 * Las carreras leídas, pendientes de entregar
+		 */
+		protected final List<Race> races = new ArrayList<>();
+
+		/**
+		 * Las secciones del fichero que se importan
+		 */
+		protected final Set<String> sections;
+
+		/**
+		 * Los torneos leídos, pendientes de entregar
+		 */
+		protected final List<Tournament> tournaments = new ArrayList<>();
+
+		/**
+		 * Crea el constructor del objeto raíz
+		 *
+		 * @param control
+		 *            El control al que se entregan los objetos importados
+		 * @param identities
+		 *            El mapa de identidad de la importación
+		 * @param sections
+		 *            Las secciones del fichero que se importan
+		 */
+		protected RootBuilder(Control control, IdentityMap identities, Set<String> sections) {
+			this.control = control;
+			this.identities = identities;
+			this.sections = sections;
+		}
+
+		@Override
+		protected void add(String key, Object built) {
+			if (Control.CARS.equals(key)) {
+				this.carTable.add((ScoreCar) built);
+			} else if (!this.sections.contains(key)) {
+				return;
+			} else if (Control.GARAGES.equals(key)) {
+				this.garages.add(this.identities.garage((Garage) built));
+			} else if (Control.RACES.equals(key)) {
+				this.races.add((Race) built);
+			} else if (Control.TOURNAMENT.equals(key)) {
+				this.tournaments.add((Tournament) built);
+			}
+		}
+
+		@Override
+		protected Object build() {
+			return Long.valueOf(this.journalSequence);
+		}
+
+		@Override
+		protected Builder child(String key) {
+			if (Control.CARS.equals(key)) {
+				return new CarBuilder(this.identities);
+			} else if (!this.sections.contains(key)) {
+				return AppDataStreamReader.IGNORED;
+			} else if (Control.GARAGES.equals(key)) {
+				return new GarageBuilder(this.carTable, this.identities);
+			} else if (Control.RACES.equals(key)) {
+				return new RaceBuilder(this.carTable, this.identities);
+			} else if (Control.TOURNAMENT.equals(key)) {
+				return new TournamentBuilder(this.carTable, this.identities);
+			}
+			return AppDataStreamReader.IGNORED;
+		}
+
+		/**
+		 * Entrega al control los garajes, las carreras y los torneos leídos,
+		 * en ese orden, guardando todos los cambios en el diario como uno solo
+		 */
+		protected void commit() {
+			this.control.beginJournalBatch();
+			try {
+				for (Garage g : this.garages) {
+					this.control.importGarage(g);
+				}
+				for (Race r : this.races) {
+					this.control.importRace(r, this.identities);
+				}
+				for (Tournament t : this.tournaments) {
+					this.control.importTournament(t);
+				}
+			} finally {
+				this.control.endJournalBatch();
+			}
+		}
+
+		@Override
+		protected void value(String key, Object value) {
+			if (Control.JOURNAL_SEQUENCE.equals(key) && (value instanceof Number)) {
+				this.journalSequence = ((Number) value).longValue();
+			}
+		}
+
+	}
+
+	/**
+	 * Constructor de un {@link Tournament} con sus carreras, garajes y coches
+	 */
+	protected static class TournamentBuilder extends Builder {
+
+		/**
+		 * La tabla de coches de la exportación normalizada leída hasta ahora
+		 */
+		protected final List<ScoreCar> carTable;
+
+		/**
+		 * Los coches del torneo
+		 */
+		protected final List<ScoreCar> cars = new ArrayList<>();
+
+		/**
+		 * Los garajes del torneo
+		 */
+		protected final List<Garage> garages = new ArrayList<>();
+
+		/**
+		 * El mapa de identidad de la importación
+		 */
+		protected final IdentityMap identities;
+
+		/**
+		 * El nombre del torneo
+		 */
+		protected String name;
+
+		/**
+		 * Las carreras del torneo
+		 */
+		protected final List<Race> races = new ArrayList<>();
+
+		/**
+		 * Crea el constructor de un torneo
+		 *
+		 * @param carTable
+		 *            La tabla de coches de la exportación normalizada, vacía si
+		 *            el fichero no la tiene
+		 * @param identities
+		 *            El mapa de identidad de la importación
+		 */
+		protected TournamentBuilder(List<ScoreCar> carTable, IdentityMap identities) {
+			this.carTable = carTable;
+			this.identities = identities;
+		}
+
+		@Override
+		protected void add(String key, Object built) {
+			if (Tournament.RACE_LIST.equals(key)) {
+				this.races.add((Race) built);
+			} else if (Tournament.GARAGE_LIST.equals(key)) {
+				this.garages.add(this.identities.garageReference(((Garage) built).getName()));
+			} else if (Tournament.CARS_LIST.equals(key)) {
+				this.cars.add((ScoreCar) built);
+			}
+		}
+
+		@Override
+		protected Object build() {
+			Tournament t = new Tournament(this.name);
+			for (Race r : this.races) {
+				t.registerRaceToTournament(r);
+			}
+			for (Garage g : this.garages) {
+				t.registerGarageToTournament(g);
+			}
+			for (ScoreCar sc : this.cars) {
+				t.registerCarInTournament(sc);
+			}
+			return t;
+		}
+
+		@Override
+		protected Builder child(String key) {
+			if (Tournament.RACE_LIST.equals(key)) {
+				return new RaceBuilder(this.carTable, this.identities);
+			} else if (Tournament.GARAGE_LIST.equals(key)) {
+				return new GarageBuilder(this.carTable, this.identities);
+			} else if (Tournament.CARS_LIST.equals(key)) {
+				return new CarBuilder(this.identities);
+			}
+			return AppDataStreamReader.IGNORED;
+		}
+
+		@Override
+		protected void value(String key, Object value) throws ParseException {
+			if (Tournament.NAME.equals(key)) {
+				this.name = AppDataStreamReader.stringValue(value);
+			} else if (Tournament.GARAGE_LIST.equals(key)) {
+				this.garages.add(this.identities.garageReference(AppDataStreamReader.stringValue(value)));
+			} else if (Tournament.CARS_LIST.equals(key)) {
+				this.cars.add(AppDataStreamReader.carReference(this.carTable, value));
+			}
+		}
+
+	}
+
+}
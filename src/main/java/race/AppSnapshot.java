@@ -0,0 +1,1258 @@
+package race;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import utils.BinaryFormat;
+
+/**
+ * Copia binaria compacta de todos los datos de la aplicación, que se carga
+ * mucho más rápido que el fichero JSON. El fichero empieza por
+ * {@link #MAGIC}, {@link #VERSION} y la secuencia del último cambio del
+ * {@link ChangeJournal} que incluye, sigue con una tabla con todas las
+ * cadenas distintas (marcas, modelos y nombres) y después con las secciones
+ * de garajes, carreras y torneos, y termina con el CRC-32 de todo lo
+ * anterior. Cada sección empieza por el número de
+ * registros y cada registro va precedido de su longitud en bytes. Dentro de
+ * los registros las cadenas se indican por su posición en la tabla más uno,
+ * reservando el 0 para <code>null</code>, y los números se guardan como
+ * varint con {@link BinaryFormat}. Como cada registro indica su longitud, al
+ * cargar la copia se puede crear cada objeto sólo con su nombre y dejar el
+ * resto del registro en el fichero proyectado en memoria hasta que se use.
+ * Las referencias de las carreras y los torneos a garajes y coches se
+ * resuelven al cargarlas con los garajes de la copia, igual que al importar
+ * el fichero JSON con un {@link IdentityMap}
+ */
+public class AppSnapshot {
+
+	/**
+	 * Constante con los primeros bytes de un fichero de copia binaria
+	 */
+	public static final int MAGIC = 0x52435342;
+
+	/**
+	 * Constante que identifica una carrera de eliminación en la copia binaria
+	 */
+	protected static final int TYPE_DEATHRACE = 1;
+
+	/**
+	 * Constante que identifica una carrera estándar en la copia binaria
+	 */
+	protected static final int TYPE_STANDARDRACE = 0;
+
+	/**
+	 * Constante con la versión del formato de la copia binaria
+	 */
+	public static final int VERSION = 3;
+
+	/**
+	 * Comprueba el CRC-32 del final de la copia binaria y lo excluye del
+	 * contenido del buffer
+	 *
+	 * @param buffer
+	 *            El contenido del fichero, situado al principio
+	 * @throws IOException
+	 *             Si el fichero está incompleto o el CRC-32 no coincide
+	 */
+	protected static void checkCrc(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < 4) {
+			throw new IOException("El fichero binario está incompleto");
+		}
+		int end = buffer.limit() - 4;
+		ByteBuffer content = buffer.duplicate();
+		content.limit(end);
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		if ((int) crc.getValue() != buffer.getInt(end)) {
+			throw new IOException("El fichero binario está dañado");
+		}
+		buffer.limit(end);
+	}
+
+	/**
+	 * Codifica en memoria una copia binaria de todos los datos del control.
+	 * Los garajes, carreras y torneos que todavía no se han cargado de la
+	 * copia binaria anterior se copian de su registro sin cargarlos
+	 *
+	 * @param control
+	 *            El control del que se copian los datos
+	 * @return El contenido de la copia binaria
+	 * @throws IOException
+	 *             Si no se pueden codificar los datos
+	 */
+	public static byte[] encode(Control control) throws IOException {
+		return new Image(control).encode();
+	}
+
+	/**
+	 * Indica si la copia binaria es más reciente que el fichero JSON, o si el
+	 * fichero JSON no existe, por lo que se puede cargar en su lugar
+	 *
+	 * @param snapshot
+	 *            El fichero de la copia binaria
+	 * @param json
+	 *            El fichero JSON
+	 * @return <code>true</code> si se debe cargar la copia binaria
+	 */
+	public static boolean isFresh(File snapshot, File json) {
+		if (!snapshot.isFile()) {
+			return false;
+		}
+		return !json.exists() || (snapshot.lastModified() >= json.lastModified());
+	}
+
+	/**
+	 * Carga una copia binaria en el control, que debe tener las listas
+	 * vacías, restaurando exactamente los garajes, carreras y torneos
+	 * guardados. El fichero se proyecta en memoria y sólo se leen los nombres
+	 * y los datos necesarios para crear cada objeto; la lista de coches de
+	 * cada garaje, los participantes de cada carrera y el contenido de cada
+	 * torneo se cargan del fichero la primera vez que se accede a ellos. Antes
+	 * se comprueban el CRC-32 del fichero y la estructura de cada registro,
+	 * para que un fichero dañado se rechace aquí y no al cargar un objeto a
+	 * mitad de la sesión
+	 *
+	 * @param control
+	 *            El control al que se añaden los datos
+	 * @param file
+	 *            El fichero de la copia binaria
+	 * @return La secuencia del último cambio del diario incluido en la copia
+	 * @throws IOException
+	 *             Si no se puede leer el fichero o su formato no es correcto
+	 */
+	public static long read(Control control, File file) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		AppSnapshot.checkCrc(buffer);
+		long sequence = AppSnapshot.readSequence(buffer);
+		Strings strings = AppSnapshot.readHeader(buffer);
+		References references = new References();
+
+		int garages = BinaryFormat.readVarInt(buffer);
+		for (int i = 0; i < garages; i++) {
+			Record record = AppSnapshot.readRecord(buffer, strings, references);
+			record.checkGarage();
+			Garage g = new Garage(record.readString());
+			g.setSnapshotRecord(record);
+			control.getGarageList().add(g);
+			references.addGarage(g);
+		}
+		int races = BinaryFormat.readVarInt(buffer);
+		for (int i = 0; i < races; i++) {
+			Record record = AppSnapshot.readRecord(buffer, strings, references);
+			record.checkRace();
+			Race r = record.readRaceInfo();
+			r.setSnapshotRecord(record);
+			control.getRaceList().add(r);
+		}
+		int tournaments = BinaryFormat.readVarInt(buffer);
+		for (int i = 0; i < tournaments; i++) {
+			Record record = AppSnapshot.readRecord(buffer, strings, references);
+			record.checkTournament();
+			Tournament t = new Tournament(record.readString());
+			t.setSnapshotRecord(record);
+			control.getTournamentList().add(t);
+		}
+		if (buffer.hasRemaining()) {
+			throw new IOException("El fichero binario contiene datos de más");
+		}
+		return sequence;
+	}
+
+	/**
+	 * Comprueba la cabecera de la copia binaria y localiza las cadenas de su
+	 * tabla, sin decodificarlas
+	 *
+	 * @param buffer
+	 *            El contenido del fichero, situado después de la secuencia, que
+	 *            queda situado al principio de la sección de garajes
+	 * @return La tabla de cadenas
+	 * @throws IOException
+	 *             Si la tabla está incompleta
+	 */
+	protected static Strings readHeader(ByteBuffer buffer) throws IOException {
+		int count = BinaryFormat.readVarInt(buffer);
+		int[] offsets = new int[count];
+		for (int i = 0; i < count; i++) {
+			offsets[i] = buffer.position();
+			AppSnapshot.skip(buffer, BinaryFormat.readVarInt(buffer));
+		}
+		return new Strings(buffer.duplicate(), offsets);
+	}
+
+	/**
+	 * Lee la longitud de un registro y devuelve una vista de su contenido,
+	 * dejando el buffer situado al principio del siguiente registro
+	 *
+	 * @param buffer
+	 *            El contenido del fichero
+	 * @param strings
+	 *            La tabla de cadenas
+	 * @param references
+	 *            Los garajes y coches canónicos de la copia
+	 * @return El registro
+	 * @throws IOException
+	 *             Si el registro está incompleto
+	 */
+	protected static Record readRecord(ByteBuffer buffer, Strings strings, References references) throws IOException {
+		int length = BinaryFormat.readVarInt(buffer);
+		ByteBuffer record = buffer.slice();
+		AppSnapshot.skip(buffer, length);
+		record.limit(length);
+		return new Record(record, strings, references);
+	}
+
+	/**
+	 * Comprueba el principio de la copia binaria y lee la secuencia del último
+	 * cambio del diario que incluye
+	 *
+	 * @param buffer
+	 *            El contenido del fichero, que queda situado al principio de
+	 *            la tabla de cadenas
+	 * @return La secuencia
+	 * @throws IOException
+	 *             Si el fichero no es una copia binaria de esta versión
+	 */
+	protected static long readSequence(ByteBuffer buffer) throws IOException {
+		if ((buffer.remaining() < 13) || (buffer.getInt() != AppSnapshot.MAGIC)) {
+			throw new IOException("El fichero no es una copia binaria de la aplicación");
+		}
+		if (buffer.get() != AppSnapshot.VERSION) {
+			throw new IOException("La versión de la copia binaria no es compatible");
+		}
+		return buffer.getLong();
+	}
+
+	/**
+	 * Avanza la posición de un buffer el número de bytes indicado
+	 *
+	 * @param buffer
+	 *            El buffer
+	 * @param length
+	 *            El número de bytes
+	 * @throws IOException
+	 *             Si el buffer no tiene tantos bytes
+	 */
+	protected static void skip(ByteBuffer buffer, int length) throws IOException {
+		if ((length < 0) || (length > buffer.remaining())) {
+			throw new IOException("El fichero binario está incompleto");
+		}
+		buffer.position(buffer.position() + length);
+	}
+
+	/**
+	 * Escribe una copia binaria de todos los datos del control
+	 *
+	 * @param control
+	 *            El control del que se copian los datos
+	 * @param file
+	 *            El fichero de la copia binaria
+	 * @throws IOException
+	 *             Si no se puede escribir el fichero
+	 */
+	public static void write(Control control, File file) throws IOException {
+		AppSnapshot.writeFile(AppSnapshot.encode(control), file);
+	}
+
+	/**
+	 * Escribe el contenido de una copia binaria ya codificada. Primero se
+	 * escribe y se sincroniza con el disco un fichero temporal, que después
+	 * sustituye al fichero indicado, para que nunca quede una copia a medias.
+	 * Las escrituras de distintos hilos se hacen de una en una
+	 *
+	 * @param content
+	 *            El contenido de la copia binaria
+	 * @param file
+	 *            El fichero de la copia binaria
+	 * @throws IOException
+	 *             Si no se puede escribir el fichero
+	 */
+	public static synchronized void writeFile(byte[] content, File file) throws IOException {
+		File temporary = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(temporary)) {
+			out.write(content);
+			out.getFD().sync();
+		}
+		try {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Copia inmutable de todos los datos del control, que se toma en el hilo
+	 * que los modifica y se puede codificar después en otro hilo sin que le
+	 * afecten los cambios posteriores. De los garajes, carreras y torneos ya
+	 * cargados sólo se copian sus nombres y los de sus coches; de los que
+	 * todavía no se han cargado de la copia binaria anterior se guarda una
+	 * vista de su registro, que se copia del fichero proyectado al codificar.
+	 * Así tomar la copia no carga ningún registro ni codifica nada
+	 */
+	public static class Image {
+
+		/**
+		 * Los garajes
+		 */
+		protected final List<Item> garages = new ArrayList<>();
+
+		/**
+		 * Las carreras
+		 */
+		protected final List<Item> races = new ArrayList<>();
+
+		/**
+		 * La secuencia del último cambio del diario incluido
+		 */
+		protected final long sequence;
+
+		/**
+		 * Los torneos
+		 */
+		protected final List<Item> tournaments = new ArrayList<>();
+
+		/**
+		 * Toma una copia de los datos del control
+		 *
+		 * @param control
+		 *            El control del que se copian los datos
+		 */
+		public Image(Control control) {
+			for (Garage g : control.getGarageList()) {
+				this.garages.add(Image.garage(g));
+			}
+			for (Race r : control.getRaceList()) {
+				this.races.add(Image.race(r));
+			}
+			for (Tournament t : control.getTournamentList()) {
+				this.tournaments.add(Image.tournament(t));
+			}
+			this.sequence = control.getJournalSequence();
+		}
+
+		/**
+		 * Copia la marca, el modelo y el garaje de una lista de coches
+		 *
+		 * @param cars
+		 *            Los coches
+		 * @return La marca, el modelo y el garaje de cada coche, seguidos
+		 */
+		protected static String[] cars(List<ScoreCar> cars) {
+			String[] copy = new String[cars.size() * 3];
+			int i = 0;
+			for (ScoreCar sc : cars) {
+				copy[i++] = sc.getBrand();
+				copy[i++] = sc.getModel();
+				copy[i++] = sc.getGarage();
+			}
+			return copy;
+		}
+
+		/**
+		 * Codifica la copia binaria
+		 *
+		 * @return El contenido de la copia binaria
+		 * @throws IOException
+		 *             Si no se pueden codificar los datos o leer los registros
+		 *             de la copia binaria anterior
+		 */
+		public byte[] encode() throws IOException {
+			Writer writer = new Writer();
+			writer.writeGarages(this.garages);
+			writer.writeRaces(this.races);
+			writer.writeTournaments(this.tournaments);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			writer.writeTo(out, this.sequence);
+			return out.toByteArray();
+		}
+
+		/**
+		 * Copia un garaje
+		 *
+		 * @param g
+		 *            El garaje
+		 * @return La copia del garaje
+		 */
+		protected static Item garage(Garage g) {
+			Item item = new Item();
+			item.name = g.getName();
+			synchronized (g) {
+				Record record = g.snapshotRecord;
+				if (record != null) {
+					item.rest = record.duplicate();
+					return item;
+				}
+			}
+			item.cars = Image.cars(g.getGarageCarList());
+			return item;
+		}
+
+		/**
+		 * Copia los nombres de una lista de garajes
+		 *
+		 * @param garages
+		 *            Los garajes
+		 * @return Los nombres de los garajes
+		 */
+		protected static String[] names(List<Garage> garages) {
+			String[] names = new String[garages.size()];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = garages.get(i).getName();
+			}
+			return names;
+		}
+
+		/**
+		 * Copia una carrera con sus garajes y coches participantes. Si ya se
+		 * ha simulado, los coches se copian en el orden de su
+		 * {@link RaceResult}, igual que en el fichero JSON
+		 *
+		 * @param r
+		 *            La carrera
+		 * @return La copia de la carrera
+		 */
+		protected static Item race(Race r) {
+			Item item = Image.raceInfo(r);
+			synchronized (r) {
+				Record record = r.snapshotRecord;
+				if (record != null) {
+					item.rest = record.duplicate();
+					return item;
+				}
+			}
+			item.garages = Image.names(r.getGarageList());
+			if (r.getRaceResult() != null) {
+				item.cars = Image.cars(r.getRaceResult().getTopCars(r.getRaceResult().size()));
+			} else {
+				item.cars = Image.cars(r.getCarList());
+			}
+			return item;
+		}
+
+		/**
+		 * Copia el nombre, el tipo y el segundo argumento de una carrera
+		 *
+		 * @param r
+		 *            La carrera
+		 * @return La copia de la carrera, sin garajes ni coches
+		 */
+		protected static Item raceInfo(Race r) {
+			Item item = new Item();
+			item.name = r.getName();
+			if (r instanceof StandardRace) {
+				item.type = AppSnapshot.TYPE_STANDARDRACE;
+				item.argument = ((StandardRace) r).getRaceHours();
+			} else {
+				item.type = AppSnapshot.TYPE_DEATHRACE;
+				item.argument = ((DeathRace) r).getLapsToStart();
+			}
+			return item;
+		}
+
+		/**
+		 * Copia un torneo con sus carreras, garajes y coches
+		 *
+		 * @param t
+		 *            El torneo
+		 * @return La copia del torneo
+		 */
+		protected static Item tournament(Tournament t) {
+			Item item = new Item();
+			item.name = t.getName();
+			synchronized (t) {
+				Record record = t.snapshotRecord;
+				if (record != null) {
+					item.rest = record.duplicate();
+					return item;
+				}
+			}
+			List<Race> races = t.getRaceList();
+			item.races = new Item[races.size()];
+			for (int i = 0; i < item.races.length; i++) {
+				item.races[i] = Image.raceInfo(races.get(i));
+			}
+			item.garages = Image.names(t.getGarageList());
+			item.cars = Image.cars(t.getTournamentCarList());
+			return item;
+		}
+
+	}
+
+	/**
+	 * Copia de un garaje, carrera o torneo de una {@link Image}. Si el objeto
+	 * todavía no se ha cargado de la copia binaria anterior, sólo tiene su
+	 * nombre, o la información de la carrera, y el resto de su registro
+	 */
+	protected static class Item {
+
+		/**
+		 * El segundo argumento de una carrera
+		 */
+		protected int argument;
+
+		/**
+		 * La marca, el modelo y el garaje de cada coche, seguidos
+		 */
+		protected String[] cars;
+
+		/**
+		 * Los nombres de los garajes de una carrera o un torneo
+		 */
+		protected String[] garages;
+
+		/**
+		 * El nombre
+		 */
+		protected String name;
+
+		/**
+		 * Las carreras de un torneo, sin garajes ni coches
+		 */
+		protected Item[] races;
+
+		/**
+		 * El resto del registro de la copia binaria anterior, o
+		 * <code>null</code> si el objeto ya se ha cargado
+		 */
+		protected Record rest;
+
+		/**
+		 * El tipo de una carrera
+		 */
+		protected int type;
+
+	}
+
+	/**
+	 * Registro de un garaje, carrera o torneo de una copia binaria, situado
+	 * después de los datos que ya se han leído. Guarda el resto del registro
+	 * en el fichero proyectado hasta que el objeto lo carga. La estructura
+	 * del registro se comprueba al cargar la copia con los métodos
+	 * <code>check</code>, por lo que al cargarlo no debería haber errores de
+	 * formato; si los hay se lanzan como {@link IllegalStateException}, porque
+	 * se producen al acceder a las listas del objeto
+	 */
+	public static class Record {
+
+		/**
+		 * El contenido del registro que queda por leer
+		 */
+		protected final ByteBuffer buffer;
+
+		/**
+		 * Los garajes y coches canónicos de la copia binaria
+		 */
+		protected final References references;
+
+		/**
+		 * La tabla de cadenas de la copia binaria
+		 */
+		protected final Strings strings;
+
+		/**
+		 * Crea un registro
+		 *
+		 * @param buffer
+		 *            El contenido del registro
+		 * @param strings
+		 *            La tabla de cadenas de la copia binaria
+		 * @param references
+		 *            Los garajes y coches canónicos de la copia binaria
+		 */
+		protected Record(ByteBuffer buffer, Strings strings, References references) {
+			this.buffer = buffer;
+			this.strings = strings;
+			this.references = references;
+		}
+
+		/**
+		 * Comprueba que se ha leído todo el registro
+		 *
+		 * @throws IOException
+		 *             Si quedan datos en el registro
+		 */
+		protected void checkEnd() throws IOException {
+			if (this.buffer.hasRemaining()) {
+				throw new IOException("El fichero binario contiene un registro incorrecto");
+			}
+		}
+
+		/**
+		 * Comprueba que el registro completo de un garaje tiene el formato
+		 * correcto, sin avanzar su posición
+		 *
+		 * @throws IOException
+		 *             Si el formato no es correcto
+		 */
+		protected void checkGarage() throws IOException {
+			Record view = this.duplicate();
+			view.skipString();
+			view.skipCars();
+			view.checkEnd();
+		}
+
+		/**
+		 * Comprueba que el registro completo de una carrera tiene el formato
+		 * correcto, sin avanzar su posición
+		 *
+		 * @throws IOException
+		 *             Si el formato no es correcto
+		 */
+		protected void checkRace() throws IOException {
+			Record view = this.duplicate();
+			view.skipRaceInfo();
+			view.skipStrings();
+			view.skipCars();
+			view.checkEnd();
+		}
+
+		/**
+		 * Comprueba que el registro completo de un torneo tiene el formato
+		 * correcto, sin avanzar su posición
+		 *
+		 * @throws IOException
+		 *             Si el formato no es correcto
+		 */
+		protected void checkTournament() throws IOException {
+			Record view = this.duplicate();
+			view.skipString();
+			int races = view.readCount(1);
+			for (int i = 0; i < races; i++) {
+				view.skipRaceInfo();
+			}
+			view.skipStrings();
+			view.skipCars();
+			view.checkEnd();
+		}
+
+		/**
+		 * Devuelve una vista del resto del registro con su propia posición,
+		 * que se puede leer sin cambiar la de este
+		 *
+		 * @return La vista del registro
+		 */
+		protected Record duplicate() {
+			return new Record(this.buffer.duplicate(), this.strings, this.references);
+		}
+
+		/**
+		 * Devuelve el siguiente número del registro sin avanzar su posición
+		 *
+		 * @return El número
+		 */
+		public int peekCount() {
+			try {
+				return BinaryFormat.readVarInt(this.buffer.duplicate());
+			} catch (IOException e) {
+				throw new IllegalStateException("No se ha podido leer la copia binaria", e);
+			}
+		}
+
+		/**
+		 * Lee una lista de coches de una carrera o un torneo precedida de su
+		 * tamaño y devuelve los coches canónicos: el del garaje de la copia
+		 * con la misma marca y modelo, o el primero que se ha leído igual si
+		 * su garaje no lo tiene
+		 *
+		 * @return Los coches canónicos
+		 */
+		public List<ScoreCar> readCarReferences() {
+			List<ScoreCar> cars = this.readCars();
+			for (int i = 0; i < cars.size(); i++) {
+				cars.set(i, this.references.car(cars.get(i)));
+			}
+			return cars;
+		}
+
+		/**
+		 * Lee la lista de coches de un garaje precedida de su tamaño
+		 *
+		 * @return Los coches leídos
+		 */
+		public List<ScoreCar> readCars() {
+			try {
+				int count = BinaryFormat.readVarInt(this.buffer);
+				List<ScoreCar> cars = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					cars.add(new ScoreCar(this.readString(), this.readString(), this.readString()));
+				}
+				return cars;
+			} catch (IOException e) {
+				throw new IllegalStateException("No se ha podido leer la copia binaria", e);
+			}
+		}
+
+		/**
+		 * Lee el tamaño de una lista y comprueba que caben en el resto del
+		 * registro sus elementos, que ocupan al menos el número de bytes
+		 * indicado
+		 *
+		 * @param minimumSize
+		 *            El número mínimo de bytes de cada elemento
+		 * @return El tamaño de la lista
+		 * @throws IOException
+		 *             Si la lista no cabe en el registro
+		 */
+		protected int readCount(int minimumSize) throws IOException {
+			int count = BinaryFormat.readVarInt(this.buffer);
+			if ((count < 0) || (count > (this.buffer.remaining() / minimumSize))) {
+				throw new IOException("El fichero binario contiene un registro incorrecto");
+			}
+			return count;
+		}
+
+		/**
+		 * Lee una lista de nombres de garajes precedida de su tamaño y
+		 * devuelve los garajes de la copia con esos nombres, o garajes nuevos
+		 * sin coches si no hay ninguno
+		 *
+		 * @return Los garajes leídos
+		 */
+		public List<Garage> readGarages() {
+			try {
+				int count = BinaryFormat.readVarInt(this.buffer);
+				List<Garage> garages = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					garages.add(this.references.garage(this.readString()));
+				}
+				return garages;
+			} catch (IOException e) {
+				throw new IllegalStateException("No se ha podido leer la copia binaria", e);
+			}
+		}
+
+		/**
+		 * Lee el nombre, el tipo y el segundo argumento de una carrera y la
+		 * crea vacía
+		 *
+		 * @return La carrera leída
+		 * @throws IOException
+		 *             Si el formato no es correcto
+		 */
+		protected Race readRaceInfo() throws IOException {
+			String name = this.readString();
+			int type = BinaryFormat.readVarInt(this.buffer);
+			int secondArgument = BinaryFormat.readVarInt(this.buffer);
+			if (type == AppSnapshot.TYPE_STANDARDRACE) {
+				return new StandardRace(name, secondArgument);
+			}
+			return new DeathRace(name, secondArgument);
+		}
+
+		/**
+		 * Lee una lista de carreras precedida de su tamaño, sin garajes ni
+		 * coches
+		 *
+		 * @return Las carreras leídas
+		 */
+		public List<Race> readRaces() {
+			try {
+				int count = BinaryFormat.readVarInt(this.buffer);
+				List<Race> races = new ArrayList<>(count);
+				for (int i = 0; i < count; i++) {
+					races.add(this.readRaceInfo());
+				}
+				return races;
+			} catch (IOException e) {
+				throw new IllegalStateException("No se ha podido leer la copia binaria", e);
+			}
+		}
+
+		/**
+		 * Lee la referencia a una cadena de la tabla
+		 *
+		 * @return La cadena, o <code>null</code> si la referencia es 0
+		 * @throws IOException
+		 *             Si la referencia no existe en la tabla
+		 */
+		protected String readString() throws IOException {
+			return this.strings.get(BinaryFormat.readVarInt(this.buffer));
+		}
+
+		/**
+		 * Salta una lista de coches precedida de su tamaño, comprobando sus
+		 * referencias a cadenas
+		 *
+		 * @throws IOException
+		 *             Si el formato no es correcto
+		 */
+		protected void skipCars() throws IOException {
+			int count = this.readCount(3);
+			for (int i = 0; i < count; i++) {
+				this.skipString();
+				this.skipString();
+				this.skipString();
+			}
+		}
+
+		/**
+		 * Salta el nombre, el tipo y el segundo argumento de una carrera,
+		 * comprobando el nombre y el tipo
+		 *
+		 * @throws IOException
+		 *             Si el formato no es correcto
+		 */
+		protected void skipRaceInfo() throws IOException {
+			this.skipString();
+			int type = BinaryFormat.readVarInt(this.buffer);
+			if ((type != AppSnapshot.TYPE_STANDARDRACE) && (type != AppSnapshot.TYPE_DEATHRACE)) {
+				throw new IOException("El fichero binario contiene un tipo de carrera incorrecto");
+			}
+			BinaryFormat.readVarInt(this.buffer);
+		}
+
+		/**
+		 * Salta la referencia a una cadena, comprobando que existe en la tabla
+		 *
+		 * @throws IOException
+		 *             Si la referencia no existe en la tabla
+		 */
+		protected void skipString() throws IOException {
+			this.strings.check(BinaryFormat.readVarInt(this.buffer));
+		}
+
+		/**
+		 * Salta una lista de referencias a cadenas precedida de su tamaño,
+		 * comprobándolas
+		 *
+		 * @throws IOException
+		 *             Si el formato no es correcto
+		 */
+		protected void skipStrings() throws IOException {
+			int count = this.readCount(1);
+			for (int i = 0; i < count; i++) {
+				this.skipString();
+			}
+		}
+
+	}
+
+	/**
+	 * Garajes y coches canónicos de una copia binaria, con los que se
+	 * resuelven las referencias de las carreras y los torneos cuando se
+	 * cargan. Los coches de un garaje se buscan en él, cargándolo si hace
+	 * falta, y el resto se guardan en un {@link IdentityMap}. Como los objetos
+	 * se pueden cargar desde distintos hilos, el mapa se usa de uno en uno
+	 */
+	protected static class References {
+
+		/**
+		 * Los garajes de la copia y los coches que no están en ellos
+		 */
+		protected final IdentityMap identities = new IdentityMap();
+
+		/**
+		 * Añade un garaje de la copia. Si hay varios con el mismo nombre se
+		 * queda con el primero
+		 *
+		 * @param g
+		 *            El garaje
+		 */
+		protected synchronized void addGarage(Garage g) {
+			this.identities.garage(g);
+		}
+
+		/**
+		 * Devuelve el coche canónico igual al indicado
+		 *
+		 * @param sc
+		 *            El coche leído de una carrera o un torneo
+		 * @return El coche canónico
+		 */
+		protected ScoreCar car(ScoreCar sc) {
+			Garage g;
+			synchronized (this) {
+				g = this.identities.findGarage(sc.getGarage());
+			}
+			if (g != null) {
+				ScoreCar own = g.findCar(sc.getBrand(), sc.getModel());
+				if (own != null) {
+					return own;
+				}
+			}
+			synchronized (this) {
+				return this.identities.car(sc);
+			}
+		}
+
+		/**
+		 * Devuelve el garaje de la copia con el nombre indicado
+		 *
+		 * @param name
+		 *            El nombre del garaje
+		 * @return El garaje de la copia, o un garaje nuevo sin coches si no
+		 *         hay ninguno
+		 */
+		protected synchronized Garage garage(String name) {
+			return this.identities.garageReference(name);
+		}
+
+	}
+
+	/**
+	 * Tabla de cadenas de una copia binaria. Guarda la posición de cada cadena
+	 * en el fichero proyectado y sólo la decodifica la primera vez que se
+	 * pide. Si dos hilos piden a la vez la misma cadena puede decodificarse
+	 * dos veces, pero el resultado es el mismo
+	 */
+	protected static class Strings {
+
+		/**
+		 * El contenido del fichero
+		 */
+		protected final ByteBuffer buffer;
+
+		/**
+		 * Las cadenas ya decodificadas
+		 */
+		protected final String[] decoded;
+
+		/**
+		 * La posición de cada cadena en el fichero
+		 */
+		protected final int[] offsets;
+
+		/**
+		 * Crea la tabla de cadenas
+		 *
+		 * @param buffer
+		 *            El contenido del fichero
+		 * @param offsets
+		 *            La posición de cada cadena en el fichero
+		 */
+		protected Strings(ByteBuffer buffer, int[] offsets) {
+			this.buffer = buffer;
+			this.offsets = offsets;
+			this.decoded = new String[offsets.length];
+		}
+
+		/**
+		 * Comprueba que una referencia existe en la tabla
+		 *
+		 * @param index
+		 *            La posición de la cadena en la tabla más uno, o 0 para
+		 *            <code>null</code>
+		 * @throws IOException
+		 *             Si la referencia no existe en la tabla
+		 */
+		protected void check(int index) throws IOException {
+			if ((index < 0) || (index > this.offsets.length)) {
+				throw new IOException("El fichero binario contiene una cadena incorrecta");
+			}
+		}
+
+		/**
+		 * Devuelve la cadena de una referencia
+		 *
+		 * @param index
+		 *            La posición de la cadena en la tabla más uno
+		 * @return La cadena, o <code>null</code> si la referencia es 0
+		 * @throws IOException
+		 *             Si la referencia no existe en la tabla
+		 */
+		protected String get(int index) throws IOException {
+			this.check(index);
+			if (index == 0) {
+				return null;
+			}
+			String value = this.decoded[index - 1];
+			if (value == null) {
+				ByteBuffer view = this.buffer.duplicate();
+				view.position(this.offsets[index - 1]);
+				value = BinaryFormat.readString(view);
+				this.decoded[index - 1] = value;
+			}
+			return value;
+		}
+
+	}
+
+	/**
+	 * Codificador de una copia binaria. Las secciones se escriben en memoria
+	 * mientras se construye la tabla de cadenas, que tiene que ir antes en el
+	 * fichero
+	 */
+	protected static class Writer {
+
+		/**
+		 * Las secciones de garajes, carreras y torneos ya codificadas
+		 */
+		protected final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		/**
+		 * La posición más uno de cada cadena en la tabla
+		 */
+		protected final Map<String, Integer> indexes = new HashMap<>();
+
+		/**
+		 * El registro que se está codificando
+		 */
+		protected final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+		/**
+		 * La tabla de cadenas, en orden de aparición
+		 */
+		protected final List<String> strings = new ArrayList<>();
+
+		/**
+		 * Copia una lista de coches precedida de su tamaño del registro de la
+		 * copia binaria anterior al registro actual
+		 *
+		 * @param rest
+		 *            El registro de la copia binaria anterior
+		 * @throws IOException
+		 *             Si no se puede leer o escribir
+		 */
+		protected void copyCars(Record rest) throws IOException {
+			int count = BinaryFormat.readVarInt(rest.buffer);
+			BinaryFormat.writeVarInt(this.record, count);
+			for (int i = 0; i < (count * 3); i++) {
+				this.writeString(rest.readString());
+			}
+		}
+
+		/**
+		 * Copia el nombre, el tipo y el segundo argumento de una carrera del
+		 * registro de la copia binaria anterior al registro actual
+		 *
+		 * @param rest
+		 *            El registro de la copia binaria anterior
+		 * @throws IOException
+		 *             Si no se puede leer o escribir
+		 */
+		protected void copyRaceInfo(Record rest) throws IOException {
+			this.writeString(rest.readString());
+			BinaryFormat.writeVarInt(this.record, BinaryFormat.readVarInt(rest.buffer));
+			BinaryFormat.writeVarInt(this.record, BinaryFormat.readVarInt(rest.buffer));
+		}
+
+		/**
+		 * Copia una lista de referencias a cadenas precedida de su tamaño del
+		 * registro de la copia binaria anterior al registro actual
+		 *
+		 * @param rest
+		 *            El registro de la copia binaria anterior
+		 * @throws IOException
+		 *             Si no se puede leer o escribir
+		 */
+		protected void copyStrings(Record rest) throws IOException {
+			int count = BinaryFormat.readVarInt(rest.buffer);
+			BinaryFormat.writeVarInt(this.record, count);
+			for (int i = 0; i < count; i++) {
+				this.writeString(rest.readString());
+			}
+		}
+
+		/**
+		 * Escribe el registro actual en las secciones, precedido de su
+		 * longitud, y lo vacía
+		 *
+		 * @throws IOException
+		 *             Si no se puede escribir
+		 */
+		protected void endRecord() throws IOException {
+			BinaryFormat.writeVarInt(this.body, this.record.size());
+			this.record.writeTo(this.body);
+			this.record.reset();
+		}
+
+		/**
+		 * Escribe una lista de coches, precedida de su tamaño, en el registro
+		 * actual
+		 *
+		 * @param cars
+		 *            La marca, el modelo y el garaje de cada coche, seguidos
+		 * @throws IOException
+		 *             Si no se puede escribir
+		 */
+		protected void writeCars(String[] cars) throws IOException {
+			BinaryFormat.writeVarInt(this.record, cars.length / 3);
+			for (String s : cars) {
+				this.writeString(s);
+			}
+		}
+
+		/**
+		 * Escribe la sección de garajes, con un registro por garaje
+		 *
+		 * @param garages
+		 *            Las copias de los garajes
+		 * @throws IOException
+		 *             Si no se puede escribir o leer la copia binaria anterior
+		 */
+		protected void writeGarages(List<Item> garages) throws IOException {
+			BinaryFormat.writeVarInt(this.body, garages.size());
+			for (Item g : garages) {
+				this.writeString(g.name);
+				if (g.rest != null) {
+					this.copyCars(g.rest.duplicate());
+				} else {
+					this.writeCars(g.cars);
+				}
+				this.endRecord();
+			}
+		}
+
+		/**
+		 * Escribe el nombre, el tipo y el segundo argumento de una carrera en
+		 * el registro actual
+		 *
+		 * @param r
+		 *            La copia de la carrera
+		 * @throws IOException
+		 *             Si no se puede escribir
+		 */
+		protected void writeRaceInfo(Item r) throws IOException {
+			this.writeString(r.name);
+			BinaryFormat.writeVarInt(this.record, r.type);
+			BinaryFormat.writeVarInt(this.record, r.argument);
+		}
+
+		/**
+		 * Escribe la sección de carreras, con un registro por carrera
+		 *
+		 * @param races
+		 *            Las copias de las carreras
+		 * @throws IOException
+		 *             Si no se puede escribir o leer la copia binaria anterior
+		 */
+		protected void writeRaces(List<Item> races) throws IOException {
+			BinaryFormat.writeVarInt(this.body, races.size());
+			for (Item r : races) {
+				this.writeRaceInfo(r);
+				if (r.rest != null) {
+					Record rest = r.rest.duplicate();
+					this.copyStrings(rest);
+					this.copyCars(rest);
+				} else {
+					this.writeStrings(r.garages);
+					this.writeCars(r.cars);
+				}
+				this.endRecord();
+			}
+		}
+
+		/**
+		 * Escribe la referencia a una cadena en el registro actual, añadiéndola
+		 * a la tabla si todavía no está
+		 *
+		 * @param value
+		 *            La cadena, que puede ser <code>null</code>
+		 * @throws IOException
+		 *             Si no se puede escribir
+		 */
+		protected void writeString(String value) throws IOException {
+			int index = 0;
+			if (value != null) {
+				Integer existing = this.indexes.get(value);
+				if (existing == null) {
+					this.strings.add(value);
+					existing = this.strings.size();
+					this.indexes.put(value, existing);
+				}
+				index = existing;
+			}
+			BinaryFormat.writeVarInt(this.record, index);
+		}
+
+		/**
+		 * Escribe una lista de referencias a cadenas, precedida de su tamaño,
+		 * en el registro actual
+		 *
+		 * @param values
+		 *            Las cadenas
+		 * @throws IOException
+		 *             Si no se puede escribir
+		 */
+		protected void writeStrings(String[] values) throws IOException {
+			BinaryFormat.writeVarInt(this.record, values.length);
+			for (String s : values) {
+				this.writeString(s);
+			}
+		}
+
+		/**
+		 * Escribe la cabecera, la tabla de cadenas, las secciones y el CRC-32
+		 * de todo lo anterior en un flujo
+		 *
+		 * @param out
+		 *            El flujo en el que se escribe la copia binaria
+		 * @param sequence
+		 *            La secuencia del último cambio del diario incluido
+		 * @throws IOException
+		 *             Si no se puede escribir
+		 */
+		protected void writeTo(OutputStream out, long sequence) throws IOException {
+			CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32());
+			checked.write(AppSnapshot.MAGIC >>> 24);
+			checked.write(AppSnapshot.MAGIC >>> 16);
+			checked.write(AppSnapshot.MAGIC >>> 8);
+			checked.write(AppSnapshot.MAGIC);
+			checked.write(AppSnapshot.VERSION);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				checked.write((int) (sequence >>> shift));
+			}
+			BinaryFormat.writeVarInt(checked, this.strings.size());
+			for (String s : this.strings) {
+				BinaryFormat.writeString(checked, s);
+			}
+			this.body.writeTo(checked);
+			int crc = (int) checked.getChecksum().getValue();
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				out.write(crc >>> shift);
+			}
+		}
+
+		/**
+		 * Escribe la sección de torneos, con un registro por torneo
+		 *
+		 * @param tournaments
+		 *            Las copias de los torneos
+		 * @throws IOException
+		 *             Si no se puede escribir o leer la copia binaria anterior
+		 */
+		protected void writeTournaments(List<Item> tournaments) throws IOException {
+			BinaryFormat.writeVarInt(this.body, tournaments.size());
+			for (Item t : tournaments) {
+				this.writeString(t.name);
+				if (t.rest != null) {
+					Record rest = t.rest.duplicate();
+					int races = BinaryFormat.readVarInt(rest.buffer);
+					BinaryFormat.writeVarInt(this.record, races);
+					for (int i = 0; i < races; i++) {
+						this.copyRaceInfo(rest);
+					}
+					this.copyStrings(rest);
+					this.copyCars(rest);
+				} else {
+					BinaryFormat.writeVarInt(this.record, t.races.length);
+					for (Item r : t.races) {
+						this.writeRaceInfo(r);
+					}
+					this.writeStrings(t.garages);
+					this.writeCars(t.cars);
+				}
+				this.endRecord();
+			}
+		}
+
+	}
+
+}
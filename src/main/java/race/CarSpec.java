@@ -0,0 +1,230 @@
+package race;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import utils.Utils;
+
+/**
+ * Descripción inmutable de un modelo de coche: su marca y su modelo. Los
+ * coches ({@link ScoreCar}) de la misma marca y modelo comparten la misma
+ * descripción, que se obtiene con {@link #of(String, String)}, aunque estén en
+ * garajes distintos; cada coche guarda aparte su garaje, su puntuación y su
+ * estado en la carrera. Las cadenas de la descripción están internadas, y
+ * guarda además la clave normalizada sin distinguir mayúsculas y su código
+ * hash, que usan {@link ScoreCar#equals(Object)}, {@link ScoreCar#hashCode()}
+ * y el índice de coches de los garajes sin volver a recorrer las cadenas
+ */
+public final class CarSpec {
+
+	/**
+	 * Las descripciones creadas, indexadas por sí mismas. Igual que las cadenas
+	 * internadas, se guardan mientras dure el programa, pero sólo hay una por
+	 * cada marca y modelo distintos
+	 */
+	private static final ConcurrentMap<CarSpec, CarSpec> POOL = new ConcurrentHashMap<>();
+
+	/**
+	 * La marca del coche
+	 */
+	private final String brand;
+
+	/**
+	 * La clave normalizada de la marca y el modelo, o <code>null</code> en la
+	 * descripción provisional con la que se busca en {@link #POOL}
+	 */
+	private final String key;
+
+	/**
+	 * El código hash de la marca y el modelo sin distinguir mayúsculas
+	 */
+	private final int keyHash;
+
+	/**
+	 * El modelo del coche
+	 */
+	private final String model;
+
+	/**
+	 * Crea una descripción. Se usa {@link #of(String, String)} para obtener la
+	 * compartida
+	 *
+	 * @param brand
+	 *            La marca del coche
+	 * @param model
+	 *            El modelo del coche
+	 * @param key
+	 *            La clave normalizada de la marca y el modelo
+	 * @param keyHash
+	 *            El código hash de la marca y el modelo sin distinguir
+	 *            mayúsculas
+	 */
+	private CarSpec(String brand, String model, String key, int keyHash) {
+		this.brand = brand;
+		this.model = model;
+		this.key = key;
+		this.keyHash = keyHash;
+	}
+
+	/**
+	 * Compara los datos exactos de dos descripciones, distinguiendo
+	 * mayúsculas
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof CarSpec) {
+			CarSpec other = (CarSpec) obj;
+			return CarSpec.same(this.brand, other.brand) && CarSpec.same(this.model, other.model);
+		}
+		return false;
+	}
+
+	/**
+	 * Devuelve la marca del coche
+	 *
+	 * @return La marca del coche
+	 */
+	public String getBrand() {
+		return this.brand;
+	}
+
+	/**
+	 * Devuelve la clave normalizada de la marca y el modelo, igual para las
+	 * descripciones que sólo se diferencian en mayúsculas
+	 *
+	 * @return La clave normalizada
+	 */
+	public String getKey() {
+		return this.key;
+	}
+
+	/**
+	 * Devuelve el código hash de la marca y el modelo sin distinguir
+	 * mayúsculas
+	 *
+	 * @return El código hash de la clave
+	 */
+	public int getKeyHash() {
+		return this.keyHash;
+	}
+
+	/**
+	 * Devuelve el modelo del coche
+	 *
+	 * @return El modelo del coche
+	 */
+	public String getModel() {
+		return this.model;
+	}
+
+	/**
+	 * Calcula el código hash de los datos exactos, de forma coherente con
+	 * {@link #equals(Object)}
+	 */
+	@Override
+	public int hashCode() {
+		return (31 * CarSpec.hash(this.brand)) + CarSpec.hash(this.model);
+	}
+
+	/**
+	 * Indica si dos descripciones tienen la misma marca y modelo sin
+	 * distinguir mayúsculas
+	 *
+	 * @param other
+	 *            La otra descripción
+	 * @return <code>true</code> si tienen la misma marca y modelo
+	 */
+	public boolean sameCar(CarSpec other) {
+		if (this == other) {
+			return true;
+		}
+		return (this.keyHash == other.keyHash) && this.key.equals(other.key);
+	}
+
+	@Override
+	public String toString() {
+		return this.brand + " " + this.model;
+	}
+
+	/**
+	 * Devuelve el código hash de una cadena que puede ser <code>null</code>
+	 *
+	 * @param s
+	 *            La cadena
+	 * @return El código hash, o 0 si la cadena es <code>null</code>
+	 */
+	private static int hash(String s) {
+		if (s == null) {
+			return 0;
+		}
+		return s.hashCode();
+	}
+
+	/**
+	 * Interna una cadena que puede ser <code>null</code>, para que todas las
+	 * cadenas iguales usen el mismo objeto
+	 *
+	 * @param s
+	 *            La cadena
+	 * @return La cadena internada, o <code>null</code>
+	 */
+	public static String intern(String s) {
+		if (s == null) {
+			return null;
+		}
+		return s.intern();
+	}
+
+	/**
+	 * Devuelve la clave normalizada de una marca y un modelo
+	 *
+	 * @param brand
+	 *            La marca
+	 * @param model
+	 *            El modelo
+	 * @return La clave normalizada
+	 */
+	public static String key(String brand, String model) {
+		return Utils.normalizeKey(brand) + '\0' + Utils.normalizeKey(model);
+	}
+
+	/**
+	 * Devuelve la descripción compartida con la marca y el modelo indicados,
+	 * creándola la primera vez que se piden
+	 *
+	 * @param brand
+	 *            La marca del coche
+	 * @param model
+	 *            El modelo del coche
+	 * @return La descripción compartida
+	 */
+	public static CarSpec of(String brand, String model) {
+		CarSpec shared = CarSpec.POOL.get(new CarSpec(brand, model, null, 0));
+		if (shared == null) {
+			int keyHash = (31 * Utils.hashIgnoreCase(brand)) + Utils.hashIgnoreCase(model);
+			CarSpec spec = new CarSpec(CarSpec.intern(brand), CarSpec.intern(model), CarSpec.key(brand, model), keyHash);
+			shared = CarSpec.POOL.putIfAbsent(spec, spec);
+			if (shared == null) {
+				shared = spec;
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * Compara dos cadenas que pueden ser <code>null</code>
+	 *
+	 * @param a
+	 *            La primera cadena
+	 * @param b
+	 *            La segunda cadena
+	 * @return <code>true</code> si son iguales o las dos son <code>null</code>
+	 */
+	private static boolean same(String a, String b) {
+		if (a == b) {
+			return true;
+		}
+		return (a != null) && a.equals(b);
+	}
+
+}
@@ -0,0 +1,414 @@
+package race;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+import utils.RandomSource;
+import utils.Utils;
+
+/**
+ * Almacén de los coches de un garaje. Cada coche ocupa una posición (slot) de
+ * un array que no cambia mientras el coche está en el garaje, y un índice con
+ * {@link HashMap} por su marca y modelo normalizados localiza la posición del
+ * primero, por lo que añadir, eliminar, comprobar si un coche está y elegir
+ * uno al azar no dependen del número de coches. Igual que en una lista, un
+ * garaje puede tener varios coches con la misma marca y modelo: cada posición
+ * guarda en {@link #next} la del siguiente coche igual, y sólo se recorren
+ * las posiciones de los repetidos. Al eliminar un coche su posición queda
+ * vacía y la lista mantiene el orden de inserción; cuando la mitad de las
+ * posiciones están vacías se compactan, lo que cambia las posiciones de los
+ * coches pero no su orden
+ */
+public class CarStore extends AbstractList<ScoreCar> implements RandomAccess {
+
+	/**
+	 * Constante con el número de posiciones por debajo del cual no se compacta
+	 */
+	protected static final int MIN_COMPACTION = 16;
+
+	/**
+	 * La posición del primer coche de cada marca y modelo normalizados
+	 */
+	protected final Map<String, Integer> index = new HashMap<>();
+
+	/**
+	 * La posición del siguiente coche con la misma marca y modelo de cada
+	 * posición, o -1 si es el último
+	 */
+	protected int[] next = new int[8];
+
+	/**
+	 * El número de coches del almacén
+	 */
+	protected int size;
+
+	/**
+	 * Las posiciones de los coches, en orden de inserción, con
+	 * <code>null</code> en las posiciones vacías
+	 */
+	protected ScoreCar[] slots = new ScoreCar[8];
+
+	/**
+	 * El número de posiciones usadas, incluidas las vacías
+	 */
+	protected int used;
+
+	/**
+	 * Añade un coche al final del almacén
+	 *
+	 * @param sc
+	 *            El coche
+	 * @return <code>true</code>
+	 */
+	@Override
+	public boolean add(ScoreCar sc) {
+		if (this.used == this.slots.length) {
+			if ((this.size * 2) <= this.used) {
+				this.compact();
+			} else {
+				this.slots = Arrays.copyOf(this.slots, this.slots.length * 2);
+				this.next = Arrays.copyOf(this.next, this.slots.length);
+			}
+		}
+		this.slots[this.used] = sc;
+		this.next[this.used] = -1;
+		String key = CarStore.keyOf(sc);
+		Integer first = this.index.get(key);
+		if (first == null) {
+			this.index.put(key, this.used);
+		} else {
+			int last = first;
+			while (this.next[last] >= 0) {
+				last = this.next[last];
+			}
+			this.next[last] = this.used;
+		}
+		this.used++;
+		this.size++;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.slots, 0, this.used, null);
+		this.index.clear();
+		this.used = 0;
+		this.size = 0;
+		this.modCount++;
+	}
+
+	/**
+	 * Elimina las posiciones vacías, manteniendo el orden de los coches, y
+	 * actualiza el índice y los enlaces entre coches iguales. Como el orden
+	 * no cambia, los coches iguales siguen enlazados en el mismo orden
+	 */
+	protected void compact() {
+		int[] moved = new int[this.used];
+		int target = 0;
+		for (int slot = 0; slot < this.used; slot++) {
+			ScoreCar sc = this.slots[slot];
+			if (sc != null) {
+				moved[slot] = target;
+				this.slots[target] = sc;
+				this.next[target] = this.next[slot];
+				target++;
+			}
+		}
+		for (int slot = 0; slot < target; slot++) {
+			if (this.next[slot] >= 0) {
+				this.next[slot] = moved[this.next[slot]];
+			}
+		}
+		for (Map.Entry<String, Integer> entry : this.index.entrySet()) {
+			entry.setValue(moved[entry.getValue()]);
+		}
+		Arrays.fill(this.slots, target, this.used, null);
+		this.used = target;
+	}
+
+	/**
+	 * Compacta las posiciones si al menos la mitad están vacías, para que la
+	 * elección al azar necesite pocos intentos
+	 */
+	protected void compactIfSparse() {
+		if ((this.used > CarStore.MIN_COMPACTION) && ((this.size * 2) <= this.used)) {
+			this.compact();
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return this.slotOf(o) >= 0;
+	}
+
+	/**
+	 * Indica si el almacén contiene el mismo objeto que se pasa por parámetro,
+	 * y no sólo un coche igual, recorriendo sólo los de su marca y modelo
+	 *
+	 * @param sc
+	 *            El coche
+	 * @return <code>true</code> si el objeto está en el almacén
+	 */
+	public boolean containsInstance(ScoreCar sc) {
+		Integer first = this.index.get(CarStore.keyOf(sc));
+		if (first == null) {
+			return false;
+		}
+		for (int slot = first; slot >= 0; slot = this.next[slot]) {
+			if (this.slots[slot] == sc) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Devuelve el primer coche del almacén con la marca y el modelo indicados
+	 *
+	 * @param brand
+	 *            La marca
+	 * @param model
+	 *            El modelo
+	 * @return El coche, o <code>null</code> si no hay ninguno
+	 */
+	public ScoreCar find(String brand, String model) {
+		Integer slot = this.index.get(CarStore.key(brand, model));
+		if (slot == null) {
+			return null;
+		}
+		return this.slots[slot];
+	}
+
+	@Override
+	public ScoreCar get(int position) {
+		if ((position < 0) || (position >= this.size)) {
+			throw new IndexOutOfBoundsException("Posición: " + position + ", tamaño: " + this.size);
+		}
+		if (this.used != this.size) {
+			this.compact();
+		}
+		return this.slots[position];
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		int slot = this.slotOf(o);
+		if (slot < 0) {
+			return -1;
+		}
+		if (this.used != this.size) {
+			this.compact();
+			return this.slotOf(o);
+		}
+		return slot;
+	}
+
+	@Override
+	public Iterator<ScoreCar> iterator() {
+		return new Iterator<ScoreCar>() {
+
+			/**
+			 * La posición del último coche devuelto
+			 */
+			private int last = -1;
+
+			/**
+			 * La posición del siguiente coche a devolver
+			 */
+			private int next = this.skipEmpty(0);
+
+			@Override
+			public boolean hasNext() {
+				return this.next < CarStore.this.used;
+			}
+
+			@Override
+			public ScoreCar next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				this.last = this.next;
+				this.next = this.skipEmpty(this.next + 1);
+				return CarStore.this.slots[this.last];
+			}
+
+			@Override
+			public void remove() {
+				if (this.last < 0) {
+					throw new IllegalStateException();
+				}
+				CarStore.this.removeSlot(this.last);
+				this.last = -1;
+			}
+
+			/**
+			 * Devuelve la primera posición ocupada a partir de la indicada
+			 *
+			 * @param slot
+			 *            La posición inicial
+			 * @return La posición ocupada, o el número de posiciones usadas si
+			 *         no hay más
+			 */
+			private int skipEmpty(int slot) {
+				while ((slot < CarStore.this.used) && (CarStore.this.slots[slot] == null)) {
+					slot++;
+				}
+				return slot;
+			}
+		};
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		if (this.slotOf(o) < 0) {
+			return -1;
+		}
+		if (this.used != this.size) {
+			this.compact();
+		}
+		int last = -1;
+		for (int slot = this.slotOf(o); slot >= 0; slot = this.next[slot]) {
+			if (this.slots[slot].equals(o)) {
+				last = slot;
+			}
+		}
+		return last;
+	}
+
+	/**
+	 * Elige un coche al azar. Si no hay posiciones vacías se elige igual que
+	 * con {@link Utils#getRandomNumberInRange(RandomSource, int, int)} sobre
+	 * la lista; si las hay, se repite la elección hasta dar con una ocupada,
+	 * lo que de media necesita menos de dos intentos porque al menos la mitad
+	 * están ocupadas
+	 *
+	 * @param source
+	 *            La fuente de números aleatorios
+	 * @return El coche elegido
+	 */
+	public ScoreCar randomCar(RandomSource source) {
+		if (this.size == 0) {
+			throw new IllegalStateException("El garaje no tiene coches");
+		}
+		this.compactIfSparse();
+		ScoreCar sc;
+		do {
+			sc = this.slots[Utils.getRandomNumberInRange(source, 0, this.used - 1)];
+		} while (sc == null);
+		return sc;
+	}
+
+	@Override
+	public ScoreCar remove(int position) {
+		ScoreCar sc = this.get(position);
+		this.removeSlot(position);
+		this.compactIfSparse();
+		return sc;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int slot = this.slotOf(o);
+		if (slot < 0) {
+			return false;
+		}
+		this.removeSlot(slot);
+		this.compactIfSparse();
+		return true;
+	}
+
+	/**
+	 * Vacía una posición y la quita del índice o de los enlaces entre coches
+	 * iguales, sin compactar para no cambiar las posiciones de un recorrido en
+	 * curso
+	 *
+	 * @param slot
+	 *            La posición
+	 */
+	protected void removeSlot(int slot) {
+		String key = CarStore.keyOf(this.slots[slot]);
+		int first = this.index.get(key);
+		if (first == slot) {
+			if (this.next[slot] < 0) {
+				this.index.remove(key);
+			} else {
+				this.index.put(key, this.next[slot]);
+			}
+		} else {
+			int previous = first;
+			while (this.next[previous] != slot) {
+				previous = this.next[previous];
+			}
+			this.next[previous] = this.next[slot];
+		}
+		this.slots[slot] = null;
+		this.size--;
+		this.modCount++;
+		if (slot == (this.used - 1)) {
+			this.used--;
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Devuelve la posición del primer coche igual al indicado, recorriendo
+	 * sólo los de su marca y modelo
+	 *
+	 * @param o
+	 *            El coche buscado
+	 * @return La posición, o -1 si no está
+	 */
+	protected int slotOf(Object o) {
+		if (!(o instanceof ScoreCar)) {
+			return -1;
+		}
+		Integer first = this.index.get(CarStore.keyOf((ScoreCar) o));
+		if (first == null) {
+			return -1;
+		}
+		for (int slot = first; slot >= 0; slot = this.next[slot]) {
+			if (this.slots[slot].equals(o)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Devuelve la clave de una marca y un modelo, normalizados sin distinguir
+	 * mayúsculas
+	 *
+	 * @param brand
+	 *            La marca
+	 * @param model
+	 *            El modelo
+	 * @return La clave
+	 */
+	public static String key(String brand, String model) {
+		return CarSpec.key(brand, model);
+	}
+
+	/**
+	 * Devuelve la clave de un coche en el almacén, que es la que ya guarda su
+	 * {@link CarSpec}, por lo que todos los coches de la misma marca y modelo
+	 * comparten la cadena
+	 *
+	 * @param sc
+	 *            El coche
+	 * @return La clave de su marca y modelo
+	 */
+	public static String keyOf(ScoreCar sc) {
+		return sc.getSpec().getKey();
+	}
+
+}
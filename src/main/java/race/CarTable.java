@@ -0,0 +1,118 @@
+package race;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.JsonStreamWriter;
+
+/**
+ * Tabla de coches de la exportación normalizada. Cada coche distinto (misma
+ * marca, modelo y garaje, sin distinguir mayúsculas) recibe como
+ * identificador su posición en la tabla, que se escribe una sola vez en la
+ * clave {@link Control#CARS}; los garajes, las carreras y los torneos se
+ * refieren a sus coches por ese identificador en lugar de repetirlos
+ */
+public class CarTable {
+
+	/**
+	 * Los coches de la tabla, en el orden de sus identificadores
+	 */
+	protected final List<ScoreCar> cars = new ArrayList<>();
+
+	/**
+	 * El identificador de cada coche, por la clave de
+	 * {@link IdentityMap#carKey(ScoreCar)}
+	 */
+	protected final Map<String, Integer> ids = new HashMap<>();
+
+	/**
+	 * Añade a la tabla todos los coches de los garajes, carreras y torneos
+	 * del control, en el orden en que se exportan
+	 *
+	 * @param control
+	 *            El control cuyos coches se añaden
+	 */
+	public void addAll(Control control) {
+		for (Garage g : control.getGarageList()) {
+			this.addCars(g.getGarageCarList());
+		}
+		for (Race r : control.getRaceList()) {
+			this.addCars(r.getExportedCarList());
+		}
+		for (Tournament t : control.getTournamentList()) {
+			this.addCars(t.getTournamentCarList());
+		}
+	}
+
+	/**
+	 * Añade una lista de coches a la tabla
+	 *
+	 * @param carList
+	 *            Los coches
+	 */
+	protected void addCars(List<ScoreCar> carList) {
+		for (ScoreCar sc : carList) {
+			this.idOf(sc);
+		}
+	}
+
+	/**
+	 * Devuelve el identificador de un coche, añadiéndolo a la tabla si no
+	 * está. Los coches se comparan con la misma clave que al importarlos, sin
+	 * distinguir mayúsculas, para que la tabla tenga un coche por cada objeto
+	 * canónico de la importación
+	 *
+	 * @param sc
+	 *            El coche
+	 * @return El identificador del coche
+	 */
+	public int idOf(ScoreCar sc) {
+		String key = IdentityMap.carKey(sc);
+		Integer id = this.ids.get(key);
+		if (id == null) {
+			id = this.cars.size();
+			this.cars.add(sc);
+			this.ids.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Escribe una lista de coches como la lista de sus identificadores
+	 *
+	 * @param writer
+	 *            El escritor en el que se escriben los identificadores
+	 * @param carList
+	 *            Los coches
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeIdsTo(JsonStreamWriter writer, List<ScoreCar> carList) throws IOException {
+		writer.beginArray();
+		for (ScoreCar sc : carList) {
+			writer.value(this.idOf(sc));
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * Escribe la clave {@link Control#CARS} y la lista de coches de la tabla
+	 * en el objeto abierto de un {@link JsonStreamWriter}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe la tabla
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeTo(JsonStreamWriter writer) throws IOException {
+		writer.name(Control.CARS).beginArray();
+		for (ScoreCar sc : this.cars) {
+			sc.writeCarTo(writer);
+		}
+		writer.endArray();
+	}
+
+}
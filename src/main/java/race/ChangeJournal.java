@@ -0,0 +1,524 @@
+package race;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Diario de cambios de la aplicación. Cada cambio se añade al final del
+ * fichero como una línea con su número de secuencia, un espacio y un objeto
+ * JSON, por lo que guardar un cambio cuesta lo mismo que el cambio y no lo que
+ * ocupan todos los datos. {@link #append(String)} no espera al disco: las
+ * líneas se escriben y se sincronizan desde un hilo propio, que escribe
+ * juntas con una sola sincronización todas las que se han añadido mientras
+ * tanto, y {@link #sync()} espera a que estén sincronizadas. Al arrancar se
+ * vuelven a aplicar los cambios posteriores a la secuencia de la copia
+ * cargada; sólo se descarta la última línea si quedó sin terminar, y
+ * cualquier otro error detiene la lectura sin modificar los ficheros. Cuando
+ * el diario crece se compacta escribiendo una nueva copia binaria en segundo
+ * plano
+ */
+public class ChangeJournal implements Closeable {
+
+	/**
+	 * Constante con el tamaño en bytes a partir del cual se compacta el diario
+	 */
+	public static final long COMPACTION_THRESHOLD = 4L << 20;
+
+	/**
+	 * Constante de la operación que añade un coche al final de la lista de
+	 * coches del garaje de la posición indicada
+	 */
+	public static final String ADD_CAR = "addCar";
+
+	/**
+	 * Constante de la operación que agrupa varios cambios, que se aplican
+	 * todos juntos
+	 */
+	public static final String BATCH = "batch";
+
+	/**
+	 * Constante que indica la lista de cambios de un grupo en el diario
+	 */
+	public static final String CHANGES = "changes";
+
+	/**
+	 * Constante que indica la posición del objeto en su lista en el diario
+	 */
+	public static final String INDEX = "index";
+
+	/**
+	 * Constante que indica la lista a la que afecta un cambio en el diario
+	 */
+	public static final String LIST = "list";
+
+	/**
+	 * Constante que indica la operación de un cambio en el diario
+	 */
+	public static final String OPERATION = "op";
+
+	/**
+	 * Constante que indica la posición del coche en la lista de coches del
+	 * garaje en el diario
+	 */
+	public static final String POSITION = "position";
+
+	/**
+	 * Constante de la operación que sustituye, o añade al final, el objeto de
+	 * una posición de la lista
+	 */
+	public static final String PUT = "put";
+
+	/**
+	 * Constante de la operación que elimina el objeto de una posición de la
+	 * lista
+	 */
+	public static final String REMOVE = "remove";
+
+	/**
+	 * Constante de la operación que elimina el coche de una posición de la
+	 * lista de coches del garaje de la posición indicada
+	 */
+	public static final String REMOVE_CAR = "removeCar";
+
+	/**
+	 * Constante que indica el objeto completo en el diario
+	 */
+	public static final String VALUE = "value";
+
+	/**
+	 * El canal del fichero del diario, abierto para añadir líneas
+	 */
+	protected FileChannel channel;
+
+	/**
+	 * Indica si se ha cerrado el diario
+	 */
+	protected boolean closed;
+
+	/**
+	 * El hilo que escribe la copia binaria de la última compactación
+	 */
+	protected Thread compaction;
+
+	/**
+	 * La última secuencia que se ha sincronizado con el disco
+	 */
+	protected long durable;
+
+	/**
+	 * El error que ha impedido escribir el diario, si lo ha habido
+	 */
+	protected IOException failure;
+
+	/**
+	 * El fichero del diario
+	 */
+	protected final File file;
+
+	/**
+	 * El hilo que escribe y sincroniza las líneas pendientes
+	 */
+	protected Thread flusher;
+
+	/**
+	 * Las líneas pendientes de escribir
+	 */
+	protected final List<String> pending = new ArrayList<>();
+
+	/**
+	 * El fichero con las líneas anteriores a una compactación que todavía no
+	 * ha terminado
+	 */
+	protected final File rotated;
+
+	/**
+	 * La última secuencia asignada
+	 */
+	protected long sequence;
+
+	/**
+	 * El número de bytes del fichero del diario
+	 */
+	protected long size;
+
+	/**
+	 * Indica si el hilo de escritura está escribiendo un grupo de líneas
+	 */
+	protected boolean writing;
+
+	/**
+	 * Crea un diario sobre el fichero indicado, sin abrirlo
+	 *
+	 * @param file
+	 *            El fichero del diario
+	 */
+	public ChangeJournal(File file) {
+		this.file = file;
+		this.rotated = new File(file.getPath() + ".old");
+	}
+
+	/**
+	 * Añade un cambio al diario sin esperar a que se escriba. Para saber que
+	 * está sincronizado con el disco se llama después a {@link #sync()}
+	 *
+	 * @param entry
+	 *            El cambio, como un objeto JSON en una sola línea
+	 * @return La secuencia asignada al cambio
+	 */
+	public synchronized long append(String entry) {
+		if (this.failure != null) {
+			throw new IllegalStateException("No se puede escribir en el diario de cambios", this.failure);
+		}
+		long entrySequence = ++this.sequence;
+		this.pending.add(entrySequence + " " + entry + "\n");
+		this.notifyAll();
+		return entrySequence;
+	}
+
+	/**
+	 * Espera a que termine la compactación en curso, si la hay
+	 */
+	public void awaitCompaction() {
+		Thread running;
+		synchronized (this) {
+			running = this.compaction;
+		}
+		if (running != null) {
+			try {
+				running.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Se ha interrumpido la compactación del diario de cambios", e);
+			}
+		}
+	}
+
+	/**
+	 * Vacía el diario después de guardar una copia con todos sus cambios
+	 *
+	 * @throws IOException
+	 *             Si no se puede vaciar el fichero
+	 */
+	public synchronized void checkpoint() throws IOException {
+		this.awaitIdle();
+		this.channel.truncate(0);
+		this.channel.force(true);
+		this.size = 0;
+		Files.deleteIfExists(this.rotated.toPath());
+	}
+
+	@Override
+	public void close() throws IOException {
+		Thread running;
+		synchronized (this) {
+			this.closed = true;
+			this.notifyAll();
+			running = this.flusher;
+		}
+		if (running != null) {
+			try {
+				running.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		this.awaitCompaction();
+		synchronized (this) {
+			if (this.channel != null) {
+				this.channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Compacta el diario: las líneas actuales pasan a un fichero aparte, las
+	 * siguientes se escriben en un diario vacío y en segundo plano se codifica
+	 * y se escribe la copia binaria, que ya contiene todos los cambios
+	 * anteriores. Al terminar se borra el fichero aparte; si la aplicación se
+	 * cierra antes, sus líneas se vuelven a aplicar al arrancar
+	 *
+	 * @param snapshot
+	 *            La copia de los datos con la secuencia actual
+	 * @param snapshotFile
+	 *            El fichero de la copia binaria
+	 * @throws IOException
+	 *             Si no se puede cambiar de fichero
+	 */
+	public synchronized void compact(final AppSnapshot.Image snapshot, final File snapshotFile) throws IOException {
+		this.awaitIdle();
+		this.channel.close();
+		if (this.rotated.exists()) {
+			Files.write(this.rotated.toPath(), Files.readAllBytes(this.file.toPath()), StandardOpenOption.APPEND);
+			Files.delete(this.file.toPath());
+		} else {
+			Files.move(this.file.toPath(), this.rotated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		this.size = 0;
+
+		this.compaction = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					AppSnapshot.writeFile(snapshot.encode(), snapshotFile);
+					Files.deleteIfExists(ChangeJournal.this.rotated.toPath());
+				} catch (IOException e) {
+					System.err.println("No se ha podido compactar el diario de cambios");
+				} finally {
+					synchronized (ChangeJournal.this) {
+						ChangeJournal.this.compaction = null;
+					}
+				}
+			}
+		}, "journal-compaction");
+		this.compaction.setDaemon(true);
+		this.compaction.start();
+	}
+
+	/**
+	 * Devuelve la última secuencia asignada
+	 *
+	 * @return La última secuencia
+	 */
+	public synchronized long getSequence() {
+		return this.sequence;
+	}
+
+	/**
+	 * Indica si el diario ha crecido lo suficiente para compactarlo y no hay
+	 * otra compactación en curso
+	 *
+	 * @return <code>true</code> si se debe compactar el diario
+	 */
+	public synchronized boolean needsCompaction() {
+		return (this.size >= ChangeJournal.COMPACTION_THRESHOLD) && (this.compaction == null);
+	}
+
+	/**
+	 * Abre el diario para añadir cambios, descartando la última línea si
+	 * quedó a medias, y arranca el hilo de escritura. Debe llamarse después
+	 * de {@link #replay(Control, long)}
+	 *
+	 * @param validLength
+	 *            La longitud del diario hasta la última línea completa
+	 * @throws IOException
+	 *             Si no se puede abrir el fichero
+	 */
+	public synchronized void open(long validLength) throws IOException {
+		this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		this.channel.truncate(validLength);
+		this.channel.position(validLength);
+		this.size = validLength;
+		this.durable = this.sequence;
+		this.flusher = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				ChangeJournal.this.flush();
+			}
+		}, "journal-flusher");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	/**
+	 * Vuelve a aplicar en el control los cambios del diario posteriores a la
+	 * secuencia indicada, primero los de una compactación sin terminar y
+	 * después los del diario actual. Sólo se descarta la última línea de un
+	 * fichero si no termina en un salto de línea, porque es la que se estaba
+	 * escribiendo en un cierre inesperado. Una línea incorrecta, un cambio que
+	 * no se puede aplicar o un salto en las secuencias indican que el diario
+	 * está dañado, y se lanza una excepción sin modificar los ficheros
+	 *
+	 * @param control
+	 *            El control en el que se aplican los cambios
+	 * @param base
+	 *            La secuencia de la copia cargada
+	 * @return La longitud del diario actual hasta su última línea completa
+	 * @throws IOException
+	 *             Si no se pueden leer los ficheros o el diario está dañado
+	 */
+	public synchronized long replay(Control control, long base) throws IOException {
+		this.sequence = base;
+		long rotatedLength = this.replayFile(control, this.rotated);
+		if (this.rotated.isFile() && (rotatedLength < this.rotated.length())) {
+			if (this.file.length() > 0) {
+				throw new IOException("El fichero \"" + this.rotated + "\" tiene una línea sin terminar antes de \"" + this.file + "\"");
+			}
+			try (FileChannel old = FileChannel.open(this.rotated.toPath(), StandardOpenOption.WRITE)) {
+				old.truncate(rotatedLength);
+			}
+		}
+		return this.replayFile(control, this.file);
+	}
+
+	/**
+	 * Vuelve a aplicar los cambios de un fichero posteriores a la secuencia
+	 * actual
+	 *
+	 * @param control
+	 *            El control en el que se aplican los cambios
+	 * @param source
+	 *            El fichero
+	 * @return La longitud del fichero hasta su última línea terminada
+	 * @throws IOException
+	 *             Si no se puede leer el fichero o una línea terminada es
+	 *             incorrecta
+	 */
+	protected long replayFile(Control control, File source) throws IOException {
+		if (!source.isFile()) {
+			return 0;
+		}
+		byte[] content = Files.readAllBytes(source.toPath());
+		JSONParser parser = new JSONParser();
+		int start = 0;
+		for (int end = 0; end < content.length; end++) {
+			if (content[end] == '\n') {
+				String line = new String(content, start, end - start, StandardCharsets.UTF_8);
+				try {
+					this.replayLine(control, parser, line);
+				} catch (ParseException | RuntimeException e) {
+					throw new IOException("El fichero \"" + source + "\" contiene un cambio incorrecto en la posición " + start + ": " + e, e);
+				}
+				start = end + 1;
+			}
+		}
+		if (start < content.length) {
+			System.err.println("Se ha descartado la última línea sin terminar del fichero \"" + source + "\"");
+		}
+		return start;
+	}
+
+	/**
+	 * Vuelve a aplicar el cambio de una línea si es posterior a la secuencia
+	 * actual, que debe ser la anterior a la suya
+	 *
+	 * @param control
+	 *            El control en el que se aplica el cambio
+	 * @param parser
+	 *            El analizador de JSON
+	 * @param line
+	 *            La línea, sin el salto de línea
+	 * @throws ParseException
+	 *             Si el cambio no es un objeto JSON correcto
+	 */
+	protected void replayLine(Control control, JSONParser parser, String line) throws ParseException {
+		int space = line.indexOf(' ');
+		if (space < 0) {
+			throw new IllegalArgumentException("La línea no tiene secuencia");
+		}
+		long entrySequence = Long.parseLong(line.substring(0, space));
+		if (entrySequence > this.sequence) {
+			if (entrySequence != (this.sequence + 1)) {
+				throw new IllegalArgumentException("Falta el cambio " + (this.sequence + 1));
+			}
+			control.replayJournalEntry((JSONObject) parser.parse(line.substring(space + 1)));
+			this.sequence = entrySequence;
+		}
+	}
+
+	/**
+	 * Espera a que todos los cambios añadidos estén sincronizados con el disco
+	 *
+	 * @throws IllegalStateException
+	 *             Si no se han podido escribir o se ha interrumpido la espera
+	 */
+	public synchronized void sync() {
+		try {
+			while ((this.durable < this.sequence) && (this.failure == null)) {
+				this.wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Se ha interrumpido la escritura del diario de cambios", e);
+		}
+		if (this.failure != null) {
+			throw new IllegalStateException("No se ha podido escribir en el diario de cambios", this.failure);
+		}
+	}
+
+	/**
+	 * Espera a que no haya líneas pendientes ni un grupo escribiéndose
+	 */
+	protected synchronized void awaitIdle() {
+		try {
+			while ((this.writing || !this.pending.isEmpty()) && (this.failure == null)) {
+				this.wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Se ha interrumpido la escritura del diario de cambios", e);
+		}
+	}
+
+	/**
+	 * Bucle del hilo de escritura: toma todas las líneas pendientes, las
+	 * escribe juntas y sincroniza el fichero una sola vez
+	 */
+	protected void flush() {
+		while (true) {
+			List<String> batch;
+			long last;
+			FileChannel target;
+			synchronized (this) {
+				while (this.pending.isEmpty() && !this.closed) {
+					try {
+						this.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (this.pending.isEmpty()) {
+					return;
+				}
+				batch = new ArrayList<>(this.pending);
+				this.pending.clear();
+				last = this.sequence;
+				target = this.channel;
+				this.writing = true;
+			}
+
+			StringBuilder builder = new StringBuilder();
+			for (String line : batch) {
+				builder.append(line);
+			}
+			ByteBuffer bytes = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+			int length = bytes.remaining();
+			try {
+				while (bytes.hasRemaining()) {
+					target.write(bytes);
+				}
+				target.force(false);
+			} catch (IOException e) {
+				synchronized (this) {
+					this.failure = e;
+					this.writing = false;
+					this.notifyAll();
+				}
+				return;
+			}
+
+			synchronized (this) {
+				this.size += length;
+				this.durable = last;
+				this.writing = false;
+				this.notifyAll();
+			}
+		}
+	}
+
+}
@@ -2,8 +2,10 @@ package race;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,7 +14,9 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
 
 import utils.Input;
+import utils.JsonStreamWriter;
 import utils.ProgramExporter;
+import utils.Registry;
 import utils.Utils;
 
 /**
@@ -22,37 +26,74 @@ import utils.Utils;
 public class Control {
 
 	/**
-	 * Constante que sirve para indicar la lista de garajes en la exportacin e
-	 * importacin
+	 * Constante que sirve para indicar la tabla de coches de la exportación
+	 * normalizada, en la que cada coche se identifica por su posición
+	 */
+	public static final String CARS = "cars";
+
+	/**
+	 * Constante que sirve para indicar la lista de garajes en la exportación e
+	 * importación
 	 */
 	public static final String GARAGES = "garages";
 
 	/**
-	 * Constante que sirve para indicar la lista de carreras en la exportacin e
-	 * importacin
+	 * Constante con el nombre del fichero del {@link ChangeJournal} en el que
+	 * se guardan los cambios hechos desde la última exportación
+	 */
+	public static final String JOURNAL = ".appData.journal";
+
+	/**
+	 * Constante que sirve para indicar la secuencia del último cambio del
+	 * diario incluido en la exportación
+	 */
+	public static final String JOURNAL_SEQUENCE = "journalSequence";
+
+	/**
+	 * Constante que sirve para indicar la lista de carreras en la exportación e
+	 * importación
 	 */
 	public static final String RACES = "races";
 
 	/**
-	 * Constante que sirve para indicar la lista de torneos en la exportacin e
-	 * importacin
+	 * Constante con el nombre del fichero de la copia binaria de los datos de
+	 * la aplicación, que se escribe junto a ".appData.json"
+	 */
+	public static final String SNAPSHOT = ".appData.bin";
+
+	/**
+	 * Constante que sirve para indicar la lista de torneos en la exportación e
+	 * importación
 	 */
 	public static final String TOURNAMENT = "tournament";
 
 	/**
-	 * Variable que contiene la lista de garajes
+	 * Variable que contiene la lista de garajes, indexada por su nombre
+	 */
+	protected Registry<Garage> garageList = new Registry<>();
+
+	/**
+	 * El diario en el que se guarda cada cambio en cuanto se hace, o
+	 * <code>null</code> si no está abierto
 	 */
-	protected List<Garage> garageList = new ArrayList<>();
+	protected ChangeJournal journal;
 
 	/**
-	 * Variable que contiene la lista de carreras
+	 * Los cambios que se están agrupando para guardarlos en el diario como un
+	 * solo cambio, o <code>null</code> si no se están agrupando
 	 */
-	protected List<Race> raceList = new ArrayList<>();
+	protected List<String> journalBatch;
 
 	/**
-	 * Variable que contiene la lista de torneos
+	 * Variable que contiene la lista de carreras, indexada por su tipo, nombre
+	 * y horas o vueltas previas
 	 */
-	protected List<Tournament> tournamentList = new ArrayList<>();
+	protected Registry<Race> raceList = new Registry<>();
+
+	/**
+	 * Variable que contiene la lista de torneos, indexada por identidad
+	 */
+	protected Registry<Tournament> tournamentList = new Registry<>();
 
 	/**
 	 * Constructor de la clase {@link Control}
@@ -60,36 +101,39 @@ public class Control {
 	public Control() {}
 
 	/**
-	 * Crea un nuevo coche y lo aade a un garaje existente
+	 * Crea un nuevo coche y lo añade a un garaje existente
 	 */
 	public void addCarToGarage() {
 		System.out.println("================");
-		System.out.println("= Aadir Coche =");
+		System.out.println("= Añadir Coche =");
 		System.out.println("================");
 		String brand = Input.string("Introduce la marca del coche: ");
 		String model = Input.string("Introduce el modelo del coche: ");
 		System.out.println("Selecciona el garaje al que pertenece el coche:");
 		int[] selected = Utils.showAndSelectFromList(this.getGarageList(), false);
-		this.getGarageList().get(selected[0]).registerCarToGarage(new ScoreCar(brand, model));
+		Garage g = this.getGarageList().get(selected[0]);
+		g.registerCarToGarage(new ScoreCar(brand, model));
+		this.recordCarChange(ChangeJournal.ADD_CAR, selected[0], g.getGarageCarList().size() - 1);
 	}
 
 	/**
-	 * Crea un nuevo garage y lo aade a la lista de garajes que maneja control
+	 * Crea un nuevo garage y lo añade a la lista de garajes que maneja control
 	 */
 	public void addGarageToList() {
 		System.out.println("=================");
-		System.out.println("= Aadir Garaje =");
+		System.out.println("= Añadir Garaje =");
 		System.out.println("=================");
 		String name = Input.string("Introduce el nombre del garaje: ");
 		Garage g = new Garage(name);
 		if (!this.getGarageList().contains(g)) {
 			this.getGarageList().add(g);
+			this.recordChange(ChangeJournal.PUT, Control.GARAGES, this.getGarageList().size() - 1);
 		}
 
 	}
 
 	/**
-	 * Aade a la carrera seleccionada los garages sleccionado
+	 * Añade a la carrera seleccionada los garages sleccionado
 	 */
 	public void addGarageToRace() {
 		System.out.println("=================================");
@@ -104,11 +148,12 @@ public class Control {
 				r.registerGarage(this.getGarageList().get(selectedGarages[i]));
 			}
 			r.registerCars();
+			this.recordChange(ChangeJournal.PUT, Control.RACES, selected[0]);
 		}
 	}
 
 	/**
-	 * Aade un garaje de los disponibles en la lista de garajes, a los garajes
+	 * Añade un garaje de los disponibles en la lista de garajes, a los garajes
 	 * participantes en el torneo
 	 */
 	public void addGarageToTournament() {
@@ -123,23 +168,24 @@ public class Control {
 			for (int i = 0; i < selectedGarages.length; i++) {
 				t.getGarageList().add(this.getGarageList().get(selectedGarages[i]));
 			}
+			this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, selected[0]);
 		}
 	}
 
 	/**
-	 * Crea una nueva carrera y la aade a la lista de carreras disponibles
+	 * Crea una nueva carrera y la añade a la lista de carreras disponibles
 	 */
 	public void addRaceToList() {
 		System.out.println("==================");
-		System.out.println("= Aadir Carrera =");
+		System.out.println("= Añadir Carrera =");
 		System.out.println("==================");
 		String name = Input.string("Introduce el nombre de la carrera: ");
-		String type = Input.string("Introduce el tipo de carrera.\n\"DR\" - Eliminacin \\ \"SR\" - Estndar (Por defecto) : ");
+		String type = Input.string("Introduce el tipo de carrera.\n\"DR\" - Eliminación \\ \"SR\" - Estándar (Por defecto) : ");
 		String secondArgumentMessage;
 		if (type.equalsIgnoreCase(Race.RACE_TYPE_DEATHRACE)) {
-			secondArgumentMessage = "Introduce las vueltas previas antes de la eliminacin: ";
+			secondArgumentMessage = "Introduce las vueltas previas antes de la eliminación: ";
 		} else {
-			secondArgumentMessage = "Introduce la duracin en horas de la carrera: ";
+			secondArgumentMessage = "Introduce la duración en horas de la carrera: ";
 		}
 		int secondArgument = Input.integer(secondArgumentMessage);
 		Race r;
@@ -150,34 +196,36 @@ public class Control {
 		}
 		if (!this.getRaceList().contains(r)) {
 			this.raceList.add(r);
+			this.recordChange(ChangeJournal.PUT, Control.RACES, this.getRaceList().size() - 1);
 		}
 
 	}
 
 	/**
-	 * Aade una carrera de la lista de carreras disponibles al torneo
+	 * Añade una carrera de la lista de carreras disponibles al torneo
 	 * seleccionado de la lista de torneos
 	 */
 	public void addRaceToTournament() {
 		System.out.println("============================");
-		System.out.println("= Aadir carrera al torneo =");
+		System.out.println("= Añadir carrera al torneo =");
 		System.out.println("============================");
 		System.out.println("Selecciona el torneo: ");
 		int[] selected = Utils.showAndSelectFromList(this.getTournamentList(), false);
 		Tournament t = this.getTournamentList().get(selected[0]);
 		this.addRaceToTournament(t);
+		this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, selected[0]);
 
 	}
 
 	/**
-	 * Aade al torneo pasado por parmetro la carrera seleccionada de la lista
+	 * Añade al torneo pasado por parámetro la carrera seleccionada de la lista
 	 * de carreras disponibles
 	 *
 	 * @param t
 	 *            El torneo seleccionado
 	 */
 	public void addRaceToTournament(Tournament t) {
-		System.out.println("Selecciona las carreras que se le aadirn: ");
+		System.out.println("Selecciona las carreras que se le añadirán: ");
 		int[] selectedRaces = Utils.showAndSelectFromList(this.getRaceList(), true, true, t.getRaceList());
 		for (int i = 0; i < selectedRaces.length; i++) {
 			Race race = this.getRaceList().get(selectedRaces[i]).clone();
@@ -186,55 +234,166 @@ public class Control {
 	}
 
 	/**
-	 * Crea un nuevo torneo y lo aade a la lista de torneos disponibles
+	 * Crea un nuevo torneo y lo añade a la lista de torneos disponibles
 	 */
 	public void addTournamentToList() {
 		System.out.println("=================");
-		System.out.println("= Aadir Torneo =");
+		System.out.println("= Añadir Torneo =");
 		System.out.println("=================");
 		String name = Input.string("Introduce el nombre del torneo: ");
 		Tournament t = new Tournament(name);
 		this.addRaceToTournament(t);
 		this.getTournamentList().add(t);
+		this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, this.getTournamentList().size() - 1);
 	}
 
 	/**
-	 * Exporta todos los datos de la aplicacin a un formato {@link JSONObject}
-	 * a un fichero concreto
-	 *
-	 * @param f
-	 *            El fichero a que se va a exportar
+	 * Empieza a agrupar los cambios que se guardan en el diario, para
+	 * guardarlos todos juntos como un solo cambio y con una sola
+	 * sincronización al llamar a {@link #endJournalBatch()}. Se usa al
+	 * importar, que puede cambiar muchos objetos. Los grupos no se pueden
+	 * anidar
+	 */
+	public void beginJournalBatch() {
+		this.journalBatch = new ArrayList<>();
+	}
+
+	/**
+	 * Cierra el diario de cambios, si está abierto
+	 */
+	public void closeJournal() {
+		if (this.getJournal() != null) {
+			try {
+				this.getJournal().close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			this.journal = null;
+		}
+	}
+
+	/**
+	 * Guarda en el diario como un solo cambio los cambios agrupados desde
+	 * {@link #beginJournalBatch()}. Al volver a aplicarlo al arrancar se
+	 * aplican todos o, si no llegó a escribirse, ninguno
+	 */
+	public void endJournalBatch() {
+		List<String> batch = this.journalBatch;
+		this.journalBatch = null;
+		if ((batch == null) || batch.isEmpty()) {
+			return;
+		}
+		StringBuilder entry = new StringBuilder();
+		entry.append("{\"").append(ChangeJournal.OPERATION).append("\":\"").append(ChangeJournal.BATCH);
+		entry.append("\",\"").append(ChangeJournal.CHANGES).append("\":[");
+		for (int i = 0; i < batch.size(); i++) {
+			if (i > 0) {
+				entry.append(',');
+			}
+			entry.append(batch.get(i));
+		}
+		entry.append("]}");
+		this.recordEntry(entry.toString());
+	}
+
+	/**
+	 * Exporta todos los datos de la aplicación en formato JSON al fichero
+	 * ".appData.json", escribiéndolos directamente en el fichero, y escribe
+	 * también su copia binaria en {@link #SNAPSHOT}. El fichero JSON se
+	 * escribe en formato normalizado, con cada coche una sola vez, primero en
+	 * un fichero temporal que después sustituye al anterior. Sólo cuando se
+	 * han escrito los dos ficheros, que incluyen todos los cambios, se vacía
+	 * el {@link ChangeJournal}; si falla alguno se conservan el diario y los
+	 * ficheros anteriores que no se hayan sustituido
 	 */
 	public void exportAppData() {
-		ProgramExporter.baseSkeletonToExport(this.exportAppDataToString(), new File(".appData.json"));
+		if (this.getJournal() != null) {
+			this.getJournal().awaitCompaction();
+		}
+		File json = new File(".appData.json");
+		File temporary = new File(".appData.json.tmp");
+		try {
+			this.exportAppDataToFile(temporary, true);
+			Files.move(temporary.toPath(), json.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			AppSnapshot.write(this, new File(Control.SNAPSHOT));
+			if (this.getJournal() != null) {
+				this.getJournal().checkpoint();
+			}
+		} catch (IOException e) {
+			System.err.println("No se han podido guardar los datos, los cambios se conservan en \"" + Control.JOURNAL + "\": " + e.getMessage());
+		}
 		System.out.println("Programa finalizado.");
 	}
 
 	/**
-	 * Exporta los datos de la aplicacin a un fichero especfico
+	 * Escribe todos los datos de la aplicación en formato JSON directamente en
+	 * un fichero, sin construir antes los {@link JSONObject} ni la cadena
+	 * completa
+	 *
+	 * @param f
+	 *            El fichero al que se va a exportar
+	 * @throws IOException
+	 *             Si no se puede escribir el fichero
+	 */
+	public void exportAppDataToFile(File f) throws IOException {
+		this.exportAppDataToFile(f, false);
+	}
+
+	/**
+	 * Escribe todos los datos de la aplicación en formato JSON directamente en
+	 * un fichero, normal o normalizado
+	 *
+	 * @param f
+	 *            El fichero al que se va a exportar
+	 * @param normalized
+	 *            <code>true</code> para escribir la tabla de coches y
+	 *            referirse a ellos por su identificador, como en
+	 *            {@link #writeNormalizedAppDataTo(JsonStreamWriter)}
+	 * @throws IOException
+	 *             Si no se puede escribir el fichero
+	 */
+	public void exportAppDataToFile(File f, boolean normalized) throws IOException {
+		try (JsonStreamWriter writer = ProgramExporter.openJsonWriter(f)) {
+			if (normalized) {
+				this.writeNormalizedAppDataTo(writer);
+			} else {
+				this.writeAppDataTo(writer);
+			}
+		}
+	}
+
+	/**
+	 * Exporta los datos de la aplicación a un fichero específico
 	 */
 	public void exportAppDataToFile() {
 		String filename = Input.string("Introduce el nombre del fichero para exportar: ");
 		if (filename.equals(".appData.json")) {
 			filename = "appData.json";
 		}
-		ProgramExporter.baseSkeletonToExport(this.exportAppDataToString(), new File(filename));
+		String normalized = Input.string("¿Exportar en formato normalizado, con cada coche una sola vez? (S/N): ");
+		try {
+			this.exportAppDataToFile(new File(filename), normalized.equalsIgnoreCase("S"));
+		} catch (IOException e) {
+			System.err.println("No se ha podido escribir el fichero \"" + filename + "\": " + e.getMessage());
+		}
 		System.out.println("Programa finalizado.");
 	}
 
 	/**
 	 * Crea un {@link String} con el {@link JSONObject} que se se obtiene al
-	 * exportar toda la informacin de la aplicacin
+	 * exportar toda la información de la aplicación
 	 *
-	 * @return Un {@link String} del {@link JSONObject} de la informacin de
-	 *         toda la aplicacin
+	 * @return Un {@link String} del {@link JSONObject} de la información de
+	 *         toda la aplicación
 	 */
 	public String exportAppDataToString() {
-		JSONObject obj = new JSONObject();
-		obj.put(Control.GARAGES, this.exportGaragesArray());
-		obj.put(Control.RACES, this.exportRacesArray());
-		obj.put(Control.TOURNAMENT, this.exportTournamentArray());
-		return obj.toJSONString();
+		StringWriter string = new StringWriter();
+		try {
+			this.writeAppDataTo(new JsonStreamWriter(string));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return string.toString();
 	}
 
 	/**
@@ -258,15 +417,20 @@ public class Control {
 		if (filename.equals(".appData.json")) {
 			filename = "appData.json";
 		}
-		JSONObject exportedObject = ProgramExporter.exportArrayToObject(Control.GARAGES, this.exportGaragesArray());
-		ProgramExporter.baseSkeletonToExport(exportedObject.toJSONString(), new File(filename));
+		try (JsonStreamWriter writer = ProgramExporter.openJsonWriter(new File(filename))) {
+			writer.beginObject();
+			this.writeGaragesTo(writer);
+			writer.endObject();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/**
 	 * Exporta los datos de las carreras, con los garajes y coches que
 	 * participan en ella en un objeto {@link JSONArray}
 	 *
-	 * @return El {@link JSONArray} con la informacin de las carreras
+	 * @return El {@link JSONArray} con la información de las carreras
 	 */
 	public JSONArray exportRacesArray() {
 		JSONArray list = new JSONArray();
@@ -285,15 +449,20 @@ public class Control {
 		if (filename.equals(".appData.json")) {
 			filename = "appData.json";
 		}
-		JSONObject exportedObject = ProgramExporter.exportArrayToObject(Control.RACES, this.exportRacesArray());
-		ProgramExporter.baseSkeletonToExport(exportedObject.toJSONString(), new File(filename));
+		try (JsonStreamWriter writer = ProgramExporter.openJsonWriter(new File(filename))) {
+			writer.beginObject();
+			this.writeRacesTo(writer);
+			writer.endObject();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	/**
 	 * Exporta los datos de los torneos, con las carreras, garajes y coche que
 	 * participan en ella en un formato {@link JSONArray}
 	 *
-	 * @return El {@link JSONArray} que contiene la informacin de los torneos
+	 * @return El {@link JSONArray} que contiene la información de los torneos
 	 */
 	public JSONArray exportTournamentArray() {
 		JSONArray list = new JSONArray();
@@ -312,26 +481,52 @@ public class Control {
 		if (filename.equals(".appData.json")) {
 			filename = "appData.json";
 		}
-		JSONObject exportedObject = ProgramExporter.exportArrayToObject(Control.TOURNAMENT, this.exportTournamentArray());
-		ProgramExporter.baseSkeletonToExport(exportedObject.toJSONString(), new File(filename));
+		try (JsonStreamWriter writer = ProgramExporter.openJsonWriter(new File(filename))) {
+			writer.beginObject();
+			this.writeTournamentsTo(writer);
+			writer.endObject();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
 
+	/**
+	 * Simula muchas veces las carreras pendientes del torneo que se seleccione
+	 * mediante un {@link TournamentForecast}, usando todos los procesadores
+	 * disponibles, y muestra la probabilidad de cada coche de ganar el torneo
+	 */
+	public void forecastSelectedTournament() {
+		System.out.println("==========================");
+		System.out.println("= Pronóstico de un torneo =");
+		System.out.println("==========================");
+		System.out.println("");
+		int[] selected = Utils.showAndSelectFromList(this.getTournamentList(), true);
+		if (selected[0] >= 0) {
+			Tournament t = this.getTournamentList().get(selected[0]);
+			if (t.getTournamentCarList().isEmpty()) {
+				System.out.println("El torneo no tiene coches registrados");
+			} else {
+				int iterations = Input.integer("Introduce el número de simulaciones: ");
+				if (iterations > 0) {
+					TournamentForecast forecast = new TournamentForecast(t);
+					forecast.run(iterations, Runtime.getRuntime().availableProcessors(), t.getRandomSource().nextLong());
+					System.out.println(forecast.getSummary());
+				}
+			}
+			String toRet = Input.string("Pulse \"Enter\" para continuar...");
+		}
 	}
 
 	/**
-	 * Devuelve el {@link Garage} de la lista de {@link #garageList} pasndole
-	 * por parmetro el nombre del garaje
+	 * Devuelve el {@link Garage} de la lista de {@link #garageList} pasándole
+	 * por parámetro el nombre del garaje
 	 *
 	 * @param name
 	 *            El nombre del garaje
-	 * @return El garaje cuyo nombre coincide con el parmetro de entrada
+	 * @return El garaje cuyo nombre coincide con el parámetro de entrada
 	 */
 	public Garage getGarageFromList(String name) {
-		for (Garage g : this.getGarageList()) {
-			if (g.getName().equalsIgnoreCase(name)) {
-				return g;
-			}
-		}
-		return null;
+		return this.garageList.find(new Garage(name));
 	}
 
 	/**
@@ -343,6 +538,27 @@ public class Control {
 		return this.garageList;
 	}
 
+	/**
+	 * Devuelve el diario de cambios
+	 *
+	 * @return El diario de cambios, o <code>null</code> si no está abierto
+	 */
+	public ChangeJournal getJournal() {
+		return this.journal;
+	}
+
+	/**
+	 * Devuelve la secuencia del último cambio guardado en el diario
+	 *
+	 * @return La secuencia, o 0 si el diario no está abierto
+	 */
+	public long getJournalSequence() {
+		if (this.getJournal() == null) {
+			return 0;
+		}
+		return this.getJournal().getSequence();
+	}
+
 	/**
 	 * Devuelve la lista de carreras
 	 *
@@ -362,39 +578,105 @@ public class Control {
 	}
 
 	/**
-	 * Importa todos los datos de una aplicacin de un formato JSON
+	 * Importa todos los datos de una aplicación. Si la copia binaria
+	 * {@link #SNAPSHOT} es más reciente que ".appData.json" se carga la copia,
+	 * que es mucho más rápida porque sólo lee los nombres y deja el resto de
+	 * cada objeto para cuando se acceda a él; si no existe o no se puede leer
+	 * se importa el fichero JSON. Después se aplican los cambios del
+	 * {@link ChangeJournal} que no incluyan y se abre el diario para guardar
+	 * los siguientes. Si el diario está dañado se lanza una
+	 * {@link IllegalStateException} sin modificarlo
 	 *
 	 * @throws ParseException
 	 * @throws IOException
 	 * @throws FileNotFoundException
 	 */
 	public void importAppData() throws FileNotFoundException, IOException, ParseException {
-		this.importAppDataFromFile(".appData.json");
+		File snapshot = new File(Control.SNAPSHOT);
+		if (AppSnapshot.isFresh(snapshot, new File(".appData.json"))) {
+			long sequence;
+			try {
+				sequence = AppSnapshot.read(this, snapshot);
+			} catch (IOException e) {
+				System.err.println("No se ha podido leer el fichero \"" + Control.SNAPSHOT + "\", se cargará \".appData.json\"");
+				this.getGarageList().clear();
+				this.getRaceList().clear();
+				this.getTournamentList().clear();
+				sequence = -1;
+			}
+			if (sequence >= 0) {
+				this.openJournal(sequence);
+				return;
+			}
+		}
+		this.openJournal(this.importFromFile(".appData.json"));
 	}
 
 	/**
-	 * Importa toda la informacin de la aplicacin a travs de un
-	 * {@link String}, que es la representacin de un {@link JSONObject} con la
-	 * informacin de la aplicacin
+	 * Importa toda la información de la aplicación de un fichero JSON. El
+	 * fichero se lee por eventos con un {@link AppDataStreamReader}, sin
+	 * construir el árbol completo de {@link JSONObject}
 	 *
 	 * @param string
-	 *            Un {@link String}, representacin de un {@link JSONObject}
+	 *            El nombre del fichero, o una cadena vacía para pedirlo al
+	 *            usuario
 	 */
 	public void importAppDataFromFile(String string) {
+		if (string.isEmpty()) {
+			string = Input.string("Introduce el nombre del fichero para importar: ");
+		}
+		this.importFromFile(string);
+	}
+
+	/**
+	 * Importa los garajes, carreras y torneos que contenga un fichero JSON,
+	 * leyéndolo por eventos con un {@link AppDataStreamReader}
+	 *
+	 * @param filename
+	 *            El nombre del fichero
+	 * @return La secuencia del {@link ChangeJournal} indicada en el fichero,
+	 *         o 0 si no la indica o no se ha podido leer
+	 */
+	public long importFromFile(String filename) {
+		return this.importFromFile(filename, Control.GARAGES, Control.RACES, Control.TOURNAMENT);
+	}
+
+	/**
+	 * Importa sólo las secciones indicadas de un fichero JSON, leyéndolo por
+	 * eventos con un {@link AppDataStreamReader}. Si el fichero no se puede
+	 * leer completo no se importa nada
+	 *
+	 * @param filename
+	 *            El nombre del fichero
+	 * @param sections
+	 *            Las secciones que se importan: {@link #GARAGES},
+	 *            {@link #RACES} o {@link #TOURNAMENT}
+	 * @return La secuencia del {@link ChangeJournal} indicada en el fichero,
+	 *         o 0 si no la indica o no se ha podido leer
+	 */
+	public long importFromFile(String filename, String... sections) {
 		try {
-			if (string.isEmpty()) {
-				string = Input.string("Introduce el nombre del fichero para importar: ");
-			}
-			JSONObject appData = (JSONObject) ProgramExporter.getParser().parse(new FileReader(string));
-			this.importGarageData(appData);
-			this.importRaceData(appData);
-			this.importTournamentData(appData);
+			return new AppDataStreamReader(this, sections).read(filename);
 		} catch (FileNotFoundException e) {
-			System.err.println("No se ha podido encontrar el fichero \"" + string + "\" para cargar la informacin previa");
+			System.err.println("No se ha podido encontrar el fichero \"" + filename + "\" para cargar la información previa");
 		} catch (IOException e) {
-			System.err.println("Existin un error mientras se lea el fichero \"" + string + "\" para cargar la informacin previa");
+			System.err.println("Existión un error mientras se leía el fichero \"" + filename + "\" para cargar la información previa");
 		} catch (ParseException e) {
-			System.err.println("No se ha podido leer el fichero \"" + string + "\" para cargar la informacin previa");
+			System.err.println("No se ha podido leer el fichero \"" + filename + "\" para cargar la información previa");
+		}
+		return 0;
+	}
+
+	/**
+	 * Añade un garaje importado a la lista de garajes, si no existe ya
+	 *
+	 * @param g
+	 *            El garaje importado
+	 */
+	public void importGarage(Garage g) {
+		if (!this.getGarageList().contains(g)) {
+			this.getGarageList().add(g);
+			this.recordChange(ChangeJournal.PUT, Control.GARAGES, this.getGarageList().size() - 1);
 		}
 	}
 
@@ -403,101 +685,150 @@ public class Control {
 	 * {@link JSONObject}
 	 *
 	 * @param appData
-	 *            el {@link JSONObject} que contiene la informacin de los
+	 *            el {@link JSONObject} que contiene la información de los
 	 *            garages
 	 */
 	public void importGarageData(JSONObject appData) {
+		IdentityMap identities = new IdentityMap(this);
 		JSONArray garagesList = (JSONArray) appData.get(Control.GARAGES);
-		for (Object obj : garagesList) {
-			Garage g = Garage.importGarageFromJSONObject((JSONObject) obj);
-			if (!this.getGarageList().contains(g)) {
-				this.getGarageList().add(g);
+		this.beginJournalBatch();
+		try {
+			for (Object obj : garagesList) {
+				this.importGarage(identities.garage(Garage.importGarageFromJSONObject((JSONObject) obj, identities)));
 			}
+		} finally {
+			this.endJournalBatch();
 		}
 	}
 
-
 	/**
 	 * Importa los datos de los garajes y los coches de un fichero que se le
 	 * indica
 	 */
 	public void importGarageDataFromFile() {
-		String filename = "";
-		try {
-			filename = Input.string("Introduce el nombre del fichero para importar: ");
-			JSONObject garageData = (JSONObject) ProgramExporter.getParser().parse(new FileReader(filename));
-			this.importGarageData(garageData);
-		} catch (FileNotFoundException e) {
-			System.err.println("No se ha podido encontrar el fichero \"" + filename + "\" para cargar la informacin previa");
-		} catch (IOException e) {
-			System.err.println("Existin un error mientras se lea el fichero \"" + filename + "\" para cargar la informacin previa");
-		} catch (ParseException e) {
-			System.err.println("No se ha podido leer el fichero \"" + filename + "\" para cargar la informacin previa");
-		}
+		String filename = Input.string("Introduce el nombre del fichero para importar: ");
+		this.importFromFile(filename, Control.GARAGES);
 	}
 
 	/**
-	 * Importa todos los datos de las carreras de un {@link JSONObject} que se
-	 * pasa por parmetro
+	 * Añade una carrera importada a la lista de carreras, si no existe ya.
+	 * Los garajes de la carrera que no existan se añaden a la lista de
+	 * garajes, y sus coches participantes se registran en el garaje
+	 * correspondiente
 	 *
-	 * @param raceData
-	 *            Un {@link JSONObject} con informacin sobre las carreras
+	 * @param r
+	 *            La carrera importada
 	 */
-	public void importRaceData(JSONObject raceData) {
-		JSONArray racesList = (JSONArray) raceData.get(Control.RACES);
-		for (Object obj : racesList) {
-			Race r = Race.importRace((JSONObject) obj);
-			for (Garage g : r.getGarageList()) {
-				if (!this.getGarageList().contains(g)) {
-					this.getGarageList().add(g);
-				}
+	public void importRace(Race r) {
+		this.importRace(r, new IdentityMap(this));
+	}
+
+	/**
+	 * Añade una carrera importada a la lista de carreras, si no existe ya,
+	 * localizando sus garajes con el mapa de identidad de la importación en
+	 * lugar de recorrer la lista de garajes. Los garajes de la carrera que no
+	 * existan se añaden a la lista de garajes y al mapa, y sus coches
+	 * participantes se registran en el garaje correspondiente. En el diario
+	 * se guarda cada garaje nuevo completo, pero de los que ya existían sólo
+	 * los coches añadidos
+	 *
+	 * @param r
+	 *            La carrera importada
+	 * @param identities
+	 *            El mapa de identidad de la importación, con todos los
+	 *            garajes de la lista de garajes
+	 */
+	public void importRace(Race r, IdentityMap identities) {
+		for (Garage g : r.getGarageList()) {
+			boolean added = false;
+			Garage garage = identities.findGarage(g.getName());
+			if (garage == null) {
+				this.getGarageList().add(g);
+				garage = identities.garage(g);
+				added = true;
+			}
 
-				for (ScoreCar sc : r.getCarList()) {
-					if (sc.getGarage().equalsIgnoreCase(g.getName())) {
-						Garage garage = this.getGarageFromList(g.getName());
-						if (!garage.getGarageCarList().contains(sc)) {
-							garage.registerCarToGarage(sc);
+			int index = -1;
+			for (ScoreCar sc : r.getCarList()) {
+				if (sc.getGarage().equalsIgnoreCase(g.getName())) {
+					if (!garage.getGarageCarList().contains(sc)) {
+						garage.registerCarToGarage(sc);
+						if (!added) {
+							if (index < 0) {
+								index = this.getGarageList().indexOf(garage);
+							}
+							this.recordCarChange(ChangeJournal.ADD_CAR, index, garage.getGarageCarList().size() - 1);
 						}
 					}
 				}
 			}
-			if (!this.getRaceList().contains(r)) {
-				this.getRaceList().add(r);
+			if (added) {
+				this.recordChange(ChangeJournal.PUT, Control.GARAGES, this.getGarageList().indexOf(garage));
 			}
 		}
+		if (!this.getRaceList().contains(r)) {
+			this.getRaceList().add(r);
+			this.recordChange(ChangeJournal.PUT, Control.RACES, this.getRaceList().size() - 1);
+		}
+	}
+
+	/**
+	 * Importa todos los datos de las carreras de un {@link JSONObject} que se
+	 * pasa por parámetro
+	 *
+	 * @param raceData
+	 *            Un {@link JSONObject} con información sobre las carreras
+	 */
+	public void importRaceData(JSONObject raceData) {
+		IdentityMap identities = new IdentityMap(this);
+		JSONArray racesList = (JSONArray) raceData.get(Control.RACES);
+		this.beginJournalBatch();
+		try {
+			for (Object obj : racesList) {
+				this.importRace(Race.importRace((JSONObject) obj, identities), identities);
+			}
+		} finally {
+			this.endJournalBatch();
+		}
 	}
 
 	/**
 	 * Importa los datos de las carreras de un fichero que se le indica
 	 */
 	public void importRacesDataFromFile() {
-		String filename = "";
-		try {
-			filename = Input.string("Introduce el nombre del fichero para importar: ");
-			JSONObject raceData = (JSONObject) ProgramExporter.getParser().parse(new FileReader(filename));
-			this.importRaceData(raceData);
-		} catch (FileNotFoundException e) {
-			System.err.println("No se ha podido encontrar el fichero \"" + filename + "\" para cargar la informacin previa");
-		} catch (IOException e) {
-			System.err.println("Existin un error mientras se lea el fichero \"" + filename + "\" para cargar la informacin previa");
-		} catch (ParseException e) {
-			System.err.println("No se ha podido leer el fichero \"" + filename + "\" para cargar la informacin previa");
+		String filename = Input.string("Introduce el nombre del fichero para importar: ");
+		this.importFromFile(filename, Control.RACES);
+	}
+
+	/**
+	 * Añade un torneo importado a la lista de torneos, si no existe ya
+	 *
+	 * @param t
+	 *            El torneo importado
+	 */
+	public void importTournament(Tournament t) {
+		if (!this.getTournamentList().contains(t)) {
+			this.getTournamentList().add(t);
+			this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, this.getTournamentList().size() - 1);
 		}
 	}
 
 	/**
-	 * Importa los torneos de un {@link JSONObject} pasado por parmetro
+	 * Importa los torneos de un {@link JSONObject} pasado por parámetro
 	 *
 	 * @param tournament
-	 *            un {@link JSONObject} con la informacin de todos los torneos
+	 *            un {@link JSONObject} con la información de todos los torneos
 	 */
 	public void importTournamentData(JSONObject tournamentData) {
+		IdentityMap identities = new IdentityMap(this);
 		JSONArray tournamentList = (JSONArray) tournamentData.get(Control.TOURNAMENT);
-		for (Object obj : tournamentList) {
-			Tournament t = Tournament.importTournament((JSONObject) obj);
-			if (!this.getTournamentList().contains(t)) {
-				this.getTournamentList().add(t);
+		this.beginJournalBatch();
+		try {
+			for (Object obj : tournamentList) {
+				this.importTournament(Tournament.importTournament((JSONObject) obj, identities));
 			}
+		} finally {
+			this.endJournalBatch();
 		}
 	}
 
@@ -505,18 +836,8 @@ public class Control {
 	 * Importa los datos de los torneos de un fichero que se le indica
 	 */
 	public void importTournamentDataFromFile() {
-		String filename = "";
-		try {
-			filename = Input.string("Introduce el nombre del fichero para importar: ");
-			JSONObject tournament = (JSONObject) ProgramExporter.getParser().parse(new FileReader(filename));
-			this.importTournamentData(tournament);
-		} catch (FileNotFoundException e) {
-			System.err.println("No se ha podido encontrar el fichero \"" + filename + "\" para cargar la informacin previa");
-		} catch (IOException e) {
-			System.err.println("Existin un error mientras se lea el fichero \"" + filename + "\" para cargar la informacin previa");
-		} catch (ParseException e) {
-			System.err.println("No se ha podido leer el fichero \"" + filename + "\" para cargar la informacin previa");
-		}
+		String filename = Input.string("Introduce el nombre del fichero para importar: ");
+		this.importFromFile(filename, Control.TOURNAMENT);
 	}
 
 	/**
@@ -535,7 +856,7 @@ public class Control {
 	}
 
 	/**
-	 * Mtodo que permite listar los garages de la lista {@link #garageList}
+	 * Método que permite listar los garages de la lista {@link #garageList}
 	 */
 	public void listGarages() {
 		System.out.println("===================");
@@ -545,7 +866,7 @@ public class Control {
 	}
 
 	/**
-	 * Lista todas las carreras de aadidas de la lista {@link #raceList}
+	 * Lista todas las carreras de añadidas de la lista {@link #raceList}
 	 */
 	public void listRaces() {
 		System.out.println("====================");
@@ -556,7 +877,7 @@ public class Control {
 	}
 
 	/**
-	 * Mtodo que permite listar todos los torneos que existen en
+	 * Método que permite listar todos los torneos que existen en
 	 * {@link #tournamentList}
 	 */
 	public void listTournaments() {
@@ -567,12 +888,145 @@ public class Control {
 
 	}
 
+	/**
+	 * Aplica los cambios del diario {@link #JOURNAL} posteriores a la
+	 * secuencia de los datos cargados y lo abre para guardar los siguientes
+	 * cambios. Si no se puede abrir, los cambios sólo se guardan al salir
+	 *
+	 * @param sequence
+	 *            La secuencia del último cambio incluido en los datos cargados
+	 * @throws IllegalStateException
+	 *             Si no se puede leer el diario o está dañado, para no
+	 *             continuar con datos a medias ni sobrescribirlo al salir
+	 */
+	protected void openJournal(long sequence) {
+		ChangeJournal journal = new ChangeJournal(new File(Control.JOURNAL));
+		long validLength;
+		try {
+			validLength = journal.replay(this, sequence);
+		} catch (IOException e) {
+			throw new IllegalStateException("No se ha podido aplicar el fichero \"" + Control.JOURNAL + "\": " + e.getMessage(), e);
+		}
+		try {
+			journal.open(validLength);
+			this.journal = journal;
+		} catch (IOException e) {
+			System.err.println("No se ha podido abrir el fichero \"" + Control.JOURNAL + "\", los cambios sólo se guardarán al salir");
+		}
+	}
+
+	/**
+	 * Guarda en el diario, si está abierto, que se ha añadido o eliminado un
+	 * coche de un garaje, sin guardar el garaje completo
+	 *
+	 * @param operation
+	 *            {@link ChangeJournal#ADD_CAR} o
+	 *            {@link ChangeJournal#REMOVE_CAR}
+	 * @param index
+	 *            La posición del garaje en la lista de garajes
+	 * @param position
+	 *            La posición del coche añadido o eliminado en la lista de
+	 *            coches del garaje
+	 */
+	protected void recordCarChange(String operation, int index, int position) {
+		if (this.getJournal() == null) {
+			return;
+		}
+		StringWriter entry = new StringWriter();
+		try {
+			JsonStreamWriter writer = new JsonStreamWriter(entry);
+			writer.beginObject();
+			writer.name(ChangeJournal.OPERATION).value(operation);
+			writer.name(ChangeJournal.LIST).value(Control.GARAGES);
+			writer.name(ChangeJournal.INDEX).value(index);
+			writer.name(ChangeJournal.POSITION).value(position);
+			if (ChangeJournal.ADD_CAR.equals(operation)) {
+				writer.name(ChangeJournal.VALUE);
+				this.getGarageList().get(index).getGarageCarList().get(position).writeCarTo(writer);
+			}
+			writer.endObject();
+		} catch (IOException e) {
+			System.err.println("No se ha podido guardar el cambio en \"" + Control.JOURNAL + "\", se guardará al salir");
+			return;
+		}
+		this.recordEntry(entry.toString());
+	}
+
+	/**
+	 * Guarda un cambio en el diario, si está abierto. Una sustitución guarda
+	 * el garaje, carrera o torneo completo que ocupa la posición indicada, de
+	 * forma que al aplicarla se obtiene el mismo resultado aunque el cambio
+	 * dependa de elecciones aleatorias
+	 *
+	 * @param operation
+	 *            {@link ChangeJournal#PUT} o {@link ChangeJournal#REMOVE}
+	 * @param list
+	 *            {@link #GARAGES}, {@link #RACES} o {@link #TOURNAMENT}
+	 * @param index
+	 *            La posición en la lista del objeto modificado o eliminado
+	 */
+	protected void recordChange(String operation, String list, int index) {
+		if (this.getJournal() == null) {
+			return;
+		}
+		StringWriter entry = new StringWriter();
+		try {
+			JsonStreamWriter writer = new JsonStreamWriter(entry);
+			writer.beginObject();
+			writer.name(ChangeJournal.OPERATION).value(operation);
+			writer.name(ChangeJournal.LIST).value(list);
+			writer.name(ChangeJournal.INDEX).value(index);
+			if (ChangeJournal.PUT.equals(operation)) {
+				writer.name(ChangeJournal.VALUE);
+				if (Control.GARAGES.equals(list)) {
+					this.getGarageList().get(index).writeGarageWithCarsTo(writer);
+				} else if (Control.RACES.equals(list)) {
+					this.getRaceList().get(index).writeRaceWithGarageAndCarsTo(writer);
+				} else {
+					this.getTournamentList().get(index).writeTournamentTo(writer);
+				}
+			}
+			writer.endObject();
+		} catch (IOException e) {
+			System.err.println("No se ha podido guardar el cambio en \"" + Control.JOURNAL + "\", se guardará al salir");
+			return;
+		}
+		this.recordEntry(entry.toString());
+	}
+
+	/**
+	 * Guarda un cambio ya codificado en el diario. Si se están agrupando los
+	 * cambios se añade al grupo; si no, se espera a que esté sincronizado con
+	 * el disco y, si el diario crece demasiado, se compacta escribiendo una
+	 * nueva copia binaria en segundo plano. En este hilo sólo se toma una
+	 * {@link AppSnapshot.Image}, sin cargar los datos que siguen en la copia
+	 * binaria anterior; se codifica en el hilo de la compactación
+	 *
+	 * @param entry
+	 *            El cambio, como un objeto JSON en una sola línea
+	 */
+	protected void recordEntry(String entry) {
+		if (this.journalBatch != null) {
+			this.journalBatch.add(entry);
+			return;
+		}
+		try {
+			this.getJournal().append(entry);
+			this.getJournal().sync();
+			if (this.getJournal().needsCompaction()) {
+				this.getJournal().compact(new AppSnapshot.Image(this), new File(Control.SNAPSHOT));
+			}
+		} catch (IOException | IllegalStateException e) {
+			System.err.println("No se ha podido guardar el cambio en \"" + Control.JOURNAL + "\", se guardará al salir");
+		}
+	}
+
 	/**
 	 * Registra de manera aleatoria los coches de los garajes en la lista de
-	 * coches de un torneo. Participarn un coche de cada garaje, a no ser que
-	 * slo exista un garaje, en cuyo caso participarian todos los coches de ese
-	 * garaje. A continuacin, se registra cada garaje en una carrera, y se le
-	 * aade a la carrera los mismos coches que participan en el torneo
+	 * coches de un torneo. Participarán un coche de cada garaje, a no ser que
+	 * sólo exista un garaje, en cuyo caso participarian todos los coches de ese
+	 * garaje. A continuación, se registra cada garaje en una carrera, y se le
+	 * añade a la carrera los mismos coches que participan en el torneo
 	 */
 	public void registerCarsFromGarageToTornament() {
 		System.out.println("================================");
@@ -595,11 +1049,12 @@ public class Control {
 		for (Race r : t.getRaceList()) {
 			r.registerCars(t.getTournamentCarList());
 		}
+		this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, selected[0]);
 
 	}
 
 	/**
-	 * Permite aadir un coche a un garaje existente
+	 * Permite añadir un coche a un garaje existente
 	 */
 	public void removeCarFromGarage() {
 		System.out.println("==================");
@@ -611,6 +1066,7 @@ public class Control {
 			int[] selectedCar = Utils.showAndSelectFromList(this.getGarageList().get(selected[0]).getGarageCarList(), true);
 			if (!(selectedCar[0] < 0)) {
 				this.getGarageList().get(selected[0]).getGarageCarList().remove(selectedCar[0]);
+				this.recordCarChange(ChangeJournal.REMOVE_CAR, selected[0], selectedCar[0]);
 			}
 		}
 
@@ -627,6 +1083,7 @@ public class Control {
 		int selected[] = Utils.showAndSelectFromList(this.getGarageList(), true);
 		if (!(selected[0] < 0)) {
 			this.getGarageList().remove(selected[0]);
+			this.recordChange(ChangeJournal.REMOVE, Control.GARAGES, selected[0]);
 		}
 	}
 
@@ -646,6 +1103,7 @@ public class Control {
 				r.getGarageList().remove(selectedGarages[i]);
 			}
 			r.registerCars();
+			this.recordChange(ChangeJournal.PUT, Control.RACES, selected[0]);
 		}
 	}
 
@@ -664,6 +1122,7 @@ public class Control {
 			for (int i = 0; i < selectedGarages.length; i++) {
 				t.getGarageList().remove(selectedGarages[i]);
 			}
+			this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, selected[0]);
 		}
 	}
 
@@ -678,6 +1137,7 @@ public class Control {
 		int selected[] = Utils.showAndSelectFromList(this.getRaceList(), true);
 		if (!(selected[0] < 0)) {
 			this.getRaceList().remove(selected[0]);
+			this.recordChange(ChangeJournal.REMOVE, Control.RACES, selected[0]);
 		}
 	}
 
@@ -694,6 +1154,7 @@ public class Control {
 			Tournament t = this.getTournamentList().get(selected[0]);
 			int[] selectedRace = Utils.showAndSelectFromList(t.getRaceList(), true, false);
 			t.getRaceList().remove(selectedRace[0]);
+			this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, selected[0]);
 
 		}
 
@@ -710,51 +1171,145 @@ public class Control {
 		int selected[] = Utils.showAndSelectFromList(this.getTournamentList(), true);
 		if (!(selected[0] < 0)) {
 			this.getTournamentList().remove(selected[0]);
+			this.recordChange(ChangeJournal.REMOVE, Control.TOURNAMENT, selected[0]);
 		}
 	}
 
 	/**
-	 * Establece la lista de garajes pasada por parmetro
+	 * Aplica un cambio leído del diario a las listas. Los garajes y coches del
+	 * cambio se resuelven con un {@link IdentityMap} del control, por lo que
+	 * las carreras y torneos repuestos usan los mismos objetos que la lista
+	 * de garajes, igual que tras una importación
+	 *
+	 * @param entry
+	 *            El cambio, con la operación, la lista, la posición y, si es
+	 *            una sustitución, el objeto completo; o un grupo de cambios
+	 */
+	protected void replayJournalEntry(JSONObject entry) {
+		String operation = (String) entry.get(ChangeJournal.OPERATION);
+		if (ChangeJournal.BATCH.equals(operation)) {
+			for (Object change : (JSONArray) entry.get(ChangeJournal.CHANGES)) {
+				this.replayJournalEntry((JSONObject) change);
+			}
+			return;
+		}
+		IdentityMap identities = new IdentityMap(this);
+		String list = (String) entry.get(ChangeJournal.LIST);
+		int index = ((Number) entry.get(ChangeJournal.INDEX)).intValue();
+		JSONObject value = (JSONObject) entry.get(ChangeJournal.VALUE);
+		if (ChangeJournal.ADD_CAR.equals(operation)) {
+			Garage g = this.getGarageList().get(index);
+			g.registerImportedCar(ScoreCar.importCarFromJson(value, identities));
+		} else if (ChangeJournal.REMOVE_CAR.equals(operation)) {
+			this.getGarageList().get(index).getGarageCarList().remove(((Number) entry.get(ChangeJournal.POSITION)).intValue());
+		} else if (Control.GARAGES.equals(list)) {
+			Garage g = null;
+			if (value != null) {
+				g = this.replayGarage(value, index, identities);
+			}
+			if (g != null) {
+				Control.replayListChange(this.getGarageList(), operation, index, g);
+			}
+		} else if (Control.RACES.equals(list)) {
+			Race r = null;
+			if (value != null) {
+				r = Race.importRace(value, identities);
+			}
+			Control.replayListChange(this.getRaceList(), operation, index, r);
+		} else if (Control.TOURNAMENT.equals(list)) {
+			Tournament t = null;
+			if (value != null) {
+				t = Tournament.importTournament(value, identities);
+			}
+			Control.replayListChange(this.getTournamentList(), operation, index, t);
+		}
+	}
+
+	/**
+	 * Repone un garaje completo del diario. Si en su posición ya hay un garaje
+	 * con el mismo nombre se sustituyen sus coches sin cambiar el objeto, para
+	 * que las carreras y torneos que lo usan sigan apuntando a él, y se
+	 * conservan los coches que ya tenía; si no, se devuelve el garaje nuevo
+	 * para ponerlo en la lista
+	 *
+	 * @param value
+	 *            El garaje guardado en el diario
+	 * @param index
+	 *            Su posición en la lista de garajes
+	 * @param identities
+	 *            El mapa de identidad del cambio
+	 * @return El garaje que hay que poner en la lista, o <code>null</code> si
+	 *         se ha actualizado el que ya estaba
+	 */
+	protected Garage replayGarage(JSONObject value, int index, IdentityMap identities) {
+		String name = (String) value.get(Garage.NAME);
+		if ((index >= this.getGarageList().size()) || !this.getGarageList().get(index).getName().equalsIgnoreCase(name)) {
+			return identities.garage(Garage.importGarageFromJSONObject(value, identities));
+		}
+		Garage g = this.getGarageList().get(index);
+		List<ScoreCar> cars = new ArrayList<>();
+		JSONArray carList = (JSONArray) value.get(Garage.CAR_LIST);
+		if (carList != null) {
+			for (Object car : carList) {
+				cars.add(ScoreCar.importCarFromJson((JSONObject) car, identities));
+			}
+		}
+		g.getGarageCarList().clear();
+		for (ScoreCar sc : cars) {
+			g.registerImportedCar(sc);
+		}
+		return null;
+	}
+
+	/**
+	 * Establece la lista de garajes pasada por parámetro, copiando sus
+	 * elementos en una lista indexada
 	 *
 	 * @param garageList
 	 *            La lista de garajes
 	 */
 	public void setGarageList(List<Garage> garageList) {
-		this.garageList = garageList;
+		this.garageList = new Registry<>(garageList);
 	}
 
 	/**
-	 * Establece la lista de carreras
+	 * Establece la lista de carreras, copiando sus elementos en una lista
+	 * indexada
 	 *
 	 * @param raceList
 	 *            La lista de carreras a establecer
 	 */
 	public void setRaceList(List<Race> raceList) {
-		this.raceList = raceList;
+		this.raceList = new Registry<>(raceList);
 	}
 
 	/**
-	 * Establece la lista de torneos disponibles
+	 * Establece la lista de torneos disponibles, copiando sus elementos en
+	 * una lista indexada
 	 *
 	 * @param tournamentList
 	 */
 	public void setTournamentList(List<Tournament> tournamentList) {
-		this.tournamentList = tournamentList;
+		this.tournamentList = new Registry<>(tournamentList);
 	}
 
 	/**
-	 * Muestra el men principal de la aplicacin, donde pueden gestionarse los
+	 * Muestra el menú principal de la aplicación, donde pueden gestionarse los
 	 * coches, garajes, carreras y torneos
 	 */
 	public void showMainMenu() {
 		try {
 			this.importAppData();
+		} catch (IllegalStateException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Se cierra el programa sin modificar los datos guardados");
+			return;
 		} catch (FileNotFoundException e) {
-			System.err.println("No se ha podido encontrar el fichero \".appData.json\" para cargar la informacin previa");
+			System.err.println("No se ha podido encontrar el fichero \".appData.json\" para cargar la información previa");
 		} catch (IOException e) {
-			System.err.println("Existin un error mientras se lea el fichero \".appData.json\" para cargar la informacin previa");
+			System.err.println("Existión un error mientras se leía el fichero \".appData.json\" para cargar la información previa");
 		} catch (ParseException e) {
-			System.err.println("No se ha podido leer el fichero \".appData.json\" para cargar la informacin previa");
+			System.err.println("No se ha podido leer el fichero \".appData.json\" para cargar la información previa");
 		}
 		int opt = -1;
 		do {
@@ -767,7 +1322,7 @@ public class Control {
 			System.out.println("4.- Exportar datos");
 			System.out.println("5.- Importar datos");
 			System.out.println("6.- Salir");
-			opt = Input.integer("\nIntroduce la opcin que desee: ");
+			opt = Input.integer("\nIntroduce la opción que desee: ");
 			System.out.println("\n");
 			switch (opt) {
 			case 1:
@@ -789,30 +1344,31 @@ public class Control {
 				this.exportAppData();
 				break;
 			default:
-				System.out.println("No existe esa opcin, seleccione otra.");
+				System.out.println("No existe esa opción, seleccione otra.");
 			}
 		} while (opt != 6);
+		this.closeJournal();
 	}
 
 	/**
-	 * Muestra un men para poder gestionar los coches y los garajes
+	 * Muestra un menú para poder gestionar los coches y los garajes
 	 */
 	public void showManageGaragesMenu() {
 		int opt = -1;
 		do {
 			System.out.println("===================");
-			System.out.println("= Gestin Garajes =");
+			System.out.println("= Gestión Garajes =");
 			System.out.println("===================\n");
 			System.out.println("1.- Listar garajes");
-			System.out.println("2.- Aadir garajes");
+			System.out.println("2.- Añadir garajes");
 			System.out.println("3.- Eliminar garajes");
 			System.out.println("4.- Listar coches de un garaje");
-			System.out.println("5.- Aadir coche a un garaje");
+			System.out.println("5.- Añadir coche a un garaje");
 			System.out.println("6.- Eliminar coche de un garaje");
 			System.out.println("7.- Exportar datos");
 			System.out.println("8.- Importar datos");
-			System.out.println("9.- Atrs");
-			opt = Input.integer("\nIntroduce la opcin que desee: ");
+			System.out.println("9.- Atrás");
+			opt = Input.integer("\nIntroduce la opción que desee: ");
 			System.out.println("\n");
 			switch (opt) {
 			case 1:
@@ -842,32 +1398,33 @@ public class Control {
 			case 9:
 				break;
 			default:
-				System.out.println("No existe esa opcin, seleccione otra.");
+				System.out.println("No existe esa opción, seleccione otra.");
 			}
 		} while (opt != 9);
 
 	}
 
 	/**
-	 * Muetsra el menu de gestin de carreras
+	 * Muetsra el menu de gestión de carreras
 	 */
 	public void showManagerRaceMenu() {
 		int opt = -1;
 		do {
 			System.out.println("====================");
-			System.out.println("= Gestin Carreras =");
+			System.out.println("= Gestión Carreras =");
 			System.out.println("====================\n");
 			System.out.println("1.- Listar carreras");
-			System.out.println("2.- Informacin de una carrera");
-			System.out.println("3.- Aadir carrera");
+			System.out.println("2.- Información de una carrera");
+			System.out.println("3.- Añadir carrera");
 			System.out.println("4.- Eliminar carrera");
 			System.out.println("5.- Agregar garaje a una carrera");
 			System.out.println("6.- Eliminar garaje de una carrera");
 			System.out.println("7.- Empezar carrera");
-			System.out.println("8.- Exportar datos");
-			System.out.println("9.- Importar datos");
-			System.out.println("10.- Atrs");
-			opt = Input.integer("\nIntroduce la opcin que desee: ");
+			System.out.println("8.- Simular carrera (Monte Carlo)");
+			System.out.println("9.- Exportar datos");
+			System.out.println("10.- Importar datos");
+			System.out.println("11.- Atrás");
+			opt = Input.integer("\nIntroduce la opción que desee: ");
 			System.out.println("\n");
 			switch (opt) {
 			case 1:
@@ -892,43 +1449,47 @@ public class Control {
 				this.startSelectedRace();
 				break;
 			case 8:
-				this.exportRacesDataToFile();
+				this.simulateSelectedRace();
 				break;
 			case 9:
-				this.importRacesDataFromFile();
+				this.exportRacesDataToFile();
 				break;
 			case 10:
+				this.importRacesDataFromFile();
+				break;
+			case 11:
 				break;
 			default:
-				System.out.println("No existe esa opcin, seleccione otra.");
+				System.out.println("No existe esa opción, seleccione otra.");
 			}
-		} while (opt != 10);
+		} while (opt != 11);
 
 	}
 
 	/**
-	 * Muestra un men para poder gestionar los torneos
+	 * Muestra un menú para poder gestionar los torneos
 	 */
 	public void showManagerTournamentMenu() {
 		int opt = -1;
 		do {
 			System.out.println("===================");
-			System.out.println("= Gestin Torneos =");
+			System.out.println("= Gestión Torneos =");
 			System.out.println("===================\n");
 			System.out.println("1.- Listar torneos");
-			System.out.println("2.- Informacin de un torneo");
-			System.out.println("3.- Aadir un torneo");
+			System.out.println("2.- Información de un torneo");
+			System.out.println("3.- Añadir un torneo");
 			System.out.println("4.- Eliminar un torneo");
-			System.out.println("5.- Aadir carrera al torneo");
+			System.out.println("5.- Añadir carrera al torneo");
 			System.out.println("6.- Eliminar carrera del torneo");
 			System.out.println("7.- Agregar garaje a un torneo");
 			System.out.println("8.- Eliminar garaje de un torneo");
 			System.out.println("9.- Registar coches de los garages en el torneo");
 			System.out.println("10.- Empezar torneo");
-			System.out.println("11.- Exportar datos");
-			System.out.println("12.- Importar datos");
-			System.out.println("13.- Atrs");
-			opt = Input.integer("\nIntroduce la opcin que desee: ");
+			System.out.println("11.- Pronóstico del torneo");
+			System.out.println("12.- Exportar datos");
+			System.out.println("13.- Importar datos");
+			System.out.println("14.- Atrás");
+			opt = Input.integer("\nIntroduce la opción que desee: ");
 			System.out.println("\n");
 			switch (opt) {
 			case 1:
@@ -962,17 +1523,20 @@ public class Control {
 				this.startSelectedTournament();
 				break;
 			case 11:
-				this.exportTournamentDataToFile();
+				this.forecastSelectedTournament();
 				break;
 			case 12:
-				this.importTournamentDataFromFile();
+				this.exportTournamentDataToFile();
 				break;
 			case 13:
+				this.importTournamentDataFromFile();
+				break;
+			case 14:
 				break;
 			default:
-				System.out.println("No existe esa opcin, seleccione otra.");
+				System.out.println("No existe esa opción, seleccione otra.");
 			}
-		} while (opt != 13);
+		} while (opt != 14);
 
 	}
 
@@ -1009,6 +1573,33 @@ public class Control {
 		}
 	}
 
+	/**
+	 * Simula muchas veces la carrera que se seleccione mediante una
+	 * {@link MonteCarloSimulation}, usando todos los procesadores disponibles,
+	 * y muestra la probabilidad de victoria y de podio de los coches
+	 */
+	public void simulateSelectedRace() {
+		System.out.println("========================");
+		System.out.println("= Simular una carrera =");
+		System.out.println("========================");
+		System.out.println("");
+		int[] selected = Utils.showAndSelectFromList(this.getRaceList(), true);
+		if (selected[0] >= 0) {
+			Race r = this.getRaceList().get(selected[0]);
+			if (r.getCarList().isEmpty()) {
+				System.out.println("La carrera no tiene coches registrados");
+			} else {
+				int iterations = Input.integer("Introduce el número de simulaciones: ");
+				if (iterations > 0) {
+					MonteCarloSimulation simulation = new MonteCarloSimulation(r);
+					simulation.run(iterations, Runtime.getRuntime().availableProcessors(), r.getRandomSource().nextLong());
+					System.out.println(simulation.getSummary());
+				}
+			}
+			String toRet = Input.string("Pulse \"Enter\" para continuar...");
+		}
+	}
+
 	/**
 	 * Comienza la carrera que se seleccione
 	 */
@@ -1022,6 +1613,7 @@ public class Control {
 			Race r = this.getRaceList().get(selected[0]);
 			r.resetCars();
 			r.startRace();
+			this.recordChange(ChangeJournal.PUT, Control.RACES, selected[0]);
 			System.out.println(r.getPodium());
 			String toRet = Input.string("Pulse \"Enter\" para continuar...");
 		}
@@ -1038,17 +1630,151 @@ public class Control {
 		int[] selected = Utils.showAndSelectFromList(this.getTournamentList(), true);
 		if (selected[0] >= 0) {
 			Tournament t = this.getTournamentList().get(selected[0]);
-			for (Race race : t.getRaceList()) {
-				race.startRace();
-				race.givePoints();
-				race.resetCars();
-			}
-			t.sortAndReverseListByPoints(t.getTournamentCarList());
+			t.startTournament(Runtime.getRuntime().availableProcessors());
+			this.recordChange(ChangeJournal.PUT, Control.TOURNAMENT, selected[0]);
 			System.out.println(t.getTournamentInfo());
 			String toRet = Input.string("Pulse \"Enter\" para continuar...");
 		}
 	}
 
+	/**
+	 * Escribe un objeto JSON con todos los datos de la aplicación en un
+	 * {@link JsonStreamWriter}, con las mismas claves que la importación
+	 *
+	 * @param writer
+	 *            El escritor en el que se escriben los datos
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeAppDataTo(JsonStreamWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name(Control.JOURNAL_SEQUENCE).value(this.getJournalSequence());
+		this.writeGaragesTo(writer);
+		this.writeRacesTo(writer);
+		this.writeTournamentsTo(writer);
+		writer.endObject();
+		writer.flush();
+	}
+
+	/**
+	 * Escribe la clave {@link #GARAGES} y la lista de garajes con sus coches
+	 * en el objeto abierto de un {@link JsonStreamWriter}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escriben los garajes
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeGaragesTo(JsonStreamWriter writer) throws IOException {
+		writer.name(Control.GARAGES).beginArray();
+		for (Garage g : this.getGarageList()) {
+			g.writeGarageWithCarsTo(writer);
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * Escribe un objeto JSON con todos los datos de la aplicación en formato
+	 * normalizado: primero la tabla {@link #CARS} con cada coche distinto una
+	 * sola vez, y después los garajes, carreras y torneos, que se refieren a
+	 * sus coches por su posición en la tabla y a los garajes por su nombre. La
+	 * importación reconoce este formato por la tabla de coches, que debe ir
+	 * antes que las listas que la usan
+	 *
+	 * @param writer
+	 *            El escritor en el que se escriben los datos
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeNormalizedAppDataTo(JsonStreamWriter writer) throws IOException {
+		CarTable cars = new CarTable();
+		cars.addAll(this);
+		writer.beginObject();
+		writer.name(Control.JOURNAL_SEQUENCE).value(this.getJournalSequence());
+		cars.writeTo(writer);
+
+		writer.name(Control.GARAGES).beginArray();
+		for (Garage g : this.getGarageList()) {
+			g.writeGarageWithCarIdsTo(writer, cars);
+		}
+		writer.endArray();
+
+		writer.name(Control.RACES).beginArray();
+		for (Race r : this.getRaceList()) {
+			r.writeRaceWithCarIdsTo(writer, cars);
+		}
+		writer.endArray();
+
+		writer.name(Control.TOURNAMENT).beginArray();
+		for (Tournament t : this.getTournamentList()) {
+			t.writeTournamentWithCarIdsTo(writer, cars);
+		}
+		writer.endArray();
+		writer.endObject();
+		writer.flush();
+	}
+
+	/**
+	 * Escribe la clave {@link #RACES} y la lista de carreras, con sus garajes
+	 * y coches participantes, en el objeto abierto de un
+	 * {@link JsonStreamWriter}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escriben las carreras
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeRacesTo(JsonStreamWriter writer) throws IOException {
+		writer.name(Control.RACES).beginArray();
+		for (Race r : this.getRaceList()) {
+			r.writeRaceWithGarageAndCarsTo(writer);
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * Escribe la clave {@link #TOURNAMENT} y la lista de torneos en el objeto
+	 * abierto de un {@link JsonStreamWriter}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escriben los torneos
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeTournamentsTo(JsonStreamWriter writer) throws IOException {
+		writer.name(Control.TOURNAMENT).beginArray();
+		for (Tournament t : this.getTournamentList()) {
+			t.writeTournamentTo(writer);
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * Aplica a una lista la sustitución o eliminación de la posición indicada.
+	 * Una sustitución en la posición siguiente a la última añade el objeto al
+	 * final
+	 *
+	 * @param list
+	 *            La lista
+	 * @param operation
+	 *            {@link ChangeJournal#PUT} o {@link ChangeJournal#REMOVE}
+	 * @param index
+	 *            La posición
+	 * @param value
+	 *            El objeto de una sustitución
+	 */
+	protected static <T> void replayListChange(List<T> list, String operation, int index, T value) {
+		if (ChangeJournal.REMOVE.equals(operation)) {
+			if (index < list.size()) {
+				list.remove(index);
+			}
+		} else if (index < list.size()) {
+			list.set(index, value);
+		} else {
+			list.add(value);
+		}
+	}
+
 	public static void main(String[] args) {
 		Control c = new Control();
 		c.showMainMenu();
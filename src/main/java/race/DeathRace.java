@@ -2,41 +2,56 @@ package race;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import utils.ProgramExporter;
-import utils.Utils;
 
 /**
- * Esta es una carrera de eliminacin, que extiende de la clase {@link Race}. La
- * carrera de eliminacin eliminar un corredor de la carrera por cada vuleta
- * que de a mayores de las iniciales. Ej: Si una carrera de elimnacin tiene 7
- * vueltas, todos los participantes darn 7 vueltas. En la 8 vuelta, se
- * eleiminar al coche que vaya en la ltima posicin, y as sucesivamente hasta
- * que slo quede 1
+ * Esta es una carrera de eliminación, que extiende de la clase {@link Race}. La
+ * carrera de eliminación eliminará un corredor de la carrera por cada vuleta
+ * que de a mayores de las iniciales. Ej: Si una carrera de elimnación tiene 7
+ * vueltas, todos los participantes darán 7 vueltas. En la 8ª vuelta, se
+ * eleiminará al coche que vaya en la última posición, y así sucesivamente hasta
+ * que sólo quede 1
  *
  */
 public class DeathRace extends Race {
 
 	/**
 	 * Lista de {@link ScoreCar} que contiene la lista de coches que quedan
-	 * participando en la carrera. De esta lista se eliminan los coches segn su
-	 * posicin
+	 * participando en la carrera. De esta lista se eliminan los coches según su
+	 * posición
 	 */
 	protected List<ScoreCar> deathList = new ArrayList<>();
 
+	/**
+	 * Variable que indica si la eliminación se realiza con un
+	 * {@link EliminationHeap} sobre un {@link RaceState}, en lugar de ordenar
+	 * la lista {@link #deathList} en cada vuelta
+	 */
+	protected boolean heapElimination = false;
+
 	/**
 	 * Variable que indica cuantas vueltas quedan hasta el final
 	 */
 	protected int lapsToStart;
 
 	/**
-	 * Contructor de una carrera de eliminacin
+	 * Variable que indica si en las vueltas de eliminación sólo circulan los
+	 * coches que siguen en la carrera. Los coches eliminados conservan la
+	 * distancia que tenían al ser eliminados
+	 */
+	protected boolean survivorsOnly = false;
+
+	/**
+	 * Contructor de una carrera de eliminación
 	 *
 	 * @param name
 	 *            El nombre de la carrera
 	 * @param lapsToStart
-	 *            Las vueltas iniciales antes de comenzar la eliminacin de
+	 *            Las vueltas iniciales antes de comenzar la eliminación de
 	 *            participantes
 	 */
 	public DeathRace(String name, int lapsToStart) {
@@ -55,9 +70,9 @@ public class DeathRace extends Race {
 	}
 
 	/**
-	 * Mtodo para obtener el nmero de vueltas iniciales
+	 * Método para obtener el número de vueltas iniciales
 	 *
-	 * @return Las vueltas iniciales antes de empezar el proceso de eliminacin
+	 * @return Las vueltas iniciales antes de empezar el proceso de eliminación
 	 */
 	public int getLapsToStart() {
 		return this.lapsToStart;
@@ -66,13 +81,8 @@ public class DeathRace extends Race {
 	@Override
 	public String getPodiumForTournament() {
 
-		int size = 3;
-
-		this.sortCarsByDistanceAndReverse();
-
-		if (this.getCarList().size() < size) {
-			size = this.getCarList().size();
-		}
+		RaceResult result = this.rankCars(Race.PODIUM_SIZE);
+		int size = Math.min(Race.PODIUM_SIZE, result.size());
 		StringBuilder builder = new StringBuilder();
 		builder.append("\t\tNombre: ");
 		builder.append(this.getName());
@@ -80,11 +90,11 @@ public class DeathRace extends Race {
 		builder.append("\t\tPodio: ");
 		builder.append("\n");
 		for (int i = 0; i < size; i++) {
-			ScoreCar sc = this.getCarList().get(i);
+			ScoreCar sc = result.getCar(i);
 			builder.append("\t\t\t");
-			builder.append(" ");
+			builder.append(" ");
 			builder.append(i + 1);
-			builder.append(" puesto: ");
+			builder.append("º puesto: ");
 			builder.append(sc.getDetails());
 			builder.append("\n");
 		}
@@ -92,19 +102,49 @@ public class DeathRace extends Race {
 
 	}
 
+	/**
+	 * Indica si la eliminación se realiza con un {@link EliminationHeap}
+	 *
+	 * @return <code>true</code> si la eliminación se realiza con un
+	 *         {@link EliminationHeap}, <code>false</code> en caso contrario
+	 */
+	public boolean isHeapElimination() {
+		return this.heapElimination;
+	}
+
+	/**
+	 * Indica si en las vueltas de eliminación sólo circulan los coches que
+	 * siguen en la carrera
+	 *
+	 * @return <code>true</code> si sólo circulan los coches que siguen en la
+	 *         carrera, <code>false</code> si circulan todos los coches
+	 */
+	public boolean isSurvivorsOnly() {
+		return this.survivorsOnly;
+	}
+
+	/**
+	 * Cada coche gana tantos puntos como coches hayan quedado por detrás de él
+	 */
 	@Override
-	public void givePoints() {
-		this.sortCarsByDistance(this.getCarList());
+	protected int pointsForPosition(int position, int carCount) {
+		return carCount - 1 - position;
+	}
 
-		for (int i = 0; i < this.getCarList().size(); i++) {
-			ScoreCar sc = this.getCarList().get(i);
-			sc.addScoreToCar(i);
-		}
+	/**
+	 * Establece si la eliminación se realiza con un {@link EliminationHeap}
+	 *
+	 * @param heapElimination
+	 *            <code>true</code> para realizar la eliminación con un
+	 *            {@link EliminationHeap}, <code>false</code> en caso contrario
+	 */
+	public void setHeapElimination(boolean heapElimination) {
+		this.heapElimination = heapElimination;
 	}
 
 	/**
-	 * Establece el nmero de vueltas que se debe dar antes de que comienze la
-	 * eliminacin de los {@link ScoreCar} participantes
+	 * Establece el número de vueltas que se debe dar antes de que comienze la
+	 * eliminación de los {@link ScoreCar} participantes
 	 *
 	 * @param lapsToStart
 	 */
@@ -112,25 +152,179 @@ public class DeathRace extends Race {
 		this.lapsToStart = lapsToStart;
 	}
 
+	/**
+	 * Establece si en las vueltas de eliminación sólo circulan los coches que
+	 * siguen en la carrera
+	 *
+	 * @param survivorsOnly
+	 *            <code>true</code> para que sólo circulen los coches que siguen
+	 *            en la carrera, <code>false</code> para que circulen todos
+	 */
+	public void setSurvivorsOnly(boolean survivorsOnly) {
+		this.survivorsOnly = survivorsOnly;
+	}
+
+	@Override
+	protected void copySettingsTo(Race r) {
+		super.copySettingsTo(r);
+		if (r instanceof DeathRace) {
+			((DeathRace) r).setHeapElimination(this.isHeapElimination());
+			((DeathRace) r).setSurvivorsOnly(this.isSurvivorsOnly());
+		}
+	}
+
 	@Override
 	public void startRace() {
+		this.reseedRandomSource();
+		if (this.isHeapElimination() || this.isIsolatedState()) {
+			this.startRaceWithHeapElimination();
+		} else {
+			this.startRaceWithListElimination();
+		}
+	}
+
+	/**
+	 * Simula la carrera sobre un {@link RaceState}. Tras las vueltas iniciales,
+	 * en cada vuelta de eliminación circulan los coches, se reconstruye el
+	 * {@link EliminationHeap} con las nuevas distancias y se elimina el coche
+	 * de la cima. Cada vuelta cuesta O(n), en lugar de los O(n log n) de ordenar
+	 * la lista de supervivientes. Si se ha activado {@link #isSurvivorsOnly()}
+	 * sólo circulan los coches que siguen en el montículo. Al terminar se
+	 * vuelcan los resultados en los {@link ScoreCar}, salvo que la carrera se
+	 * simule con un estado propio, y la lista {@link #deathList} contiene al
+	 * ganador. Es el método que se usa siempre con un estado propio
+	 */
+	protected void startRaceWithHeapElimination() {
+		RaceState state = this.createRaceState();
+		if (!this.isIsolatedState()) {
+			state.load();
+		}
+		this.simulate(state, true);
+		EliminationHeap heap = state.getEliminationHeap();
+		if (!this.isIsolatedState()) {
+			state.store();
+		}
+		this.setRaceResult(RaceResult.of(state));
+
+		this.getDeathList().clear();
+		for (int i = 0; i < heap.size(); i++) {
+			this.getDeathList().add(state.getCar(heap.get(i)));
+		}
+	}
+
+	/**
+	 * Los coches dan las vueltas iniciales y, a continuación, se elimina un
+	 * coche en cada vuelta con el {@link EliminationHeap} del estado, que se
+	 * reutiliza entre simulaciones. Al terminar, el montículo contiene al
+	 * ganador
+	 */
+	@Override
+	protected void simulate(RaceState state, boolean parallel) {
+		if (parallel) {
+			this.driveCars(state, this.getLapsToStart());
+		} else {
+			state.driveInRace(0, state.size(), this.getLapsToStart());
+		}
+
+		EliminationHeap heap = state.getEliminationHeap();
+		heap.reset();
+		int eliminationLaps = heap.size() - 1;
+		for (int i = 0; i < eliminationLaps; i++) {
+			if (this.isSurvivorsOnly()) {
+				heap.driveSurvivors();
+			} else {
+				state.driveInRace(0, state.size(), 1);
+				heap.heapify();
+			}
+			heap.poll();
+		}
+	}
+
+	/**
+	 * Simula la carrera recorriendo los objetos {@link ScoreCar}. En cada
+	 * vuelta de eliminación se ordena la lista {@link #deathList} y se elimina
+	 * el coche que va en última posición. Si se ha activado
+	 * {@link #isSurvivorsOnly()} sólo circulan los coches de {@link #deathList}.
+	 * Si la carrera se simula sobre un {@link RaceState} se usa
+	 * {@link #startRaceWithStateListElimination()}
+	 */
+	protected void startRaceWithListElimination() {
+		if (this.useRaceState()) {
+			this.startRaceWithStateListElimination();
+			return;
+		}
+		this.applyDistanceMode();
 		int laps = this.getLapsToStart();
 		for (int i = 0; i < laps; i++) {
 			for (ScoreCar sc : this.getCarList()) {
-				sc.driveInRace(Utils.getRandomNumberInRange(0, 2));
+				sc.driveInRace(this.nextDriveOption());
 			}
 		}
 
+		this.getDeathList().clear();
 		this.getDeathList().addAll(this.getCarList());
 		int eliminationLaps = this.getDeathList().size() - 1;
 
+		List<ScoreCar> drivingCars = this.getCarList();
+		if (this.isSurvivorsOnly()) {
+			drivingCars = this.getDeathList();
+		}
 		for (int i = 0; i < eliminationLaps; i++) {
-			for (ScoreCar sc : this.getCarList()) {
-				sc.driveInRace(Utils.getRandomNumberInRange(0, 2));
+			for (ScoreCar sc : drivingCars) {
+				sc.driveInRace(this.nextDriveOption());
 			}
 			this.sortCarsByDistance(this.getDeathList());
 			this.getDeathList().remove(0);
 		}
+		this.setRaceResult(RaceResult.of(this.getCarList(), this.getComparator()));
+	}
+
+	/**
+	 * Simula la carrera con eliminación por lista sobre un {@link RaceState},
+	 * con la configuración de simulación de la carrera. Tanto las vueltas
+	 * iniciales como las de eliminación circulan sobre el estado; en cada
+	 * vuelta de eliminación se ordenan de forma estable las posiciones de los
+	 * coches que siguen por su distancia y se elimina la primera, igual que
+	 * con {@link #deathList}. Al terminar se vuelcan los resultados en los
+	 * {@link ScoreCar} y la lista {@link #deathList} contiene al ganador
+	 */
+	protected void startRaceWithStateListElimination() {
+		final RaceState state = this.createRaceState();
+		state.load();
+		this.driveCars(state, this.getLapsToStart());
+
+		List<Integer> survivors = new ArrayList<>(state.size());
+		for (int i = 0; i < state.size(); i++) {
+			survivors.add(i);
+		}
+		Comparator<Integer> byDistance = new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer a, Integer b) {
+				return state.compareDistance(a, b);
+			}
+		};
+		int[] selected = new int[state.size()];
+		int eliminationLaps = state.size() - 1;
+		for (int i = 0; i < eliminationLaps; i++) {
+			if (this.isSurvivorsOnly()) {
+				for (int j = 0; j < survivors.size(); j++) {
+					selected[j] = survivors.get(j);
+				}
+				state.driveInRace(selected, survivors.size(), 1);
+			} else {
+				state.driveInRace(0, state.size(), 1);
+			}
+			Collections.sort(survivors, byDistance);
+			survivors.remove(0);
+		}
+		state.store();
+		this.setRaceResult(RaceResult.of(state));
+
+		this.getDeathList().clear();
+		for (int car : survivors) {
+			this.getDeathList().add(state.getCar(car));
+		}
 	}
 
 	@Override
@@ -140,13 +334,13 @@ public class DeathRace extends Race {
 		builder.append(" - ");
 		builder.append(this.getLapsToStart());
 		builder.append(" vueltas previas.");
-		builder.append(" (Eliminacin)");
+		builder.append(" (Eliminación)");
 		return builder.toString();
 	}
 
 	public static void main(String[] args) {
 		DeathRace dr = new DeathRace("Carreira da Morte", 20);
-		Garage g = new Garage("scalle Lura");
+		Garage g = new Garage("Íscalle Lura");
 		dr.registerGarage(g);
 		dr.registerCars();
 		dr.startRace();
@@ -0,0 +1,154 @@
+package race;
+
+/**
+ * Montículo de mínimos indexado que contiene las posiciones de los coches que
+ * siguen en una carrera de eliminación, ordenados por la distancia que guarda
+ * un {@link RaceState}. El coche con menor distancia queda siempre en la cima,
+ * por lo que eliminarlo cuesta O(log n). Como en cada vuelta la distancia de
+ * los coches sólo puede aumentar, tras hacerlos circular basta con reconstruir
+ * el montículo de abajo a arriba con {@link #heapify()}, que cuesta O(n). En
+ * caso de empate en la distancia se elimina antes el coche que ocupa una
+ * posición anterior en la lista de la carrera
+ */
+public class EliminationHeap {
+
+	/**
+	 * Array que contiene las posiciones de los coches en el estado de la
+	 * carrera. Las primeras {@link #size} posiciones forman el montículo
+	 */
+	protected final int[] heap;
+
+	/**
+	 * Número de coches que siguen en la carrera
+	 */
+	protected int size;
+
+	/**
+	 * El estado de la carrera que contiene las distancias de los coches
+	 */
+	protected final RaceState state;
+
+	/**
+	 * Crea un montículo con todos los coches del estado pasado por parámetro
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 */
+	public EliminationHeap(RaceState state) {
+		this.state = state;
+		this.size = state.size();
+		this.heap = new int[this.size];
+		for (int i = 0; i < this.size; i++) {
+			this.heap[i] = i;
+		}
+		this.heapify();
+	}
+
+	/**
+	 * Devuelve la posición en el estado del coche que ocupa la posición
+	 * indicada del montículo
+	 *
+	 * @param i
+	 *            La posición en el montículo, menor que {@link #size()}
+	 * @return La posición del coche en el estado de la carrera
+	 */
+	public int get(int i) {
+		return this.heap[i];
+	}
+
+	/**
+	 * Hace circular durante una vuelta sólo los coches que siguen en el
+	 * montículo y lo reconstruye con las nuevas distancias
+	 */
+	public void driveSurvivors() {
+		this.state.driveInRace(this.heap, this.size, 1);
+		this.heapify();
+	}
+
+	/**
+	 * Reconstruye el montículo de abajo a arriba, después de que hayan
+	 * cambiado las distancias de los coches
+	 */
+	public void heapify() {
+		for (int i = (this.size >>> 1) - 1; i >= 0; i--) {
+			this.siftDown(i);
+		}
+	}
+
+	/**
+	 * Indica si el coche a va por detrás del coche b
+	 *
+	 * @param a
+	 *            La posición del primer coche en el estado
+	 * @param b
+	 *            La posición del segundo coche en el estado
+	 * @return <code>true</code> si el coche a debe eliminarse antes que el b
+	 */
+	protected boolean isBehind(int a, int b) {
+		int comparison = this.state.compareDistance(a, b);
+		return (comparison < 0) || ((comparison == 0) && (a < b));
+	}
+
+	/**
+	 * Elimina del montículo el coche que va en última posición
+	 *
+	 * @return La posición en el estado del coche eliminado
+	 */
+	public int poll() {
+		int last = this.heap[0];
+		this.size--;
+		if (this.size > 0) {
+			this.heap[0] = this.heap[this.size];
+			this.siftDown(0);
+		}
+		return last;
+	}
+
+	/**
+	 * Vuelve a llenar el montículo con todos los coches del estado y lo
+	 * reconstruye con sus distancias actuales, sin crear arrays nuevos
+	 */
+	public void reset() {
+		this.size = this.heap.length;
+		for (int i = 0; i < this.size; i++) {
+			this.heap[i] = i;
+		}
+		this.heapify();
+	}
+
+	/**
+	 * Hunde el elemento de la posición indicada hasta que sus hijos vayan por
+	 * delante de él
+	 *
+	 * @param i
+	 *            La posición en el montículo
+	 */
+	protected void siftDown(int i) {
+		final int[] heap = this.heap;
+		int car = heap[i];
+		int half = this.size >>> 1;
+		while (i < half) {
+			int child = (i << 1) + 1;
+			int right = child + 1;
+			if ((right < this.size) && this.isBehind(heap[right], heap[child])) {
+				child = right;
+			}
+			if (!this.isBehind(heap[child], car)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = car;
+	}
+
+	/**
+	 * Devuelve el número de coches que siguen en la carrera
+	 *
+	 * @return El número de coches que siguen en la carrera
+	 */
+	public int size() {
+		return this.size;
+	}
+
+}
@@ -1,42 +1,52 @@
 package race;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.List;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import utils.JsonStreamWriter;
 import utils.ProgramExporter;
+import utils.RandomSource;
+import utils.ThreadLocalRandomSource;
 import utils.Utils;
 
 /**
- * Clase que contiene la informacin de un garaje y la lista de coches asociados
+ * Clase que contiene la información de un garaje y la lista de coches asociados
  * a dicho garaje
  */
 public class Garage {
 
 	/**
 	 * Constante que hace referencia a la lista de los coches que pertenecen a
-	 * un garaje cuando se realiza la exportacin / importacin
+	 * un garaje cuando se realiza la exportación / importación
 	 */
 	public static final String CAR_LIST = "carList";
 
 	/**
 	 * Constante que hace referencia al nombre del garaje cuando se realiza la
-	 * exportacin / importacin
+	 * exportación / importación
 	 */
 	public static final String NAME = "name";
 
 	/**
-	 * Lista que contiene los coches ({@link ScoreCar}) que pertenen al garaje
+	 * Lista que contiene los coches ({@link ScoreCar}) que pertenen al garaje,
+	 * indexada por su marca y modelo
 	 */
-	List<ScoreCar> garageCarList = new ArrayList<>();
+	CarStore garageCarList = new CarStore();
 
 	/**
 	 * Almacena el nombre del garaje
 	 */
 	protected String name;
 
+	/**
+	 * Registro de la copia binaria con los coches del garaje, mientras no se
+	 * hayan cargado, o <code>null</code> si ya están en la lista
+	 */
+	protected volatile AppSnapshot.Record snapshotRecord;
+
 	/**
 	 * Contructor de la clase {@link Garage}
 	 *
@@ -45,7 +55,7 @@ public class Garage {
 	 */
 	public Garage(String name) {
 		this.name = name;
-		// Se comenta para evitar que se creen coches automticamente
+		// Se comenta para evitar que se creen coches automáticamente
 		// this.init();
 	}
 
@@ -59,6 +69,15 @@ public class Garage {
 		return false;
 	}
 
+	/**
+	 * Calcula el código hash del garaje a partir de su nombre sin distinguir
+	 * mayúsculas, de forma coherente con {@link #equals(Object)}
+	 */
+	@Override
+	public int hashCode() {
+		return Utils.hashIgnoreCase(this.getName());
+	}
+
 	/**
 	 * Exporta el objeto garaje a un objeto {@link JSONObject} (sin la lista de
 	 * {@link ScoreCar} pertenecientes a un garaje)
@@ -94,6 +113,75 @@ public class Garage {
 
 	}
 
+	/**
+	 * Escribe el garaje (sin la lista de {@link ScoreCar}) directamente en un
+	 * {@link JsonStreamWriter}, igual que {@link #exportGarageToJson()}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe el garaje
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeGarageTo(JsonStreamWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name(Garage.NAME).value(this.getName());
+		writer.endObject();
+	}
+
+	/**
+	 * Escribe el garaje para la exportación normalizada, con sus coches
+	 * indicados por su identificador en la {@link CarTable}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe el garaje
+	 * @param cars
+	 *            La tabla de coches de la exportación
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeGarageWithCarIdsTo(JsonStreamWriter writer, CarTable cars) throws IOException {
+		writer.beginObject();
+		writer.name(Garage.NAME).value(this.getName());
+		writer.name(Garage.CAR_LIST);
+		cars.writeIdsTo(writer, this.getGarageCarList());
+		writer.endObject();
+	}
+
+	/**
+	 * Escribe el garaje (con la lista de {@link ScoreCar}) directamente en un
+	 * {@link JsonStreamWriter}, igual que {@link #exportGarageWithCarsToJson()}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe el garaje
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeGarageWithCarsTo(JsonStreamWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name(Garage.NAME).value(this.getName());
+		writer.name(Garage.CAR_LIST).beginArray();
+		for (ScoreCar sc : this.getGarageCarList()) {
+			sc.writeCarTo(writer);
+		}
+		writer.endArray();
+		writer.endObject();
+	}
+
+	/**
+	 * Busca en el garaje el {@link ScoreCar} con la marca y el modelo
+	 * indicados, sin distinguir mayúsculas y sin recorrer la lista
+	 *
+	 * @param brand
+	 *            La marca del coche
+	 * @param model
+	 *            El modelo del coche
+	 * @return El coche, o <code>null</code> si el garaje no lo tiene
+	 */
+	public ScoreCar findCar(String brand, String model) {
+		this.loadSnapshotRecord();
+		return this.garageCarList.find(brand, model);
+	}
+
 	/**
 	 * Devuelve una {@link Lista} con los {@link ScoreCar} que pertenecen a un
 	 * garaje
@@ -101,6 +189,7 @@ public class Garage {
 	 * @return La lista de {@link ScoreCar} que pertenecen al garaje
 	 */
 	public List<ScoreCar> getGarageCarList() {
+		this.loadSnapshotRecord();
 		return this.garageCarList;
 	}
 
@@ -122,17 +211,28 @@ public class Garage {
 	 *         pertenecientes al garaje
 	 */
 	public ScoreCar getRandomCarFromList() {
-		int minValue = 0;
-		int maxValue = this.getGarageCarList().size();
-		int index = Utils.getRandomNumberInRange(minValue, maxValue - 1);
-		return this.getGarageCarList().get(index);
+		return this.getRandomCarFromList(ThreadLocalRandomSource.getInstance());
 	}
 
 	/**
-	 * Crea 3 coches y los aade a la lista de coches del garaje
+	 * Escoje un {@link ScoreCar} aleatorio de la lista de coches asociados al
+	 * garaje, usando la fuente de números aleatorios indicada
+	 *
+	 * @param source
+	 *            La fuente de números aleatorios
+	 * @return Un {@link ScoreCar} aleatorio de la lista de coches
+	 *         pertenecientes al garaje
+	 */
+	public ScoreCar getRandomCarFromList(RandomSource source) {
+		this.loadSnapshotRecord();
+		return this.garageCarList.randomCar(source);
+	}
+
+	/**
+	 * Crea 3 coches y los añade a la lista de coches del garaje
 	 */
 	public void init() {
-		ScoreCar sc1 = new ScoreCar("Citron", "Xsara");
+		ScoreCar sc1 = new ScoreCar("Citroën", "Xsara");
 		this.registerCarToGarage(sc1);
 		this.registerCarToGarage(new ScoreCar("Seat", "Arosa"));
 		this.registerCarToGarage(new ScoreCar("Volkswagen", "Golf"));
@@ -140,11 +240,30 @@ public class Garage {
 	}
 
 	/**
-	 * Aade el {@link ScoreCar} que se pasa por parmetro se aade a la lista
+	 * Carga los coches del garaje desde su registro de la copia binaria, si
+	 * todavía no se han cargado
+	 */
+	protected void loadSnapshotRecord() {
+		if (this.snapshotRecord != null) {
+			synchronized (this) {
+				AppSnapshot.Record record = this.snapshotRecord;
+				if (record != null) {
+					for (ScoreCar sc : record.readCars()) {
+						sc.setGarage(this.getName());
+						this.garageCarList.add(sc);
+					}
+					this.snapshotRecord = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Añade el {@link ScoreCar} que se pasa por parámetro se añade a la lista
 	 * de de coches
 	 *
 	 * @param sc
-	 *            El coche a aadir a la lista de coches
+	 *            El coche a añadir a la lista de coches
 	 */
 	public void registerCarToGarage(ScoreCar sc) {
 		sc.setGarage(this.getName());
@@ -152,16 +271,32 @@ public class Garage {
 	}
 
 	/**
-	 * Elimina el {@link ScoreCar} que se pasa por parmetro de la lista de
+	 * Añade un coche importado a la lista de coches. El mapa de identidad de
+	 * la importación devuelve el mismo objeto para todos los coches iguales,
+	 * por lo que si el fichero tiene varios coches con la misma marca y modelo
+	 * en el garaje se añade una copia, para que sigan siendo coches distintos
+	 *
+	 * @param sc
+	 *            El coche canónico devuelto por el mapa de identidad
+	 */
+	public void registerImportedCar(ScoreCar sc) {
+		this.loadSnapshotRecord();
+		if (this.garageCarList.containsInstance(sc)) {
+			this.registerCarToGarage(new ScoreCar(sc.getBrand(), sc.getModel(), this.getName()));
+		} else {
+			this.registerCarToGarage(sc);
+		}
+	}
+
+	/**
+	 * Elimina el {@link ScoreCar} que se pasa por parámetro de la lista de
 	 * coches del garaje.
 	 *
 	 * @param sc
 	 *            El {@link ScoreCar} a eliminar
 	 */
 	public void removeCarFromGarage(ScoreCar sc) {
-		if (this.getGarageCarList().contains(sc)) {
-			this.getGarageCarList().remove(sc);
-		}
+		this.getGarageCarList().remove(sc);
 	}
 
 	/**
@@ -174,6 +309,17 @@ public class Garage {
 		this.name = name;
 	}
 
+	/**
+	 * Establece el registro de la copia binaria del que se cargarán los coches
+	 * del garaje la primera vez que se acceda a ellos
+	 *
+	 * @param snapshotRecord
+	 *            El registro, situado al principio de la lista de coches
+	 */
+	protected void setSnapshotRecord(AppSnapshot.Record snapshotRecord) {
+		this.snapshotRecord = snapshotRecord;
+	}
+
 	@Override
 	public String toString() {
 		return this.getName();
@@ -187,14 +333,30 @@ public class Garage {
 	 * @return un objeto {@link Garage}
 	 */
 	public static Garage importGarageFromJSONObject(JSONObject garageJson) {
+		return Garage.importGarageFromJSONObject(garageJson, new IdentityMap());
+	}
+
+	/**
+	 * Importa un garaje con sus coches de un {@link JSONObject}, usando los
+	 * coches canónicos del mapa de identidad de la importación. El garaje
+	 * devuelto es nuevo; para obtener el canónico se usa
+	 * {@link IdentityMap#garage(Garage)}
+	 *
+	 * @param garageJson
+	 *            El {@link JSONObject} con los datos del garaje
+	 * @param identities
+	 *            El mapa de identidad de la importación
+	 * @return El garaje importado
+	 */
+	public static Garage importGarageFromJSONObject(JSONObject garageJson, IdentityMap identities) {
 		String name = (String) garageJson.get(Garage.NAME);
 		JSONArray carList = (JSONArray) garageJson.get(Garage.CAR_LIST);
 		Garage g = new Garage(name);
 		if (carList != null) {
 			for (Object actual : carList) {
 				JSONObject car = (JSONObject) actual;
-				ScoreCar sc = ScoreCar.importCarFromJson(car);
-				g.registerCarToGarage(sc);
+				ScoreCar sc = ScoreCar.importCarFromJson(car, identities);
+				g.registerImportedCar(sc);
 			}
 		}
 		return g;
@@ -0,0 +1,158 @@
+package race;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import utils.Utils;
+
+/**
+ * Mapa de identidad de una importación. Guarda el objeto canónico de cada
+ * coche, por su marca, modelo y garaje, y de cada garaje, por su nombre, sin
+ * distinguir mayúsculas igual que sus métodos <code>equals</code>. Así todas
+ * las referencias a un mismo coche o garaje de los datos importados, y de los
+ * que ya tenía el control, usan el mismo objeto y se localizan en tiempo
+ * constante en lugar de recorrer las listas
+ */
+public class IdentityMap {
+
+	/**
+	 * Los coches canónicos, por su clave
+	 */
+	protected final Map<String, ScoreCar> cars = new HashMap<>();
+
+	/**
+	 * El control cuyos garajes y coches son canónicos, o <code>null</code>
+	 */
+	protected final Control control;
+
+	/**
+	 * Los garajes canónicos, por su clave
+	 */
+	protected final Map<String, Garage> garages = new HashMap<>();
+
+	/**
+	 * Crea un mapa de identidad vacío
+	 */
+	public IdentityMap() {
+		this(null);
+	}
+
+	/**
+	 * Crea un mapa de identidad con los garajes del control y sus coches como
+	 * objetos canónicos. Si hay varios iguales se queda con el primero, igual
+	 * que {@link Control#getGarageFromList(String)}. Los garajes y coches del
+	 * control se buscan la primera vez que se piden, por lo que crear el mapa
+	 * no recorre las listas ni carga los garajes de la copia binaria
+	 *
+	 * @param control
+	 *            El control
+	 */
+	public IdentityMap(Control control) {
+		this.control = control;
+	}
+
+	/**
+	 * Devuelve el coche canónico igual al indicado. Si todavía no hay ninguno,
+	 * el coche indicado pasa a serlo
+	 *
+	 * @param sc
+	 *            El coche importado
+	 * @return El coche canónico
+	 */
+	public ScoreCar car(ScoreCar sc) {
+		String key = IdentityMap.carKey(sc);
+		ScoreCar canonical = this.cars.get(key);
+		if (canonical == null) {
+			Garage g = this.findGarage(sc.getGarage());
+			if (g != null) {
+				canonical = g.findCar(sc.getBrand(), sc.getModel());
+			}
+			if (canonical == null) {
+				canonical = sc;
+			}
+			this.cars.put(key, canonical);
+		}
+		return canonical;
+	}
+
+	/**
+	 * Devuelve el garaje canónico con el nombre indicado
+	 *
+	 * @param name
+	 *            El nombre del garaje
+	 * @return El garaje canónico, o <code>null</code> si no hay ninguno
+	 */
+	public Garage findGarage(String name) {
+		String key = IdentityMap.garageKey(name);
+		Garage canonical = this.garages.get(key);
+		if ((canonical == null) && (this.control != null) && (name != null)) {
+			canonical = this.control.getGarageFromList(name);
+			if (canonical != null) {
+				this.garages.put(key, canonical);
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * Devuelve el garaje canónico igual al indicado. Si todavía no hay
+	 * ninguno, el garaje indicado pasa a serlo. Se usa con los garajes
+	 * completos que se añaden a la lista de garajes
+	 *
+	 * @param g
+	 *            El garaje importado
+	 * @return El garaje canónico
+	 */
+	public Garage garage(Garage g) {
+		String key = IdentityMap.garageKey(g.getName());
+		Garage canonical = this.findGarage(g.getName());
+		if (canonical == null) {
+			this.garages.put(key, g);
+			canonical = g;
+		}
+		return canonical;
+	}
+
+	/**
+	 * Devuelve el garaje al que se refiere por su nombre una carrera o un
+	 * torneo: el canónico si existe, o un garaje nuevo sin coches, que no pasa
+	 * a ser canónico para que no sustituya al garaje completo si aparece
+	 * después
+	 *
+	 * @param name
+	 *            El nombre del garaje
+	 * @return El garaje
+	 */
+	public Garage garageReference(String name) {
+		Garage canonical = this.findGarage(name);
+		if (canonical == null) {
+			return new Garage(name);
+		}
+		return canonical;
+	}
+
+	/**
+	 * Devuelve la clave de un coche, formada por su marca, modelo y garaje
+	 * normalizados. La de la marca y el modelo ya la guarda su
+	 * {@link CarSpec}
+	 *
+	 * @param sc
+	 *            El coche
+	 * @return La clave del coche
+	 */
+	public static String carKey(ScoreCar sc) {
+		return sc.getSpec().getKey() + '\0' + Utils.normalizeKey(sc.getGarage());
+	}
+
+	/**
+	 * Devuelve la clave de un garaje, que es su nombre normalizado
+	 *
+	 * @param name
+	 *            El nombre del garaje
+	 * @return La clave del garaje
+	 */
+	public static String garageKey(String name) {
+		return Utils.normalizeKey(name);
+	}
+
+}
@@ -0,0 +1,381 @@
+package race;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.IndexSort;
+import utils.SplitMix64;
+import utils.Utils;
+
+/**
+ * Simulación de Monte Carlo de una carrera. La carrera se simula muchas veces,
+ * repartiendo las iteraciones entre varios hilos, y se cuenta cuántas veces
+ * gana cada coche, cuántas veces sube al podio y cuántos puntos obtiene. Cada
+ * hilo reutiliza su propio {@link RaceState} en todas sus iteraciones, por lo
+ * que no se crea ningún objeto por iteración. Cada iteración obtiene su propia
+ * semilla a partir de la semilla de la simulación y de su número, por lo que
+ * el resultado es el mismo con cualquier número de hilos
+ */
+public class MonteCarloSimulation {
+
+	/**
+	 * Constante que indica cuántos coches se muestran en el resumen de la
+	 * simulación
+	 */
+	public static final int SUMMARY_SIZE = 10;
+
+	/**
+	 * Los coches participantes, en el orden de la lista de la carrera
+	 */
+	protected final ScoreCar[] cars;
+
+	/**
+	 * Número de iteraciones simuladas
+	 */
+	protected int iterations;
+
+	/**
+	 * Número de veces que cada coche ha subido al podio
+	 */
+	protected final long[] podiums;
+
+	/**
+	 * Suma de los puntos obtenidos por cada coche en todas las iteraciones
+	 */
+	protected final long[] pointsSum;
+
+	/**
+	 * Suma de los cuadrados de los puntos obtenidos por cada coche en todas las
+	 * iteraciones
+	 */
+	protected final long[] pointsSumOfSquares;
+
+	/**
+	 * La carrera que se simula
+	 */
+	protected final Race race;
+
+	/**
+	 * Número de veces que cada coche ha ganado la carrera
+	 */
+	protected final long[] wins;
+
+	/**
+	 * Crea una simulación para la carrera indicada, con los coches que tiene
+	 * registrados
+	 *
+	 * @param race
+	 *            La carrera que se simula
+	 */
+	public MonteCarloSimulation(Race race) {
+		this.race = race;
+		this.cars = race.getCarList().toArray(new ScoreCar[race.getCarList().size()]);
+		this.wins = new long[this.cars.length];
+		this.podiums = new long[this.cars.length];
+		this.pointsSum = new long[this.cars.length];
+		this.pointsSumOfSquares = new long[this.cars.length];
+	}
+
+	/**
+	 * Suma a los contadores de la simulación los de un hilo
+	 *
+	 * @param worker
+	 *            El hilo que ha terminado sus iteraciones
+	 */
+	protected void add(Worker worker) {
+		for (int i = 0; i < this.cars.length; i++) {
+			this.wins[i] += worker.wins[i];
+			this.podiums[i] += worker.podiums[i];
+			this.pointsSum[i] += worker.pointsSum[i];
+			this.pointsSumOfSquares[i] += worker.pointsSumOfSquares[i];
+		}
+	}
+
+	/**
+	 * Devuelve el coche que ocupa la posición indicada en la lista de la
+	 * carrera
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return El coche
+	 */
+	public ScoreCar getCar(int car) {
+		return this.cars[car];
+	}
+
+	/**
+	 * Devuelve el número de coches de la simulación
+	 *
+	 * @return El número de coches
+	 */
+	public int getCarCount() {
+		return this.cars.length;
+	}
+
+	/**
+	 * Devuelve el número de iteraciones simuladas
+	 *
+	 * @return El número de iteraciones
+	 */
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * Devuelve la media de los puntos obtenidos por el coche indicado
+	 *
+	 * @param car
+	 *            La posición del coche en la lista de la carrera
+	 * @return La media de los puntos
+	 */
+	public double getMeanPoints(int car) {
+		if (this.getIterations() == 0) {
+			return 0.0;
+		}
+		return (double) this.pointsSum[car] / this.getIterations();
+	}
+
+	/**
+	 * Devuelve la probabilidad de que el coche indicado suba al podio
+	 *
+	 * @param car
+	 *            La posición del coche en la lista de la carrera
+	 * @return La probabilidad de subir al podio, entre 0 y 1
+	 */
+	public double getPodiumProbability(int car) {
+		if (this.getIterations() == 0) {
+			return 0.0;
+		}
+		return (double) this.podiums[car] / this.getIterations();
+	}
+
+	/**
+	 * Devuelve la desviación típica de los puntos obtenidos por el coche
+	 * indicado
+	 *
+	 * @param car
+	 *            La posición del coche en la lista de la carrera
+	 * @return La desviación típica de los puntos
+	 */
+	public double getPointsStandardDeviation(int car) {
+		if (this.getIterations() == 0) {
+			return 0.0;
+		}
+		double mean = this.getMeanPoints(car);
+		double variance = ((double) this.pointsSumOfSquares[car] / this.getIterations()) - (mean * mean);
+		return Math.sqrt(Math.max(0.0, variance));
+	}
+
+	/**
+	 * Devuelve un resumen de la simulación con los {@link #SUMMARY_SIZE} coches
+	 * con más probabilidad de ganar
+	 *
+	 * @return El resumen de la simulación
+	 */
+	public String getSummary() {
+		double[] winProbability = new double[this.getCarCount()];
+		for (int i = 0; i < winProbability.length; i++) {
+			winProbability[i] = this.getWinProbability(i);
+		}
+		int[] order = IndexSort.sortDescending(winProbability);
+		int size = Math.min(MonteCarloSimulation.SUMMARY_SIZE, order.length);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("Carrera: ");
+		builder.append(this.race.getName());
+		builder.append("\n");
+		builder.append("Iteraciones: ");
+		builder.append(this.getIterations());
+		builder.append("\n");
+		for (int i = 0; i < size; i++) {
+			int car = order[i];
+			builder.append("\t ");
+			builder.append(this.getCar(car).getDetails());
+			builder.append(": victoria ");
+			builder.append(Utils.formatLocalNumber(this.getWinProbability(car) * 100));
+			builder.append("%, podio ");
+			builder.append(Utils.formatLocalNumber(this.getPodiumProbability(car) * 100));
+			builder.append("%, puntos ");
+			builder.append(Utils.formatLocalNumber(this.getMeanPoints(car)));
+			builder.append(" (desv. ");
+			builder.append(Utils.formatLocalNumber(this.getPointsStandardDeviation(car)));
+			builder.append(")\n");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Devuelve la probabilidad de que el coche indicado gane la carrera
+	 *
+	 * @param car
+	 *            La posición del coche en la lista de la carrera
+	 * @return La probabilidad de ganar, entre 0 y 1
+	 */
+	public double getWinProbability(int car) {
+		if (this.getIterations() == 0) {
+			return 0.0;
+		}
+		return (double) this.wins[car] / this.getIterations();
+	}
+
+	/**
+	 * Simula la carrera el número de veces indicado y acumula los resultados a
+	 * los de las simulaciones anteriores, continuando la numeración de sus
+	 * iteraciones. Las iteraciones se reparten en
+	 * bloques consecutivos entre los hilos, y los contadores de cada hilo se
+	 * suman al final
+	 *
+	 * @param iterations
+	 *            El número de veces que se simula la carrera
+	 * @param parallelism
+	 *            El número de hilos
+	 * @param seed
+	 *            La semilla de la simulación
+	 */
+	public void run(int iterations, int parallelism, long seed) {
+		int workers = Math.max(1, Math.min(parallelism, iterations));
+		int first = this.getIterations();
+		List<Worker> tasks = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			int from = first + (int) (((long) iterations * i) / workers);
+			int to = first + (int) (((long) iterations * (i + 1)) / workers);
+			tasks.add(new Worker(this.race, from, to, seed));
+		}
+
+		if (workers > 1) {
+			ExecutorService executor = Executors.newFixedThreadPool(workers);
+			try {
+				List<Future<Worker>> futures = executor.invokeAll(tasks);
+				for (Future<Worker> future : futures) {
+					this.add(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Se ha interrumpido la simulación", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("No se ha podido completar la simulación", e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		} else {
+			this.add(tasks.get(0).call());
+		}
+		this.iterations += iterations;
+	}
+
+	/**
+	 * Tarea que simula un bloque de iteraciones sobre su propio
+	 * {@link RaceState} y guarda sus propios contadores
+	 */
+	protected static class Worker implements Callable<Worker> {
+
+		/**
+		 * La primera iteración del bloque, incluida
+		 */
+		protected final int from;
+
+		/**
+		 * Número de veces que cada coche ha subido al podio
+		 */
+		protected final long[] podiums;
+
+		/**
+		 * Suma de los puntos obtenidos por cada coche
+		 */
+		protected final long[] pointsSum;
+
+		/**
+		 * Suma de los cuadrados de los puntos obtenidos por cada coche
+		 */
+		protected final long[] pointsSumOfSquares;
+
+		/**
+		 * La carrera que se simula
+		 */
+		protected final Race race;
+
+		/**
+		 * El espacio de trabajo con el que se clasifica cada iteración
+		 */
+		protected final RaceRanking ranking;
+
+		/**
+		 * La semilla de la simulación
+		 */
+		protected final long seed;
+
+		/**
+		 * El estado que se reutiliza en todas las iteraciones
+		 */
+		protected final RaceState state;
+
+		/**
+		 * La última iteración del bloque, excluida
+		 */
+		protected final int to;
+
+		/**
+		 * Número de veces que cada coche ha ganado la carrera
+		 */
+		protected final long[] wins;
+
+		/**
+		 * Crea una tarea para el bloque de iteraciones indicado
+		 *
+		 * @param race
+		 *            La carrera que se simula
+		 * @param from
+		 *            La primera iteración, incluida
+		 * @param to
+		 *            La última iteración, excluida
+		 * @param seed
+		 *            La semilla de la simulación
+		 */
+		protected Worker(Race race, int from, int to, long seed) {
+			this.race = race;
+			this.from = from;
+			this.to = to;
+			this.seed = seed;
+			this.state = race.createRaceState();
+			int n = this.state.size();
+			this.ranking = new RaceRanking(n);
+			this.wins = new long[n];
+			this.podiums = new long[n];
+			this.pointsSum = new long[n];
+			this.pointsSumOfSquares = new long[n];
+		}
+
+		@Override
+		public Worker call() {
+			int n = this.state.size();
+			if (n == 0) {
+				return this;
+			}
+			int scored = Math.max(Math.min(Race.PODIUM_SIZE, n), this.race.scoredPositions(n));
+			for (int i = this.from; i < this.to; i++) {
+				this.state.reset();
+				this.state.seed(SplitMix64.mix64(this.seed + ((i + 1L) * SplitMix64.GOLDEN_GAMMA)));
+				this.race.simulate(this.state, false);
+
+				int[] ranking = this.ranking.rank(this.state, scored);
+				this.wins[ranking[0]]++;
+				for (int p = 0; p < Math.min(Race.PODIUM_SIZE, n); p++) {
+					this.podiums[ranking[p]]++;
+				}
+				for (int p = 0; p < scored; p++) {
+					long points = this.race.pointsForPosition(p, n);
+					this.pointsSum[ranking[p]] += points;
+					this.pointsSumOfSquares[ranking[p]] += points * points;
+				}
+			}
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,175 @@
+package race;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import utils.RandomSource;
+
+/**
+ * Estado de una carrera guardado fuera del montón de Java. La velocidad, la
+ * distancia, el generador de números aleatorios y los bits pendientes de cada
+ * coche se guardan en un registro de {@link #RECORD_SIZE} bytes de un
+ * {@link ByteBuffer} directo, indexado por la posición del coche, en lugar de
+ * en los arrays de {@link RaceState}. Las simulaciones de carreras con
+ * millones de coches no reservan así arrays enormes en el montón ni alargan
+ * las pausas del recolector de basura, y los resultados se consultan y se
+ * vuelcan en los coches igual que con {@link RaceState}. La memoria del
+ * buffer se libera cuando se libera el estado
+ */
+public class OffHeapRaceState extends RaceState {
+
+	/**
+	 * Desplazamiento de los bits aleatorios pendientes dentro del registro de
+	 * cada coche
+	 */
+	protected static final int BITS = 16;
+
+	/**
+	 * Desplazamiento del número de bits pendientes dentro del registro de cada
+	 * coche
+	 */
+	protected static final int BIT_COUNT = 4;
+
+	/**
+	 * Desplazamiento de la distancia entera dentro del registro de cada coche
+	 */
+	protected static final int DISTANCE_UNITS = 8;
+
+	/**
+	 * Número máximo de coches que caben en un solo buffer
+	 */
+	public static final int MAX_CARS = Integer.MAX_VALUE / OffHeapRaceState.RECORD_SIZE;
+
+	/**
+	 * Tamaño en bytes del registro de cada coche
+	 */
+	public static final int RECORD_SIZE = 32;
+
+	/**
+	 * Desplazamiento del estado del generador dentro del registro de cada
+	 * coche
+	 */
+	protected static final int SEED = 24;
+
+	/**
+	 * Desplazamiento de la velocidad dentro del registro de cada coche
+	 */
+	protected static final int VELOCITY = 0;
+
+	/**
+	 * El buffer directo con los registros de los coches, en el orden de la
+	 * lista de la carrera
+	 */
+	protected final ByteBuffer slab;
+
+	/**
+	 * Crea el estado fuera del montón para la lista de coches que se pasa por
+	 * parámetro. Los contadores comienzan a 0 y el generador de cada coche se
+	 * inicializa con la fuente de números aleatorios indicada, igual que en
+	 * {@link RaceState#RaceState(List, RandomSource)}
+	 *
+	 * @param carList
+	 *            La lista de {@link ScoreCar} participantes en la carrera
+	 * @param source
+	 *            La fuente de números aleatorios de la carrera
+	 */
+	public OffHeapRaceState(List<ScoreCar> carList, RandomSource source) {
+		super(carList.toArray(new ScoreCar[carList.size()]));
+		if (this.cars.length > OffHeapRaceState.MAX_CARS) {
+			throw new IllegalArgumentException("Demasiados coches para un estado fuera del montón: " + this.cars.length);
+		}
+		this.slab = ByteBuffer.allocateDirect(this.cars.length * OffHeapRaceState.RECORD_SIZE).order(ByteOrder.nativeOrder());
+		this.seed(source);
+	}
+
+	@Override
+	protected void clearBitCounts() {
+		for (int i = 0; i < this.cars.length; i++) {
+			this.setBitCount(i, 0);
+		}
+	}
+
+	/**
+	 * Los bits pendientes ya tienen su sitio en el registro de cada coche
+	 */
+	@Override
+	protected void ensureBitBuffers() {}
+
+	@Override
+	protected int getBitCount(int car) {
+		return this.slab.getInt(OffHeapRaceState.offset(car, OffHeapRaceState.BIT_COUNT));
+	}
+
+	@Override
+	protected long getBits(int car) {
+		return this.slab.getLong(OffHeapRaceState.offset(car, OffHeapRaceState.BITS));
+	}
+
+	@Override
+	public long getDistanceUnits(int car) {
+		return this.slab.getLong(OffHeapRaceState.offset(car, OffHeapRaceState.DISTANCE_UNITS));
+	}
+
+	@Override
+	protected long getSeed(int car) {
+		return this.slab.getLong(OffHeapRaceState.offset(car, OffHeapRaceState.SEED));
+	}
+
+	@Override
+	public int getVelocity(int car) {
+		return this.slab.getInt(OffHeapRaceState.offset(car, OffHeapRaceState.VELOCITY));
+	}
+
+	/**
+	 * Pone a 0 la velocidad y la distancia de todos los coches, sin tocar sus
+	 * generadores, igual que {@link RaceState#reset()}
+	 */
+	@Override
+	public void reset() {
+		for (int i = 0; i < this.cars.length; i++) {
+			this.setVelocity(i, 0);
+			this.setDistanceUnits(i, 0L);
+		}
+		this.initialDistance = null;
+	}
+
+	@Override
+	protected void setBitCount(int car, int bitCount) {
+		this.slab.putInt(OffHeapRaceState.offset(car, OffHeapRaceState.BIT_COUNT), bitCount);
+	}
+
+	@Override
+	protected void setBits(int car, long bits) {
+		this.slab.putLong(OffHeapRaceState.offset(car, OffHeapRaceState.BITS), bits);
+	}
+
+	@Override
+	protected void setDistanceUnits(int car, long distanceUnits) {
+		this.slab.putLong(OffHeapRaceState.offset(car, OffHeapRaceState.DISTANCE_UNITS), distanceUnits);
+	}
+
+	@Override
+	protected void setSeed(int car, long seed) {
+		this.slab.putLong(OffHeapRaceState.offset(car, OffHeapRaceState.SEED), seed);
+	}
+
+	@Override
+	protected void setVelocity(int car, int velocity) {
+		this.slab.putInt(OffHeapRaceState.offset(car, OffHeapRaceState.VELOCITY), velocity);
+	}
+
+	/**
+	 * Devuelve la posición en el buffer de un campo del registro de un coche
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param field
+	 *            El desplazamiento del campo dentro del registro
+	 * @return La posición del campo en el buffer
+	 */
+	protected static int offset(int car, int field) {
+		return (car * OffHeapRaceState.RECORD_SIZE) + field;
+	}
+
+}
@@ -0,0 +1,160 @@
+package race;
+
+import java.util.Comparator;
+
+/**
+ * Montículo de mínimos de tamaño acotado que conserva los k mejores
+ * {@link ScoreCar} de una carrera sin ordenar la lista completa. El peor de los
+ * coches conservados queda siempre en la cima, por lo que cada coche nuevo sólo
+ * se compara con él, y si va por delante lo sustituye en O(log k). Recorrer n
+ * coches cuesta O(n log k), que para un podio de 3 coches es O(n). En caso de
+ * empate en la distancia va por delante el coche que ocupa una posición
+ * posterior en la lista, igual que al ordenar la lista de menor a mayor
+ * distancia e invertirla después
+ */
+public class PodiumHeap {
+
+	/**
+	 * Array que contiene los coches conservados. Las primeras {@link #size}
+	 * posiciones forman el montículo
+	 */
+	protected final ScoreCar[] cars;
+
+	/**
+	 * El comparador con el que se ordenan los coches por distancia
+	 */
+	protected final Comparator<ScoreCar> comparator;
+
+	/**
+	 * Array que contiene la posición en la lista de la carrera de cada coche
+	 * conservado, para deshacer los empates
+	 */
+	protected final int[] positions;
+
+	/**
+	 * Número de coches conservados
+	 */
+	protected int size;
+
+	/**
+	 * Crea un montículo vacío que conservará como máximo el número de coches
+	 * indicado
+	 *
+	 * @param capacity
+	 *            El número máximo de coches que se conservan
+	 * @param comparator
+	 *            El comparador con el que se ordenan los coches por distancia
+	 */
+	public PodiumHeap(int capacity, Comparator<ScoreCar> comparator) {
+		this.cars = new ScoreCar[capacity];
+		this.positions = new int[capacity];
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Vacía el montículo y devuelve las posiciones en la lista de la carrera de
+	 * los coches conservados, del mejor al peor
+	 *
+	 * @return Un array con las posiciones de los coches conservados, ordenados
+	 *         de mayor a menor distancia
+	 */
+	public int[] drain() {
+		int[] top = new int[this.size];
+		for (int i = top.length - 1; i >= 0; i--) {
+			top[i] = this.positions[0];
+			this.size--;
+			if (this.size > 0) {
+				this.siftDown(this.cars[this.size], this.positions[this.size]);
+			}
+			this.cars[this.size] = null;
+		}
+		return top;
+	}
+
+	/**
+	 * Indica si el coche a va por detrás del coche b
+	 *
+	 * @param a
+	 *            El primer coche
+	 * @param positionA
+	 *            La posición del primer coche en la lista de la carrera
+	 * @param b
+	 *            El segundo coche
+	 * @param positionB
+	 *            La posición del segundo coche en la lista de la carrera
+	 * @return <code>true</code> si el coche a va por detrás del coche b
+	 */
+	protected boolean isBehind(ScoreCar a, int positionA, ScoreCar b, int positionB) {
+		int comparison = this.comparator.compare(a, b);
+		return (comparison < 0) || ((comparison == 0) && (positionA < positionB));
+	}
+
+	/**
+	 * Ofrece un coche al montículo. Si todavía no está lleno se añade; si no,
+	 * sólo sustituye al peor de los conservados cuando va por delante de él
+	 *
+	 * @param sc
+	 *            El coche
+	 * @param position
+	 *            La posición del coche en la lista de la carrera
+	 */
+	public void offer(ScoreCar sc, int position) {
+		if (this.size < this.cars.length) {
+			int i = this.size;
+			this.size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (!this.isBehind(sc, position, this.cars[parent], this.positions[parent])) {
+					break;
+				}
+				this.cars[i] = this.cars[parent];
+				this.positions[i] = this.positions[parent];
+				i = parent;
+			}
+			this.cars[i] = sc;
+			this.positions[i] = position;
+		} else if ((this.size > 0) && this.isBehind(this.cars[0], this.positions[0], sc, position)) {
+			this.siftDown(sc, position);
+		}
+	}
+
+	/**
+	 * Coloca el coche indicado en la cima y lo hunde hasta que sus hijos vayan
+	 * por delante de él
+	 *
+	 * @param sc
+	 *            El coche
+	 * @param position
+	 *            La posición del coche en la lista de la carrera
+	 */
+	protected void siftDown(ScoreCar sc, int position) {
+		int i = 0;
+		int half = this.size >>> 1;
+		while (i < half) {
+			int child = (i << 1) + 1;
+			int right = child + 1;
+			if ((right < this.size)
+					&& this.isBehind(this.cars[right], this.positions[right], this.cars[child], this.positions[child])) {
+				child = right;
+			}
+			if (!this.isBehind(this.cars[child], this.positions[child], sc, position)) {
+				break;
+			}
+			this.cars[i] = this.cars[child];
+			this.positions[i] = this.positions[child];
+			i = child;
+		}
+		this.cars[i] = sc;
+		this.positions[i] = position;
+	}
+
+	/**
+	 * Devuelve el número de coches conservados
+	 *
+	 * @return El número de coches conservados
+	 */
+	public int size() {
+		return this.size;
+	}
+
+}
@@ -1,69 +1,152 @@
 package race;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import utils.ComparatorScoreCarByDistance;
+import utils.JsonStreamWriter;
+import utils.RandomSource;
+import utils.SplittableRandomSource;
+import utils.ThreadLocalRandomSource;
 import utils.Utils;
 
 /**
  * La clase abstracta sirve como clase base para que se implemente cualquier
  * tipo de carrera. En una carrera, participan una lista de garajes, en la que
  * se seleccionan una lista de coches participantes, que provienen de esos
- * garajes. Si slo participa un garaje, todos los coches de ese garaje
- * participan. Si es ms de un garaje el que participa, se selecciona
+ * garajes. Si sólo participa un garaje, todos los coches de ese garaje
+ * participan. Si es más de un garaje el que participa, se selecciona
  * aleatoriamente un coche de cada uno de los garajes
  *
  */
 public abstract class Race {
 
+	/**
+	 * Constante que indica el denominador por defecto de la probabilidad de que
+	 * un coche acelere en cada minuto
+	 */
+	public static final int ACCELERATE_DENOMINATOR = 3;
+
+	/**
+	 * Constante que indica el numerador por defecto de la probabilidad de que
+	 * un coche acelere en cada minuto
+	 */
+	public static final int ACCELERATE_NUMERATOR = 2;
+
 	/**
 	 * Constante que hace referencia a la lista de coches ({@link ScoreCar})
-	 * participantes en una carrera para la exportacin / importacin
+	 * participantes en una carrera para la exportación / importación
 	 */
 	public static final String CAR_LIST = "carList";
 
+	/**
+	 * Constante que indica el número de coches por defecto por debajo del cual
+	 * una carrera en paralelo se ejecuta de manera secuencial
+	 */
+	public static final int DEFAULT_SEQUENTIAL_THRESHOLD = 1024;
+
 	/**
 	 * Constante que hace referencia a la lista de garages ({@link Garage})
-	 * participantes para la exportacin / importacin
+	 * participantes para la exportación / importación
 	 */
 	public static final String GARAGE_LIST = "garageList";
 
 	/**
-	 * Contante que hace referencia al nombre de una carrera para la exportacin
-	 * / importacin
+	 * Contante que hace referencia al nombre de una carrera para la exportación
+	 * / importación
 	 */
 	public static final String NAME = "name";
 
 	/**
-	 * Constante que hace referencia al tipo de una carrera para la exportacin
-	 * / importacin
+	 * Constante que indica el número de coches que forman el podio de una
+	 * carrera
+	 */
+	public static final int PODIUM_SIZE = 3;
+
+	/**
+	 * Los {@link ForkJoinPool} en los que se simulan las carreras en paralelo,
+	 * uno por cada número de hilos, para no crear hilos nuevos en cada
+	 * simulación
+	 */
+	private static final Map<Integer, ForkJoinPool> POOLS = new HashMap<>();
+
+	/**
+	 * Constante que hace referencia al tipo de una carrera para la exportación
+	 * / importación
 	 */
 	public static final String RACE_TYPE = "type";
 
 	/**
-	 * Constante que hace referencia al tipo de carrera de eliminacin para la
-	 * exportacin / importacin
+	 * Constante que hace referencia al tipo de carrera de eliminación para la
+	 * exportación / importación
 	 */
 	public static final String RACE_TYPE_DEATHRACE = "DR";
 
 	/**
-	 * Constante que hace referencia al tipo de carrera estndar para la
-	 * exportacin / importacin
+	 * Constante que hace referencia al tipo de carrera estándar para la
+	 * exportación / importación
 	 */
 	public static final String RACE_TYPE_STANDARDRACE = "SR";
 
 	/**
-	 * Constante que hace referencia al segundo parmetro del constructor para
-	 * la exportacin / importacin
+	 * Constante que hace referencia al segundo parámetro del constructor para
+	 * la exportación / importación
 	 */
 	public static final String SECOND_ARGUMENT = "secondArgument";
 
+	/**
+	 * Variable que indica si la carrera se simula sobre un {@link RaceState},
+	 * guardando la velocidad y la distancia en arrays de tipos primitivos, en
+	 * lugar de recorrer los objetos {@link ScoreCar}
+	 */
+	protected boolean arrayKernel = false;
+
+	/**
+	 * Denominador de la probabilidad de que un coche acelere en cada minuto
+	 */
+	protected int accelerateDenominator = Race.ACCELERATE_DENOMINATOR;
+
+	/**
+	 * Numerador de la probabilidad de que un coche acelere en cada minuto
+	 */
+	protected int accelerateNumerator = Race.ACCELERATE_NUMERATOR;
+
+	/**
+	 * Variable que indica si los coches acumulan la distancia como un número
+	 * entero (ver {@link ScoreCar#setFixedPointDistance(boolean)})
+	 */
+	protected boolean fixedPointDistance = false;
+
+	/**
+	 * Variable que indica si la carrera se simula con un estado propio, sin
+	 * leer ni modificar la velocidad y distancia de los {@link ScoreCar}
+	 * compartidos con otras carreras
+	 */
+	protected boolean isolatedState = false;
+
+	/**
+	 * Variable que indica si la carrera se simula sobre un
+	 * {@link OffHeapRaceState}, con el estado de los coches fuera del montón
+	 * de Java
+	 */
+	protected boolean offHeapState = false;
+
+	/**
+	 * Variable que indica si las decisiones de acelerar o frenar se obtienen
+	 * consumiendo de pocos en pocos los bits de cada número aleatorio (ver
+	 * {@link RaceState#setBitSliced(boolean)})
+	 */
+	protected boolean bitSlicedDecisions = false;
+
 	/**
 	 * Variable que hace referencia a la lista de coches participantes en una
 	 * carrera
@@ -72,7 +155,7 @@ public abstract class Race {
 
 	/**
 	 * Variable que se utiliza para guardar un comparador que permite ordenar
-	 * los {@link ScoreCar} segn la distancia que han recorrido
+	 * los {@link ScoreCar} según la distancia que han recorrido
 	 */
 	protected Comparator<ScoreCar> comparator = new ComparatorScoreCarByDistance();
 
@@ -87,6 +170,52 @@ public abstract class Race {
 	 */
 	protected String name;
 
+	/**
+	 * Variable que indica el número de hilos con los que se simula la carrera.
+	 * Con un valor mayor que 1 la carrera se simula sobre un {@link RaceState}
+	 * repartiendo los coches en un {@link ForkJoinPool}
+	 */
+	protected int parallelism = 1;
+
+	/**
+	 * Variable que guarda el resultado de la última vez que se simuló la
+	 * carrera, o <code>null</code> si todavía no se ha simulado con la lista
+	 * de coches actual
+	 */
+	protected RaceResult raceResult;
+
+	/**
+	 * Variable que guarda la fuente de números aleatorios de la carrera
+	 */
+	protected RandomSource randomSource = ThreadLocalRandomSource.getInstance();
+
+	/**
+	 * Variable que guarda la semilla fija de la carrera, de la que se vuelve a
+	 * crear la fuente de números aleatorios al comenzar cada simulación, o
+	 * <code>null</code> si la carrera no tiene semilla fija
+	 */
+	protected Long seed;
+
+	/**
+	 * Variable que indica el número de coches por debajo del cual la
+	 * simulación en paralelo no divide más el trabajo
+	 */
+	protected int sequentialThreshold = Race.DEFAULT_SEQUENTIAL_THRESHOLD;
+
+	/**
+	 * Variable que indica cuántos minutos avanzan los coches de una sola vez
+	 * mediante una {@link VelocityTransitionTable}. Con 1 o menos los coches
+	 * avanzan de minuto en minuto
+	 */
+	protected int skipAheadTicks = 0;
+
+	/**
+	 * Registro de la copia binaria con los garajes y coches participantes,
+	 * mientras no se hayan cargado, o <code>null</code> si ya están en las
+	 * listas
+	 */
+	protected volatile AppSnapshot.Record snapshotRecord;
+
 	/**
 	 * Contructor de la clase {@link Race}
 	 *
@@ -98,7 +227,58 @@ public abstract class Race {
 	}
 
 	/**
-	 * Mtodo genrico para exportar una carrera (sin lista de {@link Garage} y
+	 * Crea un {@link RaceState} para los coches de la carrera, con la fuente de
+	 * números aleatorios y la configuración de simulación de la carrera
+	 *
+	 * @return Un nuevo {@link RaceState} con los contadores a 0
+	 */
+	protected RaceState createRaceState() {
+		RaceState state;
+		if (this.isOffHeapState()) {
+			state = new OffHeapRaceState(this.getCarList(), this.getRandomSource());
+		} else {
+			state = new RaceState(this.getCarList(), this.getRandomSource());
+		}
+		state.setFixedPoint(this.isFixedPointDistance());
+		state.setAccelerateProbability(this.getAccelerateNumerator(), this.getAccelerateDenominator());
+		state.setBitSliced(this.isBitSlicedDecisions());
+		state.setSkipAheadTicks(this.getSkipAheadTicks());
+		return state;
+	}
+
+	/**
+	 * Establece en todos los coches de la carrera el modo de distancia de la
+	 * carrera, antes de hacerlos circular sobre los objetos {@link ScoreCar}
+	 */
+	protected void applyDistanceMode() {
+		for (ScoreCar sc : this.getCarList()) {
+			sc.setFixedPointDistance(this.isFixedPointDistance());
+		}
+	}
+
+	/**
+	 * Hace circular todos los coches de un {@link RaceState} durante el número
+	 * de minutos indicado. Si la carrera tiene un paralelismo mayor que 1 y el
+	 * número de coches supera el umbral secuencial, los coches se reparten en
+	 * bloques que se ejecutan en el {@link ForkJoinPool} compartido para ese
+	 * paralelismo (ver {@link #getPool(int)})
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 * @param minutes
+	 *            El número de minutos que circula cada coche
+	 */
+	protected void driveCars(RaceState state, int minutes) {
+		if ((this.getParallelism() > 1) && (state.size() > this.getSequentialThreshold())) {
+			Race.getPool(this.getParallelism())
+					.invoke(new RaceStateTask(state, 0, state.size(), minutes, this.getSequentialThreshold()));
+		} else {
+			state.driveInRace(0, state.size(), minutes);
+		}
+	}
+
+	/**
+	 * Método genérico para exportar una carrera (sin lista de {@link Garage} y
 	 * de {@link ScoreCar} participantes)
 	 *
 	 * @return Un objeto {@link JSONObject}
@@ -118,8 +298,9 @@ public abstract class Race {
 	}
 
 	/**
-	 * Mtodo genrico para exportar una carrera (con lista de {@link Garage} y
-	 * de {@link ScoreCar} participantes)
+	 * Método genérico para exportar una carrera (con lista de {@link Garage} y
+	 * de {@link ScoreCar} participantes). Si la carrera ya se ha simulado, los
+	 * coches se exportan en el orden de su {@link RaceResult}
 	 *
 	 * @return Un objeto {@link JSONObject}
 	 */
@@ -141,8 +322,14 @@ public abstract class Race {
 		export.put(Race.GARAGE_LIST, garageList);
 
 		JSONArray carList = new JSONArray();
-		for (ScoreCar sc : this.getCarList()) {
-			carList.add(sc.exportCarToJson());
+		if (this.getRaceResult() != null) {
+			for (int i = 0; i < this.getRaceResult().size(); i++) {
+				carList.add(this.getRaceResult().getCar(i).exportCarToJson());
+			}
+		} else {
+			for (ScoreCar sc : this.getCarList()) {
+				carList.add(sc.exportCarToJson());
+			}
 		}
 		export.put(Race.CAR_LIST, carList);
 
@@ -150,12 +337,144 @@ public abstract class Race {
 
 	}
 
+	/**
+	 * Escribe el nombre, el tipo y el segundo argumento de la carrera en el
+	 * objeto abierto de un {@link JsonStreamWriter}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe la carrera
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	protected void writeRaceFieldsTo(JsonStreamWriter writer) throws IOException {
+		writer.name(Race.NAME).value(this.getName());
+		if (this instanceof StandardRace) {
+			writer.name(Race.RACE_TYPE).value(Race.RACE_TYPE_STANDARDRACE);
+			writer.name(Race.SECOND_ARGUMENT).value(((StandardRace) this).getRaceHours());
+		} else {
+			writer.name(Race.RACE_TYPE).value(Race.RACE_TYPE_DEATHRACE);
+			writer.name(Race.SECOND_ARGUMENT).value(((DeathRace) this).getLapsToStart());
+		}
+	}
+
+	/**
+	 * Escribe la carrera (sin lista de {@link Garage} y de {@link ScoreCar}
+	 * participantes) directamente en un {@link JsonStreamWriter}, igual que
+	 * {@link #exportRaceInfo()}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe la carrera
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeRaceInfoTo(JsonStreamWriter writer) throws IOException {
+		writer.beginObject();
+		this.writeRaceFieldsTo(writer);
+		writer.endObject();
+	}
+
+	/**
+	 * Escribe la carrera para la exportación normalizada: los garajes
+	 * participantes se indican por su nombre y los coches por su
+	 * identificador en la {@link CarTable}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe la carrera
+	 * @param cars
+	 *            La tabla de coches de la exportación
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeRaceWithCarIdsTo(JsonStreamWriter writer, CarTable cars) throws IOException {
+		writer.beginObject();
+		this.writeRaceFieldsTo(writer);
+
+		writer.name(Race.GARAGE_LIST).beginArray();
+		for (Garage g : this.getGarageList()) {
+			writer.value(g.getName());
+		}
+		writer.endArray();
+
+		writer.name(Race.CAR_LIST);
+		cars.writeIdsTo(writer, this.getExportedCarList());
+		writer.endObject();
+	}
+
+	/**
+	 * Escribe la carrera (con lista de {@link Garage} y de {@link ScoreCar}
+	 * participantes) directamente en un {@link JsonStreamWriter}, igual que
+	 * {@link #exportRaceWithGarageAndCarsToJson()}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe la carrera
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeRaceWithGarageAndCarsTo(JsonStreamWriter writer) throws IOException {
+		writer.beginObject();
+		this.writeRaceFieldsTo(writer);
+
+		writer.name(Race.GARAGE_LIST).beginArray();
+		for (Garage g : this.getGarageList()) {
+			g.writeGarageTo(writer);
+		}
+		writer.endArray();
+
+		writer.name(Race.CAR_LIST).beginArray();
+		if (this.getRaceResult() != null) {
+			for (int i = 0; i < this.getRaceResult().size(); i++) {
+				this.getRaceResult().getCar(i).writeCarTo(writer);
+			}
+		} else {
+			for (ScoreCar sc : this.getCarList()) {
+				sc.writeCarTo(writer);
+			}
+		}
+		writer.endArray();
+		writer.endObject();
+	}
+
+	/**
+	 * Devuelve los coches participantes en el orden en que se exportan: el de
+	 * su {@link RaceResult} si la carrera ya se ha simulado, o el de
+	 * inscripción si no
+	 *
+	 * @return La lista de coches participantes
+	 */
+	public List<ScoreCar> getExportedCarList() {
+		if (this.getRaceResult() != null) {
+			return this.getRaceResult().getTopCars(this.getRaceResult().size());
+		}
+		return this.getCarList();
+	}
+
+	/**
+	 * Devuelve el denominador de la probabilidad de que un coche acelere en
+	 * cada minuto
+	 *
+	 * @return El denominador de la probabilidad de acelerar
+	 */
+	public int getAccelerateDenominator() {
+		return this.accelerateDenominator;
+	}
+
+	/**
+	 * Devuelve el numerador de la probabilidad de que un coche acelere en cada
+	 * minuto
+	 *
+	 * @return El numerador de la probabilidad de acelerar
+	 */
+	public int getAccelerateNumerator() {
+		return this.accelerateNumerator;
+	}
+
 	/**
 	 * Devuelve la lista de {@link ScoreCar} que participan en una carrera
 	 *
 	 * @return La lista de {@link ScoreCar} que participan en una carrera
 	 */
 	public List<ScoreCar> getCarList() {
+		this.loadSnapshotRecord();
 		return this.carList;
 	}
 
@@ -163,7 +482,7 @@ public abstract class Race {
 	 * Devuelve el comparador que se establece para ordenar por distancia varios
 	 * {@link ScoreCar}
 	 *
-	 * @return el comparador de {@link ScoreCar} segn distancia
+	 * @return el comparador de {@link ScoreCar} según distancia
 	 */
 	public Comparator<ScoreCar> getComparator() {
 		return this.comparator;
@@ -175,6 +494,7 @@ public abstract class Race {
 	 * @return la lista de {@link Garage} que participan en una carrera
 	 */
 	public List<Garage> getGarageList() {
+		this.loadSnapshotRecord();
 		return this.garageList;
 	}
 
@@ -189,20 +509,16 @@ public abstract class Race {
 
 	/**
 	 * Devuelve el podio de una carrera. El podio de una carrera son los 3
-	 * {@link ScoreCar} que ms distancia han recorrido en una carrera. Se
-	 * ordena la lista {@link #carList} mediante el mtodo
-	 * {@link #sortCarsByDistanceAndReverse()}
+	 * {@link ScoreCar} que más distancia han recorrido en una carrera. Se
+	 * obtienen del resultado de la carrera mediante el método
+	 * {@link #rankCars(int)}, sin modificar el orden de la lista
+	 * {@link #carList}
 	 *
 	 * @return El podio de una carrera
 	 */
 	public String getPodium() {
-		int size = 3;
-
-		this.sortCarsByDistanceAndReverse();
-
-		if (this.getCarList().size() < size) {
-			size = this.getCarList().size();
-		}
+		RaceResult result = this.rankCars(Race.PODIUM_SIZE);
+		int size = Math.min(Race.PODIUM_SIZE, result.size());
 		StringBuilder builder = new StringBuilder();
 		builder.append("Carrera: ");
 		builder.append(this.getName());
@@ -219,20 +535,44 @@ public abstract class Race {
 		builder.append("Podio: ");
 		builder.append("\n");
 		for (int i = 0; i < size; i++) {
-			ScoreCar sc = this.getCarList().get(i);
+			ScoreCar sc = result.getCar(i);
 			builder.append("\t");
-			builder.append(" ");
+			builder.append(" ");
 			builder.append(i + 1);
-			builder.append(" puesto: ");
+			builder.append("º puesto: ");
 			builder.append(sc.getDetails());
 			builder.append(" con una distancia de ");
-			builder.append(Utils.formatLocalNumber(sc.getDistance()));
+			builder.append(Utils.formatLocalNumber(result.getDistance(i)));
 			builder.append(" m.\n");
 		}
 		return builder.toString();
 	}
 
 
+	/**
+	 * Devuelve los coches que más distancia han recorrido en la carrera,
+	 * ordenados de mayor a menor distancia, sin modificar el orden de la lista
+	 * {@link #carList}. Se obtienen mediante el método {@link #rankCars(int)}.
+	 * Los empates se resuelven igual que con
+	 * {@link #sortCarsByDistanceAndReverse()}
+	 *
+	 * @param k
+	 *            El número de coches a obtener
+	 * @return Una lista con los k mejores coches, o con todos si hay menos
+	 */
+	public List<ScoreCar> getTopCars(int k) {
+		return this.rankCars(k).getTopCars(k);
+	}
+
+	/**
+	 * Devuelve el número de hilos con los que se simula la carrera
+	 *
+	 * @return El número de hilos con los que se simula la carrera
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
 	/**
 	 * Obtiene el podio de una carrera, como resumen para un torneo
 	 *
@@ -241,13 +581,119 @@ public abstract class Race {
 	public abstract String getPodiumForTournament();
 
 	/**
-	 * Este mtodo abstracto servir para otorgar puntos a un {@link ScoreCar}
-	 * que participe en la carrera
+	 * Devuelve el {@link ForkJoinPool} compartido para el número de hilos
+	 * indicado, creándolo la primera vez que se solicita. Sus hilos terminan
+	 * solos cuando llevan un tiempo sin trabajo y no impiden que termine el
+	 * programa
+	 *
+	 * @param parallelism
+	 *            El número de hilos
+	 * @return El {@link ForkJoinPool} con ese número de hilos
 	 */
-	public abstract void givePoints();
+	protected static synchronized ForkJoinPool getPool(int parallelism) {
+		ForkJoinPool pool = Race.POOLS.get(parallelism);
+		if (pool == null) {
+			pool = new ForkJoinPool(parallelism);
+			Race.POOLS.put(parallelism, pool);
+		}
+		return pool;
+	}
 
 	/**
-	 * Este mtodo inicializa las variables que hacen referencia a las listas de
+	 * Devuelve el resultado de la última vez que se simuló la carrera
+	 *
+	 * @return El resultado de la carrera, o <code>null</code> si todavía no se
+	 *         ha simulado con la lista de coches actual
+	 */
+	public RaceResult getRaceResult() {
+		return this.raceResult;
+	}
+
+	/**
+	 * Devuelve la fuente de números aleatorios de la carrera
+	 *
+	 * @return La fuente de números aleatorios de la carrera
+	 */
+	public RandomSource getRandomSource() {
+		return this.randomSource;
+	}
+
+	/**
+	 * Devuelve la semilla fija de la carrera
+	 *
+	 * @return La semilla de la carrera, o <code>null</code> si no tiene
+	 *         semilla fija
+	 */
+	public Long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Devuelve el número de coches por debajo del cual la simulación en
+	 * paralelo se ejecuta de manera secuencial
+	 *
+	 * @return El umbral secuencial de la carrera
+	 */
+	public int getSequentialThreshold() {
+		return this.sequentialThreshold;
+	}
+
+	/**
+	 * Devuelve cuántos minutos avanzan los coches de una sola vez
+	 *
+	 * @return El número de minutos que avanzan los coches de una sola vez
+	 */
+	public int getSkipAheadTicks() {
+		return this.skipAheadTicks;
+	}
+
+	/**
+	 * Calcula los puntos que gana cada {@link ScoreCar} en la carrera según su
+	 * puesto en el resultado, obtenidos con el método
+	 * {@link #pointsForPosition(int, int)}, sin sumarlos a la puntuación de
+	 * los coches. Permite simular varias carreras a la vez y sumar los puntos
+	 * después
+	 *
+	 * @return Un array con los puntos de cada coche, en el orden de la lista de
+	 *         la carrera
+	 */
+	public int[] computePoints() {
+		RaceResult result = this.rankCars(this.getCarList().size());
+		int[] points = new int[result.getCarCount()];
+		for (int i = 0; i < result.size(); i++) {
+			points[result.getIndex(i)] = this.pointsForPosition(i, result.getCarCount());
+		}
+		return points;
+	}
+
+	/**
+	 * Otorga a cada {@link ScoreCar} que participe en la carrera los puntos
+	 * que le corresponden según su puesto en el resultado de la carrera,
+	 * calculados con el método {@link #computePoints()}
+	 */
+	public void givePoints() {
+		this.givePoints(this.computePoints());
+	}
+
+	/**
+	 * Suma a la puntuación de cada {@link ScoreCar} de la carrera los puntos
+	 * indicados
+	 *
+	 * @param points
+	 *            Los puntos de cada coche, en el orden de la lista de la
+	 *            carrera, obtenidos con {@link #computePoints()}
+	 */
+	public void givePoints(int[] points) {
+		RaceResult result = this.rankCars(0);
+		for (int i = 0; i < points.length; i++) {
+			if (points[i] != 0) {
+				result.getParticipant(i).addScoreToCar(points[i]);
+			}
+		}
+	}
+
+	/**
+	 * Este método inicializa las variables que hacen referencia a las listas de
 	 * {@link Garage} y de {@link ScoreCar} a listas de tipo {@link ArrayList}
 	 */
 	public void init() {
@@ -257,13 +703,135 @@ public abstract class Race {
 	}
 
 	/**
-	 * Registra los coches en una carrera. Si slo participa un garaje
+	 * Carga los garajes y coches participantes desde el registro de la copia
+	 * binaria de la carrera, si todavía no se han cargado
+	 */
+	protected void loadSnapshotRecord() {
+		if (this.snapshotRecord != null) {
+			synchronized (this) {
+				AppSnapshot.Record record = this.snapshotRecord;
+				if (record != null) {
+					this.garageList.addAll(record.readGarages());
+					this.carList.addAll(record.readCarReferences());
+					this.snapshotRecord = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indica si la carrera se simula sobre un {@link RaceState}
+	 *
+	 * @return <code>true</code> si la carrera se simula sobre arrays de tipos
+	 *         primitivos, <code>false</code> en caso contrario
+	 */
+	public boolean isArrayKernel() {
+		return this.arrayKernel;
+	}
+
+	/**
+	 * Indica si los coches acumulan la distancia como un número entero
+	 *
+	 * @return <code>true</code> si la distancia se acumula como un número
+	 *         entero, <code>false</code> si se acumula en metros
+	 */
+	public boolean isFixedPointDistance() {
+		return this.fixedPointDistance;
+	}
+
+	/**
+	 * Indica si la carrera se simula con un estado propio
+	 *
+	 * @return <code>true</code> si la carrera no lee ni modifica la velocidad y
+	 *         distancia de los coches, <code>false</code> en caso contrario
+	 */
+	public boolean isIsolatedState() {
+		return this.isolatedState;
+	}
+
+	/**
+	 * Indica si la carrera se simula con el estado de los coches fuera del
+	 * montón de Java
+	 *
+	 * @return <code>true</code> si la carrera se simula sobre un
+	 *         {@link OffHeapRaceState}, <code>false</code> en caso contrario
+	 */
+	public boolean isOffHeapState() {
+		return this.offHeapState;
+	}
+
+	/**
+	 * Indica si las decisiones de acelerar o frenar se obtienen consumiendo de
+	 * pocos en pocos los bits de cada número aleatorio
+	 *
+	 * @return <code>true</code> si se consumen los bits de pocos en pocos,
+	 *         <code>false</code> en caso contrario
+	 */
+	public boolean isBitSlicedDecisions() {
+		return this.bitSlicedDecisions;
+	}
+
+	/**
+	 * Obtiene la opción que se le pasa a {@link ScoreCar#driveInRace(int)} en
+	 * cada minuto: 1 para acelerar, con la probabilidad establecida en
+	 * {@link #setAccelerateProbability(int, int)}, y 0 para frenar. Con la
+	 * probabilidad por defecto equivale a
+	 * {@code Utils.getRandomNumberInRange(0, 2)}
+	 *
+	 * @return 1 si el coche acelera, 0 si frena
+	 */
+	protected int nextDriveOption() {
+		int r = this.getRandomSource().nextInt(this.getAccelerateDenominator());
+		if (r >= (this.getAccelerateDenominator() - this.getAccelerateNumerator())) {
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Este método abstracto servirá para obtener los puntos que gana el
+	 * {@link ScoreCar} que queda en el puesto indicado
+	 *
+	 * @param position
+	 *            El puesto, empezando en 0 para el ganador
+	 * @param carCount
+	 *            El número de coches que participan en la carrera
+	 * @return Los puntos que gana el coche
+	 */
+	protected abstract int pointsForPosition(int position, int carCount);
+
+	/**
+	 * Devuelve la clasificación de la carrera con al menos los k primeros
+	 * puestos. Si la carrera ya se ha simulado se devuelve su
+	 * {@link RaceResult}; en caso contrario se calcula, sin guardarla, a partir
+	 * de la distancia actual de los coches: para pocos puestos se usa un
+	 * {@link PodiumHeap}, en O(n log k), y para la clasificación completa se
+	 * ordenan los índices de los coches. En los dos casos se compara con
+	 * {@link #getComparator()}
+	 *
+	 * @param k
+	 *            El número de puestos necesarios
+	 * @return La clasificación de la carrera
+	 */
+	protected RaceResult rankCars(int k) {
+		if (this.getRaceResult() != null) {
+			return this.getRaceResult();
+		}
+		if (k < this.getCarList().size()) {
+			return RaceResult.topOf(this.getCarList(), this.getComparator(), k);
+		}
+		return RaceResult.of(this.getCarList(), this.getComparator());
+	}
+
+	/**
+	 * Registra los coches en una carrera. Si sólo participa un garaje
 	 * ({@link Garage}) en la carrera, registra en la carrera todos los
 	 * {@link ScoreCar} que pertenecen a ese garaje. Si participan en la carrera
-	 * ms de un garaje, se registra slo un {@link ScoreCar} de cada uno de los
+	 * más de un garaje, se registra sólo un {@link ScoreCar} de cada uno de los
 	 * garajes.
 	 */
 	public void registerCars() {
+		this.setRaceResult(null);
 		if (this.getGarageList().size() == 1) {
 			Garage w = this.getGarageList().get(0);
 			List<ScoreCar> carListFromGarage = w.getGarageCarList();
@@ -271,19 +839,20 @@ public abstract class Race {
 			this.getCarList().addAll(carListFromGarage);
 		} else {
 			for (Garage w : this.getGarageList()) {
-				this.getCarList().add(w.getRandomCarFromList());
+				this.getCarList().add(w.getRandomCarFromList(this.getRandomSource()));
 			}
 		}
 	}
 
 	/**
-	 * Se registra la lista de {@link ScoreCar} pasada como parmetro en la
+	 * Se registra la lista de {@link ScoreCar} pasada como parámetro en la
 	 * lista de {@link ScoreCar} que participan en una carrera
 	 *
 	 * @param listCars
-	 *            Lista de {@link ScoreCar} que se registrarn en una carrera
+	 *            Lista de {@link ScoreCar} que se registrarán en una carrera
 	 */
 	public void registerCars(List<ScoreCar> listCars) {
+		this.setRaceResult(null);
 		this.getCarList().addAll(listCars);
 	}
 
@@ -309,6 +878,18 @@ public abstract class Race {
 		this.getGarageList().remove(g);
 	}
 
+	/**
+	 * Si la carrera tiene semilla fija, vuelve a crear a partir de ella la
+	 * fuente de números aleatorios, de manera que cada simulación de la
+	 * carrera empieza con la misma secuencia de números. Se llama al comenzar
+	 * {@link #startRace()}
+	 */
+	protected void reseedRandomSource() {
+		if (this.getSeed() != null) {
+			this.randomSource = new SplittableRandomSource(this.getSeed());
+		}
+	}
+
 	/**
 	 * Reinicia todos los contadores ({@link ScoreCar#restartCounters()}) de los
 	 * coches participantes en una carrera
@@ -320,24 +901,80 @@ public abstract class Race {
 	}
 
 	/**
-	 * Invierte la posicin de los elementos de una lista pasada por parmetro.
-	 * El primer elemento ser el ltimo, el segundo ser el penltimo, etc
+	 * Invierte la posición de los elementos de una lista pasada por parámetro.
+	 * El primer elemento será el último, el segundo será el penúltimo, etc
 	 *
 	 * @param listToSort
-	 *            La lista que ser invertida
+	 *            La lista que será invertida
 	 */
 	public void reverseList(List<ScoreCar> listToSort) {
 		Collections.reverse(listToSort);
 	}
 
+	/**
+	 * Devuelve cuántos puestos de la clasificación ganan puntos, es decir, a
+	 * partir de qué puesto {@link #pointsForPosition(int, int)} devuelve
+	 * siempre 0. Por defecto todos los puestos pueden ganar puntos
+	 *
+	 * @param carCount
+	 *            El número de coches que participan en la carrera
+	 * @return El número de puestos que ganan puntos
+	 */
+	protected int scoredPositions(int carCount) {
+		return carCount;
+	}
+
+	/**
+	 * Establece la probabilidad de que un coche acelere en cada minuto, como la
+	 * fracción numerator / denominator. Por defecto es 2/3
+	 *
+	 * @param numerator
+	 *            El numerador, entre 0 y el denominador
+	 * @param denominator
+	 *            El denominador, mayor que 0
+	 */
+	public void setAccelerateProbability(int numerator, int denominator) {
+		if ((denominator < 1) || (numerator < 0) || (numerator > denominator)) {
+			throw new IllegalArgumentException("Probabilidad no válida: " + numerator + "/" + denominator);
+		}
+		this.accelerateNumerator = numerator;
+		this.accelerateDenominator = denominator;
+	}
+
+	/**
+	 * Establece si la carrera se simula sobre un {@link RaceState}
+	 *
+	 * @param arrayKernel
+	 *            <code>true</code> para simular la carrera sobre arrays de
+	 *            tipos primitivos, <code>false</code> en caso contrario
+	 */
+	public void setArrayKernel(boolean arrayKernel) {
+		this.arrayKernel = arrayKernel;
+	}
+
+	/**
+	 * Establece si las decisiones de acelerar o frenar se obtienen consumiendo
+	 * de pocos en pocos los bits de cada número aleatorio. Implica simular la
+	 * carrera sobre un {@link RaceState}
+	 *
+	 * @param bitSlicedDecisions
+	 *            <code>true</code> para consumir los bits de pocos en pocos,
+	 *            <code>false</code> para generar un número por cada decisión
+	 */
+	public void setBitSlicedDecisions(boolean bitSlicedDecisions) {
+		this.bitSlicedDecisions = bitSlicedDecisions;
+	}
+
 	/**
 	 * Establece la lista de {@link ScoreCar} participantes en una carrera
-	 * recibidos por parmetro
+	 * recibidos por parámetro
 	 *
 	 * @param carList
 	 *            la lista de coches {@link ScoreCar}
 	 */
 	public void setCarList(List<ScoreCar> carList) {
+		this.loadSnapshotRecord();
+		this.setRaceResult(null);
 		this.carList = carList;
 	}
 
@@ -350,6 +987,19 @@ public abstract class Race {
 		this.comparator = comparator;
 	}
 
+	/**
+	 * Establece si los coches acumulan la distancia como un número entero. La
+	 * distancia entera evita los errores de redondeo de sumar metros en cada
+	 * minuto y hace que los empates sean exactos
+	 *
+	 * @param fixedPointDistance
+	 *            <code>true</code> para acumular la distancia como un número
+	 *            entero, <code>false</code> para acumularla en metros
+	 */
+	public void setFixedPointDistance(boolean fixedPointDistance) {
+		this.fixedPointDistance = fixedPointDistance;
+	}
+
 	/**
 	 * Establece la lista de garajes participantes en una carrera
 	 *
@@ -357,9 +1007,41 @@ public abstract class Race {
 	 *            La lista de garajes participantes en una carrera
 	 */
 	public void setGarageList(List<Garage> garageList) {
+		this.loadSnapshotRecord();
 		this.garageList = garageList;
 	}
 
+	/**
+	 * Establece si la carrera se simula con un estado propio. En ese caso la
+	 * carrera se simula siempre sobre un {@link RaceState} nuevo, con los
+	 * contadores a 0, y al terminar no se vuelcan la velocidad y distancia en
+	 * los {@link ScoreCar}: el resultado sólo queda en el {@link RaceResult}.
+	 * Como los coches compartidos no se modifican, varias carreras de un
+	 * torneo pueden simularse a la vez sin llamar a {@link #resetCars()} entre
+	 * ellas
+	 *
+	 * @param isolatedState
+	 *            <code>true</code> para simular la carrera con un estado
+	 *            propio, <code>false</code> en caso contrario
+	 */
+	public void setIsolatedState(boolean isolatedState) {
+		this.isolatedState = isolatedState;
+	}
+
+	/**
+	 * Establece si la carrera se simula con el estado de los coches fuera del
+	 * montón de Java, en un {@link OffHeapRaceState}. Implica simular la
+	 * carrera sobre un {@link RaceState}; está pensado para carreras con
+	 * millones de coches
+	 *
+	 * @param offHeapState
+	 *            <code>true</code> para guardar el estado fuera del montón,
+	 *            <code>false</code> para guardarlo en arrays
+	 */
+	public void setOffHeapState(boolean offHeapState) {
+		this.offHeapState = offHeapState;
+	}
+
 	/**
 	 * Establece el nombre de una carrera
 	 *
@@ -370,6 +1052,17 @@ public abstract class Race {
 		this.name = name;
 	}
 
+	/**
+	 * Establece el número de hilos con los que se simula la carrera
+	 *
+	 * @param parallelism
+	 *            El número de hilos, 1 para simular la carrera en el hilo
+	 *            actual
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
 	/**
 	 * Establece los puntos del podio de una carrera
 	 */
@@ -377,9 +1070,106 @@ public abstract class Race {
 
 	}
 
+	/**
+	 * Establece el resultado de la carrera. Lo llama {@link #startRace()} al
+	 * terminar la simulación
+	 *
+	 * @param raceResult
+	 *            El resultado de la carrera, o <code>null</code> para
+	 *            descartarlo
+	 */
+	protected void setRaceResult(RaceResult raceResult) {
+		this.raceResult = raceResult;
+	}
+
+	/**
+	 * Establece la fuente de números aleatorios de la carrera, que sustituye a
+	 * la semilla fija si la había
+	 *
+	 * @param randomSource
+	 *            La fuente de números aleatorios
+	 */
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+		this.seed = null;
+	}
+
+	/**
+	 * Establece una semilla para la carrera, de manera que con la misma semilla
+	 * y la misma configuración se obtiene siempre el mismo resultado. La
+	 * semilla se guarda y cada simulación vuelve a empezar a partir de ella
+	 * (ver {@link #reseedRandomSource()}), por lo que simular varias veces la
+	 * misma carrera también da el mismo resultado
+	 *
+	 * @param seed
+	 *            La semilla de la carrera
+	 */
+	public void setSeed(long seed) {
+		this.setRandomSource(new SplittableRandomSource(seed));
+		this.seed = seed;
+	}
+
+	/**
+	 * Establece el número de coches por debajo del cual la simulación en
+	 * paralelo se ejecuta de manera secuencial
+	 *
+	 * @param sequentialThreshold
+	 *            El umbral secuencial de la carrera
+	 */
+	public void setSequentialThreshold(int sequentialThreshold) {
+		this.sequentialThreshold = sequentialThreshold;
+	}
+
+	/**
+	 * Establece cuántos minutos avanzan los coches de una sola vez mediante una
+	 * {@link VelocityTransitionTable}, lo que permite simular carreras
+	 * estándar muy largas con una consulta a la tabla por cada bloque de
+	 * minutos. Con un valor mayor que 1 la carrera se simula sobre un
+	 * {@link RaceState}. Salvo con probabilidad 1/2, cada bloque se elige con
+	 * un solo número aleatorio de la distribución de sus resultados, por lo
+	 * que con la misma semilla se obtiene otra carrera, con la misma
+	 * distribución, que minuto a minuto
+	 *
+	 * @param skipAheadTicks
+	 *            El número de minutos, hasta
+	 *            {@link VelocityTransitionTable#MAX_TICKS}, o 1 o menos para
+	 *            avanzar de minuto en minuto
+	 */
+	public void setSkipAheadTicks(int skipAheadTicks) {
+		if (skipAheadTicks > VelocityTransitionTable.MAX_TICKS) {
+			throw new IllegalArgumentException("Número de minutos no válido: " + skipAheadTicks);
+		}
+		this.skipAheadTicks = skipAheadTicks;
+	}
+
+	/**
+	 * Establece el registro de la copia binaria del que se cargarán los
+	 * garajes y coches participantes la primera vez que se acceda a ellos
+	 *
+	 * @param snapshotRecord
+	 *            El registro, situado al principio de la lista de garajes
+	 */
+	protected void setSnapshotRecord(AppSnapshot.Record snapshotRecord) {
+		this.snapshotRecord = snapshotRecord;
+	}
+
+	/**
+	 * Este método abstracto servirá para simular la carrera sobre un
+	 * {@link RaceState} ya preparado, sin cargar ni volcar los datos de los
+	 * {@link ScoreCar}
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 * @param parallel
+	 *            <code>true</code> para repartir los coches entre hilos según
+	 *            el paralelismo de la carrera, <code>false</code> para
+	 *            simularla en el hilo actual
+	 */
+	protected abstract void simulate(RaceState state, boolean parallel);
+
 	/**
 	 * Ordena la lista de {@link ScoreCar} participantes en la carrera,
-	 * ordenados de menor a mayor distancia recorrida, segn el comparador usado
+	 * ordenados de menor a mayor distancia recorrida, según el comparador usado
 	 * en {@link #getComparator()}
 	 *
 	 * @param listToSort
@@ -391,7 +1181,7 @@ public abstract class Race {
 
 	/**
 	 * Ordena la lista de de {@link ScoreCar} participantes en una carrera, de
-	 * menor a mayor distancia, y luego invierte la posicin de los elementos de
+	 * menor a mayor distancia, y luego invierte la posición de los elementos de
 	 * la lista
 	 */
 	public void sortCarsByDistanceAndReverse() {
@@ -399,9 +1189,9 @@ public abstract class Race {
 	}
 
 	/**
-	 * Ordena la lista que se le pasa por parmetro que contengan elementos
+	 * Ordena la lista que se le pasa por parámetro que contengan elementos
 	 * {@link ScoreCar}, de menor a mayor distancia, y luego invierte la
-	 * posicin de los elementos de la lista
+	 * posición de los elementos de la lista
 	 *
 	 * @param listToSort
 	 *            La lista a ordenar
@@ -412,39 +1202,65 @@ public abstract class Race {
 	}
 
 	/**
-	 * Mtodo para comenzar la carrera
+	 * Método para comenzar la carrera. Empieza llamando a
+	 * {@link #reseedRandomSource()} y, al terminar, la carrera guarda su
+	 * {@link RaceResult}
 	 */
 	public abstract void startRace();
 
 	/**
-	 * Importa una carrera, creando una carrera de algn tipo especficoo
+	 * Indica si la carrera debe simularse sobre un {@link RaceState}, ya sea
+	 * porque se ha activado {@link #isArrayKernel()}, porque se simula en
+	 * paralelo, porque se ha activado {@link #isBitSlicedDecisions()}, porque
+	 * los coches avanzan varios minutos de una sola vez, porque se simula con
+	 * un estado propio o porque el estado se guarda fuera del montón
+	 *
+	 * @return <code>true</code> si la carrera se simula sobre un
+	 *         {@link RaceState}, <code>false</code> en caso contrario
+	 */
+	protected boolean useRaceState() {
+		return this.isArrayKernel() || (this.getParallelism() > 1) || this.isBitSlicedDecisions() || (this.getSkipAheadTicks() > 1)
+				|| this.isIsolatedState() || this.isOffHeapState();
+	}
+
+	/**
+	 * Importa una carrera, creando una carrera de algún tipo específicoo
 	 * (usando la polimorfia, al devolver un objeto de tipo {@link Race})
 	 *
 	 * @param raceToImport
-	 *            El {@link JSONObject} que contiene la informacin de la
+	 *            El {@link JSONObject} que contiene la información de la
 	 *            carrera crear
 	 * @return Una carrera ({@link Race}) importada de un objecto
 	 *         {@link JSONObject}
 	 */
 	public static Race importRace(JSONObject raceToImport) {
+		return Race.importRace(raceToImport, new IdentityMap());
+	}
+
+	/**
+	 * Importa una carrera de un {@link JSONObject}, resolviendo sus garajes y
+	 * coches participantes a los objetos canónicos del mapa de identidad de
+	 * la importación
+	 *
+	 * @param raceToImport
+	 *            El {@link JSONObject} con los datos de la carrera
+	 * @param identities
+	 *            El mapa de identidad de la importación
+	 * @return La carrera importada
+	 */
+	public static Race importRace(JSONObject raceToImport, IdentityMap identities) {
 		String raceType = (String) raceToImport.get(Race.RACE_TYPE);
 		String raceName = (String) raceToImport.get(Race.NAME);
 		int secondArgument = ((Long) raceToImport.get(Race.SECOND_ARGUMENT)).intValue();
 
-		Race r = null;
-
-		if (raceType.equalsIgnoreCase(Race.RACE_TYPE_STANDARDRACE)) {
-			r = new StandardRace(raceName, secondArgument);
-		} else {
-			r = new DeathRace(raceName, secondArgument);
-		}
+		Race r = Race.newRace(raceType, raceName, secondArgument);
 
 		JSONArray garageArray = (JSONArray) raceToImport.get(Race.GARAGE_LIST);
 
 		if (garageArray != null) {
 			for (Object g : garageArray) {
 				JSONObject garageJson = (JSONObject) g;
-				r.registerGarage(Garage.importGarageFromJSONObject(garageJson));
+				r.registerGarage(identities.garageReference((String) garageJson.get(Garage.NAME)));
 			}
 		}
 
@@ -454,9 +1270,7 @@ public abstract class Race {
 
 			for (Object sc : carArray) {
 				JSONObject carJson = (JSONObject) sc;
-				ScoreCar scoreCar = ScoreCar.importCarFromJson(carJson);
-				scoreCar.setGarage((String) carJson.get(ScoreCar.GARAGE));
-				scoreCarList.add(scoreCar);
+				scoreCarList.add(ScoreCar.importCarFromJson(carJson, identities));
 			}
 
 			r.registerCars(scoreCarList);
@@ -466,6 +1280,26 @@ public abstract class Race {
 
 	}
 
+	/**
+	 * Crea una carrera vacía del tipo indicado en la importación
+	 *
+	 * @param raceType
+	 *            El tipo de carrera, {@link #RACE_TYPE_STANDARDRACE} o
+	 *            {@link #RACE_TYPE_DEATHRACE}
+	 * @param raceName
+	 *            El nombre de la carrera
+	 * @param secondArgument
+	 *            Las horas de la carrera estándar o las vueltas previas de la
+	 *            carrera de eliminación
+	 * @return La carrera creada
+	 */
+	public static Race newRace(String raceType, String raceName, int secondArgument) {
+		if (raceType.equalsIgnoreCase(Race.RACE_TYPE_STANDARDRACE)) {
+			return new StandardRace(raceName, secondArgument);
+		}
+		return new DeathRace(raceName, secondArgument);
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof Race) {
@@ -479,6 +1313,20 @@ public abstract class Race {
 		return false;
 	}
 
+	/**
+	 * Calcula el código hash de la carrera a partir de su tipo, su nombre sin
+	 * distinguir mayúsculas y sus horas o vueltas previas, de forma coherente
+	 * con {@link #equals(Object)}
+	 */
+	@Override
+	public int hashCode() {
+		int hash = Utils.hashIgnoreCase(this.getName());
+		if (this instanceof StandardRace) {
+			return (31 * hash) + ((StandardRace) this).getRaceHours();
+		}
+		return (31 * hash) + ((DeathRace) this).getLapsToStart() + 1;
+	}
+
 	protected boolean checkEqualsDeathRace(DeathRace dr) {
 		if (this instanceof DeathRace) {
 			boolean name = dr.getName().equalsIgnoreCase(this.getName());
@@ -499,13 +1347,35 @@ public abstract class Race {
 		}
 	}
 
+	/**
+	 * Copia en la carrera pasada por parámetro la configuración de simulación
+	 * de la carrera actual
+	 *
+	 * @param r
+	 *            La carrera que recibirá la configuración
+	 */
+	protected void copySettingsTo(Race r) {
+		r.setArrayKernel(this.isArrayKernel());
+		r.setParallelism(this.getParallelism());
+		r.setSequentialThreshold(this.getSequentialThreshold());
+		r.setAccelerateProbability(this.getAccelerateNumerator(), this.getAccelerateDenominator());
+		r.setBitSlicedDecisions(this.isBitSlicedDecisions());
+		r.setFixedPointDistance(this.isFixedPointDistance());
+		r.setIsolatedState(this.isIsolatedState());
+		r.setOffHeapState(this.isOffHeapState());
+		r.setSkipAheadTicks(this.getSkipAheadTicks());
+	}
+
 	@Override
 	public Race clone() {
+		Race r;
 		if (this instanceof StandardRace) {
-			return new StandardRace(this.getName(), ((StandardRace) this).getRaceHours());
+			r = new StandardRace(this.getName(), ((StandardRace) this).getRaceHours());
 		} else {
-			return new DeathRace(this.getName(), ((DeathRace) this).getLapsToStart());
+			r = new DeathRace(this.getName(), ((DeathRace) this).getLapsToStart());
 		}
+		this.copySettingsTo(r);
+		return r;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,109 @@
+package race;
+
+import utils.IndexSort;
+
+/**
+ * Espacio de trabajo reutilizable para obtener la clasificación de un
+ * {@link RaceState} muchas veces sin crear objetos. Si sólo se necesitan unos
+ * pocos puestos se seleccionan por inserción, en O(n k); si se necesitan más se
+ * ordenan todos los índices con {@link IndexSort}. El criterio de desempate es
+ * el mismo que el de {@link RaceResult}: va por delante el coche que ocupa una
+ * posición posterior en la lista de la carrera
+ */
+public class RaceRanking {
+
+	/**
+	 * Segundo array de trabajo para ordenar la clasificación
+	 */
+	protected final int[] buffer;
+
+	/**
+	 * Array que contiene la distancia de cada coche, para ordenarlos
+	 */
+	protected final long[] keys;
+
+	/**
+	 * Array de trabajo que contiene la clasificación
+	 */
+	protected final int[] order;
+
+	/**
+	 * Crea el espacio de trabajo para clasificar el número de coches indicado
+	 *
+	 * @param size
+	 *            El número de coches
+	 */
+	public RaceRanking(int size) {
+		this.buffer = new int[size];
+		this.keys = new long[size];
+		this.order = new int[size];
+	}
+
+	/**
+	 * Indica si el coche a va por delante del coche b
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 * @param a
+	 *            La posición del primer coche
+	 * @param b
+	 *            La posición del segundo coche
+	 * @return <code>true</code> si el coche a va por delante del b
+	 */
+	protected static boolean isAhead(RaceState state, int a, int b) {
+		int comparison = state.compareDistance(a, b);
+		return (comparison > 0) || ((comparison == 0) && (a > b));
+	}
+
+	/**
+	 * Obtiene al menos los k primeros puestos de la clasificación del estado
+	 * indicado, que debe haberse simulado desde 0 (sin distancias cargadas en
+	 * metros). El array devuelto se reutiliza en la siguiente llamada
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 * @param k
+	 *            El número de puestos necesarios
+	 * @return Un array cuyas k primeras posiciones contienen las posiciones de
+	 *         los coches, del primero al último
+	 */
+	public int[] rank(RaceState state, int k) {
+		int n = state.size();
+		if (k <= Race.PODIUM_SIZE) {
+			return this.selectTop(state, Math.min(k, n));
+		}
+		for (int car = 0; car < n; car++) {
+			this.keys[car] = state.getDistanceUnits(car);
+		}
+		return IndexSort.sortDescending(this.keys, this.order, this.buffer);
+	}
+
+	/**
+	 * Selecciona los k primeros puestos mediante inserción sobre el array
+	 * {@link #order}
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 * @param k
+	 *            El número de puestos, como mucho el número de coches
+	 * @return El array con las posiciones de los k primeros coches
+	 */
+	protected int[] selectTop(RaceState state, int k) {
+		int count = 0;
+		for (int car = 0; (k > 0) && (car < state.size()); car++) {
+			if ((count < k) || RaceRanking.isAhead(state, car, this.order[count - 1])) {
+				int j = Math.min(count, k - 1);
+				while ((j > 0) && RaceRanking.isAhead(state, car, this.order[j - 1])) {
+					this.order[j] = this.order[j - 1];
+					j--;
+				}
+				this.order[j] = car;
+				if (count < k) {
+					count++;
+				}
+			}
+		}
+		return this.order;
+	}
+
+}
@@ -0,0 +1,224 @@
+package race;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import utils.IndexSort;
+
+/**
+ * Resultado inmutable de una carrera. Guarda una copia de los coches
+ * participantes y de la distancia que recorrió cada uno, en el orden de la
+ * lista de la carrera, y la clasificación como un array con las posiciones de
+ * los coches de mayor a menor distancia. En caso de empate va por delante el
+ * coche que ocupa una posición posterior en la lista, igual que al ordenar la
+ * lista de menor a mayor distancia e invertirla después. Como no se modifica
+ * después de crearlo, puede leerse desde varios hilos mientras se simula otra
+ * carrera, y no depende de que los contadores de los coches se reinicien
+ */
+public final class RaceResult {
+
+	/**
+	 * Los coches participantes, en el orden de la lista de la carrera
+	 */
+	private final ScoreCar[] cars;
+
+	/**
+	 * La distancia recorrida por cada coche, en el orden de la lista de la
+	 * carrera
+	 */
+	private final double[] distances;
+
+	/**
+	 * Las posiciones de los coches clasificados, del primero al último
+	 */
+	private final int[] order;
+
+	/**
+	 * Crea el resultado a partir de los coches y sus distancias, calculando la
+	 * clasificación completa
+	 *
+	 * @param cars
+	 *            Los coches participantes
+	 * @param distances
+	 *            La distancia recorrida por cada coche
+	 */
+	private RaceResult(ScoreCar[] cars, double[] distances) {
+		this.cars = cars;
+		this.distances = distances;
+		this.order = IndexSort.sortDescending(distances);
+	}
+
+	/**
+	 * Crea el resultado a partir de los coches, sus distancias y una
+	 * clasificación ya calculada
+	 *
+	 * @param cars
+	 *            Los coches participantes
+	 * @param distances
+	 *            La distancia recorrida por cada coche
+	 * @param order
+	 *            Las posiciones de los coches clasificados
+	 */
+	private RaceResult(ScoreCar[] cars, double[] distances, int[] order) {
+		this.cars = cars;
+		this.distances = distances;
+		this.order = order;
+	}
+
+	/**
+	 * Devuelve el coche que ha quedado en el puesto indicado
+	 *
+	 * @param position
+	 *            El puesto, empezando en 0 para el ganador
+	 * @return El coche que ha quedado en ese puesto
+	 */
+	public ScoreCar getCar(int position) {
+		return this.cars[this.order[position]];
+	}
+
+	/**
+	 * Devuelve el número de coches que participaron en la carrera
+	 *
+	 * @return El número de coches participantes
+	 */
+	public int getCarCount() {
+		return this.cars.length;
+	}
+
+	/**
+	 * Devuelve la distancia que recorrió el coche que ha quedado en el puesto
+	 * indicado
+	 *
+	 * @param position
+	 *            El puesto, empezando en 0 para el ganador
+	 * @return La distancia recorrida por ese coche
+	 */
+	public double getDistance(int position) {
+		return this.distances[this.order[position]];
+	}
+
+	/**
+	 * Devuelve la posición en la lista de la carrera del coche que ha quedado
+	 * en el puesto indicado
+	 *
+	 * @param position
+	 *            El puesto, empezando en 0 para el ganador
+	 * @return La posición del coche en la lista de la carrera
+	 */
+	public int getIndex(int position) {
+		return this.order[position];
+	}
+
+	/**
+	 * Devuelve el coche que ocupa la posición indicada en la lista de la
+	 * carrera
+	 *
+	 * @param index
+	 *            La posición del coche en la lista de la carrera
+	 * @return El coche que ocupa esa posición
+	 */
+	public ScoreCar getParticipant(int index) {
+		return this.cars[index];
+	}
+
+	/**
+	 * Devuelve los primeros coches de la clasificación
+	 *
+	 * @param k
+	 *            El número de coches a obtener
+	 * @return Una lista no modificable con los k primeros coches, o con todos
+	 *         los clasificados si hay menos
+	 */
+	public List<ScoreCar> getTopCars(int k) {
+		int size = Math.min(k, this.size());
+		List<ScoreCar> top = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			top.add(this.getCar(i));
+		}
+		return Collections.unmodifiableList(top);
+	}
+
+	/**
+	 * Devuelve el número de puestos de la clasificación. Es igual a
+	 * {@link #getCarCount()} salvo en los resultados parciales creados con
+	 * {@link #topOf(List, Comparator, int)}
+	 *
+	 * @return El número de puestos de la clasificación
+	 */
+	public int size() {
+		return this.order.length;
+	}
+
+	/**
+	 * Crea el resultado de una carrera a partir de la distancia actual de los
+	 * coches de la lista, clasificándolos con el comparador indicado con el
+	 * mismo criterio de desempate que {@link #topOf(List, Comparator, int)}
+	 *
+	 * @param carList
+	 *            Los coches participantes
+	 * @param comparator
+	 *            El comparador con el que se ordenan los coches por distancia
+	 * @return El resultado de la carrera
+	 */
+	public static RaceResult of(List<ScoreCar> carList, final Comparator<ScoreCar> comparator) {
+		final ScoreCar[] cars = carList.toArray(new ScoreCar[carList.size()]);
+		double[] distances = new double[cars.length];
+		for (int i = 0; i < cars.length; i++) {
+			distances[i] = cars[i].getDistance();
+		}
+		int[] order = IndexSort.sortDescending(new IndexSort.KeyComparator() {
+
+			@Override
+			public int compare(int a, int b) {
+				return comparator.compare(cars[a], cars[b]);
+			}
+
+		}, new int[cars.length], new int[cars.length]);
+		return new RaceResult(cars, distances, order);
+	}
+
+	/**
+	 * Crea el resultado de una carrera a partir de las distancias de un
+	 * {@link RaceState}
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 * @return El resultado de la carrera
+	 */
+	public static RaceResult of(RaceState state) {
+		ScoreCar[] cars = new ScoreCar[state.size()];
+		double[] distances = new double[cars.length];
+		for (int i = 0; i < cars.length; i++) {
+			cars[i] = state.getCar(i);
+			distances[i] = state.getDistance(i);
+		}
+		return new RaceResult(cars, distances);
+	}
+
+	/**
+	 * Crea un resultado parcial que sólo clasifica los k mejores coches de la
+	 * lista, seleccionados con un {@link PodiumHeap} en O(n log k) sin ordenar
+	 * la lista completa
+	 *
+	 * @param carList
+	 *            Los coches participantes
+	 * @param comparator
+	 *            El comparador con el que se ordenan los coches por distancia
+	 * @param k
+	 *            El número de puestos a clasificar
+	 * @return El resultado parcial de la carrera
+	 */
+	public static RaceResult topOf(List<ScoreCar> carList, Comparator<ScoreCar> comparator, int k) {
+		ScoreCar[] cars = carList.toArray(new ScoreCar[carList.size()]);
+		double[] distances = new double[cars.length];
+		PodiumHeap heap = new PodiumHeap(Math.min(k, cars.length), comparator);
+		for (int i = 0; i < cars.length; i++) {
+			distances[i] = cars[i].getDistance();
+			heap.offer(cars[i], i);
+		}
+		return new RaceResult(cars, distances, heap.drain());
+	}
+
+}
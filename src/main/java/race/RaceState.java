@@ -0,0 +1,811 @@
+package race;
+
+import java.util.Arrays;
+import java.util.List;
+
+import utils.RandomSource;
+import utils.SplitMix64;
+
+/**
+ * Esta clase guarda el estado de una carrera como una estructura de arrays. La
+ * velocidad y la distancia de cada {@link ScoreCar} participante se almacenan
+ * en arrays de tipos primitivos, indexados por la posición que ocupa el coche
+ * en la lista de la carrera. La distancia se acumula como un número entero, la
+ * suma de las velocidades de cada minuto, y sólo se convierte a metros al
+ * consultarla o volcarla en los coches. De esta manera la simulación no tiene que recorrer
+ * los objetos {@link ScoreCar} en cada minuto, y los resultados se vuelcan en
+ * ellos al terminar mediante el método {@link #store()}. Cada coche tiene su
+ * propio generador de números aleatorios ({@link SplitMix64}), cuyo estado se
+ * guarda también en un array, por lo que el resultado de un coche no depende
+ * del orden ni del hilo en el que se simule
+ */
+public class RaceState {
+
+	/**
+	 * Numerador de la probabilidad de que un coche acelere en cada minuto
+	 */
+	protected int accelerateNumerator = Race.ACCELERATE_NUMERATOR;
+
+	/**
+	 * Denominador de la probabilidad de que un coche acelere en cada minuto
+	 */
+	protected int accelerateDenominator = Race.ACCELERATE_DENOMINATOR;
+
+	/**
+	 * Array que contiene, para cada coche, los bits aleatorios que quedan por
+	 * consumir en el modo {@link #bitSliced}
+	 */
+	protected long[] bits;
+
+	/**
+	 * Array que contiene, para cada coche, el número de bits aleatorios que
+	 * quedan por consumir en el modo {@link #bitSliced}
+	 */
+	protected int[] bitCount;
+
+	/**
+	 * Variable que indica si las decisiones de acelerar o frenar se obtienen
+	 * consumiendo de pocos en pocos los bits de cada número aleatorio de 64
+	 * bits, en lugar de generar un número por cada decisión
+	 */
+	protected boolean bitSliced = false;
+
+	/**
+	 * Array que contiene los coches participantes, en el mismo orden que los
+	 * arrays de estado
+	 */
+	protected final ScoreCar[] cars;
+
+	/**
+	 * Array que contiene la distancia recorrida por cada coche en la carrera,
+	 * como la suma en km/h de sus velocidades en cada minuto. Para obtener los
+	 * metros se multiplica por {@link ScoreCar#KMH_TO_METERS_PER_MINUTE}
+	 */
+	protected final long[] distanceUnits;
+
+	/**
+	 * Montículo de eliminación asociado al estado, que se crea la primera vez
+	 * que se solicita y se reutiliza en las siguientes simulaciones
+	 */
+	protected EliminationHeap eliminationHeap;
+
+	/**
+	 * Variable que indica si los resultados se vuelcan en los coches en modo
+	 * de distancia entera (ver {@link ScoreCar#setFixedPointDistance(boolean)})
+	 */
+	protected boolean fixedPoint = false;
+
+	/**
+	 * Array que contiene la distancia en metros que tenían los coches al
+	 * cargarlos con {@link #load()}, si alguno la guardaba en metros, o
+	 * <code>null</code> en caso contrario
+	 */
+	protected double[] initialDistance;
+
+	/**
+	 * Array que contiene el estado del generador de números aleatorios de cada
+	 * coche
+	 */
+	protected final long[] seeds;
+
+	/**
+	 * Distribución de los resultados de los bloques de {@link #skipAheadTable}
+	 * para la probabilidad de acelerar, o <code>null</code> si los coches se
+	 * avanzan de minuto en minuto o la probabilidad es 1/2
+	 */
+	protected VelocityTransitionTable.Distribution skipAheadDistribution;
+
+	/**
+	 * Tabla con la que se avanzan los coches varios minutos de una sola vez, o
+	 * <code>null</code> si se avanzan de minuto en minuto
+	 */
+	protected VelocityTransitionTable skipAheadTable;
+
+	/**
+	 * Array que contiene la velocidad actual de cada coche
+	 */
+	protected final int[] velocity;
+
+	/**
+	 * Crea el estado de una carrera para la lista de coches que se pasa por
+	 * parámetro. Los contadores comienzan a 0 y el generador de cada coche se
+	 * inicializa con la fuente de números aleatorios indicada, mediante
+	 * {@link #seed(RandomSource)}
+	 *
+	 * @param carList
+	 *            La lista de {@link ScoreCar} participantes en la carrera
+	 * @param source
+	 *            La fuente de números aleatorios de la carrera
+	 */
+	public RaceState(List<ScoreCar> carList, RandomSource source) {
+		this.cars = carList.toArray(new ScoreCar[carList.size()]);
+		this.velocity = new int[this.cars.length];
+		this.distanceUnits = new long[this.cars.length];
+		this.seeds = new long[this.cars.length];
+		this.seed(source);
+	}
+
+	/**
+	 * Crea el estado de una carrera sin reservar los arrays de estado, para
+	 * las subclases que guardan la velocidad, la distancia y los generadores
+	 * de otra forma. Las subclases deben redefinir los métodos que acceden al
+	 * estado de cada coche e inicializar los generadores con
+	 * {@link #seed(RandomSource)}
+	 *
+	 * @param cars
+	 *            Los {@link ScoreCar} participantes en la carrera
+	 */
+	protected RaceState(ScoreCar[] cars) {
+		this.cars = cars;
+		this.velocity = null;
+		this.distanceUnits = null;
+		this.seeds = null;
+	}
+
+	/**
+	 * Pone a 0 el número de bits aleatorios pendientes de todos los coches,
+	 * si el estado los guarda
+	 */
+	protected void clearBitCounts() {
+		if (this.bitCount != null) {
+			Arrays.fill(this.bitCount, 0);
+		}
+	}
+
+	/**
+	 * Compara la distancia recorrida por dos coches
+	 *
+	 * @param a
+	 *            La posición del primer coche
+	 * @param b
+	 *            La posición del segundo coche
+	 * @return Un número negativo, cero o positivo si el primer coche ha
+	 *         recorrido menos, la misma o más distancia que el segundo
+	 */
+	public int compareDistance(int a, int b) {
+		if (this.initialDistance == null) {
+			return Long.compare(this.getDistanceUnits(a), this.getDistanceUnits(b));
+		}
+		return Double.compare(this.getDistance(a), this.getDistance(b));
+	}
+
+	/**
+	 * Según el parámetro recibido el coche de la posición indicada acelera o
+	 * frena, igual que en {@link ScoreCar#driveInRace(int)}, y a continuación
+	 * suma a su distancia la recorrida en ese minuto
+	 *
+	 * @param car
+	 *            La posición del coche en el estado
+	 * @param option
+	 *            El coche acelerará cuando sea distinto de 0
+	 */
+	public void driveInRace(int car, int option) {
+		int v = this.getVelocity(car);
+		if (option != 0) {
+			if (v < ScoreCar.MAX_SPEED) {
+				v += ScoreCar.VELOCITY_STEP;
+			}
+		} else if (v > 0) {
+			v -= ScoreCar.VELOCITY_STEP;
+		}
+		this.setVelocity(car, v);
+		this.setDistanceUnits(car, this.getDistanceUnits(car) + v);
+	}
+
+	/**
+	 * Hace circular los coches comprendidos entre las posiciones indicadas
+	 * durante el número de minutos que se pasa por parámetro. Cada coche
+	 * recorre todos sus minutos seguidos, manteniendo su velocidad, distancia y
+	 * generador en variables locales, ya que su estado no depende del resto de
+	 * coches. En cada minuto el coche acelera con la probabilidad establecida
+	 * en {@link #setAccelerateProbability(int, int)}, por defecto 2/3, igual
+	 * que con {@code Utils.getRandomNumberInRange(0, 2) != 0}
+	 *
+	 * @param from
+	 *            La primera posición, incluida
+	 * @param to
+	 *            La última posición, excluida
+	 * @param minutes
+	 *            El número de minutos que circula cada coche
+	 */
+	public void driveInRace(int from, int to, int minutes) {
+		for (int i = from; i < to; i++) {
+			this.driveCar(i, minutes);
+		}
+	}
+
+	/**
+	 * Hace circular durante el número de minutos indicado sólo los coches
+	 * cuyas posiciones se encuentran en las primeras posiciones del array que
+	 * se pasa por parámetro, por ejemplo los que siguen en una carrera de
+	 * eliminación
+	 *
+	 * @param selected
+	 *            Array con las posiciones de los coches que circulan
+	 * @param count
+	 *            El número de posiciones del array que se usan
+	 * @param minutes
+	 *            El número de minutos que circula cada coche
+	 */
+	public void driveInRace(int[] selected, int count, int minutes) {
+		for (int i = 0; i < count; i++) {
+			this.driveCar(selected[i], minutes);
+		}
+	}
+
+	/**
+	 * Hace circular el coche de la posición indicada durante el número de
+	 * minutos que se pasa por parámetro, manteniendo su velocidad, distancia y
+	 * generador en variables locales
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param minutes
+	 *            El número de minutos que circula el coche
+	 */
+	protected void driveCar(int car, int minutes) {
+		if (this.skipAheadTable != null) {
+			this.driveCarSkipAhead(car, minutes);
+			return;
+		}
+		if (this.bitSliced) {
+			this.driveCarBitSliced(car, minutes);
+			return;
+		}
+		final int denominator = this.accelerateDenominator;
+		final int threshold = denominator - this.accelerateNumerator;
+		int v = this.getVelocity(car);
+		long d = this.getDistanceUnits(car);
+		long seed = this.getSeed(car);
+		for (int m = 0; m < minutes; m++) {
+			// Número uniforme en [0, denominator) con rechazo, como SplittableRandom.nextInt
+			int u;
+			int r;
+			do {
+				seed += SplitMix64.GOLDEN_GAMMA;
+				u = SplitMix64.mix32(seed) >>> 1;
+				r = u % denominator;
+			} while (((u + (denominator - 1)) - r) < 0);
+			v = RaceState.nextVelocity(v, r >= threshold);
+			d += v;
+		}
+		this.setVelocity(car, v);
+		this.setDistanceUnits(car, d);
+		this.setSeed(car, seed);
+	}
+
+	/**
+	 * Hace circular el coche de la posición indicada durante el número de
+	 * minutos que se pasa por parámetro, obteniendo cada decisión de los bits
+	 * que quedan del último número aleatorio generado para el coche. Se toman
+	 * los bits justos para representar un número entre 0 y el denominador de
+	 * la probabilidad, descartando los valores que no llegan a él
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param minutes
+	 *            El número de minutos que circula el coche
+	 */
+	protected void driveCarBitSliced(int car, int minutes) {
+		final int denominator = this.accelerateDenominator;
+		final int threshold = denominator - this.accelerateNumerator;
+		final int width = 32 - Integer.numberOfLeadingZeros(denominator - 1);
+		final long mask = (1L << width) - 1;
+		int v = this.getVelocity(car);
+		long d = this.getDistanceUnits(car);
+		long seed = this.getSeed(car);
+		long bits = this.getBits(car);
+		int bitCount = this.getBitCount(car);
+		for (int m = 0; m < minutes; m++) {
+			int r;
+			do {
+				if (bitCount < width) {
+					seed += SplitMix64.GOLDEN_GAMMA;
+					bits = SplitMix64.mix64(seed);
+					bitCount = 64;
+				}
+				r = (int) (bits & mask);
+				bits >>>= width;
+				bitCount -= width;
+			} while (r >= denominator);
+			v = RaceState.nextVelocity(v, r >= threshold);
+			d += v;
+		}
+		this.setVelocity(car, v);
+		this.setDistanceUnits(car, d);
+		this.setSeed(car, seed);
+		this.setBits(car, bits);
+		this.setBitCount(car, bitCount);
+	}
+
+	/**
+	 * Hace circular el coche de la posición indicada durante el número de
+	 * minutos que se pasa por parámetro, avanzando de una sola vez tantos
+	 * minutos como tenga la tabla {@link #skipAheadTable}. Con probabilidad
+	 * 1/2 el patrón de decisiones del bloque se toma directamente de los bits
+	 * del número aleatorio y la tabla da la velocidad final y la suma de
+	 * velocidades, con las mismas decisiones que
+	 * {@link #driveCarBitSliced(int, int)}. Con cualquier otra probabilidad el
+	 * resultado del bloque se elige de {@link #skipAheadDistribution} con un
+	 * solo número aleatorio, sin decidir sus minutos uno a uno; la carrera
+	 * sigue la misma distribución que minuto a minuto, pero no las mismas
+	 * decisiones. Los minutos que no completan un bloque se deciden de uno en
+	 * uno, igual que en {@link #driveCarBitSliced(int, int)}. Como la
+	 * distancia se acumula como un número entero, sumar un bloque de una vez
+	 * da lo mismo que sumarlo minuto a minuto
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param minutes
+	 *            El número de minutos que circula el coche
+	 */
+	protected void driveCarSkipAhead(int car, int minutes) {
+		final VelocityTransitionTable table = this.skipAheadTable;
+		final int ticks = table.ticks;
+		final byte[] endState = table.endState;
+		final short[] velocitySum = table.velocitySum;
+		final VelocityTransitionTable.Distribution distribution = this.skipAheadDistribution;
+		final int denominator = this.accelerateDenominator;
+		final int threshold = denominator - this.accelerateNumerator;
+		final int width = 32 - Integer.numberOfLeadingZeros(denominator - 1);
+		final long mask = (1L << width) - 1;
+		final boolean rawPattern = (denominator == 2) && (threshold == 1);
+		int v = this.getVelocity(car);
+		long d = this.getDistanceUnits(car);
+		long seed = this.getSeed(car);
+		long bits = this.getBits(car);
+		int bitCount = this.getBitCount(car);
+		int m = 0;
+		if (distribution != null) {
+			for (; (m + ticks) <= minutes; m += ticks) {
+				seed += SplitMix64.GOLDEN_GAMMA;
+				int outcome = distribution.sample(v, SplitMix64.mix64(seed) >>> 1);
+				d += distribution.velocitySum[outcome];
+				v = distribution.endState[outcome] * ScoreCar.VELOCITY_STEP;
+			}
+		}
+		for (; m < minutes; m += ticks) {
+			int n = Math.min(ticks, minutes - m);
+			int pattern = 0;
+			if (rawPattern) {
+				if (bitCount < n) {
+					seed += SplitMix64.GOLDEN_GAMMA;
+					bits = SplitMix64.mix64(seed);
+					bitCount = 64;
+				}
+				pattern = (int) (bits & ((1L << n) - 1));
+				bits >>>= n;
+				bitCount -= n;
+			} else {
+				for (int i = 0; i < n; i++) {
+					int r;
+					do {
+						if (bitCount < width) {
+							seed += SplitMix64.GOLDEN_GAMMA;
+							bits = SplitMix64.mix64(seed);
+							bitCount = 64;
+						}
+						r = (int) (bits & mask);
+						bits >>>= width;
+						bitCount -= width;
+					} while (r >= denominator);
+					if (r >= threshold) {
+						pattern |= 1 << i;
+					}
+				}
+			}
+			if (n == ticks) {
+				int index = ((v / ScoreCar.VELOCITY_STEP) << ticks) | pattern;
+				d += velocitySum[index];
+				v = endState[index] * ScoreCar.VELOCITY_STEP;
+			} else {
+				for (int i = 0; i < n; i++) {
+					v = RaceState.nextVelocity(v, ((pattern >>> i) & 1) != 0);
+					d += v;
+				}
+			}
+		}
+		this.setVelocity(car, v);
+		this.setDistanceUnits(car, d);
+		this.setSeed(car, seed);
+		this.setBits(car, bits);
+		this.setBitCount(car, bitCount);
+	}
+
+	/**
+	 * Reserva los arrays de bits pendientes de cada coche, si aún no existen
+	 */
+	protected void ensureBitBuffers() {
+		if (this.bits == null) {
+			this.bits = new long[this.cars.length];
+			this.bitCount = new int[this.cars.length];
+		}
+	}
+
+	/**
+	 * Devuelve el número de bits aleatorios que quedan por consumir del coche
+	 * de la posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return El número de bits pendientes
+	 */
+	protected int getBitCount(int car) {
+		return this.bitCount[car];
+	}
+
+	/**
+	 * Devuelve los bits aleatorios que quedan por consumir del coche de la
+	 * posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return Los bits pendientes
+	 */
+	protected long getBits(int car) {
+		return this.bits[car];
+	}
+
+	/**
+	 * Devuelve el {@link EliminationHeap} asociado al estado, creándolo la
+	 * primera vez que se solicita. Así, al simular muchas veces una carrera de
+	 * eliminación sobre el mismo estado no se crea un montículo nuevo en cada
+	 * simulación; para volver a llenarlo con todos los coches se usa
+	 * {@link EliminationHeap#reset()}
+	 *
+	 * @return El montículo de eliminación del estado
+	 */
+	public EliminationHeap getEliminationHeap() {
+		if (this.eliminationHeap == null) {
+			this.eliminationHeap = new EliminationHeap(this);
+		}
+		return this.eliminationHeap;
+	}
+
+	/**
+	 * Devuelve el coche que ocupa la posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return El {@link ScoreCar} de esa posición
+	 */
+	public ScoreCar getCar(int car) {
+		return this.cars[car];
+	}
+
+	/**
+	 * Devuelve la distancia recorrida por el coche de la posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return La distancia recorrida por el coche
+	 */
+	public double getDistance(int car) {
+		double meters = this.getDistanceUnits(car) * ScoreCar.KMH_TO_METERS_PER_MINUTE;
+		if (this.initialDistance != null) {
+			meters += this.initialDistance[car];
+		}
+		return meters;
+	}
+
+	/**
+	 * Devuelve la distancia entera recorrida por el coche de la posición
+	 * indicada, como la suma en km/h de sus velocidades en cada minuto
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return La distancia entera recorrida por el coche
+	 */
+	public long getDistanceUnits(int car) {
+		return this.distanceUnits[car];
+	}
+
+	/**
+	 * Devuelve el estado del generador de números aleatorios del coche de la
+	 * posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return El estado del generador
+	 */
+	protected long getSeed(int car) {
+		return this.seeds[car];
+	}
+
+	/**
+	 * Devuelve la velocidad actual del coche de la posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return La velocidad actual del coche
+	 */
+	public int getVelocity(int car) {
+		return this.velocity[car];
+	}
+
+	/**
+	 * Copia en los arrays la velocidad y distancia actuales de los
+	 * {@link ScoreCar} participantes. La distancia de los coches que la
+	 * guardan en metros se conserva aparte, para no perder precisión
+	 */
+	public void load() {
+		for (int i = 0; i < this.cars.length; i++) {
+			ScoreCar sc = this.cars[i];
+			this.setVelocity(i, sc.getVelocity());
+			if (sc.isFixedPointDistance()) {
+				this.setDistanceUnits(i, sc.getDistanceUnits());
+			} else {
+				this.setDistanceUnits(i, 0L);
+				if (sc.getDistance() != 0.0) {
+					if (this.initialDistance == null) {
+						this.initialDistance = new double[this.cars.length];
+					}
+					this.initialDistance[i] = sc.getDistance();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indica si los resultados se vuelcan en los coches en modo de distancia
+	 * entera
+	 *
+	 * @return <code>true</code> si se vuelcan en modo de distancia entera,
+	 *         <code>false</code> si se vuelcan en metros
+	 */
+	public boolean isFixedPoint() {
+		return this.fixedPoint;
+	}
+
+	/**
+	 * Indica si las decisiones de acelerar o frenar se obtienen consumiendo los
+	 * bits de cada número aleatorio de pocos en pocos
+	 *
+	 * @return <code>true</code> si se consumen los bits de pocos en pocos,
+	 *         <code>false</code> si se genera un número por cada decisión
+	 */
+	public boolean isBitSliced() {
+		return this.bitSliced;
+	}
+
+	/**
+	 * Pone a 0 la velocidad y la distancia de todos los coches, para volver a
+	 * simular la carrera sobre los mismos arrays
+	 */
+	public void reset() {
+		Arrays.fill(this.velocity, 0);
+		Arrays.fill(this.distanceUnits, 0L);
+		this.initialDistance = null;
+	}
+
+	/**
+	 * Inicializa el generador de números aleatorios de cada coche a partir de
+	 * la semilla indicada, tomando los sucesivos valores de un generador
+	 * SplitMix64 que parte de ella. A diferencia de
+	 * {@link #seed(RandomSource)}, no necesita crear ningún objeto, por lo que
+	 * es adecuado para simular muchas veces la misma carrera
+	 *
+	 * @param seed
+	 *            La semilla de la simulación
+	 */
+	public void seed(long seed) {
+		for (int i = 0; i < this.size(); i++) {
+			seed += SplitMix64.GOLDEN_GAMMA;
+			this.setSeed(i, SplitMix64.mix64(seed));
+		}
+		this.clearBitCounts();
+	}
+
+	/**
+	 * Inicializa el generador de números aleatorios de cada coche, en el orden
+	 * de la lista, con números obtenidos de la fuente indicada. Con una fuente
+	 * con semilla fija los coches obtienen siempre los mismos generadores,
+	 * independientemente de cómo se reparta después la simulación entre hilos
+	 *
+	 * @param source
+	 *            La fuente de números aleatorios de la carrera
+	 */
+	public void seed(RandomSource source) {
+		for (int i = 0; i < this.size(); i++) {
+			this.setSeed(i, source.nextLong());
+		}
+		this.clearBitCounts();
+	}
+
+	/**
+	 * Establece la probabilidad de que un coche acelere en cada minuto, como la
+	 * fracción numerator / denominator. La probabilidad se respeta de manera
+	 * exacta, ya que las decisiones se obtienen de un número uniforme entre 0
+	 * y denominator - 1, descartando los valores que quedan fuera del rango
+	 *
+	 * @param numerator
+	 *            El numerador, entre 0 y el denominador
+	 * @param denominator
+	 *            El denominador, mayor que 0
+	 */
+	public void setAccelerateProbability(int numerator, int denominator) {
+		if ((denominator < 1) || (numerator < 0) || (numerator > denominator)) {
+			throw new IllegalArgumentException("Probabilidad no válida: " + numerator + "/" + denominator);
+		}
+		this.accelerateNumerator = numerator;
+		this.accelerateDenominator = denominator;
+		this.updateSkipAheadDistribution();
+	}
+
+	/**
+	 * Establece el número de bits aleatorios que quedan por consumir del coche
+	 * de la posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param bitCount
+	 *            El número de bits pendientes
+	 */
+	protected void setBitCount(int car, int bitCount) {
+		this.bitCount[car] = bitCount;
+	}
+
+	/**
+	 * Establece los bits aleatorios que quedan por consumir del coche de la
+	 * posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param bits
+	 *            Los bits pendientes
+	 */
+	protected void setBits(int car, long bits) {
+		this.bits[car] = bits;
+	}
+
+	/**
+	 * Establece si las decisiones de acelerar o frenar se obtienen consumiendo
+	 * los bits de cada número aleatorio de pocos en pocos. Cada decisión usa
+	 * los bits justos para representar un número entre 0 y el denominador de la
+	 * probabilidad; con la probabilidad por defecto, 2/3, se consumen los bits
+	 * de dos en dos descartando el valor 3, por lo que un número de 64 bits da
+	 * para 24 decisiones de media, manteniendo la probabilidad exacta
+	 *
+	 * @param bitSliced
+	 *            <code>true</code> para consumir los bits de pocos en pocos,
+	 *            <code>false</code> para generar un número por cada decisión
+	 */
+	public void setBitSliced(boolean bitSliced) {
+		if (bitSliced) {
+			this.ensureBitBuffers();
+		}
+		this.bitSliced = bitSliced;
+	}
+
+	/**
+	 * Establece la distancia entera recorrida por el coche de la posición
+	 * indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param distanceUnits
+	 *            La distancia entera del coche
+	 */
+	protected void setDistanceUnits(int car, long distanceUnits) {
+		this.distanceUnits[car] = distanceUnits;
+	}
+
+	/**
+	 * Establece si los resultados se vuelcan en los coches en modo de distancia
+	 * entera
+	 *
+	 * @param fixedPoint
+	 *            <code>true</code> para volcar la distancia entera,
+	 *            <code>false</code> para volcarla en metros
+	 */
+	public void setFixedPoint(boolean fixedPoint) {
+		this.fixedPoint = fixedPoint;
+	}
+
+	/**
+	 * Establece el estado del generador de números aleatorios del coche de la
+	 * posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param seed
+	 *            El estado del generador
+	 */
+	protected void setSeed(int car, long seed) {
+		this.seeds[car] = seed;
+	}
+
+	/**
+	 * Establece cuántos minutos avanzan los coches de una sola vez mediante una
+	 * {@link VelocityTransitionTable}. Con probabilidad 1/2 las decisiones se
+	 * obtienen consumiendo los bits de pocos en pocos; con cualquier otra, cada
+	 * bloque completo se elige de la distribución de sus resultados
+	 *
+	 * @param ticks
+	 *            El número de minutos, hasta
+	 *            {@link VelocityTransitionTable#MAX_TICKS}, o 1 o menos para
+	 *            avanzar de minuto en minuto
+	 */
+	public void setSkipAheadTicks(int ticks) {
+		if (ticks > 1) {
+			this.ensureBitBuffers();
+			this.skipAheadTable = VelocityTransitionTable.getTable(ticks);
+		} else {
+			this.skipAheadTable = null;
+		}
+		this.updateSkipAheadDistribution();
+	}
+
+	/**
+	 * Establece la velocidad actual del coche de la posición indicada
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @param velocity
+	 *            La velocidad del coche
+	 */
+	protected void setVelocity(int car, int velocity) {
+		this.velocity[car] = velocity;
+	}
+
+	/**
+	 * Devuelve el número de coches que contiene el estado
+	 *
+	 * @return El número de coches
+	 */
+	public int size() {
+		return this.cars.length;
+	}
+
+	/**
+	 * Vuelca la velocidad y distancia de los arrays en los {@link ScoreCar}
+	 * participantes, como distancia entera o en metros según
+	 * {@link #isFixedPoint()}. Si algún coche tenía una distancia en metros al
+	 * cargarlo, la distancia se vuelca siempre en metros
+	 */
+	public void store() {
+		for (int i = 0; i < this.cars.length; i++) {
+			ScoreCar sc = this.cars[i];
+			sc.setVelocity(this.getVelocity(i));
+			if (this.isFixedPoint() && (this.initialDistance == null)) {
+				sc.setFixedPointDistance(true);
+				sc.setDistanceUnits(this.getDistanceUnits(i));
+			} else {
+				sc.setFixedPointDistance(false);
+				sc.setDistance(this.getDistance(i));
+			}
+		}
+	}
+
+	/**
+	 * Obtiene la distribución de los bloques de {@link #skipAheadTable} para
+	 * la probabilidad de acelerar actual. Con probabilidad 1/2 no hace falta,
+	 * porque el patrón de cada bloque son directamente bits aleatorios
+	 */
+	protected void updateSkipAheadDistribution() {
+		if ((this.skipAheadTable == null) || ((this.accelerateNumerator == 1) && (this.accelerateDenominator == 2))) {
+			this.skipAheadDistribution = null;
+		} else {
+			this.skipAheadDistribution = this.skipAheadTable.getDistribution(this.accelerateNumerator, this.accelerateDenominator);
+		}
+	}
+
+	/**
+	 * Calcula la velocidad de un coche después de acelerar o frenar, igual que
+	 * {@link ScoreCar#accelerate()} y {@link ScoreCar#brake()}
+	 *
+	 * @param velocity
+	 *            La velocidad actual del coche
+	 * @param accelerate
+	 *            <code>true</code> si el coche acelera, <code>false</code> si
+	 *            frena
+	 * @return La nueva velocidad del coche
+	 */
+	protected static int nextVelocity(int velocity, boolean accelerate) {
+		if (accelerate) {
+			return Math.min(velocity + ScoreCar.VELOCITY_STEP, ScoreCar.MAX_SPEED);
+		}
+		return Math.max(velocity - ScoreCar.VELOCITY_STEP, 0);
+	}
+
+}
@@ -0,0 +1,75 @@
+package race;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tarea para un {@link java.util.concurrent.ForkJoinPool} que hace circular un
+ * rango de coches de un {@link RaceState}. Si el rango supera el umbral
+ * indicado se divide en dos mitades que se ejecutan en paralelo. El estado de
+ * cada coche no depende del resto, por lo que cada tarea escribe en posiciones
+ * distintas de los arrays
+ */
+public class RaceStateTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * La primera posición del rango, incluida
+	 */
+	protected final int from;
+
+	/**
+	 * El número de minutos que circula cada coche
+	 */
+	protected final int minutes;
+
+	/**
+	 * El estado de la carrera sobre el que se trabaja
+	 */
+	protected final RaceState state;
+
+	/**
+	 * El número de coches por debajo del cual el rango no se divide
+	 */
+	protected final int threshold;
+
+	/**
+	 * La última posición del rango, excluida
+	 */
+	protected final int to;
+
+	/**
+	 * Crea una nueva tarea para el rango de coches indicado
+	 *
+	 * @param state
+	 *            El estado de la carrera
+	 * @param from
+	 *            La primera posición, incluida
+	 * @param to
+	 *            La última posición, excluida
+	 * @param minutes
+	 *            El número de minutos que circula cada coche
+	 * @param threshold
+	 *            El número de coches por debajo del cual el rango se ejecuta de
+	 *            manera secuencial
+	 */
+	public RaceStateTask(RaceState state, int from, int to, int minutes, int threshold) {
+		this.state = state;
+		this.from = from;
+		this.to = to;
+		this.minutes = minutes;
+		this.threshold = Math.max(1, threshold);
+	}
+
+	@Override
+	protected void compute() {
+		if ((this.to - this.from) <= this.threshold) {
+			this.state.driveInRace(this.from, this.to, this.minutes);
+		} else {
+			int middle = (this.from + this.to) >>> 1;
+			RecursiveAction.invokeAll(new RaceStateTask(this.state, this.from, middle, this.minutes, this.threshold),
+					new RaceStateTask(this.state, middle, this.to, this.minutes, this.threshold));
+		}
+	}
+
+}
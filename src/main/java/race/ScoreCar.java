@@ -1,61 +1,86 @@
 package race;
 
+import java.io.IOException;
+
 import org.json.simple.JSONObject;
 
+import utils.JsonStreamWriter;
+import utils.Utils;
+
 /**
- * Esta clase hace referencia al coche que correr en las carreras. Los coches
+ * Esta clase hace referencia al coche que correrá en las carreras. Los coches
  * contienen el nombre del garaje al que pertenecen
  */
 public class ScoreCar {
 
 	/**
-	 * Esta es la constante que sirve para indicar cul es la clave para la
-	 * importacin y exportacin de la marca del coche
+	 * Esta es la constante que sirve para indicar cuál es la clave para la
+	 * importación y exportación de la marca del coche
 	 */
 	public static final String BRAND = "brand";
 
 	/**
-	 * Esta es la constante que sirve para indicar cul es la clave para la
-	 * importacin y exportacin del garaje a la que pertenece el coche
+	 * Esta es la constante que sirve para indicar cuál es la clave para la
+	 * importación y exportación del garaje a la que pertenece el coche
 	 */
 	public static final String GARAGE = "garage";
 
 	/**
-	 * Esta es la constante que sirve para indicar cul es la velocidad mxima a
+	 * Constante que sirve para convertir la velocidad del coche, en km/h, en la
+	 * distancia que recorre en un minuto, en metros
+	 */
+	public static final double KMH_TO_METERS_PER_MINUTE = 16.667;
+
+	/**
+	 * Esta es la constante que sirve para indicar cuál es la velocidad máxima a
 	 * la que puede circular el coche
 	 */
 
 	public static final int MAX_SPEED = 200;
 	/**
-	 * Esta es la constante que sirve para indicar cul es la clave para la
-	 * importacin y exportacin del modelo del coche
+	 * Esta es la constante que sirve para indicar cuál es la clave para la
+	 * importación y exportación del modelo del coche
 	 */
 	public static final String MODEL = "model";
 
 	/**
-	 * Variable que almacena la marca del coche
+	 * Esta es la constante que sirve para indicar cuánto se incrementa o
+	 * decrementa la velocidad del coche al acelerar o frenar
 	 */
-	protected String brand;
+	public static final int VELOCITY_STEP = 5;
 
 	/**
 	 * Variable que almacena la distancia que ha recorrido el coche
 	 */
 	protected double distance = 0.0;
 
+	/**
+	 * Variable que almacena la distancia que ha recorrido el coche en modo de
+	 * distancia entera, como la suma en km/h de sus velocidades en cada minuto
+	 */
+	protected long distanceUnits = 0L;
+
+	/**
+	 * Variable que indica si la distancia del coche se acumula como un número
+	 * entero en {@link #distanceUnits}, en lugar de en metros
+	 */
+	protected boolean fixedPointDistance = false;
+
 	/**
 	 * Variable qie almacena el garaje al que pertenece el coche
 	 */
 	protected String garage = "";
 
 	/**
-	 * Variable que almacena el modelo del coche
+	 * Variable que almacena la puntuación del coche
 	 */
-	protected String model;
+	protected int score = 0;
 
 	/**
-	 * Variable que almacena la puntuacin del coche
+	 * Variable que almacena la marca y el modelo del coche, en una
+	 * descripción compartida con los demás coches de la misma marca y modelo
 	 */
-	protected int score = 0;
+	protected CarSpec spec;
 
 	/**
 	 * Variable que alamacena la velocidad actual del coche
@@ -71,30 +96,58 @@ public class ScoreCar {
 	 *            El modelo del coche
 	 */
 	public ScoreCar(String brand, String model) {
-		this.brand = brand;
-		this.model = model;
+		this(brand, model, "");
+	}
+
+	/**
+	 * Contructor de la clase {@link ScoreCar} con el garaje al que pertenece
+	 *
+	 * @param brand
+	 *            La marca del coche
+	 * @param model
+	 *            El modelo del coche
+	 * @param garage
+	 *            El garaje del coche
+	 */
+	public ScoreCar(String brand, String model, String garage) {
+		this.spec = CarSpec.of(brand, model);
+		this.setGarage(garage);
 	}
 
 	/**
 	 * Incrementa la velocidad del coche, de 5 en 5, siempre y cuando no haya
-	 * alcanzado la velocidad mxima del coche, declarada en la variable
-	 * {@link #MAX_SPEED}. A continuacin, modifica la distancia recorrida del
-	 * coche, sumndosela a la actual, mediante el mtodo
+	 * alcanzado la velocidad máxima del coche, declarada en la variable
+	 * {@link #MAX_SPEED}. A continuación, modifica la distancia recorrida del
+	 * coche, sumándosela a la actual, mediante el método
 	 * {@link #calculateDistance()}
 	 */
 	public void accelerate() {
 		if (this.getVelocity() < ScoreCar.MAX_SPEED) {
-			this.setVelocity(this.getVelocity() + 5);
+			this.setVelocity(this.getVelocity() + ScoreCar.VELOCITY_STEP);
 		}
-		this.setDistance(this.getDistance() + this.calculateDistance());
+		this.addMinuteDistance();
 	}
 
 	/**
-	 * Aade la puntuacin que se le pasa por parmetro a la puntuacin del
+	 * Suma a la distancia del coche la recorrida en un minuto a la velocidad
+	 * actual. En modo de distancia entera se suma la velocidad a
+	 * {@link #distanceUnits}; en caso contrario se suman los metros obtenidos
+	 * con {@link #calculateDistance()}
+	 */
+	protected void addMinuteDistance() {
+		if (this.isFixedPointDistance()) {
+			this.setDistanceUnits(this.getDistanceUnits() + this.getVelocity());
+		} else {
+			this.setDistance(this.getDistance() + this.calculateDistance());
+		}
+	}
+
+	/**
+	 * Añade la puntuación que se le pasa por parámetro a la puntuación del
 	 * coche
 	 *
 	 * @param score
-	 *            La puntuacin que se le incrementa al coche
+	 *            La puntuación que se le incrementa al coche
 	 */
 	public void addScoreToCar(int score) {
 		this.setScore(this.getScore() + score);
@@ -102,35 +155,35 @@ public class ScoreCar {
 
 	/**
 	 * Decrementa la velocidad del coche, de 5 en 5, siempre y cuando no se haya
-	 * detenido. A continuacin modifica la distancia recorridad del coche,
-	 * incrementndosela a la actual, mediante el mtodo
+	 * detenido. A continuación modifica la distancia recorridad del coche,
+	 * incrementándosela a la actual, mediante el método
 	 * {@link ScoreCar#calculateDistance()}
 	 */
 	public void brake() {
 		if (this.getVelocity() > 0) {
-			this.setVelocity(this.getVelocity() - 5);
+			this.setVelocity(this.getVelocity() - ScoreCar.VELOCITY_STEP);
 		}
-		this.setDistance(this.getDistance() + this.calculateDistance());
+		this.addMinuteDistance();
 	}
 
 	/**
-	 * Transforma los km/h, obtenidos en el mtodo {@link #getVelocity()}, en
+	 * Transforma los km/h, obtenidos en el método {@link #getVelocity()}, en
 	 * m/s
 	 *
 	 * @return La velocidad actual en m/s
 	 */
 	public double calculateDistance() {
-		return this.getVelocity() * 16.667;
+		return this.getVelocity() * ScoreCar.KMH_TO_METERS_PER_MINUTE;
 
 	}
 
 	/**
-	 * Segn el parmetro recibido por entrada el coche acelera o frena, usando
-	 * los mtodos {@link #accelerate()} y {@link #brake()}, respectivamente. El
-	 * coche acelerar cuando el parmetro pasado por entrada sea distinto de 0
+	 * Según el parámetro recibido por entrada el coche acelera o frena, usando
+	 * los métodos {@link #accelerate()} y {@link #brake()}, respectivamente. El
+	 * coche acelerará cuando el parámetro pasado por entrada sea distinto de 0
 	 *
 	 * @param option
-	 *            Opcin que se le pasa por parmetro, para decidir si el coche
+	 *            Opción que se le pasa por parámetro, para decidir si el coche
 	 *            acelera o no
 	 */
 	public void driveInRace(int option) {
@@ -142,21 +195,30 @@ public class ScoreCar {
 	}
 
 	/**
-	 * Compara si el coche que se pasa por parmetro es igual al coche actual.
+	 * Compara si el coche que se pasa por parámetro es igual al coche actual.
 	 * Un coche es igual a otro si tienen la misma marca, modelo y garaje
 	 */
 	@Override
 	public boolean equals(Object sc) {
 		if (sc instanceof ScoreCar) {
-			boolean brand = this.getBrand().equalsIgnoreCase(((ScoreCar) sc).getBrand());
-			boolean model = this.getModel().equalsIgnoreCase(((ScoreCar) sc).getModel());
 			boolean garage = this.getGarage().equalsIgnoreCase(((ScoreCar) sc).getGarage());
 
-			return (brand && model && garage);
+			return (garage && this.getSpec().sameCar(((ScoreCar) sc).getSpec()));
 		}
 		return false;
 	}
 
+	/**
+	 * Calcula el código hash del coche a partir de su marca, modelo y garaje
+	 * sin distinguir mayúsculas, de forma coherente con
+	 * {@link #equals(Object)}. El de la marca y el modelo ya lo guarda su
+	 * descripción
+	 */
+	@Override
+	public int hashCode() {
+		return (31 * this.getSpec().getKeyHash()) + Utils.hashIgnoreCase(this.getGarage());
+	}
+
 	/**
 	 * Permite exportar el objeto coche a un objeto {@link JSONObject}
 	 *
@@ -170,13 +232,30 @@ public class ScoreCar {
 		return export;
 	}
 
+	/**
+	 * Escribe el coche directamente en un {@link JsonStreamWriter}, con las
+	 * mismas claves que {@link #exportCarToJson()}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe el coche
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeCarTo(JsonStreamWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name(ScoreCar.BRAND).value(this.getBrand());
+		writer.name(ScoreCar.MODEL).value(this.getModel());
+		writer.name(ScoreCar.GARAGE).value(this.getGarage());
+		writer.endObject();
+	}
+
 	/**
 	 * Devuelve la marca del coche
 	 *
 	 * @return La marca del coche
 	 */
 	public String getBrand() {
-		return this.brand;
+		return this.getSpec().getBrand();
 	}
 
 	/**
@@ -200,14 +279,32 @@ public class ScoreCar {
 	}
 
 	/**
-	 * Devuelve la distancia actual del coche
+	 * Devuelve la distancia actual del coche, en metros. En modo de distancia
+	 * entera se convierte en este momento a partir de {@link #distanceUnits}
 	 *
 	 * @return La distancia actual del coche
 	 */
 	public double getDistance() {
+		if (this.isFixedPointDistance()) {
+			return this.distanceUnits * ScoreCar.KMH_TO_METERS_PER_MINUTE;
+		}
 		return this.distance;
 	}
 
+	/**
+	 * Devuelve la distancia actual del coche como la suma en km/h de sus
+	 * velocidades en cada minuto. Si el coche no está en modo de distancia
+	 * entera se obtiene redondeando la distancia en metros
+	 *
+	 * @return La distancia entera actual del coche
+	 */
+	public long getDistanceUnits() {
+		if (this.isFixedPointDistance()) {
+			return this.distanceUnits;
+		}
+		return Math.round(this.distance / ScoreCar.KMH_TO_METERS_PER_MINUTE);
+	}
+
 	/**
 	 * Devuelve el garaje actual del coche
 	 *
@@ -223,18 +320,27 @@ public class ScoreCar {
 	 * @return El modelo actual del coche
 	 */
 	public String getModel() {
-		return this.model;
+		return this.getSpec().getModel();
 	}
 
 	/**
-	 * Devuelve la puntucin actual del coche
+	 * Devuelve la puntución actual del coche
 	 *
-	 * @return La puntuacin actual del coche
+	 * @return La puntuación actual del coche
 	 */
 	public int getScore() {
 		return this.score;
 	}
 
+	/**
+	 * Devuelve la descripción compartida con la marca y el modelo del coche
+	 *
+	 * @return La descripción del coche
+	 */
+	public CarSpec getSpec() {
+		return this.spec;
+	}
+
 	/**
 	 * Devuelve la velocidad actual del coche
 	 *
@@ -244,6 +350,16 @@ public class ScoreCar {
 		return this.velocity;
 	}
 
+	/**
+	 * Indica si la distancia del coche se acumula como un número entero
+	 *
+	 * @return <code>true</code> si la distancia se acumula como un número
+	 *         entero, <code>false</code> si se acumula en metros
+	 */
+	public boolean isFixedPointDistance() {
+		return this.fixedPointDistance;
+	}
+
 	/**
 	 * Reinicia los contadores de velocidad y distancia del coche
 	 */
@@ -253,7 +369,7 @@ public class ScoreCar {
 	}
 
 	/**
-	 * Reinicia la puntuacin del coche
+	 * Reinicia la puntuación del coche
 	 */
 	public void restartScore() {
 		this.setScore(0);
@@ -266,7 +382,7 @@ public class ScoreCar {
 	 *            La marca del coche
 	 */
 	public void setBrand(String brand) {
-		this.brand = brand;
+		this.spec = CarSpec.of(brand, this.getModel());
 	}
 
 	/**
@@ -276,7 +392,50 @@ public class ScoreCar {
 	 *            La distancia del coche
 	 */
 	public void setDistance(double distance) {
-		this.distance = distance;
+		if (this.isFixedPointDistance()) {
+			this.distanceUnits = Math.round(distance / ScoreCar.KMH_TO_METERS_PER_MINUTE);
+		} else {
+			this.distance = distance;
+		}
+	}
+
+	/**
+	 * Establece la distancia del coche como la suma en km/h de sus velocidades
+	 * en cada minuto
+	 *
+	 * @param distanceUnits
+	 *            La distancia entera del coche
+	 */
+	public void setDistanceUnits(long distanceUnits) {
+		if (this.isFixedPointDistance()) {
+			this.distanceUnits = distanceUnits;
+		} else {
+			this.distance = distanceUnits * ScoreCar.KMH_TO_METERS_PER_MINUTE;
+		}
+	}
+
+	/**
+	 * Establece si la distancia del coche se acumula como un número entero. La
+	 * distancia actual se convierte al nuevo modo. En modo de distancia entera
+	 * las sumas son exactas, por lo que dos coches que han recorrido lo mismo
+	 * empatan siempre, y la conversión a metros se hace sólo al consultar la
+	 * distancia con {@link #getDistance()}
+	 *
+	 * @param fixedPointDistance
+	 *            <code>true</code> para acumular la distancia como un número
+	 *            entero, <code>false</code> para acumularla en metros
+	 */
+	public void setFixedPointDistance(boolean fixedPointDistance) {
+		if (fixedPointDistance != this.isFixedPointDistance()) {
+			long units = this.getDistanceUnits();
+			double meters = this.getDistance();
+			this.fixedPointDistance = fixedPointDistance;
+			if (fixedPointDistance) {
+				this.distanceUnits = units;
+			} else {
+				this.distance = meters;
+			}
+		}
 	}
 
 	/**
@@ -286,7 +445,7 @@ public class ScoreCar {
 	 *            El garaje del coche
 	 */
 	public void setGarage(String garage) {
-		this.garage = garage;
+		this.garage = CarSpec.intern(garage);
 	}
 
 	/**
@@ -296,14 +455,14 @@ public class ScoreCar {
 	 *            El modelo del coche
 	 */
 	public void setModel(String model) {
-		this.model = model;
+		this.spec = CarSpec.of(this.getBrand(), model);
 	}
 
 	/**
-	 * Establece la puntuacin del coche
+	 * Establece la puntuación del coche
 	 *
 	 * @param score
-	 *            La puntuacin del coche
+	 *            La puntuación del coche
 	 */
 	public void setScore(int score) {
 		this.score = score;
@@ -323,21 +482,32 @@ public class ScoreCar {
 	 * Crea un nuevo coche a partir de un objeto {@link JSONObject}
 	 *
 	 * @param importedCarJson
-	 *            el objeto {@link JSONObject} que contiene la informacin del
+	 *            el objeto {@link JSONObject} que contiene la información del
 	 *            coche a crear
-	 * @return El {@link ScoreCar} con la informacin del {@link JSONObject} que
-	 *         se le pasa por parmetro
+	 * @return El {@link ScoreCar} con la información del {@link JSONObject} que
+	 *         se le pasa por parámetro
 	 */
 	public static ScoreCar importCarFromJson(JSONObject importedCarJson) {
 		String brand = (String) importedCarJson.get(ScoreCar.BRAND);
 		String model = (String) importedCarJson.get(ScoreCar.MODEL);
 		String garage = (String) importedCarJson.get(ScoreCar.GARAGE);
 
-		ScoreCar sc = new ScoreCar(brand, model);
-		sc.setGarage(garage);
+		return new ScoreCar(brand, model, garage);
 
-		return sc;
+	}
 
+	/**
+	 * Importa un coche de un {@link JSONObject} y devuelve el coche canónico
+	 * igual a él del mapa de identidad de la importación
+	 *
+	 * @param importedCarJson
+	 *            El {@link JSONObject} con los datos del coche
+	 * @param identities
+	 *            El mapa de identidad de la importación
+	 * @return El coche canónico
+	 */
+	public static ScoreCar importCarFromJson(JSONObject importedCarJson, IdentityMap identities) {
+		return identities.car(ScoreCar.importCarFromJson(importedCarJson));
 	}
 
 	@Override
@@ -346,7 +516,7 @@ public class ScoreCar {
 	}
 
 	public static void main(String[] args) {
-		ScoreCar sc = new ScoreCar("Citron", "Xsara");
+		ScoreCar sc = new ScoreCar("Citroën", "Xsara");
 		System.out.println(sc.getDetails());
 		// String exportedCar =
 		// ExporterImporterJson.jsonObjectToString(sc.exportCarToJson());
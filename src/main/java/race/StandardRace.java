@@ -4,7 +4,7 @@ import utils.Utils;
 
 /**
  * Esta clase extiende de la clase {@link Race}, indicando que este tipo de
- * carerras duran un nmero de horas determinadas.
+ * carerras duran un número de horas determinadas.
  */
 public class StandardRace extends Race {
 
@@ -27,7 +27,7 @@ public class StandardRace extends Race {
 	public static final int THIRD_SCORE = 1;
 
 	/**
-	 * Variable que indica el nmero de horas que dura la carrera
+	 * Variable que indica el número de horas que dura la carrera
 	 */
 	protected int raceHours;
 
@@ -37,12 +37,12 @@ public class StandardRace extends Race {
 	private final int[] scoreArray = {StandardRace.FIRST_SCORE, StandardRace.SECOND_SCORE, StandardRace.THIRD_SCORE};
 
 	/**
-	 * Crea una nueva carrera estndar
+	 * Crea una nueva carrera estándar
 	 *
 	 * @param name
 	 *            El nombre de la carrera
 	 * @param hours
-	 *            El nmero de horas que dura la carrera
+	 *            El número de horas que dura la carrera
 	 */
 	public StandardRace(String name, int hours) {
 		super(name);
@@ -53,13 +53,8 @@ public class StandardRace extends Race {
 	@Override
 	public String getPodiumForTournament() {
 
-		int size = 3;
-
-		this.sortCarsByDistanceAndReverse();
-
-		if (this.getCarList().size() < size) {
-			size = this.getCarList().size();
-		}
+		RaceResult result = this.rankCars(Race.PODIUM_SIZE);
+		int size = Math.min(Race.PODIUM_SIZE, result.size());
 		StringBuilder builder = new StringBuilder();
 		builder.append("\t\tNombre: ");
 		builder.append(this.getName());
@@ -67,14 +62,14 @@ public class StandardRace extends Race {
 		builder.append("\t\tPodio: ");
 		builder.append("\n");
 		for (int i = 0; i < size; i++) {
-			ScoreCar sc = this.getCarList().get(i);
+			ScoreCar sc = result.getCar(i);
 			builder.append("\t\t\t");
-			builder.append(" ");
+			builder.append(" ");
 			builder.append(i + 1);
-			builder.append(" puesto: ");
+			builder.append("º puesto: ");
 			builder.append(sc.getDetails());
 			builder.append(" con una distancia de ");
-			builder.append(Utils.formatLocalNumber(sc.getDistance()));
+			builder.append(Utils.formatLocalNumber(result.getDistance(i)));
 			builder.append(" m.\n");
 		}
 		return builder.toString();
@@ -82,44 +77,45 @@ public class StandardRace extends Race {
 	}
 
 	/**
-	 * Obtiene el nmero de horas de una carrera
+	 * Obtiene el número de horas de una carrera
 	 *
-	 * @return El nmero de horas de una carrera
+	 * @return El número de horas de una carrera
 	 */
 	public int getRaceHours() {
 		return this.raceHours;
 	}
 
 	/**
-	 * Obtiene el array de puntuaciones de una carrera estndar
+	 * Obtiene el array de puntuaciones de una carrera estándar
 	 *
-	 * @return el array de puntuaciones de una carrera estndar
+	 * @return el array de puntuaciones de una carrera estándar
 	 */
 	public int[] getScoreArray() {
 		return this.scoreArray;
 	}
 
+	/**
+	 * Los tres primeros puestos ganan los puntos de {@link #getScoreArray()};
+	 * el resto no gana puntos
+	 */
 	@Override
-	public void givePoints() {
-		int size = 3;
-
-		this.sortCarsByDistanceAndReverse();
-
-		if (this.getCarList().size() < size) {
-			size = this.getCarList().size();
+	protected int pointsForPosition(int position, int carCount) {
+		if (position < this.getScoreArray().length) {
+			return this.getScoreArray()[position];
 		}
+		return 0;
+	}
 
-		for (int i = 0; i < size; i++){
-			ScoreCar sc = this.getCarList().get(i);
-			sc.addScoreToCar(this.getScoreArray()[i]);
-		}
+	@Override
+	protected int scoredPositions(int carCount) {
+		return Math.min(this.getScoreArray().length, carCount);
 	}
 
 	/**
-	 * Establece el nmero de horas de una carrera
+	 * Establece el número de horas de una carrera
 	 *
 	 * @param raceHours
-	 *            El nmero de horas de una carrera
+	 *            El número de horas de una carrera
 	 */
 	public void setRaceHours(int raceHours) {
 		this.raceHours = raceHours;
@@ -128,11 +124,51 @@ public class StandardRace extends Race {
 
 	@Override
 	public void startRace() {
-		int minutes = this.getRaceHours()*60;
-		for (int i = 0 ; i < minutes; i++) {
-			for(ScoreCar sc :this.getCarList()) {
-				sc.driveInRace(Utils.getRandomNumberInRange(0, 2));
+		this.reseedRandomSource();
+		if (this.useRaceState()) {
+			this.startRaceWithArrayKernel();
+		} else {
+			this.applyDistanceMode();
+			int minutes = this.getRaceHours()*60;
+			for (int i = 0 ; i < minutes; i++) {
+				for(ScoreCar sc :this.getCarList()) {
+					sc.driveInRace(this.nextDriveOption());
+				}
 			}
+			this.setRaceResult(RaceResult.of(this.getCarList(), this.getComparator()));
+		}
+	}
+
+	/**
+	 * Simula la carrera sobre un {@link RaceState}. Se copian la velocidad y
+	 * distancia de los coches a los arrays, se recorren todos los minutos de la
+	 * carrera, en paralelo si así se ha configurado, y al terminar se vuelcan
+	 * los resultados en los {@link ScoreCar} y se guarda el {@link RaceResult}.
+	 * Si la carrera se simula con un estado propio, los arrays empiezan a 0 y
+	 * los coches no se modifican
+	 */
+	protected void startRaceWithArrayKernel() {
+		RaceState state = this.createRaceState();
+		if (!this.isIsolatedState()) {
+			state.load();
+		}
+		this.simulate(state, true);
+		if (!this.isIsolatedState()) {
+			state.store();
+		}
+		this.setRaceResult(RaceResult.of(state));
+	}
+
+	/**
+	 * Los coches circulan todos los minutos de la carrera
+	 */
+	@Override
+	protected void simulate(RaceState state, boolean parallel) {
+		int minutes = this.getRaceHours() * 60;
+		if (parallel) {
+			this.driveCars(state, minutes);
+		} else {
+			state.driveInRace(0, state.size(), minutes);
 		}
 	}
 
@@ -143,7 +179,7 @@ public class StandardRace extends Race {
 		builder.append(" - ");
 		builder.append(this.getRaceHours());
 		builder.append("h.");
-		builder.append(" (Estndar)");
+		builder.append(" (Estándar)");
 		return builder.toString();
 	}
 
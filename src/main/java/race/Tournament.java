@@ -1,54 +1,64 @@
 package race;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import utils.ComparatorScoreCarByPoints;
+import utils.JsonStreamWriter;
 import utils.ProgramExporter;
+import utils.RandomSource;
+import utils.SplittableRandomSource;
+import utils.ThreadLocalRandomSource;
 
 /**
- * Esta clase crea un nuevo torneo de un tipo especfico de carreras, ya sean de
+ * Esta clase crea un nuevo torneo de un tipo específico de carreras, ya sean de
  * tipo {@link StandardRace} o {@link DeathRace}. Un torneo es una serie de
  * carreras en la que participan los mismos coches, y que van acumulando puntos
- * segn la posicin en la que queden. Al final del torneo, el {@link ScoreCar}
- * que tenga ms puntos es el ganador
+ * según la posición en la que queden. Al final del torneo, el {@link ScoreCar}
+ * que tenga más puntos es el ganador
  *
  */
 public class Tournament {
 
 	/**
-	 * Variable que se usa en la exportacin / importacin que guarda la lista
+	 * Variable que se usa en la exportación / importación que guarda la lista
 	 * de coches participantes en una carrera
 	 */
 	public static final String CARS_LIST = "carList";
 
 	/**
-	 * Variable que se usa en la exportacin / importacin que guarda la lista
+	 * Variable que se usa en la exportación / importación que guarda la lista
 	 * de garajes participantes en una carrera
 	 */
 	public static final String GARAGE_LIST = "garageList";
 
 	/**
-	 * Variable que se usa en la exportacin / importacin que guarda el nombre
+	 * Variable que se usa en la exportación / importación que guarda el nombre
 	 * del torneo
 	 */
 	public static final String NAME = "name";
 
 	/**
-	 * Variable que se usa en la exportacin / importacin que guarda la lista
+	 * Variable que se usa en la exportación / importación que guarda la lista
 	 * de carreras de un torneo
 	 */
 	public static final String RACE_LIST = "raceList";
 
 	/**
 	 * Variable que guarda el comparador de coches del torneo, atendiendo a la
-	 * puntuacin que guarda cada uno de ellos internamente
+	 * puntuación que guarda cada uno de ellos internamente
 	 * ({@link ScoreCar#getScore()})
 	 */
 	private final Comparator<ScoreCar> comparator = new ComparatorScoreCarByPoints();
@@ -68,6 +78,26 @@ public class Tournament {
 	 */
 	protected List<Race> raceList = new ArrayList<>();
 
+	/**
+	 * Variable que guarda la fuente de números aleatorios del torneo, de la
+	 * que se obtienen las fuentes de cada carrera
+	 */
+	protected RandomSource randomSource = ThreadLocalRandomSource.getInstance();
+
+	/**
+	 * Variable que guarda la semilla fija del torneo, de la que se vuelve a
+	 * crear la fuente de números aleatorios al comenzar cada simulación, o
+	 * <code>null</code> si el torneo no tiene semilla fija
+	 */
+	protected Long seed;
+
+	/**
+	 * Registro de la copia binaria con las carreras, garajes y coches del
+	 * torneo, mientras no se hayan cargado, o <code>null</code> si ya están en
+	 * las listas
+	 */
+	protected volatile AppSnapshot.Record snapshotRecord;
+
 	/**
 	 * Variable que guarda la lista de coches participantes en el torneo
 	 */
@@ -113,6 +143,72 @@ public class Tournament {
 		return exporter;
 	}
 
+	/**
+	 * Escribe el torneo directamente en un {@link JsonStreamWriter}, igual
+	 * que {@link #exporterTournamentToJson()}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe el torneo
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeTournamentTo(JsonStreamWriter writer) throws IOException {
+		writer.beginObject();
+		writer.name(Tournament.NAME).value(this.getName());
+
+		writer.name(Tournament.RACE_LIST).beginArray();
+		for (Race r : this.getRaceList()) {
+			r.writeRaceInfoTo(writer);
+		}
+		writer.endArray();
+
+		writer.name(Tournament.GARAGE_LIST).beginArray();
+		for (Garage g : this.getGarageList()) {
+			g.writeGarageTo(writer);
+		}
+		writer.endArray();
+
+		writer.name(Tournament.CARS_LIST).beginArray();
+		for (ScoreCar sc : this.getTournamentCarList()) {
+			sc.writeCarTo(writer);
+		}
+		writer.endArray();
+		writer.endObject();
+	}
+
+	/**
+	 * Escribe el torneo para la exportación normalizada: los garajes se
+	 * indican por su nombre y los coches por su identificador en la
+	 * {@link CarTable}
+	 *
+	 * @param writer
+	 *            El escritor en el que se escribe el torneo
+	 * @param cars
+	 *            La tabla de coches de la exportación
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void writeTournamentWithCarIdsTo(JsonStreamWriter writer, CarTable cars) throws IOException {
+		writer.beginObject();
+		writer.name(Tournament.NAME).value(this.getName());
+
+		writer.name(Tournament.RACE_LIST).beginArray();
+		for (Race r : this.getRaceList()) {
+			r.writeRaceInfoTo(writer);
+		}
+		writer.endArray();
+
+		writer.name(Tournament.GARAGE_LIST).beginArray();
+		for (Garage g : this.getGarageList()) {
+			writer.value(g.getName());
+		}
+		writer.endArray();
+
+		writer.name(Tournament.CARS_LIST);
+		cars.writeIdsTo(writer, this.getTournamentCarList());
+		writer.endObject();
+	}
+
 	/**
 	 * Devuelve el comparador usado para ordenar los {@link ScoreCar}
 	 *
@@ -128,6 +224,7 @@ public class Tournament {
 	 * @return La lista de garrajes que participan en un torneo
 	 */
 	public List<Garage> getGarageList() {
+		this.loadSnapshotRecord();
 		return this.garageList;
 	}
 
@@ -149,7 +246,7 @@ public class Tournament {
 		StringBuilder builder = new StringBuilder();
 
 		for (ScoreCar sc : this.getTournamentCarList()) {
-			builder.append("\t ");
+			builder.append("\t ");
 			builder.append(sc.getDetails());
 			builder.append(" ");
 			builder.append(sc.getScore());
@@ -160,12 +257,46 @@ public class Tournament {
 		return builder.toString();
 	}
 
+	/**
+	 * Devuelve la fuente de números aleatorios del torneo
+	 *
+	 * @return La fuente de números aleatorios del torneo
+	 */
+	public RandomSource getRandomSource() {
+		return this.randomSource;
+	}
+
+	/**
+	 * Devuelve la semilla fija del torneo
+	 *
+	 * @return La semilla del torneo, o <code>null</code> si no tiene semilla
+	 *         fija
+	 */
+	public Long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Devuelve el número de carreras del torneo, sin cargar sus carreras de la
+	 * copia binaria si todavía no se han cargado
+	 *
+	 * @return El número de carreras del torneo
+	 */
+	public int getRaceCount() {
+		AppSnapshot.Record record = this.snapshotRecord;
+		if (record != null) {
+			return record.peekCount();
+		}
+		return this.getRaceList().size();
+	}
+
 	/**
 	 * Devuelve la lista de carreras pertenecientes al torneo
 	 *
 	 * @return La lista de carreras pertenecientes al torneo
 	 */
 	public List<Race> getRaceList() {
+		this.loadSnapshotRecord();
 		return this.raceList;
 	}
 
@@ -175,13 +306,14 @@ public class Tournament {
 	 * @return Devuelve la lista de coches participantes en un torneo
 	 */
 	public List<ScoreCar> getTournamentCarList() {
+		this.loadSnapshotRecord();
 		return this.tournamentCarList;
 	}
 
 	/**
-	 * Devuelve toda la informacin del torneo,
+	 * Devuelve toda la información del torneo,
 	 *
-	 * @return Toda la informacin del torneo
+	 * @return Toda la información del torneo
 	 */
 	public String getTournamentInfo() {
 		StringBuilder builder = new StringBuilder();
@@ -193,7 +325,7 @@ public class Tournament {
 		builder.append("\n");
 		for (Garage g : this.getGarageList()) {
 			builder.append("\t");
-			builder.append(" ");
+			builder.append(" ");
 			builder.append(g.getName());
 			builder.append("\n");
 		}
@@ -203,7 +335,7 @@ public class Tournament {
 		builder.append("\n");
 		for (ScoreCar sc : this.getTournamentCarList()) {
 			builder.append("\t");
-			builder.append(" ");
+			builder.append(" ");
 			builder.append(sc.getDetails());
 			builder.append("\n");
 		}
@@ -220,7 +352,7 @@ public class Tournament {
 			builder.append("\n");
 		}
 		builder.append("\n");
-		builder.append("Clasificacin del torneo: ");
+		builder.append("Clasificación del torneo: ");
 		builder.append("\n");
 		builder.append(this.getPodiumTournament());
 
@@ -228,7 +360,25 @@ public class Tournament {
 	}
 
 	/**
-	 * Registra el coche suministrado por parmetro en el torneo
+	 * Carga las carreras, garajes y coches del torneo desde su registro de la
+	 * copia binaria, si todavía no se han cargado
+	 */
+	protected void loadSnapshotRecord() {
+		if (this.snapshotRecord != null) {
+			synchronized (this) {
+				AppSnapshot.Record record = this.snapshotRecord;
+				if (record != null) {
+					this.raceList.addAll(record.readRaces());
+					this.garageList.addAll(record.readGarages());
+					this.tournamentCarList.addAll(record.readCarReferences());
+					this.snapshotRecord = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Registra el coche suministrado por parámetro en el torneo
 	 *
 	 * @param sc
 	 *            El coche a registrar como participante en un torneo
@@ -240,7 +390,7 @@ public class Tournament {
 
 	/**
 	 * Registra los coches participantes en el torneo en todas las carreras de
-	 * este ltimo
+	 * este último
 	 */
 	public void registerCarsInEachRace() {
 		for (Race r : this.getRaceList()) {
@@ -250,9 +400,9 @@ public class Tournament {
 	}
 
 	/**
-	 * Registra los coches que participan en el torneo. Si slo existe un garaje
-	 * en el torneo, se registran todos los coches de ese garaje. Si existen ms
-	 * garajes, slo se registra un coche aleatorio de cada uno de los garajes
+	 * Registra los coches que participan en el torneo. Si sólo existe un garaje
+	 * en el torneo, se registran todos los coches de ese garaje. Si existen más
+	 * garajes, sólo se registra un coche aleatorio de cada uno de los garajes
 	 */
 	public void registerCarsInTournament() {
 		if (this.getGarageList().size() == 1) {
@@ -267,9 +417,9 @@ public class Tournament {
 	}
 
 	/**
-	 * Este mtodo registra en las carreras que conforman el torneo todos los
+	 * Este método registra en las carreras que conforman el torneo todos los
 	 * los garages que participan en dicho torneo, se obtienen los coches que se
-	 * registrarn en el torneo ({@link #registerCarsInTournament()}) y se
+	 * registrarán en el torneo ({@link #registerCarsInTournament()}) y se
 	 * registran todos los coches que participan en el torneo en cada una de las
 	 * carreras
 	 */
@@ -292,7 +442,7 @@ public class Tournament {
 	}
 
 	/**
-	 * Registra el garaje pasado por parmetro en la lista de garajes
+	 * Registra el garaje pasado por parámetro en la lista de garajes
 	 * participantes en el torneo
 	 *
 	 * @param g
@@ -304,7 +454,7 @@ public class Tournament {
 	}
 
 	/**
-	 * Registra la carrera pasada por parmetro en la lista de carreras
+	 * Registra la carrera pasada por parámetro en la lista de carreras
 	 * participantes
 	 *
 	 * @param r
@@ -315,7 +465,7 @@ public class Tournament {
 	}
 
 	/**
-	 * Elimina el garaje pasado por parmetro de la lista de garajes
+	 * Elimina el garaje pasado por parámetro de la lista de garajes
 	 * participantes de un torneo
 	 *
 	 * @param g
@@ -328,7 +478,7 @@ public class Tournament {
 	}
 
 	/**
-	 * Elimina la carrera pasada por parmetro de la lista de carreras
+	 * Elimina la carrera pasada por parámetro de la lista de carreras
 	 * participantes de un torneo
 	 *
 	 * @param r
@@ -339,10 +489,10 @@ public class Tournament {
 	}
 
 	/**
-	 * Invierte la posicin de los elementos de la lista pasada por parmetro
+	 * Invierte la posición de los elementos de la lista pasada por parámetro
 	 *
 	 * @param list
-	 *            La lista que invertir la posicin de los elementos
+	 *            La lista que invertirá la posición de los elementos
 	 */
 	private void reverseListByPoints(List<ScoreCar> list) {
 		Collections.reverse(list);
@@ -366,26 +516,67 @@ public class Tournament {
 	 *            La lista de carreras que conforman un torneo
 	 */
 	public void setRaceList(List<Race> raceList) {
+		this.loadSnapshotRecord();
 		this.raceList = raceList;
 	}
 
 	/**
-	 * Registra la lista de {@link ScoreCar} pasada por parmetro como lista de
+	 * Establece la fuente de números aleatorios del torneo, que sustituye a la
+	 * semilla fija si la había
+	 *
+	 * @param randomSource
+	 *            La fuente de números aleatorios
+	 */
+	public void setRandomSource(RandomSource randomSource) {
+		this.randomSource = randomSource;
+		this.seed = null;
+	}
+
+	/**
+	 * Establece una semilla fija para el torneo, de manera que dos torneos con
+	 * la misma semilla y los mismos coches obtienen la misma clasificación,
+	 * independientemente del número de hilos con el que se simulen. La
+	 * semilla se guarda y cada simulación del torneo vuelve a empezar a partir
+	 * de ella
+	 *
+	 * @param seed
+	 *            La semilla del torneo
+	 */
+	public void setSeed(long seed) {
+		this.setRandomSource(new SplittableRandomSource(seed));
+		this.seed = seed;
+	}
+
+	/**
+	 * Establece el registro de la copia binaria del que se cargarán las
+	 * carreras, garajes y coches del torneo la primera vez que se acceda a
+	 * ellos
+	 *
+	 * @param snapshotRecord
+	 *            El registro, situado al principio de la lista de carreras
+	 */
+	protected void setSnapshotRecord(AppSnapshot.Record snapshotRecord) {
+		this.snapshotRecord = snapshotRecord;
+	}
+
+	/**
+	 * Registra la lista de {@link ScoreCar} pasada por parámetro como lista de
 	 * coches participantes en un torneo
 	 *
 	 * @param tournamentCarList
-	 *            La lista de {@link ScoreCar} que participarn en el torneo
+	 *            La lista de {@link ScoreCar} que participarán en el torneo
 	 */
 	public void setTournamentCarList(List<ScoreCar> tournamentCarList) {
+		this.loadSnapshotRecord();
 		this.tournamentCarList = tournamentCarList;
 	}
 
 	/**
-	 * Ordena la lista de {@link ScoreCar} participantes en el torneo segn la
-	 * puntuacin, de menor a mayor, y luego invierte la lista
+	 * Ordena la lista de {@link ScoreCar} participantes en el torneo según la
+	 * puntuación, de menor a mayor, y luego invierte la lista
 	 *
 	 * @param list
-	 *            La lista de {@link ScoreCar} que ser reordenada
+	 *            La lista de {@link ScoreCar} que será reordenada
 	 */
 	public void sortAndReverseListByPoints(List<ScoreCar> list) {
 		this.sortListByPoints(list);
@@ -393,8 +584,8 @@ public class Tournament {
 	}
 
 	/**
-	 * Ordena la lista de {@link ScoreCar} participantes en el torneo segn la
-	 * puntuacin, de menor a mayor
+	 * Ordena la lista de {@link ScoreCar} participantes en el torneo según la
+	 * puntuación, de menor a mayor
 	 *
 	 * @param list
 	 */
@@ -403,6 +594,112 @@ public class Tournament {
 
 	}
 
+	/**
+	 * Simula todas las carreras del torneo de una en una. Equivale a
+	 * {@link #startTournament(int)} con un solo hilo
+	 */
+	public void startTournament() {
+		this.startTournament(1);
+	}
+
+	/**
+	 * Simula todas las carreras del torneo y ordena la lista de coches por
+	 * puntos. Cada carrera obtiene, en el orden de la lista de carreras, una
+	 * fuente de números aleatorios propia a partir de la del torneo, y se
+	 * simula con un estado propio ({@link Race#setIsolatedState(boolean)}),
+	 * por lo que las carreras no comparten nada y pueden simularse a la vez en
+	 * un {@link ExecutorService}. Cada carrera devuelve sus puntos con
+	 * {@link Race#computePoints()}, y los puntos se suman a los coches al final
+	 * y en el orden de la lista de carreras, de manera que la clasificación es
+	 * la misma con cualquier número de hilos. Si el torneo tiene semilla fija,
+	 * su fuente se vuelve a crear a partir de ella antes de repartirla. Al
+	 * terminar, cada carrera recupera su fuente de números aleatorios (o su
+	 * semilla) y su modo de estado propio
+	 *
+	 * @param parallelism
+	 *            El número de carreras que se simulan a la vez
+	 */
+	public void startTournament(int parallelism) {
+		if (this.getSeed() != null) {
+			this.randomSource = new SplittableRandomSource(this.getSeed());
+		}
+		List<Race> races = this.getRaceList();
+		RandomSource[] sources = new RandomSource[races.size()];
+		Long[] seeds = new Long[races.size()];
+		boolean[] isolated = new boolean[races.size()];
+		for (int i = 0; i < races.size(); i++) {
+			Race race = races.get(i);
+			sources[i] = race.getRandomSource();
+			seeds[i] = race.getSeed();
+			isolated[i] = race.isIsolatedState();
+			race.setIsolatedState(true);
+			race.setRandomSource(this.getRandomSource().split());
+		}
+		try {
+			this.startRaces(races, parallelism);
+		} finally {
+			for (int i = 0; i < races.size(); i++) {
+				Race race = races.get(i);
+				race.setIsolatedState(isolated[i]);
+				if (seeds[i] == null) {
+					race.setRandomSource(sources[i]);
+				} else {
+					race.setSeed(seeds[i]);
+				}
+			}
+		}
+		this.sortAndReverseListByPoints(this.getTournamentCarList());
+	}
+
+	/**
+	 * Simula las carreras del torneo, ya preparadas por
+	 * {@link #startTournament(int)}, y suma a los coches los puntos de cada
+	 * carrera en el orden de la lista de carreras
+	 *
+	 * @param races
+	 *            Las carreras del torneo
+	 * @param parallelism
+	 *            El número de carreras que se simulan a la vez
+	 */
+	protected void startRaces(List<Race> races, int parallelism) {
+		List<int[]> points = new ArrayList<>(races.size());
+		if ((parallelism > 1) && (races.size() > 1)) {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, races.size()));
+			try {
+				List<Future<int[]>> futures = new ArrayList<>(races.size());
+				for (final Race race : races) {
+					futures.add(executor.submit(new Callable<int[]>() {
+
+						@Override
+						public int[] call() {
+							race.startRace();
+							return race.computePoints();
+						}
+					}));
+				}
+				for (Future<int[]> future : futures) {
+					points.add(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Se ha interrumpido la simulación del torneo", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("No se ha podido simular una carrera del torneo", e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		} else {
+			for (Race race : races) {
+				race.startRace();
+				points.add(race.computePoints());
+			}
+		}
+
+		for (int i = 0; i < races.size(); i++) {
+			races.get(i).givePoints(points.get(i));
+		}
+	}
+
 	/**
 	 * Transforma el objeto {@link JSONObject} en un nuevo torneo
 	 *
@@ -411,28 +708,40 @@ public class Tournament {
 	 * @return Un torneo ({@link Tournament})
 	 */
 	public static Tournament importTournament(JSONObject tournamentJsonObject) {
+		return Tournament.importTournament(tournamentJsonObject, new IdentityMap());
+	}
+
+	/**
+	 * Importa un torneo de un {@link JSONObject}, resolviendo sus garajes y
+	 * coches a los objetos canónicos del mapa de identidad de la importación
+	 *
+	 * @param tournamentJsonObject
+	 *            El {@link JSONObject} con los datos del torneo
+	 * @param identities
+	 *            El mapa de identidad de la importación
+	 * @return El torneo importado
+	 */
+	public static Tournament importTournament(JSONObject tournamentJsonObject, IdentityMap identities) {
 		String name = (String) tournamentJsonObject.get(Tournament.NAME);
 		Tournament t = new Tournament(name);
 
 		JSONArray arrayRace = (JSONArray) tournamentJsonObject.get(Tournament.RACE_LIST);
 		for (Object raceJsonObject : arrayRace) {
 			JSONObject raceJson = (JSONObject) raceJsonObject;
-			Race r = Race.importRace(raceJson);
+			Race r = Race.importRace(raceJson, identities);
 			t.registerRaceToTournament(r);
 		}
 
 		JSONArray arrayGarage = (JSONArray) tournamentJsonObject.get(Tournament.GARAGE_LIST);
 		for (Object garageJsonObject : arrayGarage) {
 			JSONObject garageJson = (JSONObject) garageJsonObject;
-			Garage g = Garage.importGarageFromJSONObject(garageJson);
-			t.registerGarageToTournament(g);
+			t.registerGarageToTournament(identities.garageReference((String) garageJson.get(Garage.NAME)));
 		}
 
 		JSONArray arrayCars = (JSONArray) tournamentJsonObject.get(Tournament.CARS_LIST);
 		for (Object carsJsonObject: arrayCars) {
 			JSONObject carsJson = (JSONObject) carsJsonObject;
-			ScoreCar sc = ScoreCar.importCarFromJson(carsJson);
-			t.registerCarInTournament(sc);
+			t.registerCarInTournament(ScoreCar.importCarFromJson(carsJson, identities));
 		}
 
 		return t;
@@ -443,7 +752,7 @@ public class Tournament {
 		StringBuilder builder = new StringBuilder();
 		builder.append(this.getName());
 		builder.append(" (");
-		builder.append(this.getRaceList().size());
+		builder.append(this.getRaceCount());
 		builder.append(" carreras)");
 		return builder.toString();
 	}
@@ -451,11 +760,11 @@ public class Tournament {
 	public static void main(String[] args) {
 
 		Tournament t = new Tournament("Pachanguita");
-		Garage g = new Garage("Escudera Mari Carmen");
-		Garage g1 = new Garage("Escudera Mari Pili");
-		Garage g2 = new Garage("Escudera Mari Trini");
-		Garage g3 = new Garage("Escudera Mari Loli");
-		Garage g4 = new Garage("Escudera Mari Flori");
+		Garage g = new Garage("Escudería Mari Carmen");
+		Garage g1 = new Garage("Escudería Mari Pili");
+		Garage g2 = new Garage("Escudería Mari Trini");
+		Garage g3 = new Garage("Escudería Mari Loli");
+		Garage g4 = new Garage("Escudería Mari Flori");
 		Race r = new DeathRace("Pepa Pig", 20);
 		Race r2 = new DeathRace("Raider", 20);
 		Race r3 = new DeathRace("Chase", 20);
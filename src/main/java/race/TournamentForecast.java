@@ -0,0 +1,493 @@
+package race;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.IndexSort;
+import utils.SplitMix64;
+import utils.Utils;
+
+/**
+ * Pronóstico de la clasificación final de un {@link Tournament}. Las carreras
+ * del torneo que todavía no se han disputado (las que no tienen
+ * {@link RaceResult}) se simulan muchas veces, repartiendo las iteraciones
+ * entre varios hilos, partiendo de los puntos que los coches tienen
+ * actualmente. En cada iteración se ordena la clasificación con el mismo
+ * criterio que {@link Tournament#sortAndReverseListByPoints(List)} y se cuenta
+ * cuántas veces queda cada coche en cada uno de los primeros puestos, y la
+ * suma de sus puestos para obtener el puesto medio, por lo que la memoria
+ * crece de forma lineal con el número de coches. Cada hilo tiene un {@link RaceState} por
+ * carrera que reutiliza en todas sus iteraciones, en lugar de clonar las
+ * carreras, y el resultado es el mismo con cualquier número de hilos
+ */
+public class TournamentForecast {
+
+	/**
+	 * Constante que indica cuántos coches se muestran en el resumen del
+	 * pronóstico
+	 */
+	public static final int SUMMARY_SIZE = 10;
+
+	/**
+	 * Constante que indica en cuántos de los primeros puestos se cuentan por
+	 * defecto las veces que termina cada coche
+	 */
+	public static final int TRACKED_POSITIONS = 10;
+
+	/**
+	 * Los coches del torneo, en el orden de la lista de coches del torneo
+	 */
+	protected final ScoreCar[] cars;
+
+	/**
+	 * Array que contiene, para cada carrera pendiente, la posición en la lista
+	 * de coches del torneo de cada coche de la carrera, o -1 si el coche no
+	 * participa en el torneo
+	 */
+	protected final int[][] carIndex;
+
+	/**
+	 * Los puntos que tenía cada coche al crear el pronóstico
+	 */
+	protected final long[] initialScores;
+
+	/**
+	 * Número de iteraciones simuladas
+	 */
+	protected int iterations;
+
+	/**
+	 * Número de veces que cada coche ha terminado en cada uno de los primeros
+	 * {@link #trackedPositions} puestos. La posición car * trackedPositions +
+	 * puesto corresponde al coche car
+	 */
+	protected final long[] positionCounts;
+
+	/**
+	 * Suma de los puestos, empezando en 0, en los que ha terminado cada coche
+	 */
+	protected final long[] positionSums;
+
+	/**
+	 * Las carreras del torneo que todavía no se han disputado
+	 */
+	protected final Race[] remainingRaces;
+
+	/**
+	 * Número de los primeros puestos en los que se cuentan las veces que
+	 * termina cada coche
+	 */
+	protected final int trackedPositions;
+
+	/**
+	 * Crea el pronóstico del torneo indicado, con los puntos actuales de sus
+	 * coches y las carreras que todavía no se han disputado, contando los
+	 * primeros {@link #TRACKED_POSITIONS} puestos
+	 *
+	 * @param tournament
+	 *            El torneo
+	 */
+	public TournamentForecast(Tournament tournament) {
+		this(tournament, TournamentForecast.TRACKED_POSITIONS);
+	}
+
+	/**
+	 * Crea el pronóstico del torneo indicado, con los puntos actuales de sus
+	 * coches y las carreras que todavía no se han disputado, contando el
+	 * número de primeros puestos indicado
+	 *
+	 * @param tournament
+	 *            El torneo
+	 * @param trackedPositions
+	 *            El número de primeros puestos en los que se cuentan las
+	 *            veces que termina cada coche, al menos 1
+	 */
+	public TournamentForecast(Tournament tournament, int trackedPositions) {
+		if (trackedPositions < 1) {
+			throw new IllegalArgumentException("Número de puestos no válido: " + trackedPositions);
+		}
+		List<ScoreCar> carList = tournament.getTournamentCarList();
+		this.cars = carList.toArray(new ScoreCar[carList.size()]);
+		this.initialScores = new long[this.cars.length];
+		Map<ScoreCar, Integer> positions = new IdentityHashMap<>();
+		for (int i = 0; i < this.cars.length; i++) {
+			this.initialScores[i] = this.cars[i].getScore();
+			positions.put(this.cars[i], i);
+		}
+
+		List<Race> remaining = new ArrayList<>();
+		for (Race r : tournament.getRaceList()) {
+			if ((r.getRaceResult() == null) && !r.getCarList().isEmpty()) {
+				remaining.add(r);
+			}
+		}
+		this.remainingRaces = remaining.toArray(new Race[remaining.size()]);
+		this.carIndex = new int[this.remainingRaces.length][];
+		for (int j = 0; j < this.remainingRaces.length; j++) {
+			List<ScoreCar> raceCars = this.remainingRaces[j].getCarList();
+			this.carIndex[j] = new int[raceCars.size()];
+			for (int i = 0; i < raceCars.size(); i++) {
+				Integer position = positions.get(raceCars.get(i));
+				if (position != null) {
+					this.carIndex[j][i] = position;
+				} else {
+					this.carIndex[j][i] = -1;
+				}
+			}
+		}
+		this.trackedPositions = Math.min(trackedPositions, this.cars.length);
+		this.positionCounts = new long[TournamentForecast.countersSize(this.cars.length, this.trackedPositions)];
+		this.positionSums = new long[this.cars.length];
+	}
+
+	/**
+	 * Suma a los contadores del pronóstico los de un hilo
+	 *
+	 * @param worker
+	 *            El hilo que ha terminado sus iteraciones
+	 */
+	protected void add(Worker worker) {
+		for (int i = 0; i < this.positionCounts.length; i++) {
+			this.positionCounts[i] += worker.positionCounts[i];
+		}
+		for (int i = 0; i < this.positionSums.length; i++) {
+			this.positionSums[i] += worker.positionSums[i];
+		}
+	}
+
+	/**
+	 * Devuelve el coche que ocupa la posición indicada en la lista de coches
+	 * del torneo
+	 *
+	 * @param car
+	 *            La posición del coche
+	 * @return El coche
+	 */
+	public ScoreCar getCar(int car) {
+		return this.cars[car];
+	}
+
+	/**
+	 * Devuelve el número de coches del torneo
+	 *
+	 * @return El número de coches
+	 */
+	public int getCarCount() {
+		return this.cars.length;
+	}
+
+	/**
+	 * Devuelve el puesto medio en el que termina el coche indicado, empezando
+	 * en 1 para el ganador
+	 *
+	 * @param car
+	 *            La posición del coche en la lista de coches del torneo
+	 * @return El puesto medio del coche
+	 */
+	public double getExpectedPosition(int car) {
+		if (this.getIterations() == 0) {
+			return 0.0;
+		}
+		return ((double) this.positionSums[car] / this.getIterations()) + 1;
+	}
+
+	/**
+	 * Devuelve el número de iteraciones simuladas
+	 *
+	 * @return El número de iteraciones
+	 */
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * Devuelve la probabilidad de que el coche indicado termine el torneo en
+	 * el puesto indicado
+	 *
+	 * @param car
+	 *            La posición del coche en la lista de coches del torneo
+	 * @param position
+	 *            El puesto, empezando en 0 para el ganador, menor que
+	 *            {@link #getTrackedPositions()}
+	 * @return La probabilidad, entre 0 y 1
+	 */
+	public double getPositionProbability(int car, int position) {
+		if ((position < 0) || (position >= this.getTrackedPositions())) {
+			throw new IllegalArgumentException("Puesto no contado en el pronóstico: " + position);
+		}
+		if (this.getIterations() == 0) {
+			return 0.0;
+		}
+		return (double) this.positionCounts[(car * this.getTrackedPositions()) + position] / this.getIterations();
+	}
+
+	/**
+	 * Devuelve el número de carreras que se simulan en cada iteración
+	 *
+	 * @return El número de carreras pendientes
+	 */
+	public int getRemainingRaceCount() {
+		return this.remainingRaces.length;
+	}
+
+	/**
+	 * Devuelve un resumen del pronóstico con los {@link #SUMMARY_SIZE} coches
+	 * con más probabilidad de ganar el torneo
+	 *
+	 * @return El resumen del pronóstico
+	 */
+	public String getSummary() {
+		double[] winProbability = new double[this.getCarCount()];
+		for (int i = 0; i < winProbability.length; i++) {
+			winProbability[i] = this.getPositionProbability(i, 0);
+		}
+		int[] order = IndexSort.sortDescending(winProbability);
+		int size = Math.min(TournamentForecast.SUMMARY_SIZE, order.length);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("Carreras pendientes: ");
+		builder.append(this.getRemainingRaceCount());
+		builder.append("\n");
+		builder.append("Iteraciones: ");
+		builder.append(this.getIterations());
+		builder.append("\n");
+		for (int i = 0; i < size; i++) {
+			int car = order[i];
+			double podium = 0.0;
+			for (int position = 0; position < Math.min(Race.PODIUM_SIZE, this.getTrackedPositions()); position++) {
+				podium += this.getPositionProbability(car, position);
+			}
+			builder.append("\t ");
+			builder.append(this.getCar(car).getDetails());
+			builder.append(": campeón ");
+			builder.append(Utils.formatLocalNumber(winProbability[car] * 100));
+			builder.append("%, podio ");
+			builder.append(Utils.formatLocalNumber(podium * 100));
+			builder.append("%, puesto medio ");
+			builder.append(Utils.formatLocalNumber(this.getExpectedPosition(car)));
+			builder.append("\n");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Devuelve el número de los primeros puestos en los que se cuentan las
+	 * veces que termina cada coche
+	 *
+	 * @return El número de puestos contados
+	 */
+	public int getTrackedPositions() {
+		return this.trackedPositions;
+	}
+
+	/**
+	 * Simula las carreras pendientes el número de veces indicado y acumula
+	 * los resultados a los de las simulaciones anteriores, continuando la
+	 * numeración de sus iteraciones. Las iteraciones se reparten en bloques
+	 * consecutivos entre los hilos, y los contadores de cada hilo se suman al
+	 * final
+	 *
+	 * @param iterations
+	 *            El número de veces que se simulan las carreras pendientes
+	 * @param parallelism
+	 *            El número de hilos
+	 * @param seed
+	 *            La semilla del pronóstico
+	 */
+	public void run(int iterations, int parallelism, long seed) {
+		int workers = Math.max(1, Math.min(parallelism, iterations));
+		int first = this.getIterations();
+		List<Worker> tasks = new ArrayList<>(workers);
+		for (int i = 0; i < workers; i++) {
+			int from = first + (int) (((long) iterations * i) / workers);
+			int to = first + (int) (((long) iterations * (i + 1)) / workers);
+			tasks.add(new Worker(this, from, to, seed));
+		}
+
+		if (workers > 1) {
+			ExecutorService executor = Executors.newFixedThreadPool(workers);
+			try {
+				List<Future<Worker>> futures = executor.invokeAll(tasks);
+				for (Future<Worker> future : futures) {
+					this.add(future.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Se ha interrumpido el pronóstico", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("No se ha podido completar el pronóstico", e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		} else {
+			this.add(tasks.get(0).call());
+		}
+		this.iterations += iterations;
+	}
+
+	/**
+	 * Calcula el tamaño de un array de contadores con los puestos contados de
+	 * cada coche, comprobando con aritmética de <code>long</code> que cabe en
+	 * un array
+	 *
+	 * @param cars
+	 *            El número de coches
+	 * @param positions
+	 *            El número de puestos contados de cada coche
+	 * @return El tamaño del array
+	 */
+	protected static int countersSize(int cars, int positions) {
+		long size = (long) cars * positions;
+		if (size > (Integer.MAX_VALUE - 8)) {
+			throw new IllegalArgumentException("Demasiados coches para el pronóstico: " + cars + " coches y " + positions + " puestos");
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Tarea que simula un bloque de iteraciones con sus propios
+	 * {@link RaceState}, uno por carrera pendiente, y guarda sus propios
+	 * contadores
+	 */
+	protected static class Worker implements Callable<Worker> {
+
+		/**
+		 * Segundo array de trabajo para ordenar la clasificación del torneo
+		 */
+		protected final int[] buffer;
+
+		/**
+		 * El pronóstico al que pertenece la tarea
+		 */
+		protected final TournamentForecast forecast;
+
+		/**
+		 * La primera iteración del bloque, incluida
+		 */
+		protected final int from;
+
+		/**
+		 * Array de trabajo que contiene la clasificación del torneo
+		 */
+		protected final int[] order;
+
+		/**
+		 * Número de veces que cada coche ha terminado en cada uno de los
+		 * primeros puestos contados. Cada hilo simula menos de 2^31
+		 * iteraciones, por lo que basta con un <code>int</code>
+		 */
+		protected final int[] positionCounts;
+
+		/**
+		 * Suma de los puestos en los que ha terminado cada coche
+		 */
+		protected final long[] positionSums;
+
+		/**
+		 * Los espacios de trabajo con los que se clasifica cada carrera
+		 */
+		protected final RaceRanking[] rankings;
+
+		/**
+		 * Los puntos de cada coche en la iteración actual
+		 */
+		protected final long[] scores;
+
+		/**
+		 * La semilla del pronóstico
+		 */
+		protected final long seed;
+
+		/**
+		 * Los estados, uno por carrera pendiente, que se reutilizan en todas
+		 * las iteraciones
+		 */
+		protected final RaceState[] states;
+
+		/**
+		 * La última iteración del bloque, excluida
+		 */
+		protected final int to;
+
+		/**
+		 * Crea una tarea para el bloque de iteraciones indicado
+		 *
+		 * @param forecast
+		 *            El pronóstico
+		 * @param from
+		 *            La primera iteración, incluida
+		 * @param to
+		 *            La última iteración, excluida
+		 * @param seed
+		 *            La semilla del pronóstico
+		 */
+		protected Worker(TournamentForecast forecast, int from, int to, long seed) {
+			this.forecast = forecast;
+			this.from = from;
+			this.to = to;
+			this.seed = seed;
+			int races = forecast.remainingRaces.length;
+			this.states = new RaceState[races];
+			this.rankings = new RaceRanking[races];
+			for (int j = 0; j < races; j++) {
+				this.states[j] = forecast.remainingRaces[j].createRaceState();
+				this.rankings[j] = new RaceRanking(this.states[j].size());
+			}
+			int n = forecast.getCarCount();
+			this.scores = new long[n];
+			this.order = new int[n];
+			this.buffer = new int[n];
+			this.positionCounts = new int[TournamentForecast.countersSize(n, forecast.getTrackedPositions())];
+			this.positionSums = new long[n];
+		}
+
+		@Override
+		public Worker call() {
+			int n = this.forecast.getCarCount();
+			if (n == 0) {
+				return this;
+			}
+			Race[] races = this.forecast.remainingRaces;
+			for (int i = this.from; i < this.to; i++) {
+				System.arraycopy(this.forecast.initialScores, 0, this.scores, 0, n);
+				for (int j = 0; j < races.length; j++) {
+					RaceState state = this.states[j];
+					int raceCars = state.size();
+					long raceSeed = this.seed + ((((long) i * races.length) + j + 1L) * SplitMix64.GOLDEN_GAMMA);
+					state.reset();
+					state.seed(SplitMix64.mix64(raceSeed));
+					races[j].simulate(state, false);
+
+					int scored = races[j].scoredPositions(raceCars);
+					int[] ranking = this.rankings[j].rank(state, scored);
+					for (int p = 0; p < scored; p++) {
+						int car = this.forecast.carIndex[j][ranking[p]];
+						if (car >= 0) {
+							this.scores[car] += races[j].pointsForPosition(p, raceCars);
+						}
+					}
+				}
+
+				int[] standings = IndexSort.sortDescending(this.scores, this.order, this.buffer);
+				int tracked = this.forecast.getTrackedPositions();
+				for (int position = 0; position < n; position++) {
+					int car = standings[position];
+					if (position < tracked) {
+						this.positionCounts[(car * tracked) + position]++;
+					}
+					this.positionSums[car] += position;
+				}
+			}
+			return this;
+		}
+
+	}
+
+}
@@ -0,0 +1,315 @@
+package race;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabla precalculada que permite avanzar a un coche varios minutos de una sola
+ * vez. La velocidad de un coche sólo puede tomar {@link #STATES} valores (de 0
+ * a {@link ScoreCar#MAX_SPEED}, de {@link ScoreCar#VELOCITY_STEP} en
+ * {@link ScoreCar#VELOCITY_STEP}), y conocidas la velocidad inicial y las
+ * decisiones de acelerar o frenar de cada minuto, tanto la velocidad final
+ * como la suma de las velocidades de cada minuto quedan determinadas. La tabla
+ * guarda ambos valores para cada velocidad inicial y cada combinación de
+ * decisiones, representada como un patrón de bits en el que el bit i indica si
+ * el coche acelera en el minuto i. Para cada probabilidad de acelerar se
+ * puede obtener además la {@link Distribution} de los resultados de un bloque
+ */
+public class VelocityTransitionTable {
+
+	/**
+	 * Constante que indica el número máximo de minutos que puede avanzar una
+	 * tabla
+	 */
+	public static final int MAX_TICKS = 16;
+
+	/**
+	 * Constante que indica el número de velocidades distintas que puede tener
+	 * un coche
+	 */
+	public static final int STATES = (ScoreCar.MAX_SPEED / ScoreCar.VELOCITY_STEP) + 1;
+
+	/**
+	 * Tablas ya calculadas, indexadas por el número de minutos
+	 */
+	private static final VelocityTransitionTable[] TABLES = new VelocityTransitionTable[VelocityTransitionTable.MAX_TICKS + 1];
+
+	/**
+	 * Distribuciones de los resultados de un bloque ya calculadas, por la
+	 * probabilidad de acelerar
+	 */
+	protected final Map<String, Distribution> distributions = new HashMap<>();
+
+	/**
+	 * Array que contiene la velocidad final, dividida entre
+	 * {@link ScoreCar#VELOCITY_STEP}, para cada velocidad inicial y patrón
+	 */
+	protected final byte[] endState;
+
+	/**
+	 * El número de minutos que avanza la tabla
+	 */
+	protected final int ticks;
+
+	/**
+	 * Array que contiene la suma de las velocidades de cada minuto, en km/h,
+	 * para cada velocidad inicial y patrón
+	 */
+	protected final short[] velocitySum;
+
+	/**
+	 * Calcula la tabla para el número de minutos indicado
+	 *
+	 * @param ticks
+	 *            El número de minutos que avanza la tabla
+	 */
+	protected VelocityTransitionTable(int ticks) {
+		this.ticks = ticks;
+		int patterns = 1 << ticks;
+		this.endState = new byte[VelocityTransitionTable.STATES * patterns];
+		this.velocitySum = new short[VelocityTransitionTable.STATES * patterns];
+		for (int state = 0; state < VelocityTransitionTable.STATES; state++) {
+			for (int pattern = 0; pattern < patterns; pattern++) {
+				int v = state * ScoreCar.VELOCITY_STEP;
+				int sum = 0;
+				for (int i = 0; i < ticks; i++) {
+					v = RaceState.nextVelocity(v, ((pattern >>> i) & 1) != 0);
+					sum += v;
+				}
+				int index = (state << ticks) | pattern;
+				this.endState[index] = (byte) (v / ScoreCar.VELOCITY_STEP);
+				this.velocitySum[index] = (short) sum;
+			}
+		}
+	}
+
+	/**
+	 * Devuelve la distribución de los resultados de un bloque para la
+	 * probabilidad de acelerar indicada, calculándola la primera vez que se
+	 * solicita
+	 *
+	 * @param numerator
+	 *            El numerador de la probabilidad
+	 * @param denominator
+	 *            El denominador de la probabilidad
+	 * @return La distribución de los resultados
+	 */
+	public synchronized Distribution getDistribution(int numerator, int denominator) {
+		String key = numerator + "/" + denominator;
+		Distribution distribution = this.distributions.get(key);
+		if (distribution == null) {
+			distribution = new Distribution(this, numerator, denominator);
+			this.distributions.put(key, distribution);
+		}
+		return distribution;
+	}
+
+	/**
+	 * Devuelve la velocidad final, en km/h, de un coche que parte de la
+	 * velocidad indicada y sigue el patrón de decisiones
+	 *
+	 * @param velocity
+	 *            La velocidad inicial, en km/h
+	 * @param pattern
+	 *            El patrón de decisiones
+	 * @return La velocidad final, en km/h
+	 */
+	public int getEndVelocity(int velocity, int pattern) {
+		return this.endState[((velocity / ScoreCar.VELOCITY_STEP) << this.ticks) | pattern] * ScoreCar.VELOCITY_STEP;
+	}
+
+	/**
+	 * Devuelve el número de minutos que avanza la tabla
+	 *
+	 * @return El número de minutos que avanza la tabla
+	 */
+	public int getTicks() {
+		return this.ticks;
+	}
+
+	/**
+	 * Devuelve la suma, en km/h, de las velocidades de cada minuto de un coche
+	 * que parte de la velocidad indicada y sigue el patrón de decisiones
+	 *
+	 * @param velocity
+	 *            La velocidad inicial, en km/h
+	 * @param pattern
+	 *            El patrón de decisiones
+	 * @return La suma de las velocidades de cada minuto, en km/h
+	 */
+	public int getVelocitySum(int velocity, int pattern) {
+		return this.velocitySum[((velocity / ScoreCar.VELOCITY_STEP) << this.ticks) | pattern];
+	}
+
+	/**
+	 * Devuelve la tabla para el número de minutos indicado, calculándola la
+	 * primera vez que se solicita
+	 *
+	 * @param ticks
+	 *            El número de minutos, entre 1 y {@link #MAX_TICKS}
+	 * @return La tabla para ese número de minutos
+	 */
+	public static synchronized VelocityTransitionTable getTable(int ticks) {
+		if ((ticks < 1) || (ticks > VelocityTransitionTable.MAX_TICKS)) {
+			throw new IllegalArgumentException("Número de minutos no válido: " + ticks);
+		}
+		if (VelocityTransitionTable.TABLES[ticks] == null) {
+			VelocityTransitionTable.TABLES[ticks] = new VelocityTransitionTable(ticks);
+		}
+		return VelocityTransitionTable.TABLES[ticks];
+	}
+
+	/**
+	 * Distribución de los resultados de un bloque de minutos para una
+	 * probabilidad de acelerar. Para cada velocidad inicial agrupa los
+	 * patrones que llevan a la misma velocidad final y la misma suma de
+	 * velocidades, y guarda la probabilidad acumulada de cada resultado
+	 * escalada a 63 bits. Así un bloque completo se obtiene con un solo número
+	 * aleatorio y una búsqueda binaria, sin decidir sus minutos uno a uno,
+	 * sea cual sea la probabilidad. Las probabilidades se calculan en coma
+	 * flotante, por lo que la de cada resultado tiene un error relativo del
+	 * orden de 2<sup>-52</sup>
+	 */
+	public static class Distribution {
+
+		/**
+		 * Constante con la escala de las probabilidades acumuladas, 2^63
+		 */
+		protected static final double SCALE = 0x1p63;
+
+		/**
+		 * Array que contiene la velocidad final de cada resultado, dividida
+		 * entre {@link ScoreCar#VELOCITY_STEP}
+		 */
+		protected final byte[] endState;
+
+		/**
+		 * Array que contiene, para cada velocidad inicial dividida entre
+		 * {@link ScoreCar#VELOCITY_STEP}, la posición de su primer resultado,
+		 * y al final el número total de resultados
+		 */
+		protected final int[] offsets;
+
+		/**
+		 * Array que contiene la probabilidad acumulada hasta cada resultado,
+		 * incluido, de los de su velocidad inicial, multiplicada por
+		 * {@link #SCALE}
+		 */
+		protected final long[] thresholds;
+
+		/**
+		 * Array que contiene la suma de las velocidades de cada minuto, en
+		 * km/h, de cada resultado
+		 */
+		protected final short[] velocitySum;
+
+		/**
+		 * Calcula la distribución de los resultados de los bloques de una
+		 * tabla para la probabilidad indicada
+		 *
+		 * @param table
+		 *            La tabla
+		 * @param numerator
+		 *            El numerador de la probabilidad
+		 * @param denominator
+		 *            El denominador de la probabilidad
+		 */
+		protected Distribution(VelocityTransitionTable table, int numerator, int denominator) {
+			int ticks = table.ticks;
+			int patterns = 1 << ticks;
+			int sums = (ticks * (VelocityTransitionTable.STATES - 1)) + 1;
+			double p = (double) numerator / denominator;
+			double[] weights = new double[ticks + 1];
+			for (int k = 0; k <= ticks; k++) {
+				weights[k] = Math.pow(p, k) * Math.pow(1 - p, ticks - k);
+			}
+			double[] probability = new double[VelocityTransitionTable.STATES * sums];
+			byte[] endState = new byte[probability.length];
+			short[] velocitySum = new short[probability.length];
+			long[] thresholds = new long[probability.length];
+			this.offsets = new int[VelocityTransitionTable.STATES + 1];
+			int count = 0;
+			for (int state = 0; state < VelocityTransitionTable.STATES; state++) {
+				Arrays.fill(probability, 0.0);
+				for (int pattern = 0; pattern < patterns; pattern++) {
+					int index = (state << ticks) | pattern;
+					int outcome = (table.endState[index] * sums) + (table.velocitySum[index] / ScoreCar.VELOCITY_STEP);
+					probability[outcome] += weights[Integer.bitCount(pattern)];
+				}
+				if ((count + probability.length) > endState.length) {
+					int capacity = Math.max(endState.length * 2, count + probability.length);
+					endState = Arrays.copyOf(endState, capacity);
+					velocitySum = Arrays.copyOf(velocitySum, capacity);
+					thresholds = Arrays.copyOf(thresholds, capacity);
+				}
+				double cumulative = 0.0;
+				for (int outcome = 0; outcome < probability.length; outcome++) {
+					if (probability[outcome] > 0.0) {
+						cumulative += probability[outcome];
+						endState[count] = (byte) (outcome / sums);
+						velocitySum[count] = (short) ((outcome % sums) * ScoreCar.VELOCITY_STEP);
+						thresholds[count] = (long) (cumulative * Distribution.SCALE);
+						count++;
+					}
+				}
+				this.offsets[state + 1] = count;
+			}
+			this.endState = Arrays.copyOf(endState, count);
+			this.velocitySum = Arrays.copyOf(velocitySum, count);
+			this.thresholds = Arrays.copyOf(thresholds, count);
+		}
+
+		/**
+		 * Devuelve la velocidad final, en km/h, de un resultado
+		 *
+		 * @param outcome
+		 *            El resultado, obtenido con {@link #sample(int, long)}
+		 * @return La velocidad final, en km/h
+		 */
+		public int getEndVelocity(int outcome) {
+			return this.endState[outcome] * ScoreCar.VELOCITY_STEP;
+		}
+
+		/**
+		 * Devuelve la suma, en km/h, de las velocidades de cada minuto de un
+		 * resultado
+		 *
+		 * @param outcome
+		 *            El resultado, obtenido con {@link #sample(int, long)}
+		 * @return La suma de las velocidades de cada minuto, en km/h
+		 */
+		public int getVelocitySum(int outcome) {
+			return this.velocitySum[outcome];
+		}
+
+		/**
+		 * Elige el resultado de un bloque para un coche que parte de la
+		 * velocidad indicada: el primero cuya probabilidad acumulada supera
+		 * el número aleatorio, o el último si no la supera ninguno
+		 *
+		 * @param velocity
+		 *            La velocidad inicial, en km/h
+		 * @param random
+		 *            Un número aleatorio uniforme de 63 bits, entre 0 y
+		 *            {@link Long#MAX_VALUE}
+		 * @return El resultado
+		 */
+		public int sample(int velocity, long random) {
+			int state = velocity / ScoreCar.VELOCITY_STEP;
+			int low = this.offsets[state];
+			int high = this.offsets[state + 1] - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (random < this.thresholds[middle]) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+
+	}
+
+}
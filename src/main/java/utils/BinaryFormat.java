@@ -0,0 +1,97 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Funciones de codificación de los ficheros binarios de la aplicación. Los
+ * números enteros se guardan como varint (7 bits por byte, empezando por los
+ * de menor peso, con el bit alto indicando que sigue otro byte), por lo que
+ * los valores pequeños ocupan un solo byte, y las cadenas se guardan en UTF-8
+ * precedidas de su longitud en bytes
+ */
+public class BinaryFormat {
+
+	/**
+	 * Lee un número entero codificado como varint
+	 *
+	 * @param buffer
+	 *            El buffer del que se lee, a partir de su posición actual
+	 * @return El número leído
+	 * @throws IOException
+	 *             Si el número está incompleto o es demasiado largo
+	 */
+	public static int readVarInt(ByteBuffer buffer) throws IOException {
+		try {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				byte b = buffer.get();
+				value |= (b & 0x7F) << shift;
+				if (b >= 0) {
+					return value;
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException("El fichero binario está incompleto", e);
+		}
+		throw new IOException("El fichero binario contiene un número incorrecto");
+	}
+
+	/**
+	 * Lee una cadena en UTF-8 precedida de su longitud
+	 *
+	 * @param buffer
+	 *            El buffer del que se lee, a partir de su posición actual
+	 * @return La cadena leída
+	 * @throws IOException
+	 *             Si la cadena está incompleta
+	 */
+	public static String readString(ByteBuffer buffer) throws IOException {
+		int length = BinaryFormat.readVarInt(buffer);
+		if ((length < 0) || (length > buffer.remaining())) {
+			throw new IOException("El fichero binario está incompleto");
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Escribe un número entero codificado como varint. Los números negativos
+	 * se tratan como enteros sin signo de 32 bits y ocupan 5 bytes
+	 *
+	 * @param out
+	 *            El flujo en el que se escribe
+	 * @param value
+	 *            El número a escribir
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public static void writeVarInt(OutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Escribe una cadena en UTF-8 precedida de su longitud en bytes
+	 *
+	 * @param out
+	 *            El flujo en el que se escribe
+	 * @param value
+	 *            La cadena a escribir
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public static void writeString(OutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		BinaryFormat.writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+}
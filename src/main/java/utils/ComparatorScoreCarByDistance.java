@@ -5,14 +5,18 @@ import java.util.Comparator;
 import race.ScoreCar;
 
 /**
- * Sirve para comparar {@link ScoreCar}, teniendo como criterio de ordenacin su
- * distancia
+ * Sirve para comparar {@link ScoreCar}, teniendo como criterio de ordenación su
+ * distancia. Si los dos coches están en modo de distancia entera se comparan
+ * sus distancias enteras, de manera exacta
  *
  */
 public class ComparatorScoreCarByDistance implements Comparator<ScoreCar>{
 
 	@Override
 	public int compare(ScoreCar o1, ScoreCar o2) {
+		if (o1.isFixedPointDistance() && o2.isFixedPointDistance()) {
+			return Long.compare(o1.getDistanceUnits(), o2.getDistanceUnits());
+		}
 		double distance1 = o1.getDistance();
 		double distance2 = o2.getDistance();
 		if (distance1 > distance2) {
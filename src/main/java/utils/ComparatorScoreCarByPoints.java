@@ -5,8 +5,8 @@ import java.util.Comparator;
 import race.ScoreCar;
 
 /**
- * Sirve para comparar {@link ScoreCar}, teniendo como criterio de ordenacin su
- * puntuacin
+ * Sirve para comparar {@link ScoreCar}, teniendo como criterio de ordenación su
+ * puntuación
  *
  */
 public class ComparatorScoreCarByPoints implements Comparator<ScoreCar>{
@@ -0,0 +1,149 @@
+package utils;
+
+/**
+ * Ordenación de índices sobre arrays de tipos primitivos. En lugar de ordenar
+ * los objetos, se ordena un array con sus posiciones según las claves, por lo
+ * que no se crea ningún objeto por cada elemento y el array de claves no se
+ * modifica
+ */
+public class IndexSort {
+
+	/**
+	 * Compara las claves de dos posiciones, sin que el orden dependa de dónde
+	 * estén guardadas las claves
+	 */
+	public interface KeyComparator {
+
+		/**
+		 * Compara la clave de la posición a con la de la posición b
+		 *
+		 * @param a
+		 *            La posición del primer elemento
+		 * @param b
+		 *            La posición del segundo elemento
+		 * @return Un número negativo, cero o positivo si la clave de a es
+		 *         menor, igual o mayor que la de b
+		 */
+		int compare(int a, int b);
+
+	}
+
+	/**
+	 * Indica si el elemento a va por delante del elemento b en un orden de
+	 * mayor a menor clave. En caso de empate va por delante el de mayor
+	 * posición
+	 *
+	 * @param keys
+	 *            El comparador de las claves
+	 * @param a
+	 *            La posición del primer elemento
+	 * @param b
+	 *            La posición del segundo elemento
+	 * @return <code>true</code> si el elemento a va por delante del b
+	 */
+	private static boolean isAhead(KeyComparator keys, int a, int b) {
+		int comparison = keys.compare(a, b);
+		return (comparison > 0) || ((comparison == 0) && (a > b));
+	}
+
+	/**
+	 * Devuelve las posiciones del array de claves ordenadas de mayor a menor
+	 * clave, igual que {@link #sortDescending(KeyComparator, int[], int[])}
+	 *
+	 * @param keys
+	 *            Las claves
+	 * @return Un array con las posiciones ordenadas
+	 */
+	public static int[] sortDescending(final double[] keys) {
+		return IndexSort.sortDescending(new KeyComparator() {
+
+			@Override
+			public int compare(int a, int b) {
+				return Double.compare(keys[a], keys[b]);
+			}
+
+		}, new int[keys.length], new int[keys.length]);
+	}
+
+	/**
+	 * Ordena las posiciones de 0 a order.length - 1 de mayor a menor clave. En
+	 * caso de empate va primero la posición mayor, que es el mismo orden que se
+	 * obtiene al ordenar de menor a mayor de manera estable e invertir el
+	 * resultado. Se usa una ordenación por mezcla de abajo a arriba, en O(n log
+	 * n), sobre arrays que se pasan por parámetro para poder reutilizarlos
+	 * entre llamadas sin crear objetos
+	 *
+	 * @param keys
+	 *            El comparador de las claves de cada posición
+	 * @param order
+	 *            Array con una posición por elemento, en el que se deja el
+	 *            resultado
+	 * @param buffer
+	 *            Otro array de la misma longitud, que se usa como espacio de
+	 *            trabajo
+	 * @return El array order, con las posiciones ordenadas
+	 */
+	public static int[] sortDescending(KeyComparator keys, int[] order, int[] buffer) {
+		int n = order.length;
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		int[] source = order;
+		int[] target = buffer;
+		for (int width = 1; width < n; width <<= 1) {
+			for (int from = 0; from < n; from += width << 1) {
+				int middle = Math.min(from + width, n);
+				int to = Math.min(from + (width << 1), n);
+				int i = from;
+				int j = middle;
+				int k = from;
+				while ((i < middle) && (j < to)) {
+					if (IndexSort.isAhead(keys, source[j], source[i])) {
+						target[k++] = source[j++];
+					} else {
+						target[k++] = source[i++];
+					}
+				}
+				while (i < middle) {
+					target[k++] = source[i++];
+				}
+				while (j < to) {
+					target[k++] = source[j++];
+				}
+			}
+			int[] swap = source;
+			source = target;
+			target = swap;
+		}
+		if (source != order) {
+			System.arraycopy(source, 0, order, 0, n);
+		}
+		return order;
+	}
+
+	/**
+	 * Ordena las posiciones del array de claves de mayor a menor clave, igual
+	 * que {@link #sortDescending(KeyComparator, int[], int[])}
+	 *
+	 * @param keys
+	 *            Las claves
+	 * @param order
+	 *            Array de la misma longitud que las claves, en el que se deja
+	 *            el resultado
+	 * @param buffer
+	 *            Otro array de la misma longitud, que se usa como espacio de
+	 *            trabajo
+	 * @return El array order, con las posiciones ordenadas
+	 */
+	public static int[] sortDescending(final long[] keys, int[] order, int[] buffer) {
+		return IndexSort.sortDescending(new KeyComparator() {
+
+			@Override
+			public int compare(int a, int b) {
+				return Long.compare(keys[a], keys[b]);
+			}
+
+		}, order, buffer);
+	}
+
+}
@@ -7,7 +7,7 @@ public class Input {
 	/**
 	 * Devuelve lo introducido por teclado como {@link String}
 	 *
-	 * @return Un {@link String} con la informacin introducida por teclado
+	 * @return Un {@link String} con la información introducida por teclado
 	 */
 	public static String init() {
 		String buffer = "";
@@ -16,7 +16,7 @@ public class Input {
 		try {
 			buffer = reader.readLine();
 		} catch (Exception e) {
-			System.out.append("Dato non vlido.");
+			System.out.append("Dato non válido.");
 		}
 		return buffer;
 	}
@@ -31,12 +31,12 @@ public class Input {
 	}
 
 	/**
-	 * Devuelve el {@link Integer} intoducido por parmetro, enseando un
+	 * Devuelve el {@link Integer} intoducido por parámetro, enseñando un
 	 * mensaje previo
 	 *
 	 * @param message
-	 *            El mensaje a mostrar antes de la introduccin de los datos
-	 * @return El {@link Integer} introducido por parmetro
+	 *            El mensaje a mostrar antes de la introducción de los datos
+	 * @return El {@link Integer} introducido por parámetro
 	 */
 	public static int integer(String message) {
 		if (message != null) {
@@ -46,7 +46,7 @@ public class Input {
 		try {
 			value = Integer.parseInt(Input.init());
 		} catch (Exception e) {
-			return Input.integer("Dato no vlido, introdzcalo de nuevo: ");
+			return Input.integer("Dato no válido, introdúzcalo de nuevo: ");
 		}
 		return value;
 	}
@@ -75,7 +75,7 @@ public class Input {
 		try {
 			value = Double.parseDouble(Input.init());
 		} catch (Exception e) {
-			return Input.real("Dato no vlido, introdzcalo de nuevo: ");
+			return Input.real("Dato no válido, introdúzcalo de nuevo: ");
 		}
 		return value;
 	}
@@ -105,11 +105,11 @@ public class Input {
 	}
 
 	/**
-	 * El {@link Character} introducido por parmetro, en caso de ser mltiples
-	 * {@link Character} como entrada, slo devuelve el primero
+	 * El {@link Character} introducido por parámetro, en caso de ser múltiples
+	 * {@link Character} como entrada, sólo devuelve el primero
 	 *
-	 * @return El {@link Character} introducido por parmetro, en caso de ser
-	 *         mltiples {@link Character} como entrada, slo devuelve el
+	 * @return El {@link Character} introducido por parámetro, en caso de ser
+	 *         múltiples {@link Character} como entrada, sólo devuelve el
 	 *         primero
 	 */
 	public static char character() {
@@ -117,15 +117,15 @@ public class Input {
 	}
 
 	/**
-	 * El {@link Character} introducido por parmetro, con un mensaje previo. En
-	 * caso de ser mltiples {@link Character} como entrada, slo devuelve el
+	 * El {@link Character} introducido por parámetro, con un mensaje previo. En
+	 * caso de ser múltiples {@link Character} como entrada, sólo devuelve el
 	 * primero
 	 *
 	 * @param message
 	 *            El mensaje a mostar
 	 *
-	 * @return El {@link Character} introducido por parmetro, en caso de ser
-	 *         mltiples {@link Character} como entrada, slo devuelve el
+	 * @return El {@link Character} introducido por parámetro, en caso de ser
+	 *         múltiples {@link Character} como entrada, sólo devuelve el
 	 *         primero
 	 */
 	public static char character(String message) {
@@ -0,0 +1,190 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+import org.json.simple.JSONValue;
+
+/**
+ * Escritor de JSON por eventos. Escribe cada objeto, lista, clave y valor
+ * directamente en un {@link Writer} según se van indicando, sin construir
+ * antes los {@link org.json.simple.JSONObject} ni la cadena completa, por lo
+ * que el primer byte se escribe enseguida y la memoria usada no depende del
+ * tamaño de los datos exportados. No comprueba que la estructura sea correcta:
+ * cada apertura debe cerrarse y cada valor de un objeto debe ir precedido de
+ * su clave
+ */
+public class JsonStreamWriter implements Closeable {
+
+	/**
+	 * Indica si el siguiente elemento debe ir precedido de una coma
+	 */
+	private boolean needsComma;
+
+	/**
+	 * El {@link Writer} en el que se escribe
+	 */
+	private final Writer writer;
+
+	/**
+	 * Crea un escritor de JSON sobre el {@link Writer} indicado
+	 *
+	 * @param writer
+	 *            El {@link Writer} en el que se escribe, preferiblemente con
+	 *            buffer
+	 */
+	public JsonStreamWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Abre una lista
+	 *
+	 * @return El propio escritor
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public JsonStreamWriter beginArray() throws IOException {
+		this.separate();
+		this.writer.write('[');
+		this.needsComma = false;
+		return this;
+	}
+
+	/**
+	 * Abre un objeto
+	 *
+	 * @return El propio escritor
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public JsonStreamWriter beginObject() throws IOException {
+		this.separate();
+		this.writer.write('{');
+		this.needsComma = false;
+		return this;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.writer.close();
+	}
+
+	/**
+	 * Cierra la lista abierta
+	 *
+	 * @return El propio escritor
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public JsonStreamWriter endArray() throws IOException {
+		this.writer.write(']');
+		this.needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Cierra el objeto abierto
+	 *
+	 * @return El propio escritor
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public JsonStreamWriter endObject() throws IOException {
+		this.writer.write('}');
+		this.needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Escribe los datos pendientes en el {@link Writer}
+	 *
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public void flush() throws IOException {
+		this.writer.flush();
+	}
+
+	/**
+	 * Escribe la clave del siguiente valor de un objeto
+	 *
+	 * @param name
+	 *            La clave
+	 * @return El propio escritor
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public JsonStreamWriter name(String name) throws IOException {
+		this.separate();
+		this.writeString(name);
+		this.writer.write(':');
+		this.needsComma = false;
+		return this;
+	}
+
+	/**
+	 * Escribe una coma si el elemento anterior no era una apertura ni una
+	 * clave
+	 *
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	private void separate() throws IOException {
+		if (this.needsComma) {
+			this.writer.write(',');
+		}
+	}
+
+	/**
+	 * Escribe un valor numérico
+	 *
+	 * @param value
+	 *            El valor
+	 * @return El propio escritor
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public JsonStreamWriter value(long value) throws IOException {
+		this.separate();
+		this.writer.write(Long.toString(value));
+		this.needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Escribe una cadena, o <code>null</code> si la cadena es nula
+	 *
+	 * @param value
+	 *            La cadena
+	 * @return El propio escritor
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	public JsonStreamWriter value(String value) throws IOException {
+		this.separate();
+		if (value == null) {
+			this.writer.write("null");
+		} else {
+			this.writeString(value);
+		}
+		this.needsComma = true;
+		return this;
+	}
+
+	/**
+	 * Escribe una cadena entre comillas, escapando sus caracteres especiales
+	 *
+	 * @param value
+	 *            La cadena
+	 * @throws IOException
+	 *             Si no se puede escribir
+	 */
+	private void writeString(String value) throws IOException {
+		this.writer.write('"');
+		this.writer.write(JSONValue.escape(value));
+		this.writer.write('"');
+	}
+
+}
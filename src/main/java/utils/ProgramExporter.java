@@ -21,12 +21,12 @@ public class ProgramExporter {
 	private static JSONParser parser = null;
 
 	/**
-	 * Exporta el podio de una carrera a un fichero pasado por parmetro
+	 * Exporta el podio de una carrera a un fichero pasado por parámetro
 	 *
 	 * @param r
 	 *            La carrera a exportar el podio
 	 * @param file
-	 *            El fichero al que ser exportado
+	 *            El fichero al que será exportado
 	 */
 	public void exportPodiumRace(Race r, File file) {
 		String content = r.getPodium();
@@ -34,12 +34,12 @@ public class ProgramExporter {
 	}
 
 	/**
-	 * Exporta el podio de un torneo a un fichero pasado por parmetro
+	 * Exporta el podio de un torneo a un fichero pasado por parámetro
 	 *
 	 * @param t
 	 *            El torneo a exportar
 	 * @param file
-	 *            El fichero al que ser exportado
+	 *            El fichero al que será exportado
 	 */
 	public void exportTournament(Tournament t, File file) {
 		String content = t.getTournamentInfo();
@@ -47,12 +47,12 @@ public class ProgramExporter {
 	}
 
 	/**
-	 * Exporta el contenido pasado por parmetro a un fichero
+	 * Exporta el contenido pasado por parámetro a un fichero
 	 *
 	 * @param content
 	 *            El contenido a exportar
 	 * @param f
-	 *            El fichero al que ser exportado
+	 *            El fichero al que será exportado
 	 */
 	public static void baseSkeletonToExport(String content, File f) {
 		try (BufferedWriter bw = new BufferedWriter(new FileWriter(f))) {
@@ -62,14 +62,28 @@ public class ProgramExporter {
 		}
 	}
 
+	/**
+	 * Abre un {@link JsonStreamWriter} con buffer sobre un fichero, para
+	 * exportar datos en formato JSON sin construir antes la cadena completa
+	 *
+	 * @param f
+	 *            El fichero al que será exportado
+	 * @return El escritor, que debe cerrarse al terminar
+	 * @throws IOException
+	 *             Si no se puede abrir el fichero
+	 */
+	public static JsonStreamWriter openJsonWriter(File f) throws IOException {
+		return new JsonStreamWriter(new BufferedWriter(new FileWriter(f)));
+	}
+
 	/**
 	 * Convierte en un {@link JSONObject} un {@link JSONArray}, siendo la clave
-	 * la cadena pasada por parmeto, en el valor el {@link JSONArray}
+	 * la cadena pasada por parámeto, en el valor el {@link JSONArray}
 	 *
 	 * @param listName
-	 *            La clave pasada por parmetro
+	 *            La clave pasada por parámetro
 	 * @param array
-	 *            El valor pasado por parmetro
+	 *            El valor pasado por parámetro
 	 * @return Un {@link JSONObject} compuesto por una clave de tipo
 	 *         {@link String} y un valor de tipo {@link JSONArray}
 	 */
@@ -80,9 +94,9 @@ public class ProgramExporter {
 	}
 
 	/**
-	 * Devuelve el parse utilizado para la importacin
+	 * Devuelve el parse utilizado para la importación
 	 *
-	 * @return El {@link JSONParser} que se utiliza para la importacin
+	 * @return El {@link JSONParser} que se utiliza para la importación
 	 */
 	public static JSONParser getParser() {
 		if (ProgramExporter.parser == null) {
@@ -94,11 +108,11 @@ public class ProgramExporter {
 
 
 	/**
-	 * Convierte la representacin de un {@link JSONObject} en {@link String} a
+	 * Convierte la representación de un {@link JSONObject} en {@link String} a
 	 * un {@link JSONObject}
 	 *
 	 * @param importedJsonObjectString
-	 *            la representacin en una cadena de una {@link JSONObject}
+	 *            la representación en una cadena de una {@link JSONObject}
 	 * @return El {@link JSONObject}
 	 */
 	public static JSONObject stringToJsonObject(String importedJsonObjectString) {
@@ -0,0 +1,37 @@
+package utils;
+
+/**
+ * Fuente de números aleatorios que utilizan las carreras. Permite sustituir la
+ * generación de números aleatorios, ya sea para fijar una semilla y poder
+ * reproducir los resultados, o para obtener flujos independientes mediante
+ * {@link #split()} que puedan usarse desde distintos hilos sin compartir estado
+ */
+public interface RandomSource {
+
+	/**
+	 * Devuelve un número aleatorio entre 0, incluido, y el límite indicado,
+	 * excluido
+	 *
+	 * @param bound
+	 *            El límite superior, excluido. Debe ser mayor que 0
+	 * @return Un número aleatorio en el rango [0, bound)
+	 */
+	int nextInt(int bound);
+
+	/**
+	 * Devuelve un número aleatorio de tipo {@link Long}
+	 *
+	 * @return Un número aleatorio de 64 bits
+	 */
+	long nextLong();
+
+	/**
+	 * Crea una nueva fuente de números aleatorios independiente de la actual.
+	 * Si la fuente actual tiene una semilla fija, la nueva fuente también
+	 * producirá siempre la misma secuencia
+	 *
+	 * @return Una nueva fuente de números aleatorios
+	 */
+	RandomSource split();
+
+}
@@ -0,0 +1,176 @@
+package utils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Lista indexada: guarda los elementos en orden de inserción, para mostrarlos
+ * y seleccionarlos por su posición, y además un índice con
+ * {@link HashMap} sobre su <code>equals</code> y <code>hashCode</code>, de
+ * forma que {@link #contains(Object)} y {@link #find(Object)} no tienen que
+ * recorrer la lista. El índice guarda cuántos elementos iguales hay y cuál es
+ * el primero; sólo se recorre la lista cuando se elimina o se sustituye el
+ * primero de varios iguales, o cuando se inserta uno igual a otro antes del
+ * final. Los elementos no deben cambiar de clave mientras están en la lista
+ *
+ * @param <T>
+ *            El tipo de los elementos, que debe definir <code>equals</code> y
+ *            <code>hashCode</code> de forma coherente
+ */
+public class Registry<T> extends AbstractList<T> implements RandomAccess {
+
+	/**
+	 * El número de elementos iguales a cada clave
+	 */
+	protected final Map<T, Integer> counts = new HashMap<>();
+
+	/**
+	 * Los elementos, en orden de inserción
+	 */
+	protected final List<T> elements = new ArrayList<>();
+
+	/**
+	 * El primer elemento de la lista igual a cada clave
+	 */
+	protected final Map<T, T> firsts = new HashMap<>();
+
+	/**
+	 * Crea una lista indexada vacía
+	 */
+	public Registry() {}
+
+	/**
+	 * Crea una lista indexada con los elementos indicados, en el mismo orden
+	 *
+	 * @param elements
+	 *            Los elementos
+	 */
+	public Registry(Collection<? extends T> elements) {
+		this.addAll(elements);
+	}
+
+	@Override
+	public void add(int index, T element) {
+		this.elements.add(index, element);
+		this.modCount++;
+		Integer count = this.counts.get(element);
+		if (count == null) {
+			this.counts.put(element, 1);
+			this.firsts.put(element, element);
+		} else {
+			this.counts.put(element, count + 1);
+			if (index < (this.elements.size() - 1)) {
+				this.reindex(element);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		this.elements.clear();
+		this.counts.clear();
+		this.firsts.clear();
+		this.modCount++;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return this.counts.containsKey(o);
+	}
+
+	/**
+	 * Devuelve el primer elemento de la lista igual al indicado
+	 *
+	 * @param probe
+	 *            Un objeto igual al elemento buscado
+	 * @return El primer elemento igual, o <code>null</code> si no hay ninguno
+	 */
+	public T find(Object probe) {
+		return this.firsts.get(probe);
+	}
+
+	@Override
+	public T get(int index) {
+		return this.elements.get(index);
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		if (!this.contains(o)) {
+			return -1;
+		}
+		return this.elements.indexOf(o);
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		if (!this.contains(o)) {
+			return -1;
+		}
+		return this.elements.lastIndexOf(o);
+	}
+
+	/**
+	 * Vuelve a buscar en la lista el primer elemento igual a una clave
+	 *
+	 * @param key
+	 *            La clave
+	 */
+	protected void reindex(T key) {
+		for (T element : this.elements) {
+			if (element.equals(key)) {
+				this.firsts.remove(key);
+				this.firsts.put(element, element);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public T remove(int index) {
+		T element = this.elements.remove(index);
+		this.modCount++;
+		int count = this.counts.get(element);
+		if (count == 1) {
+			this.counts.remove(element);
+			this.firsts.remove(element);
+		} else {
+			this.counts.put(element, count - 1);
+			if (this.firsts.get(element) == element) {
+				this.reindex(element);
+			}
+		}
+		return element;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int index = this.indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		this.remove(index);
+		return true;
+	}
+
+	@Override
+	public T set(int index, T element) {
+		T previous = this.elements.get(index);
+		if (previous != element) {
+			this.remove(index);
+			this.add(index, element);
+		}
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return this.elements.size();
+	}
+
+}
@@ -0,0 +1,42 @@
+package utils;
+
+/**
+ * Funciones del generador SplitMix64, el mismo algoritmo que usa
+ * {@link java.util.SplittableRandom}. Permiten guardar el estado de muchos
+ * generadores en un array de tipo {@link Long}, sin crear un objeto por cada
+ * uno de ellos: para obtener un nuevo número se suma {@link #GOLDEN_GAMMA} al
+ * estado y se mezcla el resultado con {@link #mix64(long)}
+ */
+public class SplitMix64 {
+
+	/**
+	 * Incremento que se suma al estado del generador en cada paso
+	 */
+	public static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	/**
+	 * Mezcla los bits del estado para obtener un número aleatorio de 32 bits
+	 *
+	 * @param z
+	 *            El estado del generador
+	 * @return Un número aleatorio de 32 bits
+	 */
+	public static int mix32(long z) {
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * Mezcla los bits del estado para obtener un número aleatorio de 64 bits
+	 *
+	 * @param z
+	 *            El estado del generador
+	 * @return Un número aleatorio de 64 bits
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+}
@@ -0,0 +1,59 @@
+package utils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Fuente de números aleatorios basada en {@link SplittableRandom}. Con la misma
+ * semilla produce siempre la misma secuencia. No es segura entre hilos: cada
+ * hilo debe usar su propia fuente, obtenida mediante {@link #split()}
+ */
+public class SplittableRandomSource implements RandomSource {
+
+	/**
+	 * El generador de números aleatorios
+	 */
+	private final SplittableRandom random;
+
+	/**
+	 * Crea una nueva fuente de números aleatorios sin semilla fija
+	 */
+	public SplittableRandomSource() {
+		this(new SplittableRandom());
+	}
+
+	/**
+	 * Crea una nueva fuente de números aleatorios con la semilla indicada
+	 *
+	 * @param seed
+	 *            La semilla de la fuente
+	 */
+	public SplittableRandomSource(long seed) {
+		this(new SplittableRandom(seed));
+	}
+
+	/**
+	 * Crea una nueva fuente a partir del generador pasado por parámetro
+	 *
+	 * @param random
+	 *            El generador de números aleatorios
+	 */
+	private SplittableRandomSource(SplittableRandom random) {
+		this.random = random;
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		return this.random.nextInt(bound);
+	}
+
+	@Override
+	public long nextLong() {
+		return this.random.nextLong();
+	}
+
+	@Override
+	public RandomSource split() {
+		return new SplittableRandomSource(this.random.split());
+	}
+
+}
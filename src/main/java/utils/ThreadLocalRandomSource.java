@@ -0,0 +1,47 @@
+package utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Fuente de números aleatorios sin semilla fija basada en
+ * {@link ThreadLocalRandom}. Cada hilo usa su propio generador, por lo que
+ * puede compartirse entre hilos sin que se produzca contención. Es la fuente
+ * que se usa por defecto
+ */
+public class ThreadLocalRandomSource implements RandomSource {
+
+	/**
+	 * La única instancia de la clase
+	 */
+	private static final ThreadLocalRandomSource INSTANCE = new ThreadLocalRandomSource();
+
+	/**
+	 * Constructor privado, se debe usar {@link #getInstance()}
+	 */
+	private ThreadLocalRandomSource() {}
+
+	@Override
+	public int nextInt(int bound) {
+		return ThreadLocalRandom.current().nextInt(bound);
+	}
+
+	@Override
+	public long nextLong() {
+		return ThreadLocalRandom.current().nextLong();
+	}
+
+	@Override
+	public RandomSource split() {
+		return new SplittableRandomSource(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * Devuelve la instancia de la fuente de números aleatorios por defecto
+	 *
+	 * @return La fuente de números aleatorios por defecto
+	 */
+	public static ThreadLocalRandomSource getInstance() {
+		return ThreadLocalRandomSource.INSTANCE;
+	}
+
+}
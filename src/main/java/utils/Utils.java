@@ -7,7 +7,7 @@ import java.util.List;
 public class Utils {
 
 	/**
-	 * Formatea el {@link Double} que se pasa por parmetro, con el formato #.##
+	 * Formatea el {@link Double} que se pasa por parámetro, con el formato #.##
 	 *
 	 * @param d
 	 *            el valor a transformar
@@ -19,27 +19,88 @@ public class Utils {
 	}
 
 	/**
-	 * Obtiene un nmero aleatorio selecionado entre los valores pasado por
-	 * parmetros. Si el lmite inferior es superior al mayor, se intercambia
+	 * Obtiene un número aleatorio selecionado entre los valores pasado por
+	 * parámetros. Si el límite inferior es superior al mayor, se intercambia.
+	 * Utiliza la fuente de números aleatorios por defecto
+	 * ({@link ThreadLocalRandomSource})
 	 *
 	 * @param min
-	 *            El lmite inferior del rango
+	 *            El límite inferior del rango
 	 * @param max
-	 *            El lmite superior del rango
-	 * @return Un nmero aleatorio entre el rango seleccionado.
+	 *            El límite superior del rango
+	 * @return Un número aleatorio entre el rango seleccionado.
 	 */
 	public static int getRandomNumberInRange(int min, int max) {
+		return Utils.getRandomNumberInRange(ThreadLocalRandomSource.getInstance(), min, max);
+	}
+
+	/**
+	 * Obtiene un número aleatorio selecionado entre los valores pasado por
+	 * parámetros, usando la fuente de números aleatorios indicada. Si el límite
+	 * inferior es superior al mayor, se intercambia
+	 *
+	 * @param source
+	 *            La fuente de números aleatorios
+	 * @param min
+	 *            El límite inferior del rango
+	 * @param max
+	 *            El límite superior del rango
+	 * @return Un número aleatorio entre el rango seleccionado.
+	 */
+	public static int getRandomNumberInRange(RandomSource source, int min, int max) {
 		if (min > max) {
 			int aux = max;
 			max = min;
 			min = aux;
 		}
 
-		return ((int) (Math.random() * ((max - min) + 1)) + min);
+		return source.nextInt((max - min) + 1) + min;
+	}
+
+	/**
+	 * Calcula un código hash de una cadena que es el mismo para dos cadenas
+	 * iguales según {@link String#equalsIgnoreCase(String)}. Coincide con el
+	 * <code>hashCode</code> de {@link #normalizeKey(String)}, sin crear la
+	 * cadena normalizada
+	 *
+	 * @param s
+	 *            La cadena, que puede ser <code>null</code>
+	 * @return El código hash, o 0 si la cadena es <code>null</code>
+	 */
+	public static int hashIgnoreCase(String s) {
+		int hash = 0;
+		if (s != null) {
+			for (int i = 0; i < s.length(); i++) {
+				hash = (31 * hash) + Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Normaliza una cadena para usarla como clave, de forma que dos cadenas
+	 * iguales según {@link String#equalsIgnoreCase(String)} den la misma
+	 * clave. Cada carácter se pasa a mayúscula y después a minúscula, igual
+	 * que al compararlos sin distinguir mayúsculas
+	 *
+	 * @param s
+	 *            La cadena, que puede ser <code>null</code>
+	 * @return La cadena normalizada, o una cadena vacía si es
+	 *         <code>null</code>
+	 */
+	public static String normalizeKey(String s) {
+		if (s == null) {
+			return "";
+		}
+		char[] chars = new char[s.length()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(Character.toUpperCase(s.charAt(i)));
+		}
+		return new String(chars);
 	}
 
 	/**
-	 * Muestra una lista con ndices, y permite que muestre un mensaje para
+	 * Muestra una lista con índices, y permite que muestre un mensaje para
 	 * esperar
 	 *
 	 * @param list
@@ -53,8 +114,8 @@ public class Utils {
 	}
 
 	/**
-	 * Muestra una lista con ndices, y permite que muestre un mensaje para
-	 * esperar, y excluye los elementos de la primera lista que estn presentes
+	 * Muestra una lista con índices, y permite que muestre un mensaje para
+	 * esperar, y excluye los elementos de la primera lista que estén presentes
 	 * en la segunda.
 	 *
 	 * @param list
@@ -64,7 +125,7 @@ public class Utils {
 	 *            <code>false</code> en caso contrario.
 	 * @param excludeElements
 	 *            Excluye los elementos que existan en esta lista de la lista
-	 *            pasada por parmetro
+	 *            pasada por parámetro
 	 */
 	public static <T> void showFromList(List<T> list, boolean wait, List<T> excludeElements) {
 		StringBuilder builder = new StringBuilder();
@@ -87,15 +148,15 @@ public class Utils {
 	}
 
 	/**
-	 * Devuelve un array de un elemento con la opcin seleccionada de la lista,
-	 * y con la opcin de poder cancelar esa opcin
+	 * Devuelve un array de un elemento con la opción seleccionada de la lista,
+	 * y con la opción de poder cancelar esa opción
 	 *
 	 * @param list
 	 *            Lista de la que se va a seleccionar
 	 * @param cancel
-	 *            <code>true</code> para poder cancelar la seleccin,
+	 *            <code>true</code> para poder cancelar la selección,
 	 *            <code>false</code> en caso contrario
-	 * @return Un array de un elemento con la posicin que ocupa el elemento
+	 * @return Un array de un elemento con la posición que ocupa el elemento
 	 *         seleccionado en la lista
 	 */
 	public static <T> int[] showAndSelectFromList(List<T> list, boolean cancel) {
@@ -103,45 +164,45 @@ public class Utils {
 	}
 
 	/**
-	 * Devuelve un array de mtiples elementos con la opcin seleccionada de la
-	 * lista, y con la opcin de poder cancelar esa opcin, o bien devolver un
+	 * Devuelve un array de mútiples elementos con la opción seleccionada de la
+	 * lista, y con la opción de poder cancelar esa opción, o bien devolver un
 	 * array con las posiciones de las selecciones
 	 *
 	 * @param list
 	 *            Lista de la que se va a seleccionar
 	 * @param cancel
-	 *            <code>true</code> para poder cancelar la seleccin,
+	 *            <code>true</code> para poder cancelar la selección,
 	 *            <code>false</code> en caso contrario. En caso de que el
-	 *            parmetro de multipleReturn este a <code>true</code> este
-	 *            parmetro no tiene funcionalidad
+	 *            parámetro de multipleReturn este a <code>true</code> este
+	 *            parámetro no tiene funcionalidad
 	 * @param multipleReturn
-	 *            <code>true</code> para que el array pueda contener mltiples
+	 *            <code>true</code> para que el array pueda contener múltiples
 	 *            selecciones, <code>false</code> en caso contrario.
-	 * @return Una lista con uno o mltiples elementos seleccionado de la lista
+	 * @return Una lista con uno o múltiples elementos seleccionado de la lista
 	 */
 	public static <T> int[] showAndSelectFromList(List<T> list, boolean cancel, boolean multipleReturn) {
 		return Utils.showAndSelectFromList(list, cancel, multipleReturn, null);
 	}
 
 	/**
-	 * Devuelve un array de mtiples elementos con la opcin seleccionada de la
-	 * lista, y con la opcin de poder cancelar esa opcin, o bien devolver un
+	 * Devuelve un array de mútiples elementos con la opción seleccionada de la
+	 * lista, y con la opción de poder cancelar esa opción, o bien devolver un
 	 * array con las posiciones de las selecciones. Se pueden excluir los
 	 * elementos de la segunda lista
 	 *
 	 * @param list
 	 *            Lista de la que se va a seleccionar
 	 * @param cancel
-	 *            <code>true</code> para poder cancelar la seleccin,
+	 *            <code>true</code> para poder cancelar la selección,
 	 *            <code>false</code> en caso contrario. En caso de que el
-	 *            parmetro de multipleReturn este a <code>true</code> este
-	 *            parmetro no tiene funcionalidad
+	 *            parámetro de multipleReturn este a <code>true</code> este
+	 *            parámetro no tiene funcionalidad
 	 * @param multipleReturn
-	 *            <code>true</code> para que el array pueda contener mltiples
+	 *            <code>true</code> para que el array pueda contener múltiples
 	 *            selecciones, <code>false</code> en caso contrario.
 	 * @param excludeElements
-	 *            Elementos de la lista que sern excluidas.
-	 * @return Una lista con uno o mltiples elementos seleccionado de la lista
+	 *            Elementos de la lista que serán excluidas.
+	 * @return Una lista con uno o múltiples elementos seleccionado de la lista
 	 */
 	public static <T> int[] showAndSelectFromList(List<T> list, boolean cancel, boolean multipleReturn, List<T> excludeElements) {
 		boolean check = true;
@@ -155,13 +216,13 @@ public class Utils {
 			builder.append(": ");
 			int selected = Input.integer(builder.toString());
 			while (!Utils.checkSelection(selected, list.size()) && (selected != 0)) {
-				selected = Input.integer("La opcin no es vlida, por favor, escoje una opcin vlida: ");
+				selected = Input.integer("La opción no es válida, por favor, escoje una opción válida: ");
 			}
 			int[] selection = new int[1];
 			selection[0] = selected - 1;
 			return selection;
 		} else {
-			String auxSelected = Input.string("\nSeleccione los elementos deseados, separndolos por , : ");
+			String auxSelected = Input.string("\nSeleccione los elementos deseados, separándolos por , : ");
 			auxSelected.trim();
 			auxSelected = auxSelected.replace(" ", "");
 			String[] split = auxSelected.split(",");
@@ -186,17 +247,17 @@ public class Utils {
 	}
 
 	/**
-	 * Comprueba si el ndice que se pasa como primer parmetro est dentro de
-	 * los lmites de una lista de parmetros. Devuelve <code>true</code> si el
-	 * ndice es mayor o igual a 0 y menor o igual al tamao de la lista,
+	 * Comprueba si el índice que se pasa como primer parámetro está dentro de
+	 * los límites de una lista de parámetros. Devuelve <code>true</code> si el
+	 * índice es mayor o igual a 0 y menor o igual al tamaño de la lista,
 	 * <code>false</code> en caso contrario
 	 *
 	 * @param i
-	 *            El ndice que se pasa por parmetro
+	 *            El índice que se pasa por parámetro
 	 * @param size
-	 *            El tamao de la lista de elementos
-	 * @return <code>true</code> si el ndice es mayor o igual a 0 y menor o
-	 *         igual al tamao de la lista, <code>false</code> en caso contrario
+	 *            El tamaño de la lista de elementos
+	 * @return <code>true</code> si el índice es mayor o igual a 0 y menor o
+	 *         igual al tamaño de la lista, <code>false</code> en caso contrario
 	 */
 	public static boolean checkSelection(int i, int size) {
 		if ((i >= 1) && (i <= size)) {
@@ -15,11 +15,11 @@ import race.ScoreCar;
 public class WriteJSON {
 
 	/**
-	 * Escribe un JSON con una informacin mnima para probar el funcionamiento
+	 * Escribe un JSON con una información mínima para probar el funcionamiento
 	 */
 	public void writeJSON() {
 		JSONObject obj = new JSONObject();
-		obj.put("brand", "Citron");
+		obj.put("brand", "Citroën");
 		obj.put("model", "Xsara");
 		obj.put("garage", "Rodovogo");
 
@@ -32,9 +32,9 @@ public class WriteJSON {
 
 		JSONObject obj2 = new JSONObject();
 		obj2.put("cancion", "La Macarena");
-		obj2.put("autor", "Los del Ro");
+		obj2.put("autor", "Los del Río");
 
-		obj.put("cancin", obj2);
+		obj.put("canción", obj2);
 
 
 		try (FileWriter file = new FileWriter("test.json")) {
@@ -50,7 +50,7 @@ public class WriteJSON {
 	}
 
 	/**
-	 * Lee un JSON con una informacin mnima para probar su funcionamiento
+	 * Lee un JSON con una información mínima para probar su funcionamiento
 	 */
 	public void readJSON () {
 
@@ -0,0 +1,119 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Pruebas de la copia binaria: una {@link AppSnapshot.Image} copia los datos
+ * del control sin cargar los registros de la copia anterior y no le afectan
+ * los cambios posteriores
+ */
+public class AppSnapshotTest {
+
+	/**
+	 * La carpeta temporal de las copias
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Crea un control con dos garajes, una carrera y un torneo
+	 *
+	 * @return El control
+	 */
+	protected static Control createControl() {
+		Control c = new Control();
+		Garage rayo = new Garage("Rayo");
+		rayo.registerCarToGarage(new ScoreCar("Seat", "Ibiza"));
+		rayo.registerCarToGarage(new ScoreCar("Ford", "Focus"));
+		Garage trueno = new Garage("Trueno");
+		trueno.registerCarToGarage(new ScoreCar("Opel", "Corsa"));
+		c.getGarageList().add(rayo);
+		c.getGarageList().add(trueno);
+
+		Race r = new DeathRace("Eliminatoria", 2);
+		r.registerGarage(rayo);
+		r.registerGarage(trueno);
+		r.getCarList().add(rayo.getGarageCarList().get(0));
+		r.getCarList().add(trueno.getGarageCarList().get(0));
+		c.getRaceList().add(r);
+
+		Tournament t = new Tournament("Copa");
+		t.registerRaceToTournament(new StandardRace("Resistencia", 3));
+		t.registerGarageToTournament(trueno);
+		t.registerCarInTournament(trueno.getGarageCarList().get(0));
+		c.getTournamentList().add(t);
+		return c;
+	}
+
+	/**
+	 * Carga una copia binaria en un control vacío
+	 *
+	 * @param content
+	 *            El contenido de la copia binaria
+	 * @return El control
+	 * @throws IOException
+	 *             Si no se puede escribir o leer la copia
+	 */
+	protected Control read(byte[] content) throws IOException {
+		File file = this.folder.newFile();
+		AppSnapshot.writeFile(content, file);
+		Control c = new Control();
+		AppSnapshot.read(c, file);
+		return c;
+	}
+
+	/**
+	 * Codificar una copia cargada y sin usar copia los registros sin cargar
+	 * los garajes, carreras ni torneos, y el resultado tiene los mismos datos
+	 *
+	 * @throws IOException
+	 *             Si no se puede escribir o leer la copia
+	 */
+	@Test
+	public void encodeCopiesUnloadedRecords() throws IOException {
+		Control original = AppSnapshotTest.createControl();
+		Control loaded = this.read(AppSnapshot.encode(original));
+		Control copied = this.read(AppSnapshot.encode(loaded));
+
+		assertNotNull(loaded.getGarageList().get(0).snapshotRecord);
+		assertNotNull(loaded.getRaceList().get(0).snapshotRecord);
+		assertNotNull(loaded.getTournamentList().get(0).snapshotRecord);
+		assertEquals(original.exportGaragesArray(), copied.exportGaragesArray());
+		assertEquals(original.exportRacesArray(), copied.exportRacesArray());
+		assertEquals(original.exportTournamentArray(), copied.exportTournamentArray());
+	}
+
+	/**
+	 * Los cambios hechos después de tomar la copia no aparecen al codificarla
+	 *
+	 * @throws IOException
+	 *             Si no se puede escribir o leer la copia
+	 */
+	@Test
+	public void imageIgnoresLaterChanges() throws IOException {
+		Control c = this.read(AppSnapshot.encode(AppSnapshotTest.createControl()));
+		c.getGarageList().get(1).registerCarToGarage(new ScoreCar("Fiat", "Panda"));
+		String garages = c.exportGaragesArray().toJSONString();
+		String races = c.exportRacesArray().toJSONString();
+
+		AppSnapshot.Image image = new AppSnapshot.Image(c);
+		c.getGarageList().get(0).registerCarToGarage(new ScoreCar("Renault", "Clio"));
+		c.getGarageList().get(1).getGarageCarList().clear();
+		c.getRaceList().get(0).getCarList().clear();
+		c.getTournamentList().clear();
+		Control copied = this.read(image.encode());
+
+		assertEquals(garages, copied.exportGaragesArray().toJSONString());
+		assertEquals(races, copied.exportRacesArray().toJSONString());
+		assertEquals(1, copied.getTournamentList().size());
+	}
+
+}
@@ -0,0 +1,192 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import utils.ProgramExporter;
+
+/**
+ * Pruebas del diario de cambios: los cambios guardados mientras se importan
+ * datos se vuelven a aplicar en un control vacío con el mismo resultado y con
+ * los mismos objetos canónicos que tras la importación
+ */
+public class ChangeJournalTest {
+
+	/**
+	 * La carpeta temporal del diario
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Devuelve el coche de una lista que es el mismo objeto que el indicado
+	 *
+	 * @param cars
+	 *            La lista de coches
+	 * @param sc
+	 *            El coche buscado
+	 * @return El coche de la lista, o <code>null</code> si no está
+	 */
+	protected static ScoreCar findInstance(Iterable<ScoreCar> cars, ScoreCar sc) {
+		for (ScoreCar car : cars) {
+			if (car == sc) {
+				return car;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Crea los datos que se importan: un garaje con dos coches, una carrera
+	 * con ese garaje, un garaje nuevo y un coche que el primer garaje no
+	 * tiene, y un torneo con la carrera. Se vuelven a leer del texto, como los
+	 * de un fichero
+	 *
+	 * @return Los datos, con las secciones de garajes, carreras y torneos
+	 */
+	@SuppressWarnings("unchecked")
+	protected static JSONObject createAppData() {
+		Garage rayo = new Garage("Rayo");
+		rayo.registerCarToGarage(new ScoreCar("Seat", "Ibiza"));
+		rayo.registerCarToGarage(new ScoreCar("Ford", "Focus"));
+		Garage nuevo = new Garage("Nuevo");
+		nuevo.registerCarToGarage(new ScoreCar("Opel", "Corsa"));
+
+		Race r = new StandardRace("Gran Premio", 1);
+		r.registerGarage(rayo);
+		r.registerGarage(nuevo);
+		r.getCarList().add(rayo.getGarageCarList().get(0));
+		r.getCarList().add(new ScoreCar("Renault", "Clio", "Rayo"));
+		r.getCarList().add(nuevo.getGarageCarList().get(0));
+
+		Tournament t = new Tournament("Copa");
+		t.registerRaceToTournament(r);
+		t.registerGarageToTournament(rayo);
+		t.registerCarInTournament(rayo.getGarageCarList().get(1));
+
+		JSONArray garages = new JSONArray();
+		garages.add(rayo.exportGarageWithCarsToJson());
+		JSONArray races = new JSONArray();
+		races.add(r.exportRaceWithGarageAndCarsToJson());
+		JSONArray tournaments = new JSONArray();
+		tournaments.add(t.exporterTournamentToJson());
+		JSONObject appData = new JSONObject();
+		appData.put(Control.GARAGES, garages);
+		appData.put(Control.RACES, races);
+		appData.put(Control.TOURNAMENT, tournaments);
+		return ProgramExporter.stringToJsonObject(appData.toJSONString());
+	}
+
+	/**
+	 * Importa los datos en un control con el diario abierto y los vuelve a
+	 * aplicar en un control vacío
+	 *
+	 * @param imported
+	 *            El control en el que se importan los datos
+	 * @return El control en el que se aplica el diario
+	 * @throws IOException
+	 *             Si no se puede escribir o leer el diario
+	 */
+	protected Control importAndReplay(Control imported) throws IOException {
+		File file = this.folder.newFile("journal.log");
+		imported.journal = new ChangeJournal(file);
+		imported.journal.open(0);
+		JSONObject appData = ChangeJournalTest.createAppData();
+		imported.importGarageData(appData);
+		imported.importRaceData(appData);
+		imported.importTournamentData(appData);
+		imported.journal.close();
+
+		Control replayed = new Control();
+		ChangeJournal journal = new ChangeJournal(file);
+		journal.replay(replayed, 0);
+		assertEquals(imported.journal.getSequence(), journal.getSequence());
+		return replayed;
+	}
+
+	/**
+	 * Los cambios del diario reponen las mismas listas que la importación
+	 *
+	 * @throws IOException
+	 *             Si no se puede escribir o leer el diario
+	 */
+	@Test
+	public void replayRestoresImportedData() throws IOException {
+		Control imported = new Control();
+		Control replayed = this.importAndReplay(imported);
+
+		assertEquals(imported.exportGaragesArray(), replayed.exportGaragesArray());
+		assertEquals(imported.exportRacesArray(), replayed.exportRacesArray());
+		assertEquals(imported.exportTournamentArray(), replayed.exportTournamentArray());
+		assertEquals(2, replayed.getGarageList().size());
+		assertEquals(3, replayed.getGarageFromList("Rayo").getGarageCarList().size());
+		assertEquals(1, replayed.getRaceList().size());
+		assertEquals(1, replayed.getTournamentList().size());
+	}
+
+	/**
+	 * Las carreras y torneos repuestos usan los garajes y coches de la lista
+	 * de garajes del control, no copias
+	 *
+	 * @throws IOException
+	 *             Si no se puede escribir o leer el diario
+	 */
+	@Test
+	public void replayUsesCanonicalGaragesAndCars() throws IOException {
+		Control replayed = this.importAndReplay(new Control());
+		Garage rayo = replayed.getGarageFromList("Rayo");
+		Garage nuevo = replayed.getGarageFromList("Nuevo");
+		Race race = replayed.getRaceList().get(0);
+
+		assertSame(rayo, race.getGarageList().get(0));
+		assertSame(nuevo, race.getGarageList().get(1));
+		for (ScoreCar sc : race.getCarList()) {
+			Garage g = replayed.getGarageFromList(sc.getGarage());
+			assertNotNull(sc.getDetails(), ChangeJournalTest.findInstance(g.getGarageCarList(), sc));
+		}
+
+		Tournament t = replayed.getTournamentList().get(0);
+		assertSame(rayo, t.getGarageList().get(0));
+		assertSame(rayo.findCar("Ford", "Focus"), t.getTournamentCarList().get(0));
+	}
+
+	/**
+	 * Sustituir un garaje por otro con el mismo nombre cambia sus coches sin
+	 * cambiar el objeto, y conserva los coches que ya tenía
+	 *
+	 * @throws IOException
+	 *             Si no se puede escribir o leer el diario
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void replayPutKeepsExistingGarage() throws IOException {
+		Control replayed = this.importAndReplay(new Control());
+		Garage rayo = replayed.getGarageList().get(0);
+		ScoreCar ibiza = rayo.findCar("Seat", "Ibiza");
+
+		JSONObject value = rayo.exportGarageWithCarsToJson();
+		((JSONArray) value.get(Garage.CAR_LIST)).add(new ScoreCar("Fiat", "Panda", "Rayo").exportCarToJson());
+		JSONObject entry = new JSONObject();
+		entry.put(ChangeJournal.OPERATION, ChangeJournal.PUT);
+		entry.put(ChangeJournal.LIST, Control.GARAGES);
+		entry.put(ChangeJournal.INDEX, 0L);
+		entry.put(ChangeJournal.VALUE, value);
+		replayed.replayJournalEntry(entry);
+
+		assertSame(rayo, replayed.getGarageList().get(0));
+		assertEquals(4, rayo.getGarageCarList().size());
+		assertSame(ibiza, rayo.findCar("Seat", "Ibiza"));
+		assertSame(ibiza, replayed.getRaceList().get(0).getCarList().get(0));
+	}
+
+}
@@ -0,0 +1,83 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Pruebas de la carrera de eliminación con eliminación por lista sobre un
+ * {@link RaceState}
+ */
+public class DeathRaceTest {
+
+	/**
+	 * Crea una carrera de eliminación con coches nuevos y semilla fija
+	 *
+	 * @param cars
+	 *            El número de coches
+	 * @return La carrera
+	 */
+	protected static DeathRace createRace(int cars) {
+		List<ScoreCar> carList = new ArrayList<>();
+		for (int i = 0; i < cars; i++) {
+			carList.add(new ScoreCar("Marca" + i, "Modelo", "Garaje"));
+		}
+		DeathRace r = new DeathRace("Eliminatoria", 3);
+		r.setCarList(carList);
+		r.setSeed(42);
+		return r;
+	}
+
+	/**
+	 * Devuelve la distancia de cada coche de la carrera, en el orden de la
+	 * lista de coches
+	 *
+	 * @param r
+	 *            La carrera simulada
+	 * @return Las distancias
+	 */
+	protected static List<Double> distances(Race r) {
+		List<Double> distances = new ArrayList<>();
+		for (ScoreCar sc : r.getCarList()) {
+			distances.add(sc.getDistance());
+		}
+		return distances;
+	}
+
+	/**
+	 * Las vueltas de eliminación también circulan sobre el estado, por lo que
+	 * guardarlo fuera del montón no cambia el resultado
+	 */
+	@Test
+	public void offHeapStateMatchesArrays() {
+		DeathRace arrays = DeathRaceTest.createRace(50);
+		arrays.setBitSlicedDecisions(true);
+		arrays.startRace();
+		DeathRace offHeap = DeathRaceTest.createRace(50);
+		offHeap.setBitSlicedDecisions(true);
+		offHeap.setOffHeapState(true);
+		offHeap.startRace();
+
+		assertEquals(DeathRaceTest.distances(arrays), DeathRaceTest.distances(offHeap));
+		assertEquals(arrays.getDeathList().get(0).getBrand(), offHeap.getDeathList().get(0).getBrand());
+	}
+
+	/**
+	 * Al terminar sólo queda el ganador, que es el primero del resultado
+	 */
+	@Test
+	public void winnerLeadsResult() {
+		DeathRace r = DeathRaceTest.createRace(30);
+		r.setSkipAheadTicks(4);
+		r.setSurvivorsOnly(true);
+		r.startRace();
+
+		assertEquals(1, r.getDeathList().size());
+		assertSame(r.getDeathList().get(0), r.getRaceResult().getCar(0));
+	}
+
+}
@@ -0,0 +1,71 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Pruebas de la reproducibilidad de una {@link MonteCarloSimulation}
+ */
+public class MonteCarloSimulationTest {
+
+	/**
+	 * Crea una simulación de una carrera estándar con coches nuevos y la
+	 * ejecuta
+	 *
+	 * @param iterations
+	 *            El número de veces que se simula la carrera
+	 * @param parallelism
+	 *            El número de hilos
+	 * @param seed
+	 *            La semilla de la simulación
+	 * @return La simulación ya ejecutada
+	 */
+	protected static MonteCarloSimulation run(int iterations, int parallelism, long seed) {
+		List<ScoreCar> cars = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			cars.add(new ScoreCar("Marca" + i, "Modelo", "Garaje"));
+		}
+		StandardRace r = new StandardRace("Gran Premio", 1);
+		r.setCarList(cars);
+		MonteCarloSimulation simulation = new MonteCarloSimulation(r);
+		simulation.run(iterations, parallelism, seed);
+		return simulation;
+	}
+
+	/**
+	 * Con la misma semilla se obtienen exactamente las mismas estadísticas,
+	 * sea cual sea el número de hilos
+	 */
+	@Test
+	public void sameSeedSameStatistics() {
+		MonteCarloSimulation expected = MonteCarloSimulationTest.run(200, 1, 99);
+		MonteCarloSimulation actual = MonteCarloSimulationTest.run(200, 3, 99);
+
+		assertEquals(expected.getIterations(), actual.getIterations());
+		for (int car = 0; car < expected.getCarCount(); car++) {
+			assertEquals(expected.getWinProbability(car), actual.getWinProbability(car), 0.0);
+			assertEquals(expected.getPodiumProbability(car), actual.getPodiumProbability(car), 0.0);
+			assertEquals(expected.getMeanPoints(car), actual.getMeanPoints(car), 0.0);
+			assertEquals(expected.getPointsStandardDeviation(car), actual.getPointsStandardDeviation(car), 0.0);
+		}
+		assertEquals(expected.getSummary(), actual.getSummary());
+	}
+
+	/**
+	 * Ejecutar la simulación en dos tandas continúa la numeración de las
+	 * iteraciones, por lo que da lo mismo que ejecutarla de una vez
+	 */
+	@Test
+	public void batchesMatchSingleRun() {
+		MonteCarloSimulation expected = MonteCarloSimulationTest.run(300, 2, 5);
+		MonteCarloSimulation actual = MonteCarloSimulationTest.run(120, 2, 5);
+		actual.run(180, 3, 5);
+
+		assertEquals(expected.getSummary(), actual.getSummary());
+	}
+
+}
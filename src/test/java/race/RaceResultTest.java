@@ -0,0 +1,45 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+import utils.ComparatorScoreCarByDistance;
+
+/**
+ * Pruebas de la clasificación de un {@link RaceResult} a partir de la lista de
+ * coches
+ */
+public class RaceResultTest {
+
+	/**
+	 * La clasificación completa y la parcial usan el mismo comparador y el
+	 * mismo desempate, por lo que sus primeros puestos coinciden aunque el
+	 * comparador no sea el de distancia
+	 */
+	@Test
+	public void fullRankingUsesComparator() {
+		List<ScoreCar> cars = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			ScoreCar sc = new ScoreCar("Marca" + i, "Modelo", "Garaje");
+			for (int j = 0; j < i % 3; j++) {
+				sc.driveInRace(1);
+			}
+			cars.add(sc);
+		}
+		Comparator<ScoreCar> comparator = Collections.reverseOrder(new ComparatorScoreCarByDistance());
+
+		RaceResult full = RaceResult.of(cars, comparator);
+		RaceResult top = RaceResult.topOf(cars, comparator, 3);
+
+		assertEquals(top.getTopCars(3), full.getTopCars(3));
+		assertEquals(0.0, full.getDistance(0), 0.0);
+		assertEquals(cars.get(6), full.getCar(0));
+	}
+
+}
@@ -0,0 +1,91 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Pruebas de la semilla fija de una carrera: cada simulación vuelve a empezar
+ * a partir de la semilla, también después de simularse en un torneo
+ */
+public class RaceTest {
+
+	/**
+	 * Crea una carrera estándar con coches nuevos y semilla fija
+	 *
+	 * @param seed
+	 *            La semilla de la carrera
+	 * @return La carrera
+	 */
+	protected static StandardRace createRace(long seed) {
+		List<ScoreCar> carList = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			carList.add(new ScoreCar("Marca" + i, "Modelo", "Garaje"));
+		}
+		StandardRace r = new StandardRace("Gran Premio", 2);
+		r.setCarList(carList);
+		r.setSeed(seed);
+		return r;
+	}
+
+	/**
+	 * Reinicia los coches, simula la carrera y devuelve su clasificación
+	 * completa
+	 *
+	 * @param r
+	 *            La carrera
+	 * @return Los coches, del primero al último
+	 */
+	protected static List<ScoreCar> run(Race r) {
+		r.resetCars();
+		r.startRace();
+		return r.getTopCars(r.getCarList().size());
+	}
+
+	/**
+	 * Simular dos veces la misma carrera con semilla da el mismo podio y la
+	 * misma clasificación, tanto sobre los coches como sobre un estado
+	 */
+	@Test
+	public void sameSeedRepeatsPodium() {
+		StandardRace r = RaceTest.createRace(42);
+		List<ScoreCar> first = RaceTest.run(r);
+		String podium = r.getPodium();
+
+		assertEquals(first, RaceTest.run(r));
+		assertEquals(podium, r.getPodium());
+
+		r.setArrayKernel(true);
+		List<ScoreCar> kernel = RaceTest.run(r);
+		assertEquals(kernel, RaceTest.run(r));
+
+		DeathRace dr = DeathRaceTest.createRace(30);
+		List<ScoreCar> death = RaceTest.run(dr);
+		assertEquals(death, RaceTest.run(dr));
+	}
+
+	/**
+	 * Después de un torneo la carrera conserva su semilla y su modo de estado,
+	 * y vuelve a dar el mismo resultado que antes del torneo
+	 */
+	@Test
+	public void tournamentRestoresRaceSettings() {
+		StandardRace r = RaceTest.createRace(7);
+		List<ScoreCar> before = RaceTest.run(r);
+
+		Tournament t = new Tournament("Copa");
+		t.registerRaceToTournament(r);
+		t.getTournamentCarList().addAll(r.getCarList());
+		t.setSeed(3);
+		t.startTournament();
+
+		assertEquals(Long.valueOf(7), r.getSeed());
+		assertFalse(r.isIsolatedState());
+		assertEquals(before, RaceTest.run(r));
+	}
+
+}
@@ -0,0 +1,93 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Pruebas de la simulación de un torneo con varios hilos
+ */
+public class TournamentTest {
+
+	/**
+	 * Crea un torneo con semilla fija, coches nuevos y carreras estándar y de
+	 * eliminación en las que participan todos los coches
+	 *
+	 * @return El torneo
+	 */
+	protected static Tournament createTournament() {
+		List<ScoreCar> cars = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			cars.add(new ScoreCar("Marca" + i, "Modelo", "Garaje"));
+		}
+		Tournament t = new Tournament("Copa");
+		for (int i = 0; i < 4; i++) {
+			Race r;
+			if (i % 2 == 0) {
+				r = new StandardRace("Resistencia" + i, 1 + i);
+			} else {
+				r = new DeathRace("Eliminatoria" + i, i);
+			}
+			r.setCarList(new ArrayList<>(cars));
+			t.registerRaceToTournament(r);
+		}
+		t.getTournamentCarList().addAll(cars);
+		t.setSeed(2024);
+		return t;
+	}
+
+	/**
+	 * Simular el torneo con varios hilos da exactamente la misma
+	 * clasificación, los mismos puntos y las mismas distancias en cada carrera
+	 * que simularlo de una en una
+	 */
+	@Test
+	public void parallelMatchesSequential() {
+		Tournament sequential = TournamentTest.createTournament();
+		sequential.startTournament(1);
+		Tournament parallel = TournamentTest.createTournament();
+		parallel.startTournament(4);
+
+		List<ScoreCar> expected = sequential.getTournamentCarList();
+		List<ScoreCar> actual = parallel.getTournamentCarList();
+		assertEquals(expected, actual);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getScore(), actual.get(i).getScore());
+		}
+		for (int i = 0; i < sequential.getRaceList().size(); i++) {
+			RaceResult expectedResult = sequential.getRaceList().get(i).getRaceResult();
+			RaceResult actualResult = parallel.getRaceList().get(i).getRaceResult();
+			for (int p = 0; p < expectedResult.size(); p++) {
+				assertEquals(expectedResult.getIndex(p), actualResult.getIndex(p));
+				assertEquals(Double.doubleToLongBits(expectedResult.getDistance(p)),
+						Double.doubleToLongBits(actualResult.getDistance(p)));
+			}
+		}
+	}
+
+	/**
+	 * Volver a simular un torneo con semilla, con los puntos a 0, da a cada
+	 * coche los mismos puntos. El orden de los empatados puede cambiar, porque
+	 * la lista ya está ordenada por la primera simulación
+	 */
+	@Test
+	public void sameSeedRepeatsPoints() {
+		Tournament t = TournamentTest.createTournament();
+		List<ScoreCar> cars = new ArrayList<>(t.getTournamentCarList());
+		t.startTournament(2);
+		int[] first = new int[cars.size()];
+		for (int i = 0; i < cars.size(); i++) {
+			first[i] = cars.get(i).getScore();
+			cars.get(i).setScore(0);
+		}
+		t.startTournament(2);
+
+		for (int i = 0; i < cars.size(); i++) {
+			assertEquals(first[i], cars.get(i).getScore());
+		}
+	}
+
+}
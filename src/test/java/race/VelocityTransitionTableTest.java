@@ -0,0 +1,57 @@
+package race;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Pruebas de la distribución de los resultados de un bloque de minutos
+ */
+public class VelocityTransitionTableTest {
+
+	/**
+	 * La probabilidad de cada resultado de la distribución es la suma de las
+	 * de los patrones de decisiones que llevan a él, simulados minuto a minuto
+	 */
+	@Test
+	public void distributionMatchesDecisionPatterns() {
+		int ticks = 5;
+		VelocityTransitionTable.Distribution distribution = VelocityTransitionTable.getTable(ticks).getDistribution(2, 3);
+		for (int state = 0; state < VelocityTransitionTable.STATES; state++) {
+			int velocity = state * ScoreCar.VELOCITY_STEP;
+			long previous = 0;
+			for (int outcome = distribution.offsets[state]; outcome < distribution.offsets[state + 1]; outcome++) {
+				double expected = 0.0;
+				for (int pattern = 0; pattern < (1 << ticks); pattern++) {
+					int v = velocity;
+					int sum = 0;
+					for (int i = 0; i < ticks; i++) {
+						v = RaceState.nextVelocity(v, ((pattern >>> i) & 1) != 0);
+						sum += v;
+					}
+					if ((v == distribution.getEndVelocity(outcome)) && (sum == distribution.getVelocitySum(outcome))) {
+						expected += Math.pow(2.0 / 3.0, Integer.bitCount(pattern)) * Math.pow(1.0 / 3.0, ticks - Integer.bitCount(pattern));
+					}
+				}
+				double actual = (distribution.thresholds[outcome] - previous) / VelocityTransitionTable.Distribution.SCALE;
+				assertEquals(expected, actual, 1e-12);
+				previous = distribution.thresholds[outcome];
+			}
+			assertEquals(1.0, previous / VelocityTransitionTable.Distribution.SCALE, 1e-12);
+		}
+	}
+
+	/**
+	 * Un número aleatorio elige el primer resultado cuya probabilidad
+	 * acumulada lo supera
+	 */
+	@Test
+	public void sampleUsesCumulativeProbability() {
+		VelocityTransitionTable.Distribution distribution = VelocityTransitionTable.getTable(4).getDistribution(2, 3);
+		int first = distribution.offsets[0];
+		assertEquals(first, distribution.sample(0, 0L));
+		assertEquals(first + 1, distribution.sample(0, distribution.thresholds[first]));
+		assertEquals(distribution.offsets[1] - 1, distribution.sample(0, Long.MAX_VALUE));
+	}
+
+}
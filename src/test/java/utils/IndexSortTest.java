@@ -0,0 +1,59 @@
+package utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Pruebas de la ordenación de índices
+ */
+public class IndexSortTest {
+
+	/**
+	 * Calcula la clasificación esperada ordenando por inserción: de mayor a
+	 * menor clave y, en caso de empate, primero la posición mayor
+	 *
+	 * @param keys
+	 *            Las claves
+	 * @return Las posiciones ordenadas
+	 */
+	protected static int[] expected(long[] keys) {
+		int[] order = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			int j = i;
+			while ((j > 0) && (keys[order[j - 1]] <= keys[i])) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = i;
+		}
+		return order;
+	}
+
+	/**
+	 * Las dos variantes dejan el mismo resultado, y la que recibe los arrays
+	 * lo deja siempre en order, sea cual sea el número de pasadas
+	 */
+	@Test
+	public void resultIsAlwaysInOrder() {
+		Random random = new Random(7);
+		for (int n = 0; n < 40; n++) {
+			long[] keys = new long[n];
+			double[] doubleKeys = new double[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = random.nextInt(5);
+				doubleKeys[i] = keys[i];
+			}
+			int[] order = new int[n];
+			int[] sorted = IndexSort.sortDescending(keys, order, new int[n]);
+
+			assertSame(order, sorted);
+			assertArrayEquals(IndexSortTest.expected(keys), order);
+			assertArrayEquals(order, IndexSort.sortDescending(doubleKeys));
+		}
+	}
+
+}